@@ -14,6 +14,8 @@ public interface EmulatorEngine {
     ProgramView programView();
     ProgramView programView(int degree);
     ProgramView programView(String programName, int degree);
+    List<InstructionView> repeatedRows(String programName, int degree, int index, int from, int count);
+    List<InstructionView> provenance(String programName, int degree, int index);
     RunResult run(Long... input);
     RunResult run(int degree, Long... input);
     RunResult run(String programName, int degree, Long... inputs);
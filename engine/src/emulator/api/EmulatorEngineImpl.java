@@ -4,21 +4,22 @@ import emulator.api.debug.DebugRecord;
 import emulator.api.debug.DebugService;
 import emulator.api.dto.*;
 import emulator.exception.*;
-import emulator.logic.compose.Composer;
 import emulator.logic.debug.EngineDebugAdapter;
+import emulator.logic.debug.TraceRecorder;
+import emulator.logic.execution.ExecutionTier;
 import emulator.logic.execution.ProgramExecutor;
 import emulator.logic.execution.ProgramExecutorImpl;
-import emulator.logic.execution.QuoteEvaluator;
-import emulator.logic.expansion.Expander;
-import emulator.logic.expansion.ProgramExpander;
+import emulator.logic.expansion.ExpansionCache;
+import emulator.logic.expansion.LazyExpansion;
+import emulator.logic.expansion.LazyProgram;
+import emulator.logic.expansion.ProvenanceIndex;
 import emulator.logic.instruction.Instruction;
 import emulator.logic.instruction.InstructionData;
-import emulator.logic.instruction.quote.MapBackedQuotationRegistry;
-import emulator.logic.instruction.quote.QuotationRegistry;
-import emulator.logic.instruction.quote.QuoteUtils;
+import emulator.logic.instruction.RepeatInstruction;
 import emulator.logic.label.Label;
 import emulator.logic.program.Program;
 import emulator.logic.program.ProgramCost;
+import emulator.logic.user.User;
 import emulator.logic.user.UserManager;
 import emulator.logic.xml.*;
 import jakarta.xml.bind.JAXBContext;
@@ -28,7 +29,6 @@ import java.io.*;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.util.*;
-import java.util.function.Function;
 import java.util.regex.Pattern;
 import java.util.regex.Matcher;
 import java.util.stream.Collectors;
@@ -37,33 +37,34 @@ import static java.util.Locale.ROOT;
 
 public class EmulatorEngineImpl implements EmulatorEngine {
 
+    // Programs and functions, shared with every other engine over the same library; the rest is this engine's own
+    private final ProgramLibrary library;
     private Program current;
     private Program lastViewProgram;
-    private transient ProgramExecutor executor;
     private final List<RunRecord> history = new ArrayList<>();
     private final Map<String, List<RunRecord>> historyByProgram = new HashMap<>();
     private final Map<String, Integer> runCountersByProgram = new HashMap<>();
-    private transient ProgramExpander programExpander = new ProgramExpander();
-    private transient Expander expander = new Expander();
     private static final long serialVersionUID = 1L;
-    private final Map<String, Program> functionLibrary = new HashMap<>();
-    private final Map<String, Program> functionsOnly   = new HashMap<>();
-    private final Map<String, String> fnDisplayMap = new HashMap<>();
-    private transient QuotationRegistry quotationRegistry = new MapBackedQuotationRegistry(functionLibrary);
+    private static final Pattern INPUT_VAR = Pattern.compile("\\bx([1-9]\\d*)\\b");
     private final XmlProgramValidator xmlProgramValidator = new XmlProgramValidator();
-    private final List<DebugRecord> debugTrace = new ArrayList<>();
+    private transient TraceRecorder lastTrace;
+    private boolean traceEnabled = false;
     private Map<String, Long> lastRunVars = Map.of();
     private List<Long> lastRunInputs = List.of();
     private int lastRunDegree = 0;
     private String lastRunProgramName = null;
-    private final Map<String,String> displayToInternal = new HashMap<>();
-    private final Map<String, List<Long>> programCreditHistory = new HashMap<>();
-    private final Map<String, List<Long>> functionCreditHistory = new HashMap<>();
-    private final Map<String, Integer> runCountByProgram = new HashMap<>();
-    private final Map<String, Double> avgCreditsByProgram = new HashMap<>();
     private final UserService userService = UserService.getInstance();
     private ArchitectureInfo lastArchitecture = new ArchitectureInfo("I", 5, "Basic architecture");
 
+    public EmulatorEngineImpl() {
+        this(new ProgramLibrary());
+    }
+
+    //This func creates an engine over a library other engines may share (one engine per user session)
+    public EmulatorEngineImpl(ProgramLibrary library) {
+        this.library = Objects.requireNonNull(library, "library");
+    }
+
     // ----- DEBUG -----
     private transient Thread dbgThread;
     private final Object dbgLock = new Object();
@@ -96,81 +97,145 @@ public class EmulatorEngineImpl implements EmulatorEngine {
     @Override
     public ProgramView programView() {
         requireLoaded();
-        List<Program> only0 = List.of(current);
-        int max0 = expander.calculateMaxDegree(current.getInstructions());
-        return buildProgramView(current, 0, only0, max0);
+        Program main = current();
+        int max0 = main.calculateMaxDegree();
+        return buildProgramView(ProvenanceIndex.of(main), max0);
     }
 
     //This func returns a ProgramView of the currently loaded program at a specified degree
     @Override
     public ProgramView programView(int degree) {
         requireLoaded();
-        int max = expander.calculateMaxDegree(current.getInstructions());
+        Program main = current();
+        int max = main.calculateMaxDegree();
         if (degree < 0 || degree > max) {
             throw new IllegalArgumentException("Invalid expansion degree: " + degree + " (0-" + max + ")");
         }
 
-        Program base = (degree <= 0) ? current : programExpander.expandToDegree(current, degree);
-        List<Program> byDegree = new ArrayList<>(degree + 1);
-        byDegree.add(current);
-
         //Expand according to degree
-        for (int d = 1; d <= degree; d++) {
-            byDegree.add(programExpander.expandToDegree(current, d));
+        ExpansionCache expansionCache = library.expansionCache();
+        if (expansionCache.expandToDegree(main, degree) instanceof LazyProgram big) {
+            return buildLazyProgramView(main, big, max);
         }
-
-        if (degree > 0) byDegree.add(base);
-        return buildProgramView(base, degree, byDegree, max);
+        return buildProgramView(expansionCache.provenance(main, degree), max);
     }
 
     @Override
     public ProgramView programView(String programName, int degree) {
         Objects.requireNonNull(programName, "programName");
-        Program target = functionLibrary.get(programName);
+        // exact name or the uppercase alias the registry stores
+        Program target = library.find(programName);
+        if (target == null) {
+            throw new IllegalArgumentException("Unknown program: " + programName);
+        }
+        int max = target.calculateMaxDegree();
+        if (degree < 0 || degree > max) {
+            throw new IllegalArgumentException("Invalid expansion degree: " + degree + " (0-" + max + ")");
+        }
+
+        ExpansionCache expansionCache = library.expansionCache();
+        if (expansionCache.expandToDegree(target, degree) instanceof LazyProgram big) {
+            return buildLazyProgramView(target, big, max);
+        }
+        return buildProgramView(expansionCache.provenance(target, degree), max);
+    }
+
+    //This func returns rows [from, from + count) of the instructions a REPEAT row of a view stands for
+    @Override
+    public List<InstructionView> repeatedRows(String programName, int degree, int index, int from, int count) {
+        requireLoaded();
+        Program target = (programName == null || programName.isBlank()) ? current() : library.find(programName);
         if (target == null) {
-            // try exact and uppercase alias the registry stores
-            target = functionLibrary.get(programName.toUpperCase(ROOT));
+            throw new IllegalArgumentException("Unknown program: " + programName);
+        }
+        int max = target.calculateMaxDegree();
+        if (degree < 0 || degree > max) {
+            throw new IllegalArgumentException("Invalid expansion degree: " + degree + " (0-" + max + ")");
+        }
+        List<Instruction> instructions = library.expansionCache().expandToDegree(target, degree).getInstructions();
+        if (index < 0 || index >= instructions.size()) {
+            throw new IllegalArgumentException("Invalid instruction index: " + index);
         }
+        if (!(instructions.get(index) instanceof RepeatInstruction rep)) {
+            throw new IllegalArgumentException("Instruction " + index + " is not a repeat");
+        }
+
+        long end = Math.min(rep.getCount(), (long) Math.max(from, 0) + Math.max(count, 0));
+        // Every row is the same unlabelled instruction
+        InstructionView v = makeInstructionViewNoIndex(rep.row());
+        InstructionView row = new InstructionView(index, v.opcode(), v.label(), v.basic(), v.cycles(), v.args(),
+                List.of(), v.creditCost(), v.architecture());
+        List<InstructionView> out = new ArrayList<>();
+        for (long r = Math.max(from, 0); r < end; r++) out.add(row);
+        return out;
+    }
+
+    //This func returns, nearest first, the instructions the row at an index of a view came from
+    // (each with its 1-based index at the degree it was expanded from)
+    @Override
+    public List<InstructionView> provenance(String programName, int degree, int index) {
+        requireLoaded();
+        Program target = (programName == null || programName.isBlank()) ? current() : library.find(programName);
         if (target == null) {
             throw new IllegalArgumentException("Unknown program: " + programName);
         }
-        int max = expander.calculateMaxDegree(target.getInstructions());
+        int max = target.calculateMaxDegree();
         if (degree < 0 || degree > max) {
             throw new IllegalArgumentException("Invalid expansion degree: " + degree + " (0-" + max + ")");
         }
 
-        // Build degree ladder for provenance (like your current programView(int))
-        List<Program> byDegree = new ArrayList<>(degree + 1);
-        byDegree.add(target);
-        for (int d = 1; d <= degree; d++) {
-            byDegree.add(programExpander.expandOnce(byDegree.get(d - 1)));
+        List<InstructionView> out = new ArrayList<>();
+        ExpansionCache expansionCache = library.expansionCache();
+        if (expansionCache.expandToDegree(target, degree) instanceof LazyProgram big) {
+            if (index < 0 || index >= big.expansion().size()) {
+                throw new IllegalArgumentException("Invalid instruction index: " + index);
+            }
+            LazyExpansion.Cursor cursor = big.expansion().cursor(index);
+            cursor.next();
+            List<Instruction> from = cursor.createdFrom();
+            List<Integer> fromIdx = cursor.createdFromIndexes();
+            for (int i = 0; i < from.size(); i++) out.add(provenanceView(fromIdx.get(i), from.get(i)));
+            return out;
         }
-        Program base = byDegree.get(degree);
-        return buildProgramView(base, degree, byDegree, max);
+
+        ProvenanceIndex provenance = expansionCache.provenance(target, degree);
+        if (index < 0 || index >= provenance.expanded().getInstructions().size()) {
+            throw new IllegalArgumentException("Invalid instruction index: " + index);
+        }
+        for (ProvenanceIndex.Origin o : provenance.origins(index)) {
+            out.add(provenanceView(o.index() + 1, o.instruction()));
+        }
+        return out;
+    }
+
+    private InstructionView provenanceView(int index, Instruction ins) {
+        InstructionView v = makeInstructionViewNoIndex(ins);
+        return new InstructionView(index, v.opcode(), v.label(), v.basic(), v.cycles(), v.args(),
+                List.of(), v.creditCost(), v.architecture());
     }
 
     @Override
-    public Map<String, Long> lastRunVars() {
+    public synchronized Map<String, Long> lastRunVars() {
         return (lastRunVars == null) ? Map.of()
                 : java.util.Collections.unmodifiableMap(new java.util.LinkedHashMap<>(lastRunVars));
     }
 
     @Override
-    public List<Long> lastRunInputs() {
+    public synchronized List<Long> lastRunInputs() {
         return (lastRunInputs == null) ? java.util.List.of() : java.util.List.copyOf(lastRunInputs);
     }
 
     public Map<String, String> getDisplayNameMap() {
-        return Collections.unmodifiableMap(fnDisplayMap);
+        return library.snapshot().fnDisplayMap();
     }
 
     @Override
-    public int lastRunDegree() {
+    public synchronized int lastRunDegree() {
         return lastRunDegree;
     }
 
     @Override
-    public String lastRunProgramName() {
+    public synchronized String lastRunProgramName() {
         return lastRunProgramName;
     }
 
@@ -189,18 +254,10 @@ public class EmulatorEngineImpl implements EmulatorEngine {
             XmlProgramReader reader = new XmlProgramReader();
             ProgramXml pxml = reader.readFromString(xmlContent);
 
-            this.current = XmlToObjects.toProgram(pxml, quotationRegistry, makeQuoteEvaluator());
-            this.executor = new ProgramExecutorImpl(this.current, makeQuoteEvaluator());
-            functionLibrary.put(this.current.getName().toUpperCase(java.util.Locale.ROOT), this.current);
+            this.current = library.load(pxml, false);
 
             this.lastViewProgram = null;
-            this.history.clear();
-            this.historyByProgram.clear();
-            this.runCountersByProgram.clear();
-            this.lastRunVars = Map.of();
-            this.lastRunInputs = List.of();
-            this.lastRunDegree = 0;
-            this.lastRunProgramName = null;
+            resetRuns();
 
             LoadResult result = new LoadResult(
                     current.getName(),
@@ -258,7 +315,24 @@ public class EmulatorEngineImpl implements EmulatorEngine {
     }
 
     public List<DebugRecord> debugTrace() {
-        return Collections.unmodifiableList(debugTrace);
+        return (lastTrace == null) ? List.of() : lastTrace.records();
+    }
+
+    //This func turns step tracing of runs on or off (off by default). Tracing is for callers of the engine API,
+    // who read a run's steps back with debugTrace; the servlets and the debugger do not turn it on
+    public void setTraceEnabled(boolean enabled) {
+        this.traceEnabled = enabled;
+    }
+
+    public boolean isTraceEnabled() {
+        return traceEnabled;
+    }
+
+    //This func attaches a fresh trace recorder to an executor when tracing is on
+    private void attachTrace(ProgramExecutor exec) {
+        lastTrace = traceEnabled ? new TraceRecorder() : null;
+        exec.setStepListener(null);
+        exec.setStepProbe(lastTrace);
     }
 
     public LoadResult loadProgram(Path xmlPath, ProgressListener cb) throws Exception {
@@ -276,50 +350,17 @@ public class EmulatorEngineImpl implements EmulatorEngine {
         Thread.sleep(300);
         XmlProgramReader reader = new XmlProgramReader();
         ProgramXml pxml = reader.read(xmlPath);
-        this.current = XmlToObjects.toProgram(pxml, quotationRegistry, makeQuoteEvaluator());
-        this.executor = new ProgramExecutorImpl(this.current, makeQuoteEvaluator());
-        functionLibrary.put(this.current.getName().toUpperCase(ROOT), this.current);
-
-        functionsOnly.clear();
-        for (var e : functionLibrary.entrySet()) {
-            Program p2 = e.getValue();
-            if (p2 != null && p2 != this.current) {
-                functionsOnly.put(e.getKey().toUpperCase(ROOT), p2);
-            }
-        }
 
         listener.onProgress("Validating XML...", 0.60);
         Thread.sleep(150);
         xmlProgramValidator.validate(pxml);
 
-        fnDisplayMap.clear();
-        displayToInternal.clear();
-        if (pxml.getFunctions() != null && pxml.getFunctions().getFunctions() != null) {
-            for (var fxml : pxml.getFunctions().getFunctions()) {
-                String internal = (fxml.getName() == null) ? "" : fxml.getName().trim();
-                String user = (fxml.getUserString() == null) ? "" : fxml.getUserString().trim();
-                if (!internal.isEmpty() && !user.isEmpty()) {
-                    fnDisplayMap.put(internal, user);
-                    fnDisplayMap.put(internal.toUpperCase(ROOT), user);
-                    displayToInternal.put(user, internal);
-                    displayToInternal.put(user.toUpperCase(ROOT), internal);
-                }
-            }
-        }
-
+        // Built once, after validation, and published to the library with the file's function names
         listener.onProgress("Building program...", 0.85);
         Thread.sleep(200);
-        this.current = XmlToObjects.toProgram(pxml, quotationRegistry, makeQuoteEvaluator());
-        this.executor = new ProgramExecutorImpl(this.current, makeQuoteEvaluator());
-        functionLibrary.put(this.current.getName().toUpperCase(ROOT), this.current);
+        this.current = library.load(pxml, true);
         this.lastViewProgram = null;
-        this.history.clear();
-        this.historyByProgram.clear();
-        this.runCountersByProgram.clear();
-        this.lastRunVars = Map.of();
-        this.lastRunInputs = List.of();
-        this.lastRunDegree = 0;
-        this.lastRunProgramName = null;
+        resetRuns();
 
         LoadResult result = new LoadResult(
                 current.getName(),
@@ -350,124 +391,93 @@ public class EmulatorEngineImpl implements EmulatorEngine {
         }
     }
 
-    private String internalOf(String maybeDisplayOrInternal) {
-        if (maybeDisplayOrInternal == null) return null;
-        String s = maybeDisplayOrInternal.trim();
-        if (s.isEmpty()) return s;
-        if (functionLibrary.containsKey(s.toUpperCase(ROOT))) return s;
-        return displayToInternal.getOrDefault(s, s);
+    //------programView Helpers------//
+
+    //This func builds and returns a ProgramView whose instruction views are made from the index while they are
+    // read, so a page of a large view only builds its own rows
+    private ProgramView buildProgramView(ProvenanceIndex index, int maxDegree) {
+        Program base = index.expanded();
+        int degree = index.degree();
+        int totalCycles = new ProgramCost(library.registry()).cyclesAtDegree(index.program(0), degree);
+        List<String> inputs = inputVarsOf(base.getInstructions());
+        return new ProgramView(new IndexedInstructionViews(index), displayOf(base.getName()), degree, maxDegree,
+                totalCycles, inputs);
     }
 
-    //------programView Helpers------//
+    // Instruction views over a ProvenanceIndex, with the parent indexes of each row read off the index
+    private final class IndexedInstructionViews extends AbstractList<InstructionView> implements RandomAccess {
+        private final ProvenanceIndex index;
+        private final List<Instruction> instructions;
+
+        private IndexedInstructionViews(ProvenanceIndex index) {
+            this.index = index;
+            this.instructions = index.expanded().getInstructions();
+        }
 
-    private static final ThreadLocal<Deque<Program>> CALL_STACK = ThreadLocal.withInitial(ArrayDeque::new);
+        @Override
+        public int size() { return instructions.size(); }
 
-    private QuoteEvaluator makeQuoteEvaluator() {
-        return (fn, fargs, env, degree) -> {
-            var invoker = new Composer.ProgramInvoker() {
-                @Override public List<Long> run(String functionName, List<Long> inputs) {
-                    Program target = resolveQuotedTarget(functionName);
-                    if (target == null) {
-                        throw new IllegalArgumentException("Unknown function: " + functionName);
-                    }
-                    Deque<Program> stack = CALL_STACK.get();
-                    if (stack.contains(target)) {
-                        String path = stack.stream().map(Program::getName)
-                                .reduce((a,b) -> a + " -> " + b).orElse("<start>");
-                        throw new IllegalStateException("Recursive composition detected: " + path + " -> " + target.getName());
-                    }
-                    stack.push(target);
-                    try {
-                        Program toRun = (degree <= 0) ? target : programExpander.expandToDegree(target, degree);
-                        var exec = new ProgramExecutorImpl(toRun, makeQuoteEvaluator()); // allow nested QUOTE
-                        if (degree > 0 && exec instanceof ProgramExecutorImpl pei) {
-                            pei.setBaseCycles(QuoteUtils.getCurrentCycles());
-                        }
-                        exec.setBaseCycles(QuoteUtils.getCurrentCycles());
-                        debugTrace.clear();
-                        exec.setStepListener((pcAfter, cycles, vars, finished) -> {
-                            Map<String,String> vv = (vars == null) ? Map.of() : Map.copyOf(vars);
-                            debugTrace.add(new DebugRecord(pcAfter, cycles, vv, finished, "STEP"));
-                        });
-                        int carried = QuoteUtils.drainCycles();
-                        long y = exec.run(inputs.toArray(Long[]::new));
-                        QuoteUtils.addCycles(carried + exec.getLastExecutionCycles() + exec.getLastDynamicCycles());
-                        return List.of(y);
-                    } finally {
-                        stack.pop();
-                        if (stack.isEmpty()) CALL_STACK.remove();
-                    }
-                }
-                @Override public Map<String, Long> currentEnv() { return env; }
-            };
-            return Composer.evaluateArgs(fn, fargs, invoker);
-        };
+        @Override
+        public InstructionView get(int i) {
+            List<ProvenanceIndex.Origin> origins = index.origins(i);
+            List<Integer> createdFromChain = new ArrayList<>(origins.size());
+            for (ProvenanceIndex.Origin o : origins) createdFromChain.add(o.index() + 1);
+            return makeInstructionView(i, instructions.get(i), createdFromChain);
+        }
     }
 
-    private Program resolveQuotedTarget(String name) {
-        if (name == null) return null;
-        String norm = internalOf(name);
-        Program p = functionsOnly.get(name.toUpperCase(ROOT)); // prefer declared <S-Function>
-        if (p != null) return p;
-        for (var e : functionLibrary.entrySet()) {
-            if (e.getKey().equalsIgnoreCase(name)) return e.getValue(); // fallback (external)
+    //This func builds a ProgramView whose instruction views are made while they are read, one branch of the
+    // expansion at a time, so a huge expansion never sits in memory
+    private ProgramView buildLazyProgramView(Program original, LazyProgram expanded, int maxDegree) {
+        int degree = expanded.getDegree();
+        int totalCycles = new ProgramCost(library.registry()).cyclesAtDegree(original, degree);
+        List<String> inputs = inputVarsOf(original.getInstructions());
+        return new ProgramView(new LazyInstructionViews(expanded.expansion()), displayOf(original.getName()),
+                degree, maxDegree, totalCycles, inputs);
+    }
+
+    // Instruction views over a LazyExpansion (a member class rather than an anonymous one so Gson serializes it)
+    private final class LazyInstructionViews extends AbstractList<InstructionView> implements RandomAccess {
+        private final LazyExpansion expansion;
+        private LazyExpansion.Cursor cursor;
+
+        private LazyInstructionViews(LazyExpansion expansion) {
+            this.expansion = expansion;
         }
-        return null;
-    }
-
-    //This func builds and returns a ProgramView by converting each instruction into an InstructionView
-    private ProgramView buildProgramView(Program base, int degree, List<Program> byDegree, int maxDegree) {
-        List<Instruction> real = base.getInstructions();
-        int totalCycles = new ProgramCost(quotationRegistry).cyclesAtDegree(byDegree.get(0), degree);
-        List<IdentityHashMap<Instruction, Integer>> indexMaps = buildIndexMaps(byDegree, degree); // Index maps for each degree
-        Function<Instruction, InstructionView> mkViewNoIndex = this::makeInstructionViewNoIndex;
-
-        // Build final views
-        List<InstructionView> out = new ArrayList<>(real.size());
-        for (int i = 0; i < real.size(); i++) {
-            Instruction ins = real.get(i);
-
-            // provenance chain
-            List<InstructionView> provenance = buildProvenanceForInstruction(ins, degree, indexMaps, mkViewNoIndex);
-
-            // numeric chain
-            List<Integer> createdFromChain = new ArrayList<>();
-            Instruction cur = ins.getCreatedFrom();
-            int guessDeg = degree - 1;
-            while (cur != null) {
-                int foundDeg = findDegreeForInstruction(cur, indexMaps, Math.min(guessDeg, degree - 1), degree);
-                Integer idx = (foundDeg >= 0) ? indexMaps.get(foundDeg).get(cur) : null;
-                if (idx != null) createdFromChain.add(idx);
-                cur = cur.getCreatedFrom();
-                guessDeg--;
-            }
 
-            InstructionView self = mkViewNoIndex.apply(ins);
-            InstructionData data = ins.getInstructionData();
-            ArchitectureInfo info = getArchitectureInfo(data);
-
-            out.add(new InstructionView(
-                    i,
-                    self.opcode(),
-                    self.label(),
-                    self.basic(),
-                    self.cycles(),
-                    self.args(),
-                    createdFromChain,
-                    provenance,
-                    info.cost(),
-                    info.name()
-            ));
+        @Override
+        public int size() { return expansion.size(); }
+
+        @Override
+        public synchronized InstructionView get(int index) {
+            Objects.checkIndex(index, size());
+            if (cursor == null || cursor.index() != index) cursor = expansion.cursor(index);
+            Instruction ins = cursor.next();
+            return makeInstructionView(index, ins, cursor.createdFromIndexes());
         }
-        List<String> inputs = extractInputVars(new ProgramView(out, displayOf(base.getName()), degree, maxDegree, totalCycles, List.of()));
-        return new ProgramView(out, displayOf(base.getName()), degree, maxDegree, totalCycles,  inputs);
+    }
+
+    //This func builds the InstructionView of an instruction at an index of its program
+    private InstructionView makeInstructionView(int index, Instruction ins, List<Integer> createdFromChain) {
+        InstructionView self = makeInstructionViewNoIndex(ins);
+        ArchitectureInfo info = getArchitectureInfo(ins.getInstructionData());
+        return new InstructionView(
+                index,
+                self.opcode(),
+                self.label(),
+                self.basic(),
+                self.cycles(),
+                self.args(),
+                createdFromChain,
+                info.cost(),
+                info.name()
+        );
     }
 
     @Override
     public RunResult run(String programName, int degree, Long... input) {
         Objects.requireNonNull(programName, "programName");
-        Program target = functionLibrary.get(programName);
-        if (target == null) target = functionLibrary.get(programName.toUpperCase(ROOT));
+        Program target = library.find(programName);
         if (target == null) throw new IllegalArgumentException("Unknown program: " + programName);
 
         int maxDegree = target.calculateMaxDegree();
@@ -475,19 +485,15 @@ public class EmulatorEngineImpl implements EmulatorEngine {
             throw new IllegalArgumentException("Invalid expansion degree: " + degree + ". Allowed range is 0-" + maxDegree);
         }
 
-        Program toRun = (degree <= 0) ? target : programExpander.expandToDegree(target, degree);
+        Program toRun = (degree <= 0) ? target : library.expansionCache().expandToDegree(target, degree);
 
-        int estimatedCycles = new ProgramCost(quotationRegistry).cyclesAtDegree(target, degree);
+        int estimatedCycles = new ProgramCost(library.registry()).cyclesAtDegree(target, degree);
         if (!UserManager.charge(estimatedCycles)) {
             throw new IllegalStateException("Not enough credits (" + estimatedCycles + " cycles required)");
         }
 
-        ProgramExecutor exec = new ProgramExecutorImpl(toRun, makeQuoteEvaluator());
-        debugTrace.clear();
-        exec.setStepListener((pcAfter, cycles, vars, finished) -> {
-            Map<String,String> vv = (vars == null) ? Map.of() : Map.copyOf(vars);
-            debugTrace.add(new DebugRecord(pcAfter, cycles, vv, finished, "STEP"));
-        });
+        ProgramExecutor exec = new ProgramExecutorImpl(toRun, library.quoteEvaluator());
+        attachTrace(exec);
         long y = exec.run(input);
         int staticCycles  = (exec instanceof ProgramExecutorImpl pei) ? pei.getLastExecutionCycles() : 0;
         int dynamicCycles = (exec instanceof ProgramExecutorImpl pei) ? pei.getLastDynamicCycles() : 0;
@@ -501,24 +507,39 @@ public class EmulatorEngineImpl implements EmulatorEngine {
                         e.getValue()
                 ))
                 .toList();
-        this.lastRunVars = exec.variableState().entrySet().stream()
-                .collect(Collectors.toMap(
-                        e -> e.getKey().getRepresentation(),
-                        Map.Entry::getValue,
-                        (a,b) -> b,
-                        LinkedHashMap::new
-                ));
-        this.lastRunInputs = Arrays.stream(input == null ? new Long[0] : input)
-                .map(v -> v == null ? 0L : v)
-                .toList();
-        this.lastRunDegree = degree;
-        this.lastRunProgramName = target.getName();
-        recordRun(this.lastRunProgramName, degree, input, y, totalCycles, lastArchitecture.name());
+        synchronized (this) {
+            this.lastRunVars = exec.variableState().entrySet().stream()
+                    .collect(Collectors.toMap(
+                            e -> e.getKey().getRepresentation(),
+                            Map.Entry::getValue,
+                            (a,b) -> b,
+                            LinkedHashMap::new
+                    ));
+            this.lastRunInputs = Arrays.stream(input == null ? new Long[0] : input)
+                    .map(v -> v == null ? 0L : v)
+                    .toList();
+            this.lastRunDegree = degree;
+            this.lastRunProgramName = target.getName();
+            recordRun(this.lastRunProgramName, degree, input, y, totalCycles, lastArchitecture.name());
+        }
 
         return new RunResult(y, totalCycles, vars);
     }
 
-    private void recordRun(String programName, int degree, Long[] input, long y, int cycles, String arch) {
+    //This func forgets this engine's runs (a new program was loaded)
+    private synchronized void resetRuns() {
+        this.history.clear();
+        this.historyByProgram.clear();
+        this.runCountersByProgram.clear();
+        this.lastRunVars = Map.of();
+        this.lastRunInputs = List.of();
+        this.lastRunDegree = 0;
+        this.lastRunProgramName = null;
+    }
+
+    // Callers hold the engine's lock around setting lastRun* and recording, since runs of one engine (one user's
+    // concurrent jobs) may finish on several threads at once
+    private synchronized void recordRun(String programName, int degree, Long[] input, long y, int cycles, String arch) {
         String canonical = canonicalProgramName(programName);
         int nextRunNumber = runCountersByProgram.merge(canonical, 1, Integer::sum);
         String currentUser = UserManager.getCurrentUser()
@@ -562,11 +583,7 @@ public class EmulatorEngineImpl implements EmulatorEngine {
         historyByProgram.computeIfAbsent(canonical, k -> new ArrayList<>()).add(record);
 
         try {
-            int prevRuns = runCountByProgram.getOrDefault(canonical, 0);
-            double prevAvg = avgCreditsByProgram.getOrDefault(canonical, 0.0);
-            double newAvg = ((prevAvg * prevRuns) + cycles) / (prevRuns + 1);
-            avgCreditsByProgram.put(canonical, newAvg);
-            runCountByProgram.put(canonical, prevRuns + 1);
+            double newAvg = library.recordCost(canonical, cycles);
 
             // safely update external stats if initialized
             if (ProgramStatsRepository.getInstance() != null) {
@@ -592,19 +609,19 @@ public class EmulatorEngineImpl implements EmulatorEngine {
 
     @Override
     public List<String> availablePrograms() {
-        return functionLibrary.keySet().stream().toList();
+        return library.snapshot().programs().keySet().stream().toList();
     }
 
     @Override
     public List<String> getAllProgramNames() {
         Set<String> names = new LinkedHashSet<>();
+        ProgramLibrary.Snapshot loaded = library.snapshot();
+        Program main = current();
 
-        if (current != null && current.getName() != null)
-            names.add(current.getName());
-        if (functionLibrary != null)
-            names.addAll(functionLibrary.keySet());
-        if (functionsOnly != null)
-            names.addAll(functionsOnly.keySet());
+        if (main != null && main.getName() != null)
+            names.add(main.getName());
+        names.addAll(loaded.programs().keySet());
+        names.addAll(loaded.functionsOnly().keySet());
 
         return names.stream()
                 .filter(Objects::nonNull)
@@ -613,25 +630,11 @@ public class EmulatorEngineImpl implements EmulatorEngine {
                 .toList();
     }
 
-    //This func builds maps per degree from Instruction identity
-    private List<IdentityHashMap<Instruction, Integer>> buildIndexMaps(List<Program> byDegree, int degree) {
-        List<IdentityHashMap<Instruction, Integer>> indexMaps = new ArrayList<>(degree + 1);
-        for (int d = 0; d <= degree; d++) {
-            IdentityHashMap<Instruction, Integer> m = new IdentityHashMap<>();
-            List<Instruction> list = byDegree.get(d).getInstructions();
-            for (int i = 0; i < list.size(); i++) {
-                m.put(list.get(i), i + 1);
-            }
-            indexMaps.add(m);
-        }
-        return indexMaps;
-    }
-
     //This func creates an InstructionView without index
     private InstructionView makeInstructionViewNoIndex(Instruction ins) {
         InstructionData data = ins.getInstructionData();
         String opcode = data.getName();
-        int cycles = data.getCycles();
+        int cycles = ins.cycles();
         boolean basic = data.isBasic();
 
         Label lbl = ins.getLabel();
@@ -639,7 +642,7 @@ public class EmulatorEngineImpl implements EmulatorEngine {
         ArchitectureInfo info = getArchitectureInfo(data);
 
         List<String> args = collectArgs(ins);
-        return new InstructionView(-1, opcode, label, basic, cycles, args, List.of(), List.of(), info.cost(), info.name());
+        return new InstructionView(-1, opcode, label, basic, cycles, args, List.of(), info.cost(), info.name());
     }
 
     private String canonicalProgramName(String programName) {
@@ -687,7 +690,7 @@ public class EmulatorEngineImpl implements EmulatorEngine {
 
     private String displayOf(String functionName) {
         if (functionName.isBlank()) return "";
-        return fnDisplayMap.getOrDefault(functionName, functionName);
+        return library.snapshot().fnDisplayMap().getOrDefault(functionName, functionName);
     }
 
     private String mapHeadFunctions(String s) {
@@ -711,55 +714,6 @@ public class EmulatorEngineImpl implements EmulatorEngine {
         return out.toString();
     }
 
-    // This func builds provenance chain
-    private List<InstructionView> buildProvenanceForInstruction(Instruction ins, int degree, List<IdentityHashMap<Instruction, Integer>> indexMaps, Function<Instruction, InstructionView> mkViewNoIndex) {
-        List<InstructionView> provenance = new ArrayList<>();
-        IdentityHashMap<Instruction, Boolean> seen = new IdentityHashMap<>();
-        Instruction cur = ins.getCreatedFrom();
-        int guessDeg = degree - 1;
-
-        while (cur != null && !seen.containsKey(cur)) {
-            seen.put(cur, Boolean.TRUE);
-
-            int foundDeg = findDegreeForInstruction(cur, indexMaps, Math.min(guessDeg, degree - 1), degree);
-            InstructionView v = mkViewNoIndex.apply(cur);
-            int idx = (foundDeg >= 0) ? indexMaps.get(foundDeg).get(cur) : -1;
-
-            InstructionData data = cur.getInstructionData();
-            ArchitectureInfo info = getArchitectureInfo(data);
-
-            provenance.add(new InstructionView(
-                    idx,
-                    v.opcode(), v.label(),
-                    v.basic(), v.cycles(), v.args(),
-                    List.of(), List.of(),
-                    info.cost(),
-                    info.name()
-            ));
-
-            cur = cur.getCreatedFrom();
-            guessDeg = (foundDeg >= 0) ? (foundDeg - 1) : (guessDeg - 1);
-        }
-
-        return provenance;
-    }
-
-    //This func locate the degree layer
-    private int findDegreeForInstruction(
-            Instruction target,
-            List<IdentityHashMap<Instruction, Integer>> indexMaps,
-            int guessDeg,
-            int degree
-    ) {
-        for (int d = guessDeg; d >= 0; d--) {
-            if (indexMaps.get(d).containsKey(target)) return d;
-        }
-        for (int d = degree - 1; d >= 0; d--) {
-            if (indexMaps.get(d).containsKey(target)) return d;
-        }
-        return -1;
-    }
-
     //This function loads a program from an XML file and validates it
     @Override
     public LoadResult loadProgram(Path xmlPath)
@@ -800,21 +754,18 @@ public class EmulatorEngineImpl implements EmulatorEngine {
     @Override
     public RunResult run(int degree, Long... input) {
         requireLoaded();
+        Program main = current();
 
-        int maxDegree = current.calculateMaxDegree();
+        int maxDegree = main.calculateMaxDegree();
         if (degree < 0 || degree > maxDegree) {
             throw new IllegalArgumentException("Invalid expansion degree: " + degree + ". Allowed range is 0-" + maxDegree);
         }
 
-        Program toRun = (degree <= 0) ? current : programExpander.expandToDegree(current, degree);
-        var exec = (degree > 0) ? new ProgramExecutorImpl(toRun, makeQuoteEvaluator()) : this.executor;
+        Program toRun = (degree <= 0) ? main : library.expansionCache().expandToDegree(main, degree);
+        var exec = new ProgramExecutorImpl(toRun, library.quoteEvaluator());
 
-        this.lastViewProgram = (degree > 0) ? toRun : current;
-        debugTrace.clear();
-        exec.setStepListener((pcAfter, cycles, vars, finished) -> {
-            Map<String,String> vv = (vars == null) ? Map.of() : Map.copyOf(vars);
-            debugTrace.add(new DebugRecord(pcAfter, cycles, vv, finished, "STEP"));
-        });
+        this.lastViewProgram = toRun;
+        attachTrace(exec);
         long y = exec.run(input);
         int staticCycles  = (exec instanceof ProgramExecutorImpl pei) ? pei.getLastExecutionCycles() : 0;
         int dynamicCycles = (exec instanceof ProgramExecutorImpl pei) ? pei.getLastDynamicCycles() : 0;
@@ -830,27 +781,34 @@ public class EmulatorEngineImpl implements EmulatorEngine {
                 ))
                 .toList();
 
-        this.lastRunVars = exec.variableState().entrySet().stream()
-                .collect(Collectors.toMap(
-                        e -> e.getKey().getRepresentation(),
-                        Map.Entry::getValue, (a,b) -> b, LinkedHashMap::new
-                ));
-        this.lastRunInputs = Arrays.stream(input == null ? new Long[0] : input)
-                .map(v -> v == null ? 0L : v).toList();
-        this.lastRunDegree = degree;
-        this.lastRunProgramName = current.getName();
-
-        recordRun(this.lastRunProgramName, degree, input, y, totalCycles, lastArchitecture.name());
+        synchronized (this) {
+            this.lastRunVars = exec.variableState().entrySet().stream()
+                    .collect(Collectors.toMap(
+                            e -> e.getKey().getRepresentation(),
+                            Map.Entry::getValue, (a,b) -> b, LinkedHashMap::new
+                    ));
+            this.lastRunInputs = Arrays.stream(input == null ? new Long[0] : input)
+                    .map(v -> v == null ? 0L : v).toList();
+            this.lastRunDegree = degree;
+            this.lastRunProgramName = main.getName();
+
+            recordRun(this.lastRunProgramName, degree, input, y, totalCycles, lastArchitecture.name());
+        }
         return new RunResult(y, totalCycles, vars);
     }
 
     public RunResult run(String programName, int degree, ArchitectureInfo arch, Long... input) {
+        return run(programName, degree, arch, ExecutionTier.INTERPRETER, input);
+    }
+
+    //This func runs a program on an architecture with the chosen execution tier
+    public RunResult run(String programName, int degree, ArchitectureInfo arch, ExecutionTier tier, Long... input) {
         Objects.requireNonNull(programName, "programName cannot be null");
         Objects.requireNonNull(arch, "architecture cannot be null");
 
         long credits = UserManager.getCurrentUser().map(u -> u.getCredits()).orElse(0L);
         long archCost = arch.cost();
-        double avgCost = avgCreditsByProgram.getOrDefault(programName.toUpperCase(Locale.ROOT), 0.0);
+        double avgCost = library.averageCost(programName);
         long totalRequired = archCost + Math.round(avgCost);
 
         if (credits < totalRequired) {
@@ -860,7 +818,7 @@ public class EmulatorEngineImpl implements EmulatorEngine {
                             ", average cost = " + Math.round(avgCost) + ")");
         }
 
-        Program target = functionLibrary.get(programName.toUpperCase(Locale.ROOT));
+        Program target = library.find(programName.toUpperCase(Locale.ROOT));
         if (target == null)
             throw new IllegalArgumentException("Unknown program: " + programName);
 
@@ -870,10 +828,11 @@ public class EmulatorEngineImpl implements EmulatorEngine {
 
         Program toRun = (degree <= 0)
                 ? target
-                : programExpander.expandToDegree(target, degree);
+                : library.expansionCache().expandToDegree(target, degree);
 
         UserManager.charge(archCost);
-        ProgramExecutor exec = new ProgramExecutorImpl(toRun, makeQuoteEvaluator());
+        ProgramExecutorImpl exec = new ProgramExecutorImpl(toRun, library.quoteEvaluator());
+        exec.setExecutionTier(tier);
         long y = 0L;
         int totalCycles = 0;
 
@@ -889,8 +848,10 @@ public class EmulatorEngineImpl implements EmulatorEngine {
                         ? pei.getLastExecutionCycles() + pei.getLastDynamicCycles()
                         : 0;
 
-                this.lastArchitecture = arch;
-                recordRun(programName, degree, input, y, totalCycles, arch.name());
+                synchronized (this) {
+                    this.lastArchitecture = arch;
+                    recordRun(programName, degree, input, y, totalCycles, arch.name());
+                }
                 throw new IllegalStateException("Run stopped due to insufficient credits. returning to Dashboard");
             } else {
                 throw ex;
@@ -906,32 +867,39 @@ public class EmulatorEngineImpl implements EmulatorEngine {
                 ))
                 .toList();
 
-        this.lastRunVars = exec.variableState().entrySet().stream()
-                .collect(Collectors.toMap(
-                        e -> e.getKey().getRepresentation(),
-                        Map.Entry::getValue,
-                        (a, b) -> b,
-                        LinkedHashMap::new
-                ));
-
-        this.lastRunInputs = Arrays.stream(input == null ? new Long[0] : input)
-                .map(v -> v == null ? 0L : v)
-                .toList();
-        this.lastRunDegree = degree;
-        this.lastRunProgramName = target.getName();
-        recordRun(programName, degree, input, y, totalCycles, arch.name());
+        synchronized (this) {
+            this.lastRunVars = exec.variableState().entrySet().stream()
+                    .collect(Collectors.toMap(
+                            e -> e.getKey().getRepresentation(),
+                            Map.Entry::getValue,
+                            (a, b) -> b,
+                            LinkedHashMap::new
+                    ));
+
+            this.lastRunInputs = Arrays.stream(input == null ? new Long[0] : input)
+                    .map(v -> v == null ? 0L : v)
+                    .toList();
+            this.lastRunDegree = degree;
+            this.lastRunProgramName = target.getName();
+            recordRun(programName, degree, input, y, totalCycles, arch.name());
+        }
         return new RunResult(y, totalCycles, vars);
     }
 
     //This func checks whether a program is currently loaded
     @Override
     public boolean hasProgramLoaded() {
-        return current != null;
+        return current() != null;
+    }
+
+    //This func returns this engine's main program: the one it loaded last, else the last one loaded on its library
+    private Program current() {
+        return (current != null) ? current : library.latest();
     }
 
     //This func ensures a program is loaded
     private void requireLoaded() {
-        if (current == null || executor == null) {
+        if (current() == null) {
             throw new ProgramNotLoadedException();
         }
     }
@@ -939,16 +907,32 @@ public class EmulatorEngineImpl implements EmulatorEngine {
     //This func extracts and returns a sorted list of unique input variables
     @Override
     public List<String> extractInputVars(ProgramView pv) {
-        Pattern VAR_X = Pattern.compile("\\bx([1-9]\\d*)\\b");
         Set<String> uniq = new LinkedHashSet<>();
         for (InstructionView iv : pv.instructions()) {
-            for (String arg : iv.args()) {
-                Matcher m = VAR_X.matcher(arg);
-                while (m.find()) {
-                    uniq.add("x" + m.group(1));
-                }
-            }
+            for (String arg : iv.args()) addInputVars(arg, uniq);
         }
+        return sortedInputVars(uniq);
+    }
+
+    //This func returns the input variables the instructions' arguments mention, like extractInputVars does for
+    // their views
+    private List<String> inputVarsOf(List<Instruction> instructions) {
+        Set<String> uniq = new LinkedHashSet<>();
+        for (Instruction ins : instructions) {
+            for (String arg : collectArgs(ins)) addInputVars(arg, uniq);
+        }
+        return sortedInputVars(uniq);
+    }
+
+    //This func adds the input variables (x1, x2, ...) an argument mentions
+    private static void addInputVars(String arg, Set<String> uniq) {
+        Matcher m = INPUT_VAR.matcher(arg);
+        while (m.find()) {
+            uniq.add("x" + m.group(1));
+        }
+    }
+
+    private static List<String> sortedInputVars(Set<String> uniq) {
         List<String> out = new ArrayList<>(uniq);
         out.sort(Comparator.comparingInt(s -> Integer.parseInt(s.substring(1))));
         return out;
@@ -956,28 +940,28 @@ public class EmulatorEngineImpl implements EmulatorEngine {
 
     //This func returns all runs history list
     @Override
-    public List<RunRecord> history() {
-        return Collections.unmodifiableList(history);
+    public synchronized List<RunRecord> history() {
+        return List.copyOf(history);
     }
 
     @Override
-    public List<RunRecord> history(String programName) {
+    public synchronized List<RunRecord> history(String programName) {
         if (programName == null || programName.isBlank()) {
             return history();
         }
 
-        String internal = displayToInternal.getOrDefault(programName.toUpperCase(ROOT), programName);
+        String internal = library.snapshot().displayToInternal().getOrDefault(programName.toUpperCase(ROOT), programName);
         String canonical = canonicalProgramName(internal);
         List<RunRecord> byProgram = historyByProgram.get(canonical);
         if (byProgram == null || byProgram.isEmpty()) {
             return List.of();
         }
-        return Collections.unmodifiableList(byProgram);
+        return List.copyOf(byProgram);
     }
 
     //This func saves the program's state
     @Override
-    public void saveState(Path fileWithoutExt) throws Exception {
+    public synchronized void saveState(Path fileWithoutExt) throws Exception {
         try (var oos = new ObjectOutputStream(
                 Files.newOutputStream(fileWithoutExt.resolveSibling(fileWithoutExt.getFileName() + ".semu")))) {
             oos.writeObject(this);
@@ -986,14 +970,13 @@ public class EmulatorEngineImpl implements EmulatorEngine {
 
     //This func loads the program's state
     @Override
-    public void loadState(Path fileWithoutExt) throws Exception {
+    public synchronized void loadState(Path fileWithoutExt) throws Exception {
         try (var ois = new ObjectInputStream(
                 Files.newInputStream(fileWithoutExt.resolveSibling(fileWithoutExt.getFileName() + ".semu")))) {
             EmulatorEngineImpl loaded = (EmulatorEngineImpl) ois.readObject();
 
             this.current = loaded.current;
             this.lastViewProgram = loaded.lastViewProgram;
-            this.executor = new ProgramExecutorImpl(this.current, makeQuoteEvaluator());
             this.history.clear();
             this.history.addAll(loaded.history);
             this.historyByProgram.clear();
@@ -1006,17 +989,10 @@ public class EmulatorEngineImpl implements EmulatorEngine {
         }
     }
 
-    private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
-        in.defaultReadObject();
-        this.executor = new ProgramExecutorImpl(this.current, makeQuoteEvaluator());
-        this.programExpander = new ProgramExpander();
-        this.quotationRegistry = new MapBackedQuotationRegistry(functionLibrary);
-        this.expander = new Expander();
-    }
-
-    public void recordDebugSession(String programName, int degree, Long[] inputs, Map<String,String> vars, int cycles) {
+    public synchronized void recordDebugSession(String programName, int degree, Long[] inputs, Map<String,String> vars, int cycles) {
         if (programName == null || programName.isBlank()) {
-            programName = (current != null ? current.getName() : "UNKNOWN");
+            Program main = current();
+            programName = (main != null ? main.getName() : "UNKNOWN");
         }
 
         this.lastRunInputs = Arrays.stream(inputs == null ? new Long[0] : inputs)
@@ -1089,8 +1065,7 @@ public class EmulatorEngineImpl implements EmulatorEngine {
 
     public void debugStart(String programName, Long[] inputs, int degree, ArchitectureInfo architectureInfo) {
         Objects.requireNonNull(programName, "programName");
-        Program target = functionLibrary.get(programName);
-        if (target == null) target = functionLibrary.get(programName.toUpperCase(java.util.Locale.ROOT));
+        Program target = library.find(programName);
         if (target == null) throw new IllegalArgumentException("Unknown program: " + programName);
         this.lastArchitecture = architectureInfo;
         debugStartCommon(target, inputs, degree, architectureInfo);
@@ -1098,7 +1073,7 @@ public class EmulatorEngineImpl implements EmulatorEngine {
 
     public void debugStart(Long[] inputs, int degree, ArchitectureInfo architectureInfo) {
         requireLoaded();
-        debugStartCommon(current, inputs, degree, architectureInfo);
+        debugStartCommon(current(), inputs, degree, architectureInfo);
         this.lastArchitecture = architectureInfo;
     }
 
@@ -1110,7 +1085,7 @@ public class EmulatorEngineImpl implements EmulatorEngine {
 
         long credits = UserManager.getCurrentUser().map(u -> u.getCredits()).orElse(0L);
         long archCost = architectureInfo.cost();
-        double avgCost = avgCreditsByProgram.getOrDefault(target.getName().toUpperCase(Locale.ROOT), 0.0);
+        double avgCost = library.averageCost(target.getName());
         long totalRequired = archCost + Math.round(avgCost);
 
         if (credits < archCost) {
@@ -1121,11 +1096,11 @@ public class EmulatorEngineImpl implements EmulatorEngine {
         }
 
         UserManager.charge(archCost);
-        Program toRun = (degree <= 0) ? target : programExpander.expandToDegree(target, degree);
+        Program toRun = (degree <= 0) ? target : library.expansionCache().expandToDegree(target, degree);
         debugStopSafe();
 
         dbgProgram = toRun;
-        dbgExecutor = new ProgramExecutorImpl(dbgProgram, makeQuoteEvaluator());
+        dbgExecutor = new ProgramExecutorImpl(dbgProgram, library.quoteEvaluator());
         dbgPC = 0;
         dbgCycles = 0;
         dbgVars = Map.of();
@@ -1134,13 +1109,15 @@ public class EmulatorEngineImpl implements EmulatorEngine {
         dbgResumeMode = false;
         dbgStepOnce = false;
         dbgAlive = true;
-        this.lastArchitecture = architectureInfo;
+        synchronized (this) {
+            this.lastArchitecture = architectureInfo;
 
-        this.lastRunInputs = Arrays.stream(inputs == null ? new Long[0] : inputs)
-                .map(v -> v == null ? 0L : v)
-                .toList();
-        this.lastRunDegree = degree;
-        this.lastRunProgramName = target.getName();
+            this.lastRunInputs = Arrays.stream(inputs == null ? new Long[0] : inputs)
+                    .map(v -> v == null ? 0L : v)
+                    .toList();
+            this.lastRunDegree = degree;
+            this.lastRunProgramName = target.getName();
+        }
 
         dbgExecutor.setStepListener((pc, cycles, vars, finished) -> {
             dbgPC = pc;
@@ -1165,28 +1142,33 @@ public class EmulatorEngineImpl implements EmulatorEngine {
             }
         });
 
+        // The debug thread charges the user who started the session, not whoever its thread would default to
+        User owner = UserManager.getCurrentUser().orElse(null);
         dbgThread = new Thread(() -> {
+            UserManager.bind(owner);
             try {
                 long y = dbgExecutor.run(inputs == null ? new Long[0] : inputs);
 
                 int cycles = dbgExecutor.getLastExecutionCycles();
                 Map<String, String> vars = snapshotVars(dbgExecutor, inputs);
 
-                lastRunVars = dbgExecutor.variableState().entrySet().stream()
-                        .collect(java.util.stream.Collectors.toMap(
-                                e -> e.getKey().getRepresentation(),
-                                Map.Entry::getValue,
-                                (a, b) -> b,
-                                LinkedHashMap::new
-                        ));
-
-                lastRunInputs = Arrays.stream(inputs == null ? new Long[0] : inputs)
-                        .map(v -> v == null ? 0L : v)
-                        .toList();
-                lastRunDegree = degree;
-                lastRunProgramName = target.getName();
-                userService.incrementRuns();
-                recordRun(lastRunProgramName, degree, inputs, y, cycles, architectureInfo.name());
+                synchronized (this) {
+                    lastRunVars = dbgExecutor.variableState().entrySet().stream()
+                            .collect(java.util.stream.Collectors.toMap(
+                                    e -> e.getKey().getRepresentation(),
+                                    Map.Entry::getValue,
+                                    (a, b) -> b,
+                                    LinkedHashMap::new
+                            ));
+
+                    lastRunInputs = Arrays.stream(inputs == null ? new Long[0] : inputs)
+                            .map(v -> v == null ? 0L : v)
+                            .toList();
+                    lastRunDegree = degree;
+                    lastRunProgramName = target.getName();
+                    userService.incrementRuns();
+                    recordRun(lastRunProgramName, degree, inputs, y, cycles, architectureInfo.name());
+                }
 
                 dbgVars = vars;
                 dbgFinished = true;
@@ -1305,7 +1287,7 @@ public class EmulatorEngineImpl implements EmulatorEngine {
     }
 
     @Override
-    public void clearHistory() {
+    public synchronized void clearHistory() {
         history.clear();
         historyByProgram.clear();
         runCountersByProgram.clear();
@@ -1315,7 +1297,7 @@ public class EmulatorEngineImpl implements EmulatorEngine {
         List<String> names = new ArrayList<>();
         names.add("Main Program");
 
-        names.addAll(fnDisplayMap.values().stream()
+        names.addAll(library.snapshot().fnDisplayMap().values().stream()
                 .filter(v -> v != null && !v.isBlank())
                 .distinct()
                 .sorted(String.CASE_INSENSITIVE_ORDER)
@@ -0,0 +1,159 @@
+package emulator.api;
+
+import emulator.logic.compose.Composer;
+import emulator.logic.execution.ProgramExecutorImpl;
+import emulator.logic.execution.QuoteEvaluator;
+import emulator.logic.expansion.ExpansionCache;
+import emulator.logic.instruction.quote.MapBackedQuotationRegistry;
+import emulator.logic.instruction.quote.QuotationRegistry;
+import emulator.logic.program.Program;
+import emulator.logic.xml.ProgramXml;
+import emulator.logic.xml.XmlToObjects;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static java.util.Locale.ROOT;
+
+// The programs and functions loaded on an emulator, shared by every engine (one engine per user session) that
+// runs them. Each load builds the next Snapshot aside and publishes it whole, and a published snapshot is never
+// changed again, so engines read programs, names and expansions without locks while loads run one at a time.
+public final class ProgramLibrary {
+
+    // programs: every loaded program and function, by name as declared and upper-cased (the registry's map)
+    // functionsOnly: the functions of the library as of the last file load, main program excluded
+    // fnDisplayMap / displayToInternal: function names to user strings and back, as of the last file load
+    public record Snapshot(Program latest, Map<String, Program> programs, Map<String, Program> functionsOnly,
+                           Map<String, String> fnDisplayMap, Map<String, String> displayToInternal,
+                           QuotationRegistry registry) {}
+
+    private static final ThreadLocal<Deque<Program>> CALL_STACK = ThreadLocal.withInitial(ArrayDeque::new);
+
+    private volatile Snapshot snapshot;
+    private final ExpansionCache expansionCache = new ExpansionCache();
+    private final QuoteEvaluator quoteEvaluator = makeQuoteEvaluator();
+    // Run count and average cycles per program (upper-cased name), over every engine of the library
+    private final Map<String, RunCost> runCosts = new ConcurrentHashMap<>();
+
+    private record RunCost(int runs, double average) {}
+
+    public ProgramLibrary() {
+        Map<String, Program> none = new HashMap<>();
+        this.snapshot = new Snapshot(null, none, Map.of(), Map.of(), Map.of(), new MapBackedQuotationRegistry(none));
+    }
+
+    //This func builds a file's main program and functions next to the loaded ones and publishes them.
+    // With withDisplayNames the functions and user strings of the file replace the previous ones, else they stay.
+    public synchronized Program load(ProgramXml pxml, boolean withDisplayNames) {
+        Snapshot base = snapshot;
+        // Programs already loaded keep the registry they were built with, so their expansions stay valid
+        Map<String, Program> programs = new HashMap<>(base.programs());
+        QuotationRegistry registry = new MapBackedQuotationRegistry(programs);
+        Program main = XmlToObjects.toProgram(pxml, registry, quoteEvaluator);
+        programs.put(main.getName().toUpperCase(ROOT), main);
+
+        Map<String, Program> functionsOnly = base.functionsOnly();
+        Map<String, String> fnDisplayMap = base.fnDisplayMap();
+        Map<String, String> displayToInternal = base.displayToInternal();
+        if (withDisplayNames) {
+            Map<String, Program> fns = new HashMap<>();
+            for (var e : programs.entrySet()) {
+                if (e.getValue() != main) fns.put(e.getKey().toUpperCase(ROOT), e.getValue());
+            }
+            Map<String, String> display = new HashMap<>();
+            Map<String, String> internals = new HashMap<>();
+            if (pxml.getFunctions() != null && pxml.getFunctions().getFunctions() != null) {
+                for (var fxml : pxml.getFunctions().getFunctions()) {
+                    String internal = (fxml.getName() == null) ? "" : fxml.getName().trim();
+                    String user = (fxml.getUserString() == null) ? "" : fxml.getUserString().trim();
+                    if (!internal.isEmpty() && !user.isEmpty()) {
+                        display.put(internal, user);
+                        display.put(internal.toUpperCase(ROOT), user);
+                        internals.put(user, internal);
+                        internals.put(user.toUpperCase(ROOT), internal);
+                    }
+                }
+            }
+            functionsOnly = Map.copyOf(fns);
+            fnDisplayMap = Map.copyOf(display);
+            displayToInternal = Map.copyOf(internals);
+        }
+
+        snapshot = new Snapshot(main, programs, functionsOnly, fnDisplayMap, displayToInternal, registry);
+        // Drop the expansions of programs replaced under their name
+        expansionCache.retainOnly(programs.values());
+        return main;
+    }
+
+    //This func returns a program or function by name (as declared or upper-cased), or null if none is loaded
+    public Program find(String name) {
+        if (name == null) return null;
+        Map<String, Program> programs = snapshot.programs();
+        Program p = programs.get(name);
+        return (p != null) ? p : programs.get(name.toUpperCase(ROOT));
+    }
+
+    //This func adds a run's cycles to a program's average and returns the new average
+    public double recordCost(String programName, int cycles) {
+        String key = programName.trim().toUpperCase(ROOT);
+        RunCost next = runCosts.compute(key, (k, prev) -> (prev == null)
+                ? new RunCost(1, cycles)
+                : new RunCost(prev.runs() + 1, ((prev.average() * prev.runs()) + cycles) / (prev.runs() + 1)));
+        return next.average();
+    }
+
+    //This func returns the average cycles of a program's runs (0 before its first run)
+    public double averageCost(String programName) {
+        RunCost c = runCosts.get(programName.trim().toUpperCase(ROOT));
+        return (c == null) ? 0.0 : c.average();
+    }
+
+    // ---- getters funcs ---- //
+    public Snapshot snapshot() { return snapshot; }
+    public Program latest() { return snapshot.latest(); }
+    public QuotationRegistry registry() { return snapshot.registry(); }
+    public ExpansionCache expansionCache() { return expansionCache; }
+    public QuoteEvaluator quoteEvaluator() { return quoteEvaluator; }
+
+    private QuoteEvaluator makeQuoteEvaluator() {
+        return (fn, fargs, env, degree) -> {
+            var invoker = new Composer.ProgramInvoker() {
+                @Override public List<Long> run(String functionName, List<Long> inputs) {
+                    Program target = resolveQuotedTarget(functionName);
+                    if (target == null) {
+                        throw new IllegalArgumentException("Unknown function: " + functionName);
+                    }
+                    Deque<Program> stack = CALL_STACK.get();
+                    if (stack.contains(target)) {
+                        String path = stack.stream().map(Program::getName)
+                                .reduce((a,b) -> a + " -> " + b).orElse("<start>");
+                        throw new IllegalStateException("Recursive composition detected: " + path + " -> " + target.getName());
+                    }
+                    stack.push(target);
+                    try {
+                        Program toRun = (degree <= 0) ? target : expansionCache.expandToDegree(target, degree);
+                        var exec = new ProgramExecutorImpl(toRun, quoteEvaluator); // allow nested QUOTE
+                        long y = exec.run(inputs.toArray(Long[]::new));
+                        return List.of(y);
+                    } finally {
+                        stack.pop();
+                        if (stack.isEmpty()) CALL_STACK.remove();
+                    }
+                }
+                @Override public Map<String, Long> currentEnv() { return env; }
+            };
+            return Composer.evaluateArgs(fn, fargs, invoker);
+        };
+    }
+
+    private Program resolveQuotedTarget(String name) {
+        if (name == null) return null;
+        Snapshot s = snapshot;
+        Program p = s.functionsOnly().get(name.toUpperCase(ROOT)); // prefer declared <S-Function>
+        if (p != null) return p;
+        for (var e : s.programs().entrySet()) {
+            if (e.getKey().equalsIgnoreCase(name)) return e.getValue(); // fallback (external)
+        }
+        return null;
+    }
+}
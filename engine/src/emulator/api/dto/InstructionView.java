@@ -10,7 +10,6 @@ public record InstructionView(
         int cycles,
         List<String> args,
         List<Integer> createdFromChain,
-        List<InstructionView> createdFromViews,
         long creditCost,
         String architecture
 ) { }
@@ -3,7 +3,6 @@ package emulator.api.dto;
 import emulator.logic.user.User;
 import emulator.logic.user.UserManager;
 
-import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 import java.util.stream.Collectors;
@@ -21,14 +20,20 @@ public class UserService {
         return new UserDTO(user.getUsername(), user.getCredits());
     }
 
+    //This func creates the user of a name, unless the name is taken, without making it the current user
+    // (a server keeps each session's user itself)
+    public Optional<UserDTO> registerUser(String username) {
+        return UserManager.registerNew(username)
+                .map(u -> new UserDTO(u.getUsername(), u.getCredits()));
+    }
+
     public Optional<UserDTO> getCurrentUser() {
         return UserManager.getCurrentUser()
                 .map(u -> new UserDTO(u.getUsername(), u.getCredits()));
     }
 
     public boolean userExists(String username) {
-        Collection<User> users = UserManager.getAllUsers();
-        return users.stream().anyMatch(u -> u.getUsername().equalsIgnoreCase(username));
+        return UserManager.find(username).isPresent();
     }
 
     public void addCredits(long amount) {
@@ -45,7 +50,7 @@ public class UserService {
                         u.getUsername(),
                         u.getMainPrograms(),
                         u.getFunctions(),
-                        (int) u.getCredits(),
+                        u.getCredits(),
                         u.getUsedCredits(),
                         u.getRuns()
                 ))
@@ -53,17 +58,7 @@ public class UserService {
     }
 
     public void incrementMainProgramsForCurrentUser() {
-        UserManager.getCurrentUser().ifPresent(user -> {
-            try {
-                var cls = user.getClass();
-                var field = cls.getDeclaredField("mainPrograms");
-                field.setAccessible(true);
-                int current = (int) field.get(user);
-                field.set(user, current + 1);
-            } catch (Exception e) {
-                e.printStackTrace();
-            }
-        });
+        UserManager.getCurrentUser().ifPresent(User::incrementMainPrograms);
     }
 
     public void incrementMainProgramsAndFunctions(int functionsCount) {
@@ -0,0 +1,13 @@
+package emulator.exception;
+
+import java.util.Map;
+
+public class RunCancelledException extends ProgramException {
+    public RunCancelledException(int pc) {
+        super(
+                "RUN_CANCELLED",
+                "Run cancelled at PC=" + pc,
+                Map.of("pc", pc)
+        );
+    }
+}
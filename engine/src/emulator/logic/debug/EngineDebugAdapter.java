@@ -275,35 +275,6 @@ public class EngineDebugAdapter implements DebugSession, DebugService {
                 timeline.get(idx);
     }
 
-    @SuppressWarnings("unchecked")
-    private List<DebugSnapshot> buildTimelineFromHistoryOrFallback(RunResult rr) {
-        try {
-            var m = engine.getClass().getMethod("debugTrace");
-            Object v = m.invoke(engine);
-            if (v instanceof List<?> list && !list.isEmpty()) {
-                List<DebugSnapshot> out = new ArrayList<>(list.size());
-                Map<String, String> initVars = new LinkedHashMap<>();
-                for (String n : orderedVarNames) {
-                    initVars.put(n, "-");
-                }
-                out.add(new DebugSnapshot(0, initVars, 0, false));
-                for (Object rec : list) {
-                    int pcAfter = (int)  rec.getClass().getMethod("pcAfter").invoke(rec);
-                    int cycles  = (int)  rec.getClass().getMethod("cycles").invoke(rec);
-                    @SuppressWarnings("unchecked")
-                    Map<String,String> vars = (Map<String,String>) rec.getClass().getMethod("vars").invoke(rec);
-                    boolean finished = (boolean) rec.getClass().getMethod("finished").invoke(rec);
-                    out.add(new DebugSnapshot(pcAfter, vars == null ? Map.of() : vars, cycles, finished));
-                }
-                return out;
-            }
-        } catch (NoSuchMethodException ignore) {} catch (Exception ignore) {}
-
-        var synth = synthesizeTimelineFromProgramView(rr);
-        if (!synth.isEmpty()) return synth;
-        return List.of(new DebugSnapshot(0, Map.of(), 0, true));
-    }
-
     private List<DebugSnapshot> synthesizeTimelineFromProgramView(RunResult rr) {
         try {
             ProgramView pv = (selectedProgram != null && !selectedProgram.isBlank())
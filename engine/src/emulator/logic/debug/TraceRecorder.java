@@ -0,0 +1,80 @@
+package emulator.logic.debug;
+
+import emulator.api.debug.DebugRecord;
+import emulator.logic.execution.StepProbe;
+import emulator.logic.execution.StepView;
+import emulator.logic.variable.Variable;
+
+import java.util.*;
+
+// Records a run's steps into primitive arrays; DebugRecords are only built when asked for
+public class TraceRecorder implements StepProbe {
+    private static final int MAX_STEPS = 200_000;
+
+    private Variable[] layout;
+    private int steps;
+    private int[] pcs = new int[64];
+    private int[] cycles = new int[64];
+    private long[] values = new long[0];
+    private boolean[] assigned = new boolean[0];
+    private boolean truncated;
+    private List<DebugRecord> records;
+
+    @Override
+    public void onStep(StepView step) {
+        if (layout == null) {
+            layout = new Variable[step.slotCount()];
+            for (int s = 0; s < layout.length; s++) layout[s] = step.variableAt(s);
+            values = new long[64 * layout.length];
+            assigned = new boolean[64 * layout.length];
+        }
+        if (steps == MAX_STEPS) {
+            truncated = true;
+            return;
+        }
+        ensureCapacity(steps + 1);
+
+        pcs[steps] = step.pc();
+        cycles[steps] = step.cycles();
+        int base = steps * layout.length;
+        for (int s = 0; s < layout.length; s++) {
+            assigned[base + s] = step.isAssigned(s);
+            values[base + s] = step.valueAt(s);
+        }
+        steps++;
+        records = null;
+    }
+
+    public int size() { return steps; }
+    public boolean isTruncated() { return truncated; }
+
+    //This func builds the recorded steps as DebugRecords
+    public List<DebugRecord> records() {
+        if (records != null) return records;
+        List<DebugRecord> out = new ArrayList<>(steps);
+        int width = (layout == null) ? 0 : layout.length;
+        for (int i = 0; i < steps; i++) {
+            Map<String, String> vars = new LinkedHashMap<>();
+            int base = i * width;
+            for (int s = 0; s < width; s++) {
+                if (!assigned[base + s]) continue;
+                String name = (layout[s] == null) ? "" : layout[s].getRepresentation();
+                if (name != null && !name.isBlank()) {
+                    vars.put(name, String.valueOf(values[base + s]));
+                }
+            }
+            out.add(new DebugRecord(pcs[i], cycles[i], Collections.unmodifiableMap(vars), false, "STEP"));
+        }
+        records = Collections.unmodifiableList(out);
+        return records;
+    }
+
+    private void ensureCapacity(int needSteps) {
+        if (needSteps <= pcs.length) return;
+        int cap = Math.min(Math.max(pcs.length * 2, needSteps), MAX_STEPS);
+        pcs = Arrays.copyOf(pcs, cap);
+        cycles = Arrays.copyOf(cycles, cap);
+        values = Arrays.copyOf(values, cap * layout.length);
+        assigned = Arrays.copyOf(assigned, cap * layout.length);
+    }
+}
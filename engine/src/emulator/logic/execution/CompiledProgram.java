@@ -0,0 +1,127 @@
+package emulator.logic.execution;
+
+import emulator.logic.instruction.Instruction;
+import emulator.logic.label.Label;
+import emulator.logic.program.SymbolTable;
+import emulator.logic.variable.Variable;
+
+import java.util.List;
+import java.util.Map;
+
+public final class CompiledProgram {
+
+    // ---- opcodes ---- //
+    public static final int OP_NEUTRAL = 0;
+    public static final int OP_INCREASE = 1;
+    public static final int OP_DECREASE = 2;
+    public static final int OP_JUMP_NOT_ZERO = 3;
+    public static final int OP_ZERO_VARIABLE = 4;
+    public static final int OP_GOTO_LABEL = 5;
+    public static final int OP_ASSIGNMENT = 6;
+    public static final int OP_CONSTANT_ASSIGNMENT = 7;
+    public static final int OP_JUMP_ZERO = 8;
+    public static final int OP_JUMP_EQUAL_CONSTANT = 9;
+    public static final int OP_JUMP_EQUAL_VARIABLE = 10;
+    public static final int OP_INCREASE_BY = 11;   // k consecutive INCREASEs
+    public static final int OP_DECREASE_BY = 12;   // k consecutive DECREASEs
+    public static final int OP_INVOKE = 13;   // falls back to Instruction.execute
+    public static final int OP_QUOTE = 14;
+    public static final int OP_JUMP_EQUAL_FUNCTION = 15;
+
+    // Jump target of a label that does not exist in the program
+    public static final int UNRESOLVED = -1;
+
+    private final String name;
+    private final int[] op;
+    private final int[] a;
+    private final int[] b;
+    private final long[] k;
+    private final int[] target;
+    private final int[] cycles;
+    private final Instruction[] source;
+    private final List<Instruction> instructions;
+    private final Label[] targetLabel;
+    private final int[][] loops;
+    private final Variable[] slotVars;
+    private final Map<Variable, Integer> slotOf;
+    private final Map<String, Integer> labelIndex;
+    private final int declaredCount;
+    private final int[] seedInput;
+    private final int resultSlot;
+    // Slot of each variable and index of each label by symbol id (-1 where the program has none); names the
+    // program's table does not know fall back to the maps
+    private final SymbolTable symbols;
+    private final int[] slotById;
+    private final int[] indexByLabelId;
+
+    CompiledProgram(String name, int[] op, int[] a, int[] b, long[] k, int[] target, int[] cycles,
+                    Instruction[] source, List<Instruction> instructions, Label[] targetLabel, Variable[] slotVars,
+                    Map<Variable, Integer> slotOf, Map<String, Integer> labelIndex, int[][] loops,
+                    int declaredCount, int[] seedInput, SymbolTable symbols, int[] slotById, int[] indexByLabelId) {
+        this.name = name;
+        this.op = op;
+        this.a = a;
+        this.b = b;
+        this.k = k;
+        this.target = target;
+        this.cycles = cycles;
+        this.source = source;
+        this.instructions = instructions;
+        this.targetLabel = targetLabel;
+        this.slotVars = slotVars;
+        this.slotOf = slotOf;
+        this.labelIndex = labelIndex;
+        this.loops = loops;
+        this.declaredCount = declaredCount;
+        this.seedInput = seedInput;
+        this.symbols = symbols;
+        this.slotById = slotById;
+        this.indexByLabelId = indexByLabelId;
+        Integer result = slotOf.get(Variable.RESULT);
+        this.resultSlot = (result == null) ? -1 : result;
+    }
+
+    // ---- getters funcs ---- //
+    public String getName() { return name; }
+    public int length() { return op.length; }
+    public int[] opcodes() { return op; }
+    public int[] operandA() { return a; }
+    public int[] operandB() { return b; }
+    public long[] constants() { return k; }
+    public int[] targets() { return target; }
+    public int[] cycles() { return cycles; }
+    public Instruction instructionAt(int pc) {
+        Instruction ins = source[pc];
+        return (ins != null) ? ins : instructions.get(pc);
+    }
+    public Label targetLabelAt(int pc) { return targetLabel[pc]; }
+    public int slotCount() { return slotVars.length; }
+    public Variable variableAt(int slot) { return slotVars[slot]; }
+    public int[][] loopIncrements() { return loops; }
+    public int declaredCount() { return declaredCount; }
+    public int resultSlot() { return resultSlot; }
+
+    //This func returns the input index (0-based) a slot is seeded from, or -1 for slots that start at 0
+    public int seedInputAt(int slot) { return seedInput[slot]; }
+
+    //This func returns the slot of a variable, or -1 if the program never references it
+    public int slotOf(Variable v) {
+        int id = symbols.idOf(v);
+        if (id >= 0 && id < slotById.length && slotById[id] >= 0) return slotById[id];
+        Integer s = slotOf.get(v);
+        return (s == null) ? -1 : s;
+    }
+
+    //This func resolves a label returned at runtime to an absolute index
+    public int resolve(Label label, int pc) {
+        if (ProgramCompiler.isExit(label)) return op.length;
+        if (ProgramCompiler.isEmpty(label)) return pc + 1;
+        int id = symbols.idOf(label);
+        if (id >= 0 && id < indexByLabelId.length && indexByLabelId[id] >= 0) return indexByLabelId[id];
+        Integer idx = labelIndex.get(label.getLabelRepresentation());
+        if (idx == null) {
+            throw new IllegalArgumentException("Unknown label: " + label.getLabelRepresentation());
+        }
+        return idx;
+    }
+}
@@ -2,22 +2,99 @@ package emulator.logic.execution;
 
 import emulator.logic.variable.Variable;
 
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.Map;
 
 public class ExecutionContextImpl implements ExecutionContext {
-    private final Map<Variable, Long> vars = new HashMap<>();
+    // Register file: every variable of the bound program owns a dense slot
+    private CompiledProgram layout;
+    private long[] regs = new long[0];
+    private boolean[] live = new boolean[0];
+    // Variables the bound program never references
+    private final Map<Variable, Long> overflow = new HashMap<>();
     private QuoteEvaluator quoteEvaluator;
     private int dynamicCycles = 0;
+    // Upper-cased name of the function whose body runs on this context, null for a program run on its own
+    private String callName;
 
-    @Override public long getVariableValue(Variable v) {return vars.getOrDefault(v, 0L);}
-    @Override public void updateVariable(Variable v, long value) {vars.put(v, value);}
+    //This func binds the register file to a compiled program, carrying over current values
+    public void bind(CompiledProgram code) {
+        if (code == layout) return;
+        Map<Variable, Long> current = (layout == null && overflow.isEmpty()) ? Map.of() : materialize();
+        layout = code;
+        regs = new long[code.slotCount()];
+        live = new boolean[code.slotCount()];
+        overflow.clear();
+        current.forEach(this::updateVariable);
+    }
+
+    //This func binds the register file to a compiled program with every variable unassigned
+    void reset(CompiledProgram code) {
+        if (code == layout) {
+            Arrays.fill(regs, 0L);
+            Arrays.fill(live, false);
+        } else {
+            layout = code;
+            regs = new long[code.slotCount()];
+            live = new boolean[code.slotCount()];
+        }
+        overflow.clear();
+        dynamicCycles = 0;
+    }
+
+    // ---- slot access (used by the interpreter loop) ---- //
+    public long get(int slot) { return regs[slot]; }
+    public void set(int slot, long value) { regs[slot] = value; live[slot] = true; }
+
+    boolean isLive(int slot) { return live[slot]; }
+
+    // Raw register file, handed to generated code
+    long[] registers() { return regs; }
+
+    //This func checks if every slot already holds a value (true once the executor has seeded the inputs)
+    boolean allLive() {
+        for (boolean l : live) if (!l) return false;
+        return true;
+    }
+
+    @Override public long getVariableValue(Variable v) {
+        int slot = slotOf(v);
+        if (slot >= 0) return regs[slot];
+        return overflow.getOrDefault(v, 0L);
+    }
+
+    @Override public void updateVariable(Variable v, long value) {
+        int slot = slotOf(v);
+        if (slot >= 0) set(slot, value);
+        else overflow.put(v, value);
+    }
+
+    //This func builds the variable map on demand
     @Override public Map<Variable, Long> getAllVariables() {
-        return Collections.unmodifiableMap(vars);
+        return Collections.unmodifiableMap(materialize());
+    }
+
+    //This func finds a variable's value by its name, ignoring case (null if there is no such variable)
+    public Long valueByName(String name) {
+        for (int s = 0; s < regs.length; s++) {
+            if (live[s] && layout.variableAt(s).getRepresentation().equalsIgnoreCase(name)) return regs[s];
+        }
+        for (var e : overflow.entrySet()) {
+            Variable v = e.getKey();
+            if (v != null && v.getRepresentation() != null && v.getRepresentation().equalsIgnoreCase(name)) {
+                return e.getValue();
+            }
+        }
+        return null;
     }
+
     @Override public void setQuoteEvaluator(QuoteEvaluator evaluator) { this.quoteEvaluator = evaluator; }
     @Override public QuoteEvaluator getQuoteEvaluator() { return quoteEvaluator; }
+    public void setCallName(String name) { this.callName = name; }
+    public String getCallName() { return callName; }
     public void addDynamicCycles(int n) {
         dynamicCycles += n;
     }
@@ -29,4 +106,17 @@ public class ExecutionContextImpl implements ExecutionContext {
         dynamicCycles = 0;
         return current;
     }
+
+    private int slotOf(Variable v) {
+        return (layout == null || v == null) ? -1 : layout.slotOf(v);
+    }
+
+    private Map<Variable, Long> materialize() {
+        Map<Variable, Long> out = new LinkedHashMap<>();
+        for (int s = 0; s < regs.length; s++) {
+            if (live[s]) out.put(layout.variableAt(s), regs[s]);
+        }
+        out.putAll(overflow);
+        return out;
+    }
 }
@@ -0,0 +1,18 @@
+package emulator.logic.execution;
+
+import java.util.Locale;
+
+public enum ExecutionTier {
+    INTERPRETER,   // switch loop over the compiled opcode arrays
+    JIT;           // generated JVM class, falls back to the interpreter for QUOTE / JUMP_EQUAL_FUNCTION
+
+    //This func parses a tier name, defaulting to the interpreter
+    public static ExecutionTier fromString(String name) {
+        if (name == null || name.isBlank()) return INTERPRETER;
+        try {
+            return valueOf(name.trim().toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            return INTERPRETER;
+        }
+    }
+}
@@ -0,0 +1,35 @@
+package emulator.logic.execution;
+
+import static emulator.logic.execution.CompiledProgram.*;
+
+// Finds the counting loops the expansions of ZERO_VARIABLE and ASSIGNMENT leave behind:
+//
+//     L: DEC c
+//        INC v1 ... INC vm      (m >= 0, every vi != c)
+//        JNZ c L
+//
+// Entered at L with c = n, the loop runs max(n, 1) times, adds that count to every vi and leaves c = 0.
+final class LoopIdiomAnalyzer {
+    private LoopIdiomAnalyzer() {}
+
+    //This func returns, per loop head, the slots the loop increments (null where no loop starts)
+    static int[][] analyze(int[] op, int[] a, int[] target) {
+        int len = op.length;
+        int[][] loops = new int[len][];
+
+        for (int head = 0; head < len; head++) {
+            if (op[head] != OP_DECREASE) continue;
+            int counter = a[head];
+
+            int end = head + 1;
+            while (end < len && op[end] == OP_INCREASE && a[end] != counter) end++;
+            if (end >= len) continue;
+            if (op[end] != OP_JUMP_NOT_ZERO || a[end] != counter || target[end] != head) continue;
+
+            int[] incs = new int[end - head - 1];
+            for (int i = 0; i < incs.length; i++) incs[i] = a[head + 1 + i];
+            loops[head] = incs;
+        }
+        return loops;
+    }
+}
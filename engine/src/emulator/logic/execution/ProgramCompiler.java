@@ -0,0 +1,230 @@
+package emulator.logic.execution;
+
+import emulator.logic.instruction.*;
+import emulator.logic.instruction.quote.QuotationInstruction;
+import emulator.logic.label.FixedLabel;
+import emulator.logic.label.Label;
+import emulator.logic.program.Program;
+import emulator.logic.program.SymbolTable;
+import emulator.logic.variable.Variable;
+import emulator.logic.variable.VariableType;
+
+import java.util.*;
+
+import static emulator.logic.execution.CompiledProgram.*;
+
+public final class ProgramCompiler {
+    private ProgramCompiler() {}
+
+    // Compiled code is cached per program instance; programs only grow, so the size tells us if it is stale
+    private static final Map<Program, CompiledProgram> CACHE = new WeakHashMap<>();
+
+    //This func returns the compiled form of a program, compiling it on first use
+    public static CompiledProgram compile(Program program) {
+        Objects.requireNonNull(program, "program must not be null");
+        synchronized (CACHE) {
+            CompiledProgram cached = CACHE.get(program);
+            if (cached != null && cached.length() == program.getInstructions().size()) {
+                return cached;
+            }
+        }
+        CompiledProgram compiled = compileFresh(program);
+        synchronized (CACHE) {
+            CACHE.put(program, compiled);
+        }
+        return compiled;
+    }
+
+    //This func translates the instruction list into flat opcode arrays
+    private static CompiledProgram compileFresh(Program program) {
+        List<Instruction> instructions = program.getInstructions();
+        int len = instructions.size();
+
+        // Instructions are walked in order (never by index) so a lazily expanded program streams through
+        SymbolTable symbols = program.getSymbols();
+        Map<String, Integer> labelIndex = new HashMap<>();
+        IdIndex labelById = new IdIndex();
+        int at = 0;
+        for (Instruction ins : instructions) {
+            Label lbl = ins.getLabel();
+            if (lbl != null && lbl != FixedLabel.EMPTY) {
+                if (labelIndex.putIfAbsent(lbl.getLabelRepresentation(), at) == null) {
+                    labelById.put(symbols.idOf(lbl), at);
+                }
+            }
+            at++;
+        }
+
+        int[] op = new int[len];
+        int[] a = new int[len];
+        int[] b = new int[len];
+        long[] k = new long[len];
+        int[] target = new int[len];
+        int[] cycles = new int[len];
+        Instruction[] source = new Instruction[len];
+        Label[] targetLabel = new Label[len];
+        Map<Variable, Integer> slotOf = new LinkedHashMap<>();
+
+        for (Variable v : program.getVariables()) {
+            if (v != null) slotOf.putIfAbsent(v, slotOf.size());
+        }
+        int declaredCount = slotOf.size();
+
+        Iterator<Instruction> walk = instructions.iterator();
+        for (int pc = 0; pc < len; pc++) {
+            Instruction ins = walk.next();
+            cycles[pc] = ins.cycles();
+            a[pc] = -1;
+            b[pc] = -1;
+            target[pc] = pc + 1;
+
+            Label jump = null;
+            Class<?> c = ins.getClass();
+            if (c == IncreaseInstruction.class) {
+                op[pc] = OP_INCREASE;
+                a[pc] = slot(slotOf, ins.getVariable());
+            } else if (c == DecreaseInstruction.class) {
+                op[pc] = OP_DECREASE;
+                a[pc] = slot(slotOf, ins.getVariable());
+            } else if (c == JumpNotZeroInstruction.class) {
+                op[pc] = OP_JUMP_NOT_ZERO;
+                a[pc] = slot(slotOf, ins.getVariable());
+                jump = ((JumpNotZeroInstruction) ins).getJnzLabel();
+            } else if (c == RepeatInstruction.class) {
+                RepeatInstruction rep = (RepeatInstruction) ins;
+                op[pc] = (rep.getInstructionData() == InstructionData.INCREASE) ? OP_INCREASE_BY : OP_DECREASE_BY;
+                a[pc] = slot(slotOf, rep.getVariable());
+                k[pc] = rep.getCount();
+            } else if (c == NeutralInstruction.class) {
+                op[pc] = OP_NEUTRAL;
+            } else if (c == ZeroVariableInstruction.class) {
+                op[pc] = OP_ZERO_VARIABLE;
+                a[pc] = slot(slotOf, ins.getVariable());
+            } else if (c == GoToLabelInstruction.class) {
+                op[pc] = OP_GOTO_LABEL;
+                jump = ((GoToLabelInstruction) ins).getgtlLabel();
+            } else if (c == AssignmentInstruction.class) {
+                op[pc] = OP_ASSIGNMENT;
+                a[pc] = slot(slotOf, ins.getVariable());
+                b[pc] = slot(slotOf, ((AssignmentInstruction) ins).getAssignedVariable());
+            } else if (c == ConstantAssignmentInstruction.class) {
+                op[pc] = OP_CONSTANT_ASSIGNMENT;
+                a[pc] = slot(slotOf, ins.getVariable());
+                k[pc] = ((ConstantAssignmentInstruction) ins).getConstantValue();
+            } else if (c == JumpZeroInstruction.class) {
+                op[pc] = OP_JUMP_ZERO;
+                a[pc] = slot(slotOf, ins.getVariable());
+                jump = ((JumpZeroInstruction) ins).getJzLabel();
+            } else if (c == JumpEqualConstantInstruction.class) {
+                JumpEqualConstantInstruction jec = (JumpEqualConstantInstruction) ins;
+                op[pc] = OP_JUMP_EQUAL_CONSTANT;
+                a[pc] = slot(slotOf, jec.getVariable());
+                k[pc] = jec.getConstantValue();
+                jump = jec.getJeConstantLabel();
+            } else if (c == JumpEqualVariableInstruction.class) {
+                JumpEqualVariableInstruction jev = (JumpEqualVariableInstruction) ins;
+                op[pc] = OP_JUMP_EQUAL_VARIABLE;
+                a[pc] = slot(slotOf, jev.getVariable());
+                b[pc] = slot(slotOf, jev.getCompareVariable());
+                jump = jev.getJeVariableLabel();
+            } else if (c == QuotationInstruction.class) {
+                op[pc] = OP_QUOTE;
+                a[pc] = slot(slotOf, ins.getVariable());
+            } else if (c == JumpEqualFunctionInstruction.class) {
+                op[pc] = OP_JUMP_EQUAL_FUNCTION;
+                a[pc] = slot(slotOf, ins.getVariable());
+                jump = ((JumpEqualFunctionInstruction) ins).getJeFunctionLabel();
+            } else {
+                op[pc] = OP_INVOKE;
+            }
+
+            if (op[pc] != OP_INVOKE && missingOperand(op[pc], a[pc], b[pc])) {
+                op[pc] = OP_INVOKE;
+                jump = null;
+            }
+
+            // Only instructions the interpreter hands back to are kept; the rest are found through the program
+            if (op[pc] >= OP_INVOKE) source[pc] = ins;
+
+            if (jump != null) {
+                targetLabel[pc] = jump;
+                target[pc] = resolveStatic(jump, pc, len, labelIndex);
+            }
+        }
+
+        Variable[] slotVars = slotOf.keySet().toArray(new Variable[0]);
+        IdIndex slotById = new IdIndex();
+        for (int s = 0; s < slotVars.length; s++) slotById.put(symbols.idOf(slotVars[s]), s);
+        int[] seedInput = new int[slotVars.length];
+        for (int s = 0; s < slotVars.length; s++) {
+            boolean input = s < declaredCount && slotVars[s].getType() == VariableType.INPUT;
+            seedInput[s] = input ? slotVars[s].getNumber() - 1 : -1;
+        }
+        return new CompiledProgram(program.getName(), op, a, b, k, target, cycles, source, instructions,
+                targetLabel, slotVars, slotOf, labelIndex, LoopIdiomAnalyzer.analyze(op, a, target),
+                declaredCount, seedInput, symbols, slotById.toArray(), labelById.toArray());
+    }
+
+    // Values by symbol id (-1 where there is none), grown as ids show up
+    private static final class IdIndex {
+        private int[] values = new int[16];
+        private int length;
+
+        void put(int id, int value) {
+            if (id < 0) return;
+            if (id >= values.length) {
+                int old = values.length;
+                values = Arrays.copyOf(values, Math.max(id + 1, old * 2));
+            }
+            if (id >= length) {
+                Arrays.fill(values, length, id + 1, -1);
+                length = id + 1;
+            }
+            values[id] = value;
+        }
+
+        int[] toArray() { return Arrays.copyOf(values, length); }
+    }
+
+    //This func returns the slot of a variable, adding it if the program did not list it
+    private static int slot(Map<Variable, Integer> slotOf, Variable v) {
+        if (v == null) return -1;
+        Integer s = slotOf.get(v);
+        if (s == null) {
+            s = slotOf.size();
+            slotOf.put(v, s);
+        }
+        return s;
+    }
+
+    //This func checks if an instruction lacks a variable it needs (such instructions keep their own execute)
+    private static boolean missingOperand(int op, int a, int b) {
+        return switch (op) {
+            case OP_NEUTRAL, OP_GOTO_LABEL -> false;
+            case OP_ASSIGNMENT, OP_JUMP_EQUAL_VARIABLE -> a < 0 || b < 0;
+            default -> a < 0;
+        };
+    }
+
+    //This func resolves a jump label at compile time; unknown labels fail only when taken
+    private static int resolveStatic(Label label, int pc, int len, Map<String, Integer> labelIndex) {
+        if (isExit(label)) return len;
+        if (isEmpty(label)) return pc + 1;
+        Integer idx = labelIndex.get(label.getLabelRepresentation());
+        return (idx == null) ? UNRESOLVED : idx;
+    }
+
+    static boolean isExit(Label l) {
+        if (l == null) return false;
+        if (l == FixedLabel.EXIT) return true;
+        String s = l.getLabelRepresentation();
+        return s != null && s.trim().equalsIgnoreCase("EXIT");
+    }
+
+    static boolean isEmpty(Label l) {
+        if (l == null) return true;
+        if (l == FixedLabel.EMPTY) return true;
+        String s = l.getLabelRepresentation();
+        return s == null || s.trim().isEmpty();
+    }
+}
@@ -10,6 +10,7 @@ public interface ProgramExecutor {
     int getLastExecutionCycles();
     int getLastDynamicCycles();
     void setStepListener(StepListener listener);
+    void setStepProbe(StepProbe probe);
 
     interface StepListener {
         void onStep(int pcAfter, int cycles, Map<String, String> vars, boolean finished);
@@ -1,29 +1,50 @@
 package emulator.logic.execution;
 
+import emulator.exception.RunCancelledException;
 import emulator.logic.instruction.Instruction;
 import emulator.logic.instruction.JumpEqualFunctionInstruction;
 import emulator.logic.instruction.quote.QuotationInstruction;
+import emulator.logic.instruction.quote.QuotationRegistry;
+import emulator.logic.instruction.quote.QuoteArg;
+import emulator.logic.instruction.quote.QuoteArgCompiler;
+import emulator.logic.instruction.quote.QuoteMemo;
+import emulator.logic.instruction.quote.QuoteParser;
 import emulator.logic.instruction.quote.QuoteUtils;
-import emulator.logic.label.FixedLabel;
+import emulator.logic.instruction.quote.VarResolver;
 import emulator.logic.label.Label;
 import emulator.logic.program.Program;
 import emulator.logic.variable.Variable;
 import emulator.logic.variable.VariableType;
+import emulator.logic.user.CreditLease;
+import emulator.logic.user.User;
 import emulator.logic.user.UserManager;
 
+import java.lang.invoke.MethodHandle;
 import java.util.*;
 
 public class ProgramExecutorImpl implements ProgramExecutor {
 
-    private final ExecutionContext context = new ExecutionContextImpl();
+    private final ExecutionContextImpl context = new ExecutionContextImpl();
     private final QuoteEvaluator quoteEval;
     private final Program program;
     private int lastExecutionCycles = 0;
     private int lastDynamicCycles = 0;
     private Long[] lastInputs = new Long[0];
-    private int observedDynamicCycles = 0;
     private StepListener stepListener;
+    private StepProbe stepProbe;
+    private final ReusableStepView stepView = new ReusableStepView();
     private int baseCycles = 0;
+    private ExecutionTier tier = ExecutionTier.INTERPRETER;
+    private Frame[] frames = new Frame[8];
+    private int depth = 0;
+    // Cycles of finished calls not yet added to a caller
+    private int pending = 0;
+    // Upper-cased name of the function this executor runs as a call, null for a program run on its own
+    private String callName;
+    // The control of the run on this thread, if it is watched; pollIn counts instructions down to its next check
+    private RunControl control;
+    private boolean reportsProgress;
+    private int pollIn = Integer.MAX_VALUE;
 
     public void setBaseCycles(int base) {
         this.baseCycles = base;
@@ -43,16 +64,34 @@ public class ProgramExecutorImpl implements ProgramExecutor {
         this.quoteEval = quoteEval;
     }
 
+    //This func makes the executor run its program as the body of a call to a function of that name
+    public void setCallName(String name) {
+        this.callName = name;
+    }
+
+    public void setExecutionTier(ExecutionTier tier) {
+        this.tier = (tier == null) ? ExecutionTier.INTERPRETER : tier;
+    }
+
+    public ExecutionTier getExecutionTier() {
+        return tier;
+    }
+
     @Override
     public void setStepListener(StepListener l) {
         this.stepListener = l;
     }
 
+    //This func sets an allocation-free per-step probe
+    @Override
+    public void setStepProbe(StepProbe probe) {
+        this.stepProbe = probe;
+    }
+
     @Override
     public long run(Long... input) {
         lastExecutionCycles = 0;
         lastDynamicCycles = 0;
-        observedDynamicCycles = 0;
 
         if (quoteEval != null) {
             context.setQuoteEvaluator(quoteEval);
@@ -61,14 +100,30 @@ public class ProgramExecutorImpl implements ProgramExecutor {
 
         List<Instruction> instructions = program.getInstructions();
         validateNotEmpty(instructions);
+        CompiledProgram code = ProgramCompiler.compile(program);
+        context.bind(code);
+        context.setCallName(callName);
 
         int need = Math.max(requiredInputCount(), (input != null ? input.length : 0));
         long[] finalInputs = normalizeInputs(input, need);
         seedVariables(finalInputs);
 
-        executeProgram(instructions);
-        System.out.println("variableState after execution: " + variableState());
-        lastDynamicCycles = QuoteUtils.drainCycles();
+        control = RunControl.current();
+        reportsProgress = control != null && control.enter();
+        pollIn = (control != null) ? RunControl.POLL_INTERVAL : Integer.MAX_VALUE;
+
+        // Unobserved runs charge a lease instead of the user's balance per instruction (a debugger's paused run
+        // charges the balance, so the credits it shows stay exact)
+        CreditLease lease = (stepListener == null) ? UserManager.openLease() : null;
+        try {
+            int startPc = (tier == ExecutionTier.JIT && !isObserved()) ? runGenerated(code) : 0;
+            executeProgram(code, startPc);
+        } finally {
+            if (lease != null) lease.close();
+            if (control != null) control.exit();
+        }
+        lastDynamicCycles = pending;
+        pending = 0;
         return context.getVariableValue(Variable.RESULT);
     }
 
@@ -113,53 +168,510 @@ public class ProgramExecutorImpl implements ProgramExecutor {
         }
     }
 
-    private void executeProgram(List<Instruction> instructions) {
-        int idx = 0;
-        int len = instructions.size();
+    //This func runs the program through its generated class, as far as the user's credits reach.
+    //It returns the index the interpreter should continue from (the program length when it finished).
+    private int runGenerated(CompiledProgram code) {
+        Optional<User> user = UserManager.getCurrentUser();
+        if (user.isEmpty() || !context.allLive()) return 0;
+        MethodHandle generated = ProgramJit.forProgram(code);
+        if (generated == null) return 0;
+
+        long budget = Math.min(UserManager.availableCredits(), Integer.MAX_VALUE - (long) lastExecutionCycles);
+        if (control != null) budget = Math.min(budget, RunControl.JIT_SLICE);
+        long[] state = { Math.max(budget, 0L), 0L };
+        int resumeAt;
+        try {
+            resumeAt = (int) generated.invokeExact(context.registers(), state);
+        } catch (Throwable t) {
+            throw new IllegalStateException("Generated code failed for program " + code.getName(), t);
+        }
+
+        int used = (int) state[1];
+        lastExecutionCycles += used;
+        if (used > 0 && !UserManager.charge(used)) {
+            throw new IllegalStateException("Not enough credits to continue execution.");
+        }
+        return resumeAt;
+    }
 
-        while (idx >= 0 && idx < len) {
-            idx = step(instructions, idx);
+    // ---- frame stack ---- //
+    // A QUOTE / JUMP_EQUAL_FUNCTION call does not start another executor: the call and the callee it runs
+    // are pushed as frames and the loop below keeps going with the innermost one.
+
+    //This func runs the program (and every call it makes) from startPc until it leaves its instruction range
+    private void executeProgram(CompiledProgram code, int startPc) {
+        pending = 0;
+        depth = 0;
+        Frame root = pushProgramFrame(code, context);
+        root.pc = startPc;
+        root.cycles = lastExecutionCycles;
+
+        try {
+            while (true) {
+                Frame f = frames[depth - 1];
+                if (f.call) {
+                    advanceCall(f);
+                } else if (runFrame(f, depth == 1)) {
+                    if (depth == 1) break;
+                    finishCallee(f);
+                }
+            }
+        } finally {
+            lastExecutionCycles = root.cycles;
+            releaseFrames();
         }
     }
 
-    private int step(List<Instruction> instructions, int currentIndex) {
-        Instruction ins = instructions.get(currentIndex);
-        int cost = ins.cycles();
+    //This func steps a program frame. It returns true when the program finished and false when it made a call.
+    private boolean runFrame(Frame f, boolean isRoot) {
+        CompiledProgram code = f.code;
+        ExecutionContextImpl ctx = f.ctx;
+        int[] op = code.opcodes();
+        int[] a = code.operandA();
+        int[] b = code.operandB();
+        long[] k = code.constants();
+        int[] target = code.targets();
+        int[] cycles = code.cycles();
+        int[][] loops = code.loopIncrements();
+        int len = code.length();
+        int pc = f.pc;
+        int cyc = f.cycles;
+        boolean observed = isRoot && isObserved();
+        if (observed) stepView.code = code;
+        int poll = pollIn;
+
+        try {
+            while (pc >= 0 && pc < len) {
+                if (--poll == 0) poll = pollControl(pc, isRoot ? pending + cyc : -1);
+
+                int[] loopIncs = loops[pc];
+                if (loopIncs != null && !observed) {
+                    int spent = runLoopIdiom(ctx, code, pc, loopIncs, cyc);
+                    if (spent >= 0) {
+                        cyc += spent;
+                        pc += loopIncs.length + 2;
+                        continue;
+                    }
+                }
+
+                int cost = cycles[pc];
+
+                if (observed) {
+                    if (stepListener != null) {
+                        stepListener.onStep(pc, pending + cyc, snapshotVarsForDebug(), false);
+                    }
+                    if (stepProbe != null) {
+                        stepView.pc = pc;
+                        stepView.cycles = pending + cyc;
+                        stepProbe.onStep(stepView);
+                    }
+                }
 
-        if (stepListener != null) {
-            stepListener.onStep(currentIndex,
-                    QuoteUtils.getCurrentCycles() + lastExecutionCycles,
-                    snapshotVarsForDebug(),
-                    false);
+                int next = pc + 1;
+                Label returned = null;
+                long repeatFrom = 0;
+                switch (op[pc]) {
+                    case CompiledProgram.OP_NEUTRAL -> { }
+                    case CompiledProgram.OP_INCREASE -> ctx.set(a[pc], ctx.get(a[pc]) + 1);
+                    case CompiledProgram.OP_DECREASE -> ctx.set(a[pc], Math.max(0, ctx.get(a[pc]) - 1));
+                    case CompiledProgram.OP_INCREASE_BY -> {
+                        repeatFrom = ctx.get(a[pc]);
+                        ctx.set(a[pc], repeatFrom + k[pc]);
+                    }
+                    case CompiledProgram.OP_DECREASE_BY -> {
+                        repeatFrom = ctx.get(a[pc]);
+                        ctx.set(a[pc], Math.max(0, repeatFrom - k[pc]));
+                    }
+                    case CompiledProgram.OP_JUMP_NOT_ZERO -> {
+                        if (ctx.get(a[pc]) != 0) next = target[pc];
+                    }
+                    case CompiledProgram.OP_ZERO_VARIABLE -> ctx.set(a[pc], 0L);
+                    case CompiledProgram.OP_GOTO_LABEL -> next = target[pc];
+                    case CompiledProgram.OP_ASSIGNMENT -> ctx.set(a[pc], ctx.get(b[pc]));
+                    case CompiledProgram.OP_CONSTANT_ASSIGNMENT -> ctx.set(a[pc], k[pc]);
+                    case CompiledProgram.OP_JUMP_ZERO -> {
+                        if (ctx.get(a[pc]) == 0L) next = target[pc];
+                    }
+                    case CompiledProgram.OP_JUMP_EQUAL_CONSTANT -> {
+                        if (ctx.get(a[pc]) == k[pc]) next = target[pc];
+                    }
+                    case CompiledProgram.OP_JUMP_EQUAL_VARIABLE -> {
+                        if (ctx.get(a[pc]) == ctx.get(b[pc])) next = target[pc];
+                    }
+                    case CompiledProgram.OP_QUOTE -> {
+                        requireEvaluator(ctx);
+                        f.pc = pc;
+                        pushInstructionCall(f, (QuotationInstruction) code.instructionAt(pc));
+                        return false;
+                    }
+                    case CompiledProgram.OP_JUMP_EQUAL_FUNCTION -> {
+                        f.compareValue = ctx.get(a[pc]);
+                        requireEvaluator(ctx);
+                        f.pc = pc;
+                        pushInstructionCall(f, (JumpEqualFunctionInstruction) code.instructionAt(pc));
+                        return false;
+                    }
+                    default -> returned = code.instructionAt(pc).execute(ctx);
+                }
+
+                cyc += cost;
+                if (!UserManager.charge(cost)) {
+                    if (op[pc] == CompiledProgram.OP_INCREASE_BY || op[pc] == CompiledProgram.OP_DECREASE_BY) {
+                        cyc -= cost - runRepeatPartly(ctx, op[pc], a[pc], k[pc], cost, repeatFrom);
+                    }
+                    System.err.println("Not enough credits to execute instruction at PC=" + pc +
+                            " (" + code.instructionAt(pc).getName() + "), cost=" + cost);
+                    throw new IllegalStateException("Not enough credits to continue execution.");
+                }
+
+                // Cycles of a call the instruction ran the old way (QuoteUtils.runCall)
+                pending += ctx.drainDynamicCycles();
+
+                if (returned != null || op[pc] == CompiledProgram.OP_INVOKE) {
+                    next = code.resolve(returned, pc);
+                } else if (next == CompiledProgram.UNRESOLVED) {
+                    throw new IllegalArgumentException("Unknown label: " + code.targetLabelAt(pc).getLabelRepresentation());
+                }
+                pc = next;
+            }
+            f.pc = pc;
+            return true;
+        } finally {
+            f.cycles = cyc;
+            pollIn = poll;
         }
+    }
 
-        Label next = ins.execute(context);
-        lastExecutionCycles += cost;
-        if (!UserManager.charge(cost)) {
-            System.err.println("Not enough credits to execute instruction at PC=" + currentIndex +
-                    " (" + ins.getName() + "), cost=" + cost);
-            throw new IllegalStateException("Not enough credits to continue execution.");
+    //This func publishes the run's progress to its control (cycles < 0: a call is running) and stops the run
+    // if the control was cancelled. It returns the instructions until the next check.
+    private int pollControl(int pc, long cycles) {
+        if (control == null) return Integer.MAX_VALUE;
+        if (reportsProgress && cycles >= 0) control.report(pc, cycles);
+        if (control.isCancelled()) throw new RunCancelledException(pc);
+        return RunControl.POLL_INTERVAL;
+    }
+
+    //This func leaves a repeat the credits could not pay for where the single instructions would have stopped:
+    // every paid one ran, plus the one whose charge failed. It returns the cycles those took.
+    private static int runRepeatPartly(ExecutionContextImpl ctx, int op, int slot, long count, int cost, long from) {
+        long each = cost / count;
+        long paid = (each == 0) ? count - 1 : UserManager.chargeUnits(each, count - 1);
+        long ran = paid + 1;
+        ctx.set(slot, (op == CompiledProgram.OP_INCREASE_BY) ? from + ran : Math.max(0, from - ran));
+        return (int) (ran * each);
+    }
+
+    private static void requireEvaluator(ExecutionContext ctx) {
+        if (ctx.getQuoteEvaluator() == null) {
+            throw new IllegalStateException("QuoteEvaluator is not available in ExecutionContext");
         }
+    }
+
+    private void pushInstructionCall(Frame owner, QuotationInstruction q) {
+        pushCall(q.compiledCall(), owner, -1, q.getParser(), q.getRegistry(), q.getVarResolver());
+    }
+
+    private void pushInstructionCall(Frame owner, JumpEqualFunctionInstruction jef) {
+        pushCall(jef.compiledCall(), owner, -1, jef.getParser(), jef.getRegistry(), jef.getVarResolver());
+    }
 
-        int dynamicIncrement = 0;
-        if (context instanceof ExecutionContextImpl ectx) {
-            dynamicIncrement = ectx.drainDynamicCycles();
-            if (dynamicIncrement != 0) {
-                observedDynamicCycles += dynamicIncrement;
+    //This func opens a call frame: same checks, in the same order, as QuoteUtils.runCall
+    private void pushCall(QuoteArg.Call call, Frame owner, int parentArg,
+                          QuoteParser parser, QuotationRegistry registry, VarResolver varResolver) {
+        String fname = call.name();
+        if (fname == null || fname.isBlank())
+            throw new IllegalArgumentException("Empty QUOTE function name");
+        String name = fname.trim().toUpperCase(Locale.ROOT);
+        rejectRecursion(name);
+
+        Frame c = nextFrame();
+        c.call = true;
+        c.name = name;
+        c.owner = owner;
+        c.parentArg = parentArg;
+        c.parser = parser;
+        c.registry = registry;
+        c.varResolver = varResolver;
+
+        Program callee = (call.program() != null) ? call.program() : registry.getProgramByName(fname);
+        if (callee == null)
+            throw new IllegalArgumentException("Unknown function: " + fname);
+        c.callee = callee;
+        c.args = (call.args() != null) ? call.args()
+                : QuoteArgCompiler.compileArgs(call.argsCsv(), parser, registry, varResolver);
+        c.need = QuoteUtils.requiredInputCount(callee);
+        if (c.inputs.length < c.need) c.inputs = new long[c.need];
+        Arrays.fill(c.inputs, 0, c.need, 0L);
+        c.argIndex = 0;
+    }
+
+    //This func rejects a function that calls itself directly: the call innermost on the stack, or the function
+    // the innermost program frame runs the body of, has the same name
+    private void rejectRecursion(String name) {
+        Frame top = frames[depth - 1];
+        String caller = top.call ? top.name : top.ctx.getCallName();
+        if (!name.equals(caller)) return;
+
+        StringJoiner path = new StringJoiner(" -> ");
+        if (callName != null) path.add(callName);
+        for (int i = 0; i < depth; i++) {
+            if (frames[i].call) path.add(frames[i].name);
+        }
+        throw new IllegalStateException("Recursive QUOTE call detected (true recursion): " + path + " -> " + name);
+    }
+
+    //This func evaluates the call's arguments in order; a nested call suspends it until the callee returns
+    private void advanceCall(Frame c) {
+        int n = Math.min(c.need, c.args.size());
+        while (c.argIndex < n) {
+            QuoteArg arg = c.args.get(c.argIndex);
+            switch (arg) {
+                case QuoteArg.Const k -> c.inputs[c.argIndex] = k.value();
+                case QuoteArg.Var v -> c.inputs[c.argIndex] = c.owner.ctx.getVariableValue(v.variable());
+                case QuoteArg.Call call -> {
+                    pushCall(call, c.owner, c.argIndex, c.parser, c.registry, c.varResolver);
+                    return;
+                }
+                case QuoteArg.Token t -> {
+                    if (!evalToken(c, t.text())) return;
+                }
             }
+            c.argIndex++;
+        }
+        startCallee(c);
+    }
+
+    //This func resolves an argument left for run time the way QuoteUtils.evalArgToValue does.
+    //It returns false if it had to push a call.
+    private boolean evalToken(Frame c, String token) {
+        int idx = c.argIndex;
+        if (token.isEmpty()) {
+            c.inputs[idx] = 0L;
+            return true;
+        }
+
+        if (c.parser.isNestedCall(token)) {
+            QuoteParser.NestedCall nc = c.parser.parseNestedCall(token);
+            pushCall(new QuoteArg.Call(nc.name(), null, null, nc.argsCsv()), c.owner, idx,
+                    c.parser, c.registry, c.varResolver);
+            return false;
         }
 
-        int nextIndex;
-        if (isExit(next)) {
-            nextIndex = instructions.size();
-        } else if (isEmpty(next)) {
-            nextIndex = currentIndex + 1;
+        ExecutionContextImpl ctx = c.owner.ctx;
+        Variable renamed = QuoteUtils.renamedVariable(token, c.varResolver);
+        if (renamed != null) {
+            c.inputs[idx] = ctx.getVariableValue(renamed);
+            return true;
+        }
+        Long byName = ctx.valueByName(token);
+        if (byName != null) {
+            c.inputs[idx] = byName;
+            return true;
+        }
+
+        if (c.varResolver != null) {
+            try {
+                Variable v = c.varResolver.resolve(token);
+                c.inputs[idx] = ctx.getVariableValue(v);
+                return true;
+            } catch (RuntimeException ignored) {}
+        }
+
+        if (QuoteUtils.isFunctionCall(token, c.registry)) {
+            pushCall(new QuoteArg.Call(token, null, null, ""), c.owner, idx, c.parser, c.registry, c.varResolver);
+            return false;
+        }
+
+        try {
+            c.inputs[idx] = Long.parseLong(token);
+        } catch (NumberFormatException ignored) {
+            c.inputs[idx] = 0L;
+        }
+        return true;
+    }
+
+    //This func answers the call from the memo, or pushes the callee's program frame
+    private void startCallee(Frame c) {
+        QuoteMemo.Entry memo = QuoteMemo.lookup(c.callee, 0, c.inputs, c.need);
+        if (memo != null && QuoteUtils.chargeMemoized(memo)) {
+            pending = Math.max(0, pending + memo.ownCycles());
+            completeCall(memo.y());
+            return;
+        }
+
+        c.chargedBefore = UserManager.chargedOnThread();
+        c.pendingBefore = pending;
+        if (c.callee.getInstructions().isEmpty()) {
+            throw new IllegalStateException("empty program");
+        }
+        CompiledProgram code = ProgramCompiler.compile(c.callee);
+
+        Frame g = pushProgramFrame(code, null);
+        ExecutionContextImpl ctx = g.ctx;
+        ctx.setQuoteEvaluator(c.owner.ctx.getQuoteEvaluator());
+        ctx.setCallName(c.name);
+        for (int s = 0; s < code.declaredCount(); s++) {
+            int in = code.seedInputAt(s);
+            ctx.set(s, (in >= 0 && in < c.need) ? c.inputs[in] : 0L);
+        }
+    }
+
+    //This func pops a finished callee and hands its result to the call that started it
+    private void finishCallee(Frame g) {
+        CompiledProgram code = g.code;
+        int slot = code.resultSlot();
+        long y = (slot >= 0) ? g.ctx.get(slot) : 0L;
+        int total = g.cycles + pending;
+        depth--;
+
+        Frame c = frames[depth - 1];
+        QuoteMemo.store(c.callee, 0, c.inputs, c.need,
+                new QuoteMemo.Entry(y, total - c.pendingBefore, UserManager.chargedOnThread() - c.chargedBefore));
+        pending = Math.max(total, 0);
+        completeCall(y);
+    }
+
+    //This func pops the innermost call frame, delivering y to the argument or instruction waiting for it
+    private void completeCall(long y) {
+        Frame c = frames[--depth];
+        int parentArg = c.parentArg;
+        c.callee = null;
+        c.args = null;
+
+        Frame parent = frames[depth - 1];
+        if (parentArg >= 0) {
+            parent.inputs[parentArg] = y;
+            parent.argIndex++;
+            return;
+        }
+
+        CompiledProgram code = parent.code;
+        int pc = parent.pc;
+        int next = pc + 1;
+        if (code.opcodes()[pc] == CompiledProgram.OP_QUOTE) {
+            parent.ctx.set(code.operandA()[pc], y);
+        } else if (parent.compareValue == y) {
+            next = code.targets()[pc];
+        }
+
+        int cost = code.cycles()[pc];
+        parent.cycles += cost;
+        if (!UserManager.charge(cost)) {
+            System.err.println("Not enough credits to execute instruction at PC=" + pc +
+                    " (" + code.instructionAt(pc).getName() + "), cost=" + cost);
+            throw new IllegalStateException("Not enough credits to continue execution.");
+        }
+        parent.ctx.drainDynamicCycles();
+        if (next == CompiledProgram.UNRESOLVED) {
+            throw new IllegalArgumentException("Unknown label: " + code.targetLabelAt(pc).getLabelRepresentation());
+        }
+        parent.pc = next;
+    }
+
+    private Frame pushProgramFrame(CompiledProgram code, ExecutionContextImpl ctx) {
+        Frame f = nextFrame();
+        f.call = false;
+        f.code = code;
+        if (ctx != null) {
+            f.ctx = ctx;
         } else {
-            Instruction target = program.instructionAt(next);
-            nextIndex = instructions.indexOf(target);
+            if (f.ctx == null || f.ctx == context) f.ctx = new ExecutionContextImpl();
+            f.ctx.reset(code);
         }
+        f.pc = 0;
+        f.cycles = 0;
+        return f;
+    }
 
-        return nextIndex;
+    private Frame nextFrame() {
+        if (depth == frames.length) frames = Arrays.copyOf(frames, depth * 2);
+        Frame f = frames[depth];
+        if (f == null) f = frames[depth] = new Frame();
+        depth++;
+        return f;
+    }
+
+    private void releaseFrames() {
+        for (int i = 0; i < frames.length && frames[i] != null; i++) {
+            Frame f = frames[i];
+            f.code = null;
+            f.callee = null;
+            f.args = null;
+            f.owner = null;
+            f.parser = null;
+            f.registry = null;
+            f.varResolver = null;
+            if (f.ctx == context) f.ctx = null;
+        }
+        depth = 0;
+    }
+
+    //This func runs a recognized counting loop in one shot, charging what the loop would have cost.
+    //It returns the cycles charged, or -1 if the credits do not cover the whole loop and it should be stepped normally.
+    private int runLoopIdiom(ExecutionContextImpl ctx, CompiledProgram code, int head, int[] incs, int spent) {
+        int counter = code.operandA()[head];
+        long iterations = Math.max(ctx.get(counter), 1L);
+
+        int[] cycles = code.cycles();
+        long perIteration = 0;
+        for (int pc = head; pc <= head + incs.length + 1; pc++) perIteration += cycles[pc];
+
+        if (perIteration != 0 && iterations > (Integer.MAX_VALUE - (long) spent) / perIteration) {
+            return -1;
+        }
+        long total = iterations * perIteration;
+        if (!UserManager.charge(total)) {
+            return -1;
+        }
+
+        for (int slot : incs) ctx.set(slot, ctx.get(slot) + iterations);
+        ctx.set(counter, 0L);
+        return (int) total;
+    }
+
+    // One activation: a program running on its own register file, or a call still evaluating its arguments
+    private static final class Frame {
+        boolean call;
+
+        // program frame
+        CompiledProgram code;
+        ExecutionContextImpl ctx;
+        int pc;
+        int cycles;
+        long compareValue;
+
+        // call frame
+        String name;       // upper-cased function name
+        Program callee;
+        List<QuoteArg> args;
+        int argIndex;
+        int need;
+        long[] inputs = new long[0];
+        Frame owner;       // program frame whose variables the arguments read
+        int parentArg;     // argument of the enclosing call this call computes, -1 if it completes owner's instruction
+        QuoteParser parser;
+        QuotationRegistry registry;
+        VarResolver varResolver;
+        long chargedBefore;   // UserManager.chargedOnThread() when the call started
+        int pendingBefore;
+    }
+
+    private boolean isObserved() {
+        return stepListener != null || stepProbe != null;
+    }
+
+    // Single view instance handed to the probe on every step
+    private final class ReusableStepView implements StepView {
+        private CompiledProgram code;
+        private int pc;
+        private int cycles;
+
+        @Override public int pc() { return pc; }
+        @Override public int cycles() { return cycles; }
+        @Override public int slotCount() { return code.slotCount(); }
+        @Override public Variable variableAt(int slot) { return code.variableAt(slot); }
+        @Override public long valueAt(int slot) { return context.get(slot); }
+        @Override public boolean isAssigned(int slot) { return context.isLive(slot); }
     }
 
     public int getLastDynamicCycles() {
@@ -186,20 +698,6 @@ public class ProgramExecutorImpl implements ProgramExecutor {
         return maxIdx;
     }
 
-    private static boolean isExit(Label l) {
-        if (l == null) return false;
-        if (l == FixedLabel.EXIT) return true;
-        String s = l.getLabelRepresentation();
-        return s != null && s.trim().equalsIgnoreCase("EXIT");
-    }
-
-    private static boolean isEmpty(Label l) {
-        if (l == null) return true;
-        if (l == FixedLabel.EMPTY) return true;
-        String s = l.getLabelRepresentation();
-        return s == null || s.trim().isEmpty();
-    }
-
     private Map<String, Long> buildCurrentEnvMapLowerCase() {
         Map<String, Long> env = new HashMap<>();
         for (int i = 0; i < lastInputs.length; i++) {
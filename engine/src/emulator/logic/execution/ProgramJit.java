@@ -0,0 +1,458 @@
+package emulator.logic.execution;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.util.HashMap;
+import java.util.Map;
+
+import static emulator.logic.execution.CompiledProgram.*;
+
+// Translates a compiled program into a hidden JVM class with one static method:
+//
+//     static int run(long[] regs, long[] state)
+//
+// Variables live in locals and labels become gotos. state[0] holds the cycle budget (the caller's credits);
+// before an instruction that would go over budget the method stops and returns that instruction's index,
+// so the interpreter can take over and fail on exactly the same instruction. state[1] receives the cycles
+// consumed. A return value equal to the program length means the program finished.
+final class ProgramJit {
+    private ProgramJit() {}
+
+    private static final MethodType RUN_TYPE = MethodType.methodType(int.class, long[].class, long[].class);
+    private static final int MAX_CODE = 65535;
+    private static final int MAX_LOCALS = 65000;
+    private static final int MAX_IDIOM_INCREMENTS = 1000;   // keeps the idiom's skip branch within a short offset
+
+    private static final Map<CompiledProgram, MethodHandle> CACHE = new java.util.WeakHashMap<>();
+    private static final Map<CompiledProgram, Boolean> REJECTED = new java.util.WeakHashMap<>();
+
+    //This func returns the generated code for a program, or null if it must stay interpreted
+    static synchronized MethodHandle forProgram(CompiledProgram code) {
+        MethodHandle mh = CACHE.get(code);
+        if (mh != null || REJECTED.containsKey(code)) return mh;
+        try {
+            byte[] bytes = new Emitter(code).emitClass();
+            if (bytes == null) {
+                REJECTED.put(code, Boolean.TRUE);
+                return null;
+            }
+            MethodHandles.Lookup lookup = MethodHandles.lookup().defineHiddenClass(bytes, true);
+            mh = lookup.findStatic(lookup.lookupClass(), "run", RUN_TYPE);
+            CACHE.put(code, mh);
+            return mh;
+        } catch (ReflectiveOperationException | LinkageError e) {
+            System.err.println("JIT failed for program " + code.getName() + ": " + e);
+            REJECTED.put(code, Boolean.TRUE);
+            return null;
+        }
+    }
+
+    //This func checks if every instruction has a native translation
+    static boolean supports(CompiledProgram code) {
+        int[] op = code.opcodes();
+        int[] target = code.targets();
+        for (int pc = 0; pc < op.length; pc++) {
+            if (op[pc] >= OP_INVOKE || target[pc] == UNRESOLVED) return false;
+        }
+        return 2 + 2 * code.slotCount() + 7 < MAX_LOCALS;
+    }
+
+    private static final class Emitter {
+        // ---- opcodes ---- //
+        private static final int ICONST_0 = 0x03, LCONST_0 = 0x09, LCONST_1 = 0x0a, BIPUSH = 0x10, SIPUSH = 0x11;
+        private static final int LDC_W = 0x13, LDC2_W = 0x14, ILOAD = 0x15, LLOAD = 0x16, LALOAD = 0x2f;
+        private static final int ALOAD_0 = 0x2a, ALOAD_1 = 0x2b, ISTORE = 0x36, LSTORE = 0x37, LASTORE = 0x50;
+        private static final int LADD = 0x61, LSUB = 0x65, LMUL = 0x69, LDIV = 0x6d, LCMP = 0x94;
+        private static final int IFEQ = 0x99, IFNE = 0x9a, IFLT = 0x9b, IFGE = 0x9c, IFGT = 0x9d, IFLE = 0x9e;
+        private static final int IRETURN = 0xac, WIDE = 0xc4, GOTO_W = 0xc8;
+
+        private final CompiledProgram code;
+        private final int len;
+        private final int slots;
+        private final int cycLocal, fuelLocal, tmpLocal, pcLocal, maxLocals;
+
+        private final ByteBuf pool = new ByteBuf();
+        private int poolCount = 1;
+        private final Map<Object, Integer> poolIndex = new HashMap<>();
+
+        private final ByteBuf out = new ByteBuf();
+        private final int[] labelPos;
+        private final IntList fixAt = new IntList();
+        private final IntList fixTarget = new IntList();
+        private final int epilogue;
+
+        Emitter(CompiledProgram code) {
+            this.code = code;
+            this.len = code.length();
+            this.slots = code.slotCount();
+            this.cycLocal = 2 + 2 * slots;
+            this.fuelLocal = cycLocal + 2;
+            this.tmpLocal = fuelLocal + 2;
+            this.pcLocal = tmpLocal + 2;
+            this.maxLocals = pcLocal + 1;
+            this.labelPos = new int[len + 2];
+            this.epilogue = len + 1;
+        }
+
+        byte[] emitClass() {
+            if (!supports(code)) return null;
+            emitBody();
+            if (out.size() > MAX_CODE) return null;
+            for (int i = 0; i < fixAt.size(); i++) {
+                int at = fixAt.get(i);
+                out.putInt(at + 1, labelPos[fixTarget.get(i)] - at);
+            }
+
+            int thisName = utf8("emulator/logic/execution/JitProgram");
+            int thisClass = classRef(thisName);
+            int superClass = classRef(utf8("java/lang/Object"));
+            int runName = utf8("run");
+            int runDesc = utf8("([J[J)I");
+            int codeAttr = utf8("Code");
+
+            ByteBuf cls = new ByteBuf();
+            cls.u4(0xCAFEBABE);
+            cls.u2(0);
+            cls.u2(49);                 // pre-StackMapTable format, verified by type inference
+            cls.u2(poolCount);
+            cls.bytes(pool);
+            cls.u2(0x0031);             // public final super
+            cls.u2(thisClass);
+            cls.u2(superClass);
+            cls.u2(0);                  // interfaces
+            cls.u2(0);                  // fields
+            cls.u2(1);                  // methods
+            cls.u2(0x0009);             // public static
+            cls.u2(runName);
+            cls.u2(runDesc);
+            cls.u2(1);
+            cls.u2(codeAttr);
+            cls.u4(2 + 2 + 4 + out.size() + 2 + 2);
+            cls.u2(8);                  // max stack
+            cls.u2(maxLocals);
+            cls.u4(out.size());
+            cls.bytes(out);
+            cls.u2(0);                  // exception table
+            cls.u2(0);                  // code attributes
+            cls.u2(0);                  // class attributes
+            return cls.toArray();
+        }
+
+        private void emitBody() {
+            int[] op = code.opcodes();
+            int[] a = code.operandA();
+            int[] b = code.operandB();
+            long[] k = code.constants();
+            int[] target = code.targets();
+            int[] cycles = code.cycles();
+            int[][] loops = code.loopIncrements();
+
+            for (int s = 0; s < slots; s++) {
+                out.u1(ALOAD_0);
+                pushInt(s);
+                out.u1(LALOAD);
+                local(LSTORE, var(s));
+            }
+            out.u1(ALOAD_1);
+            out.u1(ICONST_0);
+            out.u1(LALOAD);
+            local(LSTORE, fuelLocal);
+            out.u1(LCONST_0);
+            local(LSTORE, cycLocal);
+
+            for (int pc = 0; pc < len; pc++) {
+                labelPos[pc] = out.size();
+                if (loops[pc] != null && loops[pc].length <= MAX_IDIOM_INCREMENTS) emitLoopIdiom(pc, loops[pc]);
+
+                int cost = cycles[pc];
+                if (cost != 0) {
+                    // stop before an instruction the budget cannot pay for
+                    local(LLOAD, cycLocal);
+                    pushLong(cost);
+                    out.u1(LADD);
+                    local(LLOAD, fuelLocal);
+                    out.u1(LCMP);
+                    int skip = shortBranch(IFLE);
+                    pushInt(pc);
+                    local(ISTORE, pcLocal);
+                    jump(epilogue);
+                    patchShort(skip);
+
+                    local(LLOAD, cycLocal);
+                    pushLong(cost);
+                    out.u1(LADD);
+                    local(LSTORE, cycLocal);
+                }
+
+                switch (op[pc]) {
+                    case OP_NEUTRAL -> { }
+                    case OP_INCREASE -> {
+                        local(LLOAD, var(a[pc]));
+                        out.u1(LCONST_1);
+                        out.u1(LADD);
+                        local(LSTORE, var(a[pc]));
+                    }
+                    case OP_DECREASE -> {
+                        local(LLOAD, var(a[pc]));
+                        out.u1(LCONST_1);
+                        out.u1(LSUB);
+                        local(LSTORE, var(a[pc]));
+                        local(LLOAD, var(a[pc]));
+                        out.u1(LCONST_0);
+                        out.u1(LCMP);
+                        int nonNegative = shortBranch(IFGE);
+                        out.u1(LCONST_0);
+                        local(LSTORE, var(a[pc]));
+                        patchShort(nonNegative);
+                    }
+                    case OP_INCREASE_BY -> {
+                        local(LLOAD, var(a[pc]));
+                        pushLong(k[pc]);
+                        out.u1(LADD);
+                        local(LSTORE, var(a[pc]));
+                    }
+                    case OP_DECREASE_BY -> {
+                        local(LLOAD, var(a[pc]));
+                        pushLong(k[pc]);
+                        out.u1(LSUB);
+                        local(LSTORE, var(a[pc]));
+                        local(LLOAD, var(a[pc]));
+                        out.u1(LCONST_0);
+                        out.u1(LCMP);
+                        int nonNegative = shortBranch(IFGE);
+                        out.u1(LCONST_0);
+                        local(LSTORE, var(a[pc]));
+                        patchShort(nonNegative);
+                    }
+                    case OP_JUMP_NOT_ZERO -> {
+                        local(LLOAD, var(a[pc]));
+                        out.u1(LCONST_0);
+                        out.u1(LCMP);
+                        jumpIf(IFNE, target[pc]);
+                    }
+                    case OP_ZERO_VARIABLE -> {
+                        out.u1(LCONST_0);
+                        local(LSTORE, var(a[pc]));
+                    }
+                    case OP_GOTO_LABEL -> jump(target[pc]);
+                    case OP_ASSIGNMENT -> {
+                        local(LLOAD, var(b[pc]));
+                        local(LSTORE, var(a[pc]));
+                    }
+                    case OP_CONSTANT_ASSIGNMENT -> {
+                        pushLong(k[pc]);
+                        local(LSTORE, var(a[pc]));
+                    }
+                    case OP_JUMP_ZERO -> {
+                        local(LLOAD, var(a[pc]));
+                        out.u1(LCONST_0);
+                        out.u1(LCMP);
+                        jumpIf(IFEQ, target[pc]);
+                    }
+                    case OP_JUMP_EQUAL_CONSTANT -> {
+                        local(LLOAD, var(a[pc]));
+                        pushLong(k[pc]);
+                        out.u1(LCMP);
+                        jumpIf(IFEQ, target[pc]);
+                    }
+                    case OP_JUMP_EQUAL_VARIABLE -> {
+                        local(LLOAD, var(a[pc]));
+                        local(LLOAD, var(b[pc]));
+                        out.u1(LCMP);
+                        jumpIf(IFEQ, target[pc]);
+                    }
+                    default -> throw new IllegalStateException("Unsupported opcode " + op[pc]);
+                }
+            }
+
+            labelPos[len] = out.size();
+            pushInt(len);
+            local(ISTORE, pcLocal);
+
+            labelPos[epilogue] = out.size();
+            for (int s = 0; s < slots; s++) {
+                out.u1(ALOAD_0);
+                pushInt(s);
+                local(LLOAD, var(s));
+                out.u1(LASTORE);
+            }
+            out.u1(ALOAD_1);
+            pushInt(1);
+            local(LLOAD, cycLocal);
+            out.u1(LASTORE);
+            local(ILOAD, pcLocal);
+            out.u1(IRETURN);
+        }
+
+        // Same macro-op as the interpreter: taken only if the budget covers the whole loop
+        private void emitLoopIdiom(int head, int[] incs) {
+            int counter = code.operandA()[head];
+            long perIteration = 0;
+            for (int pc = head; pc <= head + incs.length + 1; pc++) perIteration += code.cycles()[pc];
+
+            local(LLOAD, var(counter));
+            local(LSTORE, tmpLocal);
+            local(LLOAD, tmpLocal);
+            out.u1(LCONST_1);
+            out.u1(LCMP);
+            int atLeastOne = shortBranch(IFGE);
+            out.u1(LCONST_1);
+            local(LSTORE, tmpLocal);
+            patchShort(atLeastOne);
+
+            local(LLOAD, fuelLocal);
+            local(LLOAD, cycLocal);
+            out.u1(LSUB);
+            pushLong(perIteration);
+            out.u1(LDIV);
+            local(LLOAD, tmpLocal);
+            out.u1(LCMP);
+            int step = shortBranch(IFLT);
+
+            for (int slot : incs) {
+                local(LLOAD, var(slot));
+                local(LLOAD, tmpLocal);
+                out.u1(LADD);
+                local(LSTORE, var(slot));
+            }
+            out.u1(LCONST_0);
+            local(LSTORE, var(counter));
+            local(LLOAD, cycLocal);
+            local(LLOAD, tmpLocal);
+            pushLong(perIteration);
+            out.u1(LMUL);
+            out.u1(LADD);
+            local(LSTORE, cycLocal);
+            jump(head + incs.length + 2);
+            patchShort(step);
+        }
+
+        // ---- emit helpers ---- //
+        private int var(int slot) { return 2 + 2 * slot; }
+
+        private void local(int opcode, int index) {
+            if (index <= 0xff) {
+                out.u1(opcode);
+                out.u1(index);
+            } else {
+                out.u1(WIDE);
+                out.u1(opcode);
+                out.u2(index);
+            }
+        }
+
+        private void pushInt(int v) {
+            if (v >= -1 && v <= 5) out.u1(ICONST_0 + v);
+            else if (v >= Byte.MIN_VALUE && v <= Byte.MAX_VALUE) { out.u1(BIPUSH); out.u1(v); }
+            else if (v >= Short.MIN_VALUE && v <= Short.MAX_VALUE) { out.u1(SIPUSH); out.u2(v); }
+            else { out.u1(LDC_W); out.u2(intConst(v)); }
+        }
+
+        private void pushLong(long v) {
+            if (v == 0L) out.u1(LCONST_0);
+            else if (v == 1L) out.u1(LCONST_1);
+            else { out.u1(LDC2_W); out.u2(longConst(v)); }
+        }
+
+        private void jump(int label) {
+            fixAt.add(out.size());
+            fixTarget.add(label);
+            out.u1(GOTO_W);
+            out.u4(0);
+        }
+
+        // Conditional jumps are emitted inverted around a goto_w, so targets are never out of range
+        private void jumpIf(int opcode, int label) {
+            int inverted = ((opcode - IFEQ) ^ 1) + IFEQ;
+            out.u1(inverted);
+            out.u2(3 + 5);
+            jump(label);
+        }
+
+        private int shortBranch(int opcode) {
+            int at = out.size();
+            out.u1(opcode);
+            out.u2(0);
+            return at;
+        }
+
+        private void patchShort(int at) {
+            out.putShort(at + 1, out.size() - at);
+        }
+
+        // ---- constant pool ---- //
+        private int utf8(String s) {
+            return poolIndex.computeIfAbsent("U" + s, key -> {
+                byte[] b = s.getBytes(java.nio.charset.StandardCharsets.UTF_8);
+                pool.u1(1);
+                pool.u2(b.length);
+                for (byte x : b) pool.u1(x);
+                return poolCount++;
+            });
+        }
+
+        private int classRef(int nameIndex) {
+            pool.u1(7);
+            pool.u2(nameIndex);
+            return poolCount++;
+        }
+
+        private int intConst(int v) {
+            return poolIndex.computeIfAbsent(v, key -> {
+                pool.u1(3);
+                pool.u4(v);
+                return poolCount++;
+            });
+        }
+
+        private int longConst(long v) {
+            return poolIndex.computeIfAbsent(v, key -> {
+                pool.u1(5);
+                pool.u4((int) (v >>> 32));
+                pool.u4((int) v);
+                int idx = poolCount;
+                poolCount += 2;
+                return idx;
+            });
+        }
+    }
+
+    private static final class ByteBuf {
+        private byte[] buf = new byte[256];
+        private int size;
+
+        int size() { return size; }
+
+        void u1(int v) {
+            if (size == buf.length) buf = java.util.Arrays.copyOf(buf, size * 2);
+            buf[size++] = (byte) v;
+        }
+        void u2(int v) { u1(v >>> 8); u1(v); }
+        void u4(int v) { u2(v >>> 16); u2(v); }
+        void bytes(ByteBuf other) { for (int i = 0; i < other.size; i++) u1(other.buf[i]); }
+
+        void putShort(int at, int v) {
+            buf[at] = (byte) (v >>> 8);
+            buf[at + 1] = (byte) v;
+        }
+        void putInt(int at, int v) {
+            putShort(at, v >>> 16);
+            putShort(at + 2, v);
+        }
+
+        byte[] toArray() { return java.util.Arrays.copyOf(buf, size); }
+    }
+
+    private static final class IntList {
+        private int[] data = new int[16];
+        private int size;
+
+        void add(int v) {
+            if (size == data.length) data = java.util.Arrays.copyOf(data, size * 2);
+            data[size++] = v;
+        }
+        int get(int i) { return data[i]; }
+        int size() { return size; }
+    }
+}
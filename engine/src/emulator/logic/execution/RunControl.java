@@ -0,0 +1,50 @@
+package emulator.logic.execution;
+
+// Progress and cancellation of one run, shared between the thread running it and whoever watches it.
+// Executors running on a thread the control is bound to publish where the outermost program is every
+// POLL_INTERVAL instructions, and stop there once cancel() was called.
+public final class RunControl {
+    static final int POLL_INTERVAL = 4096;
+    // Cycles generated code may run in one go under a control: it cannot be stopped midway, the interpreter can
+    static final long JIT_SLICE = 1L << 20;
+
+    private static final ThreadLocal<RunControl> bound = new ThreadLocal<>();
+
+    private volatile boolean cancelled = false;
+    private volatile int pc = 0;
+    private volatile long cycles = 0;
+    private int depth = 0;   // executors running under this control on its thread
+
+    //This func makes the control the one of every run on the calling thread (null clears it)
+    public static void bind(RunControl control) {
+        if (control == null) bound.remove();
+        else bound.set(control);
+    }
+
+    static RunControl current() {
+        return bound.get();
+    }
+
+    public void cancel() {
+        cancelled = true;
+    }
+
+    // ---- getters funcs ---- //
+    public boolean isCancelled() { return cancelled; }
+    public int pc() { return pc; }
+    public long cycles() { return cycles; }
+
+    //This func registers an executor starting under the control; returns true for the outermost one
+    boolean enter() {
+        return depth++ == 0;
+    }
+
+    void exit() {
+        depth--;
+    }
+
+    void report(int pc, long cycles) {
+        this.pc = pc;
+        this.cycles = cycles;
+    }
+}
@@ -0,0 +1,6 @@
+package emulator.logic.execution;
+
+@FunctionalInterface
+public interface StepProbe {
+    void onStep(StepView step);
+}
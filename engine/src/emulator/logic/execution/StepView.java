@@ -0,0 +1,14 @@
+package emulator.logic.execution;
+
+import emulator.logic.variable.Variable;
+
+// Read-only view of the executor state before an instruction runs.
+// The same instance is reused for every step, so it must not be kept after onStep returns.
+public interface StepView {
+    int pc();
+    int cycles();
+    int slotCount();
+    Variable variableAt(int slot);
+    long valueAt(int slot);
+    boolean isAssigned(int slot);
+}
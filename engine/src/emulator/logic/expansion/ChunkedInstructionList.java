@@ -0,0 +1,126 @@
+package emulator.logic.expansion;
+
+import emulator.logic.instruction.Instruction;
+
+import java.util.*;
+
+// An immutable instruction list made of chunks, for the degrees of an expansion ladder. A chunk is either a run
+// of the previous degree's instructions that did not expand (a window over that degree's own storage, never
+// copied) or the instructions one instruction expanded into. Each chunk records where it came from in the
+// previous degree, so a ladder costs the expansion delta per degree and keeps parent indexes for free.
+public final class ChunkedInstructionList extends AbstractList<Instruction> implements RandomAccess {
+
+    // items[from, to): the chunk's instructions
+    // parent: index in the previous degree of the first instruction (shared run) or of the expanded instruction
+    private record Chunk(List<Instruction> items, int from, int to, int parent, boolean expanded) {
+        int size() { return to - from; }
+    }
+
+    private final Chunk[] chunks;
+    // starts[c]: index of chunk c's first instruction; starts[chunks.length] == size
+    private final int[] starts;
+
+    private ChunkedInstructionList(List<Chunk> chunks) {
+        this.chunks = chunks.toArray(new Chunk[0]);
+        this.starts = new int[this.chunks.length + 1];
+        long total = 0;
+        for (int c = 0; c < this.chunks.length; c++) {
+            starts[c] = (int) total;
+            total += this.chunks[c].size();
+            if (total > Integer.MAX_VALUE) {
+                throw new IllegalStateException("Expanded program is too large: " + total + " instructions");
+            }
+        }
+        starts[this.chunks.length] = (int) total;
+    }
+
+    //This func wraps a program's instructions (degree 0) without copying them
+    public static ChunkedInstructionList of(List<Instruction> instructions) {
+        Objects.requireNonNull(instructions, "instructions");
+        List<Chunk> one = instructions.isEmpty()
+                ? List.of()
+                : List.of(new Chunk(instructions, 0, instructions.size(), -1, false));
+        return new ChunkedInstructionList(one);
+    }
+
+    //This func builds the next degree: produced.get(i) is what instruction i expanded into (null where it stayed)
+    ChunkedInstructionList expanded(List<List<Instruction>> produced) {
+        List<Chunk> out = new ArrayList<>();
+        for (int c = 0; c < chunks.length; c++) {
+            Chunk ch = chunks[c];
+            int base = starts[c] - ch.from();
+            int run = ch.from();
+            for (int k = ch.from(); k < ch.to(); k++) {
+                List<Instruction> p = produced.get(base + k);
+                if (p == null) continue;
+                if (run < k) out.add(new Chunk(ch.items(), run, k, base + run, false));
+                if (!p.isEmpty()) out.add(new Chunk(p, 0, p.size(), base + k, true));
+                run = k + 1;
+            }
+            if (run < ch.to()) out.add(new Chunk(ch.items(), run, ch.to(), base + run, false));
+        }
+        return new ChunkedInstructionList(out);
+    }
+
+    @Override
+    public int size() { return starts[chunks.length]; }
+
+    @Override
+    public Instruction get(int index) {
+        Objects.checkIndex(index, size());
+        int c = chunkOf(index);
+        Chunk ch = chunks[c];
+        return ch.items().get(ch.from() + index - starts[c]);
+    }
+
+    //This func returns the index in the previous degree this instruction came from: its own index there if it
+    // did not expand, else the index of the instruction it expanded from (-1 at degree 0)
+    public int parentIndex(int index) {
+        Objects.checkIndex(index, size());
+        int c = chunkOf(index);
+        Chunk ch = chunks[c];
+        if (ch.parent() < 0) return -1;
+        return ch.expanded() ? ch.parent() : ch.parent() + (index - starts[c]);
+    }
+
+    //This func checks if the instruction was produced by expanding its parent (rather than carried over)
+    public boolean isExpanded(int index) {
+        Objects.checkIndex(index, size());
+        return chunks[chunkOf(index)].expanded();
+    }
+
+    //This func returns how many chunks the list is made of
+    public int chunkCount() { return chunks.length; }
+
+    @Override
+    public Iterator<Instruction> iterator() {
+        return new Iterator<>() {
+            private int c = 0, k = (chunks.length > 0) ? chunks[0].from() : 0;
+
+            @Override
+            public boolean hasNext() {
+                while (c < chunks.length && k >= chunks[c].to()) {
+                    c++;
+                    if (c < chunks.length) k = chunks[c].from();
+                }
+                return c < chunks.length;
+            }
+
+            @Override
+            public Instruction next() {
+                if (!hasNext()) throw new NoSuchElementException();
+                return chunks[c].items().get(k++);
+            }
+        };
+    }
+
+    private int chunkOf(int index) {
+        int lo = 0, hi = chunks.length - 1;
+        while (lo < hi) {
+            int mid = (lo + hi + 1) >>> 1;
+            if (starts[mid] <= index) lo = mid;
+            else hi = mid - 1;
+        }
+        return lo;
+    }
+}
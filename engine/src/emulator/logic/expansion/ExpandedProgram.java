@@ -0,0 +1,96 @@
+package emulator.logic.expansion;
+
+import emulator.logic.instruction.Instruction;
+import emulator.logic.label.FixedLabel;
+import emulator.logic.label.Label;
+import emulator.logic.program.Program;
+import emulator.logic.program.SymbolTable;
+import emulator.logic.variable.Variable;
+
+import java.util.*;
+
+// A read-only Program over an already expanded instruction list: variables and labels are collected by one
+// pass over the instructions the first time they are needed, so the list itself is never copied
+public class ExpandedProgram implements Program {
+    private final Program original;
+    private final int degree;
+    private final List<Instruction> instructions;
+    private Set<Variable> variables;
+    private Map<String, Integer> labelToIndex;
+
+    public ExpandedProgram(Program original, int degree, List<Instruction> instructions) {
+        this.original = Objects.requireNonNull(original, "original");
+        this.degree = degree;
+        this.instructions = Objects.requireNonNull(instructions, "instructions");
+    }
+
+    // ---- getters funcs ---- //
+    public Program getOriginal() { return original; }
+    public int getDegree() { return degree; }
+
+    @Override
+    public String getName() { return original.getName(); }
+
+    //This func returns the original's symbol table (expansions intern their fresh names there)
+    @Override
+    public SymbolTable getSymbols() { return original.getSymbols(); }
+
+    @Override
+    public void addInstruction(Instruction instruction) {
+        throw new UnsupportedOperationException("An expanded program is read-only");
+    }
+
+    @Override
+    public List<Instruction> getInstructions() { return instructions; }
+
+    //This func returns all variables in the expanded program, in the order ProgramImpl would list them
+    @Override
+    public synchronized Set<Variable> getVariables() {
+        if (variables == null) {
+            Set<Variable> out = new LinkedHashSet<>();
+            for (Instruction ins : instructions) {
+                for (Variable v : ins.referencedVariables()) {
+                    if (v != null) out.add(v);
+                }
+            }
+            variables = Collections.unmodifiableSet(out);
+        }
+        return variables;
+    }
+
+    //This func returns the instruction at a label
+    @Override
+    public Instruction instructionAt(Label label) {
+        String key = label.getLabelRepresentation();
+        Integer idx = labelIndex().get(key);
+        if (idx == null) {
+            throw new IllegalArgumentException("Unknown label: " + key);
+        }
+        return instructions.get(idx);
+    }
+
+    @Override
+    public int calculateMaxDegree() {
+        return Math.max(0, original.calculateMaxDegree() - degree);
+    }
+
+    // Expansion only renames work variables, so the inputs are the original program's
+    @Override
+    public List<String> getInputVariableNames() {
+        return original.getInputVariableNames();
+    }
+
+    private synchronized Map<String, Integer> labelIndex() {
+        if (labelToIndex == null) {
+            Map<String, Integer> out = new HashMap<>();
+            int idx = 0;
+            for (Instruction ins : instructions) {
+                Label lbl = ins.getLabel();
+                if (lbl != null && lbl != FixedLabel.EMPTY) out.putIfAbsent(lbl.getLabelRepresentation(), idx);
+                idx++;
+            }
+            labelToIndex = out;
+        }
+        return labelToIndex;
+    }
+}
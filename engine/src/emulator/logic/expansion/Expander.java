@@ -6,51 +6,166 @@ import emulator.logic.label.LabelImpl;
 import emulator.logic.variable.VariableImpl;
 import emulator.logic.variable.VariableType;
 
-import java.util.ArrayList;
-import java.util.Collections;
-import java.util.List;
-import java.util.Objects;
+import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 public final class Expander {
+    // Layers with at least this many instructions are expanded in parallel on the common pool (0 turns it off)
+    public static final String PARALLEL_THRESHOLD_PROPERTY = "emulator.expansion.parallelThreshold";
+    private static final int PARALLEL_THRESHOLD = Integer.getInteger(PARALLEL_THRESHOLD_PROPERTY, 4096);
+    // Instructions one fork/join task expands
+    private static final int TASK_SIZE = 256;
+
+    private final int parallelThreshold;
+    private final ForkJoinPool pool;   // null: the common pool, if it has more than one thread
+
+    public Expander() {
+        this(PARALLEL_THRESHOLD, null);
+    }
+
+    //This func builds an expander that expands layers of at least parallelThreshold instructions on pool
+    Expander(int parallelThreshold, ForkJoinPool pool) {
+        this.parallelThreshold = parallelThreshold;
+        this.pool = pool;
+    }
 
     //This func expands one layer of expandable instructions
     public List<Instruction> expandOnce(List<Instruction> input, ExpansionHelper helper) {
         Objects.requireNonNull(input, "input");
         Objects.requireNonNull(helper, "helper");
+        return assemble(input, expandEach(input, helper));
+    }
+
+    //This func expands one layer of a chunked list; runs of instructions that stay as they are are shared
+    // with the input instead of copied
+    public ChunkedInstructionList expandOnce(ChunkedInstructionList input, ExpansionHelper helper) {
+        Objects.requireNonNull(input, "input");
+        Objects.requireNonNull(helper, "helper");
+        List<List<Instruction>> produced = expandEach(input, helper);
+        return (produced == null) ? input : input.expanded(produced);
+    }
+
+    //This func expands one layer on a ForkJoinPool, giving the same result as the sequential expandOnce.
+    // Returns null, with the helper untouched, if an instruction took a different number of names than its
+    // shape said.
+    public List<Instruction> expandOnceParallel(List<Instruction> input, ExpansionHelper helper, ForkJoinPool pool) {
+        Objects.requireNonNull(input, "input");
+        Objects.requireNonNull(helper, "helper");
+        Objects.requireNonNull(pool, "pool");
+        List<List<Instruction>> produced = expandEachParallel(input, helper, pool);
+        return (produced == null) ? null : assemble(input, produced);
+    }
+
+    //This func returns what each instruction expands into (null where it stays as it is), or null if nothing
+    // expanded; large layers are expanded in parallel
+    private List<List<Instruction>> expandEach(List<Instruction> input, ExpansionHelper helper) {
+        List<List<Instruction>> produced = null;
+        if (parallelThreshold > 0 && input.size() >= parallelThreshold) {
+            ForkJoinPool on = (pool != null) ? pool
+                    : (ForkJoinPool.getCommonPoolParallelism() > 1) ? ForkJoinPool.commonPool() : null;
+            if (on != null) produced = expandEachParallel(input, helper, on);
+        }
+        if (produced == null) {
+            produced = new ArrayList<>(input.size());
+            for (Instruction ins : input) {
+                produced.add((ins instanceof Expandable e) ? children(ins, e.expand(helper)) : null);
+            }
+        }
+        for (List<Instruction> p : produced) {
+            if (p != null) return produced;
+        }
+        return null;
+    }
+
+    // Every instruction of a shape takes the same number of fresh names, so each instruction's names are
+    // reserved up front (one dry run per shape) and it expands on its own helper positioned at its range
+    private List<List<Instruction>> expandEachParallel(List<Instruction> input, ExpansionHelper helper,
+                                                       ForkJoinPool pool) {
+        int n = input.size();
+        long[] varsAt = new long[n + 1];
+        long[] labelsAt = new long[n + 1];
+        Map<InstructionShape, long[]> demand = new HashMap<>();
+        for (int i = 0; i < n; i++) {
+            long[] d = demand(input.get(i), helper, demand);
+            varsAt[i + 1] = varsAt[i] + d[0];
+            labelsAt[i + 1] = labelsAt[i] + d[1];
+        }
+
+        // Tasks set disjoint ranges of produced (never resize it); invoke() returning makes their writes visible here
+        List<List<Instruction>> produced = new ArrayList<>(Collections.nCopies(n, null));
+        AtomicBoolean mismatch = new AtomicBoolean();
+        List<ForkJoinTask<?>> tasks = new ArrayList<>();
+        for (int from = 0; from < n; from += TASK_SIZE) {
+            int start = from, end = Math.min(n, from + TASK_SIZE);
+            tasks.add(ForkJoinTask.adapt(
+                    () -> expandRange(input, helper, varsAt, labelsAt, produced, mismatch, start, end)));
+        }
+        pool.invoke(ForkJoinTask.adapt(() -> ForkJoinTask.invokeAll(tasks)));
+        if (mismatch.get()) return null;
+        helper.advance(varsAt[n], labelsAt[n]);
+        return produced;
+    }
 
+    //This func concatenates a layer's instructions, each replaced by what it expanded into
+    private static List<Instruction> assemble(List<Instruction> input, List<List<Instruction>> produced) {
+        if (produced == null && !input.contains(null)) return input;
         List<Instruction> out = new ArrayList<>(Math.max(16, input.size() * 2));
-        boolean changed = false;
+        int i = 0;
         for (Instruction ins : input) {
-            if (ins == null) continue;
-            if (ins instanceof Expandable e) {
-                List<Instruction> produced = e.expand(helper);
-                if (produced == null || produced.isEmpty()) {
-                    out.add(ins);
-                } else {
-                    boolean sameAsOriginal = produced.size() == 1 && produced.get(0) == ins;
-                    if (sameAsOriginal) {
-                        out.add(ins);
-                        continue;
-                    }
-                    changed = true;
-                    for (Instruction child : produced) {   // Add each produced child
-                        if (child == null) continue;
-                        if (child instanceof AbstractInstruction ai) {
-                            ai.setCreatedFrom(ins);
-                        }
-                        out.add(child);
-                    }
-                }
-            } else {   // Non-expandable instruction, keep as is
+            List<Instruction> p = (produced == null) ? null : produced.get(i);
+            i++;
+            if (p != null) {
+                out.addAll(p);
+            } else if (ins != null) {   // Non-expandable (or unchanged) instruction, keep as is
                 out.add(ins);
             }
         }
-        if (!changed && out.size() == input.size()) {
-            return input;
-        }
         return Collections.unmodifiableList(out);
     }
 
+    //This func returns the children an instruction expanded into, marked as created from it
+    // (null when the expansion leaves the instruction as it is)
+    private static List<Instruction> children(Instruction ins, List<Instruction> produced) {
+        if (produced == null || produced.isEmpty() || (produced.size() == 1 && produced.get(0) == ins)) return null;
+        List<Instruction> children = new ArrayList<>(produced.size());
+        for (Instruction child : produced) {
+            if (child == null) continue;
+            if (child instanceof AbstractInstruction ai) {
+                ai.setCreatedFrom(ins);
+            }
+            children.add(child);
+        }
+        return children;
+    }
+
+    //This func returns how many fresh variables and labels an instruction's expansion takes
+    private static long[] demand(Instruction ins, ExpansionHelper helper, Map<InstructionShape, long[]> memo) {
+        if (!(ins instanceof Expandable e)) return new long[2];
+        return memo.computeIfAbsent(InstructionShape.of(ins), s -> {
+            ExpansionHelper dry = helper.offsetBy(0, 0);
+            e.expand(dry);
+            return new long[]{dry.varsIssued(), dry.labelsIssued()};
+        });
+    }
+
+    //This func expands input[from, to) into produced (null where an instruction stays as it is), each
+    // instruction on its own helper positioned at its reserved names
+    private static void expandRange(List<Instruction> input, ExpansionHelper helper, long[] varsAt, long[] labelsAt,
+                                    List<List<Instruction>> produced, AtomicBoolean mismatch, int from, int to) {
+        for (int i = from; i < to; i++) {
+            if (!(input.get(i) instanceof Expandable e)) continue;
+            Instruction ins = input.get(i);
+            ExpansionHelper own = helper.offsetBy(varsAt[i], labelsAt[i]);
+            List<Instruction> p = e.expand(own);
+            if (own.varsIssued() != varsAt[i + 1] - varsAt[i] || own.labelsIssued() != labelsAt[i + 1] - labelsAt[i]) {
+                mismatch.set(true);
+            }
+            produced.set(i, children(ins, p));
+        }
+    }
+
     //This func builds an ExpansionHelper
     private ExpansionHelper buildHelper(List<Instruction> input) {
         return ExpansionHelper.fromInstructions(
@@ -114,17 +229,12 @@ public final class Expander {
         return Collections.unmodifiableList(curr);
     }
 
-    //This func returns the max degree the program can reach
+    //This func returns the max degree the program can reach (from the instructions' own degrees, without expanding)
     public int calculateMaxDegree(List<Instruction> original) {
         Objects.requireNonNull(original, "original");
         int degree = 0;
-        List<Instruction> curr = new ArrayList<>(original);
-        ExpansionHelper helper = buildHelper(original);
-        while (!isFullyBasic(curr)) {
-            List<Instruction> next = expandOnce(curr, helper);
-            if (next == curr) break;
-            curr = new ArrayList<>(next);
-            degree++;
+        for (Instruction ins : original) {
+            if (ins != null) degree = Math.max(degree, ins.degree());
         }
         return degree;
     }
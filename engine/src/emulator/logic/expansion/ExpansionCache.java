@@ -0,0 +1,147 @@
+package emulator.logic.expansion;
+
+import emulator.logic.instruction.Instruction;
+import emulator.logic.program.Program;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+
+// Expanded programs per (program, degree). Each program keeps a ladder of degrees that grows one step at a
+// time with the same ExpansionHelper, so degree d is identical to ProgramExpander.expandToDegree(p, d).
+// Degrees are ChunkedInstructionLists, so degree d+1 shares every instruction that did not expand with degree d.
+// Degrees that would expand past the lazy threshold are handed out as a LazyProgram instead of being built.
+// A ladder holds its program, so ladders are kept until retainOnly drops the programs no longer loaded.
+public final class ExpansionCache {
+    public static final String LAZY_THRESHOLD_PROPERTY = "emulator.expansion.lazyThreshold";
+    private static final int LAZY_THRESHOLD = Integer.getInteger(LAZY_THRESHOLD_PROPERTY, 100_000);
+
+    private final Map<Program, Ladder> ladders = new IdentityHashMap<>();
+    private final Expander expander = new Expander();
+
+    //This func returns the program expanded to the given degree, expanding only the degrees not built yet
+    // (a LazyProgram when the expansion is larger than the lazy threshold)
+    public Program expandToDegree(Program original, int degree) {
+        Objects.requireNonNull(original, "original");
+        if (degree <= 0) return original;
+        return ladder(original).at(degree);
+    }
+
+    //This func returns degrees 0..degree of the program (index = degree), always fully built
+    public List<Program> degrees(Program original, int degree) {
+        Objects.requireNonNull(original, "original");
+        return ladder(original).prefix(Math.max(degree, 0));
+    }
+
+    //This func returns where every instruction of degrees 0..degree of the program came from
+    public ProvenanceIndex provenance(Program original, int degree) {
+        Objects.requireNonNull(original, "original");
+        return ladder(original).provenance(Math.max(degree, 0));
+    }
+
+    //This func drops the expansions of every program that is not one of the given ones (the programs loaded)
+    public void retainOnly(Collection<Program> programs) {
+        Set<Program> keep = Collections.newSetFromMap(new IdentityHashMap<>());
+        keep.addAll(programs);
+        synchronized (ladders) {
+            ladders.keySet().retainAll(keep);
+        }
+    }
+
+    private Ladder ladder(Program original) {
+        synchronized (ladders) {
+            Ladder l = ladders.get(original);
+            if (l == null || l.size != original.getInstructions().size()) {
+                l = new Ladder(original);
+                ladders.put(original, l);
+            }
+            return l;
+        }
+    }
+
+    private final class Ladder {
+        private final int size;
+        private final List<Program> byDegree = new ArrayList<>();
+        // [d]: the list degree d was expanded into from degree d-1, or null where degree d repeats degree d-1
+        private final List<ChunkedInstructionList> steps = new ArrayList<>();
+        private final ExpansionHelper helper;
+        private final Map<Integer, LazyProgram> lazy = new HashMap<>();
+        // [d]: how many instructions degree d takes, for every degree up to the highest one sized so far
+        private long[] sizes = new long[0];
+        private ChunkedInstructionList curr;
+        private boolean settled;
+        // byDegree as of the last grow, so degrees already built are read without the lock
+        private volatile Program[] built;
+
+        private Ladder(Program original) {
+            this.size = original.getInstructions().size();
+            this.curr = ChunkedInstructionList.of(original.getInstructions());
+            this.helper = ProgramExpander.newHelper(original);
+            byDegree.add(original);
+            steps.add(null);
+            built = new Program[]{original};
+        }
+
+        private Program at(int degree) {
+            Program[] b = built;
+            return (degree < b.length) ? b[degree] : build(degree);
+        }
+
+        private synchronized Program build(int degree) {
+            if (degree < byDegree.size()) return byDegree.get(degree);
+            LazyProgram big = lazy.get(degree);
+            if (big != null) return big;
+            if (sizeAt(degree) > LAZY_THRESHOLD) {
+                big = new LazyProgram(byDegree.get(0), degree);
+                lazy.put(degree, big);
+                return big;
+            }
+            grow(degree);
+            return byDegree.get(degree);
+        }
+
+        //This func returns how many instructions a degree takes; sizing a degree sizes every degree below it
+        private long sizeAt(int degree) {
+            if (degree >= sizes.length) sizes = LazyExpansion.sizes(byDegree.get(0).getInstructions(), degree);
+            return sizes[degree];
+        }
+
+        private synchronized List<Program> prefix(int degree) {
+            grow(degree);
+            return List.copyOf(byDegree.subList(0, degree + 1));
+        }
+
+        private synchronized ProvenanceIndex provenance(int degree) {
+            grow(degree);
+            return new ProvenanceIndex(byDegree.subList(0, degree + 1), steps.subList(0, degree + 1));
+        }
+
+        //This func expands until the ladder reaches the degree; once nothing changes the last program repeats
+        private void grow(int degree) {
+            Program original = byDegree.get(0);
+            while (byDegree.size() <= degree) {
+                if (!settled) {
+                    ChunkedInstructionList next = expander.isFullyBasic(curr) ? curr : expander.expandOnce(curr, helper);
+                    if (next == curr) {
+                        settled = true;
+                    } else {
+                        curr = next;
+                        byDegree.add(new ExpandedProgram(original, byDegree.size(), curr));
+                        steps.add(curr);
+                        continue;
+                    }
+                }
+                Program last = byDegree.get(byDegree.size() - 1);
+                byDegree.add(byDegree.size() == 1 ? new ExpandedProgram(original, 1, curr) : last);
+                steps.add(null);
+            }
+            if (built.length != byDegree.size()) built = byDegree.toArray(new Program[0]);
+        }
+    }
+}
@@ -25,6 +25,32 @@ public final class ExpansionHelper {
         this.labelFactory = labelFactory;
     }
 
+    private ExpansionHelper(NameAllocator zAlloc, NameAllocator lAlloc,
+                            Function<String, Variable> varFactory,
+                            Function<String, Label> labelFactory) {
+        this.zAlloc = zAlloc;
+        this.lAlloc = lAlloc;
+        this.varFactory = varFactory;
+        this.labelFactory = labelFactory;
+    }
+
+    //This func returns a helper positioned as if this one had already handed out the given number of names
+    public ExpansionHelper offsetBy(long vars, long labels) {
+        return new ExpansionHelper(zAlloc.offsetBy(vars), lAlloc.offsetBy(labels), varFactory, labelFactory);
+    }
+
+    //This func moves this helper past names that were handed out through offsetBy copies
+    public void advance(long vars, long labels) {
+        if (vars > Integer.MAX_VALUE || labels > Integer.MAX_VALUE) {
+            throw new IllegalStateException("Expansion needs too many names");
+        }
+        zAlloc.reserve((int) vars);
+        lAlloc.reserve((int) labels);
+    }
+
+    public int varsIssued()   { return zAlloc.issued(); }
+    public int labelsIssued() { return lAlloc.issued(); }
+
     public boolean isExpanding(String fn) {return expandingFunctions.contains(fn.toUpperCase(Locale.ROOT));}
     public void markExpanding(String fn) {expandingFunctions.add(fn.toUpperCase(Locale.ROOT));}
     public void unmarkExpanding(String fn) {expandingFunctions.remove(fn.toUpperCase(Locale.ROOT));}
@@ -36,6 +62,22 @@ public final class ExpansionHelper {
     public Variable freshVar()     { return varFactory.apply(freshVarName()); }
     public Label    freshLabel()   { return labelFactory.apply(freshLabelName()); }
 
+    //This func returns `n` fresh variables, the same ones `n` calls to freshVar() would return
+    public Variable[] freshVars(int n) {
+        Variable[] out = new Variable[n];
+        int first = zAlloc.reserve(n);
+        for (int i = 0; i < n; i++) out[i] = varFactory.apply(zAlloc.format(first + i));
+        return out;
+    }
+
+    //This func returns `n` fresh labels, the same ones `n` calls to freshLabel() would return
+    public Label[] freshLabels(int n) {
+        Label[] out = new Label[n];
+        int first = lAlloc.reserve(n);
+        for (int i = 0; i < n; i++) out[i] = labelFactory.apply(lAlloc.format(first + i));
+        return out;
+    }
+
     //This func creates an ExpansionHelper collecting all used variables and labels
     public static ExpansionHelper fromInstructions(
             List<Instruction> instructions,
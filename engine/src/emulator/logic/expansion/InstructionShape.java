@@ -0,0 +1,66 @@
+package emulator.logic.expansion;
+
+import emulator.logic.instruction.*;
+import emulator.logic.instruction.quote.QuotationInstruction;
+import emulator.logic.label.FixedLabel;
+import emulator.logic.label.Label;
+
+import java.util.Locale;
+import java.util.Objects;
+import java.util.TreeSet;
+import java.util.regex.Pattern;
+
+// Everything about an instruction that decides what it expands into (how many instructions, cycles and fresh
+// names), without its variable / label names. Instructions of the same shape expand the same way. A call's
+// shape includes the functions it was inlined from, since those decide which calls under it stay calls.
+public record InstructionShape(Class<?> type, boolean labelled, String detail) {
+
+    private static final Pattern VAR_TOKEN = Pattern.compile("(?i)(?<![A-Za-z0-9_])(?:[xz]\\d+|y)(?![A-Za-z0-9_])");
+
+    //This func returns the shape of an instruction
+    public static InstructionShape of(Instruction ins) {
+        boolean labelled = !isEmpty(ins.getLabel());
+        String detail;
+        if (ins instanceof AssignmentInstruction a) {
+            detail = String.valueOf(Objects.equals(a.getVariable(), a.getAssignedVariable()));
+        } else if (ins instanceof ConstantAssignmentInstruction c) {
+            detail = String.valueOf(c.getConstantValue());
+        } else if (ins instanceof JumpEqualConstantInstruction j) {
+            detail = j.getConstantValue() + "|" + jumpShape(ins, "gotoLabel");
+        } else if (ins instanceof JumpEqualVariableInstruction j) {
+            detail = Objects.equals(j.getVariable(), j.getCompareVariable()) + "|" + jumpShape(ins, "gotoLabel");
+        } else if (ins instanceof RepeatInstruction r) {
+            detail = r.getName() + "|" + r.getCount();
+        } else if (ins instanceof QuotationInstruction q) {
+            detail = q.functionName().toUpperCase(Locale.ROOT) + "|" + argsShape(q.functionArguments())
+                    + "|" + new TreeSet<>(q.getInlinedInto());
+        } else if (ins instanceof JumpEqualFunctionInstruction j) {
+            detail = j.getFunctionName().toUpperCase(Locale.ROOT) + "|" + argsShape(j.getFunctionArguments())
+                    + "|" + jumpShape(ins, "JEFunctionLabel")
+                    + "|" + new TreeSet<>(j.getInlinedInto());
+        } else {
+            detail = jumpShape(ins, "gotoLabel");
+        }
+        return new InstructionShape(ins.getClass(), labelled, detail);
+    }
+
+    // A jump only matters by kind: none, EXIT, back to the instruction itself, or somewhere else
+    private static String jumpShape(Instruction ins, String arg) {
+        String target = ins.getArguments().get(arg);
+        if (target == null || target.isBlank()) return "";
+        if (target.trim().equalsIgnoreCase("EXIT")) return "EXIT";
+        Label own = ins.getLabel();
+        if (own != null && target.trim().equals(own.getLabelRepresentation())) return "SELF";
+        return "L";
+    }
+
+    private static String argsShape(String argsCsv) {
+        return (argsCsv == null) ? "" : VAR_TOKEN.matcher(argsCsv).replaceAll("v");
+    }
+
+    private static boolean isEmpty(Label l) {
+        if (l == null || l == FixedLabel.EMPTY) return true;
+        String s = l.getLabelRepresentation();
+        return s == null || s.trim().isEmpty();
+    }
+}
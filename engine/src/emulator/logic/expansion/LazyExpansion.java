@@ -0,0 +1,311 @@
+package emulator.logic.expansion;
+
+import emulator.logic.instruction.AbstractInstruction;
+import emulator.logic.instruction.Instruction;
+
+import java.util.*;
+
+// A program expanded to a degree without ever holding the expanded list. How many instructions (and fresh
+// names) an instruction shape turns into is computed once per shape, so an index is reached by walking a single
+// branch of the expansion tree, and a Cursor walks the tree depth-first. Fresh names are handed out exactly as
+// ProgramExpander.expandToDegree hands them out (level by level, in program order), so both give the same program.
+public final class LazyExpansion extends AbstractList<Instruction> implements RandomAccess {
+    private final List<Instruction> original;
+    private final int degree;
+    private final ExpansionHelper base;
+    private final Map<InstructionShape, Node> nodes = new HashMap<>();
+
+    // [k][i]: instructions the top-level instructions before i take at degree k
+    private final long[][] startAt;
+    // [k][i]: fresh names the top-level instructions before i take while level k is expanded (k >= 1)
+    private final long[][] varsAt;
+    private final long[][] labelsAt;
+    private final int size;
+    private Cursor last;
+
+    public LazyExpansion(List<Instruction> original, int degree) {
+        this(original, degree, true);
+    }
+
+    private LazyExpansion(List<Instruction> original, int degree, boolean bounded) {
+        this.original = List.copyOf(Objects.requireNonNull(original, "original"));
+        this.degree = Math.max(degree, 0);
+        this.base = ProgramExpander.newHelper(this.original);
+
+        int n = this.original.size();
+        startAt = new long[this.degree + 1][n + 1];
+        varsAt = new long[this.degree + 1][n + 1];
+        labelsAt = new long[this.degree + 1][n + 1];
+        long varBase = 0, labelBase = 0;
+        for (int k = 0; k <= this.degree; k++) {
+            varsAt[k][0] = varBase;
+            labelsAt[k][0] = labelBase;
+            for (int i = 0; i < n; i++) {
+                Node node = node(this.original.get(i));
+                startAt[k][i + 1] = startAt[k][i] + node.size(k);
+                varsAt[k][i + 1] = varsAt[k][i] + node.names(k, true);
+                labelsAt[k][i + 1] = labelsAt[k][i] + node.names(k, false);
+            }
+            // Level k+1 hands out its names after everything level k took
+            varBase = varsAt[k][n];
+            labelBase = labelsAt[k][n];
+        }
+
+        long total = startAt[this.degree][n];
+        if (bounded && total > Integer.MAX_VALUE) {
+            throw new IllegalStateException("Expanded program is too large: " + total + " instructions");
+        }
+        this.size = (int) Math.min(total, Integer.MAX_VALUE);
+    }
+
+    //This func returns how many instructions the program takes at each degree 0..degree (index = degree),
+    // from the shape tables alone
+    public static long[] sizes(List<Instruction> original, int degree) {
+        LazyExpansion e = new LazyExpansion(original, degree, false);
+        int n = e.original.size();
+        long[] out = new long[e.degree + 1];
+        for (int k = 0; k <= e.degree; k++) out[k] = e.startAt[k][n];
+        return out;
+    }
+
+    // ---- getters funcs ---- //
+    public int degree() { return degree; }
+    public List<Instruction> original() { return original; }
+
+    @Override
+    public int size() { return size; }
+
+    //This func returns the instruction at an index; consecutive indexes reuse the same walk
+    @Override
+    public synchronized Instruction get(int index) {
+        Objects.checkIndex(index, size);
+        if (last == null || last.index != index) last = cursor(index);
+        return last.next();
+    }
+
+    @Override
+    public Iterator<Instruction> iterator() {
+        return cursor(0);
+    }
+
+    //This func returns a cursor whose first next() is the instruction at the index
+    public Cursor cursor(int index) {
+        if (index < 0 || index > size) throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+        Cursor c = new Cursor(index);
+        if (index == size) return c;
+
+        // Top level: binary search over the prefix sizes
+        long[] starts = startAt[degree];
+        int lo = 0, hi = original.size() - 1;
+        while (lo < hi) {
+            int mid = (lo + hi + 1) >>> 1;
+            if (starts[mid] <= index) lo = mid;
+            else hi = mid - 1;
+        }
+        Frame top = new Frame(original, 0, null, -1);
+        top.pos = lo;
+        for (int k = 0; k <= degree; k++) {
+            top.starts[k] = startAt[k][lo];
+            top.vars[k] = varsAt[k][lo];
+            top.labels[k] = labelsAt[k][lo];
+        }
+        c.stack.addLast(top);
+        long local = index - starts[lo];
+
+        // Below it: expand only the branch that holds the index
+        while (true) {
+            Frame f = c.stack.peekLast();
+            Instruction item = f.items.get(f.pos);
+            Node node = node(item);
+            if (f.depth == degree || node.children() == null) break;
+            Frame child = c.descend(f, item, node);
+            while (true) {
+                long s = node(child.items.get(child.pos)).size(degree - child.depth);
+                if (local < s) break;
+                local -= s;
+                c.advance(child, node(child.items.get(child.pos)));
+            }
+        }
+        return c;
+    }
+
+    // ---- shape table ---- //
+    private Node node(Instruction ins) {
+        synchronized (nodes) {
+            return nodes.computeIfAbsent(InstructionShape.of(ins), s -> new Node(ins));
+        }
+    }
+
+    private final class Node {
+        private final Instruction sample;
+        private List<Node> children;
+        private boolean expanded;
+        private int ownVars, ownLabels;
+        private final long[] sizes = filled(degree + 1);
+        private final long[] vars = filled(degree + 1);
+        private final long[] labels = filled(degree + 1);
+
+        private Node(Instruction sample) { this.sample = sample; }
+
+        //This func expands the sample one level; null means the instruction stays as it is
+        private List<Node> children() {
+            synchronized (nodes) {
+                if (expanded) return children;
+                expanded = true;
+                if (!(sample instanceof Expandable e)) return null;
+                ExpansionHelper helper = ProgramExpander.newHelper(List.of(sample));
+                List<Instruction> produced = e.expand(helper);
+                if (produced == null || produced.isEmpty() || (produced.size() == 1 && produced.get(0) == sample)) {
+                    return null;
+                }
+                ownVars = helper.varsIssued();
+                ownLabels = helper.labelsIssued();
+                List<Node> out = new ArrayList<>(produced.size());
+                for (Instruction child : produced) {
+                    if (child != null) out.add(node(child));
+                }
+                children = out;
+                return children;
+            }
+        }
+
+        //This func returns how many instructions this shape is after `r` more expansion steps
+        private long size(int r) {
+            if (r == 0 || children() == null) return 1;
+            synchronized (nodes) {
+                if (sizes[r] >= 0) return sizes[r];
+                long total = 0;
+                for (Node child : children) total += child.size(r - 1);
+                sizes[r] = total;
+                return total;
+            }
+        }
+
+        //This func returns how many fresh names the j-th expansion step below this shape hands out
+        private long names(int j, boolean ofVars) {
+            if (j == 0 || children() == null) return 0;
+            if (j == 1) return ofVars ? ownVars : ownLabels;
+            synchronized (nodes) {
+                long[] memo = ofVars ? vars : labels;
+                if (memo[j] >= 0) return memo[j];
+                long total = 0;
+                for (Node child : children) total += child.names(j - 1, ofVars);
+                memo[j] = total;
+                return total;
+            }
+        }
+    }
+
+    private static long[] filled(int n) {
+        long[] a = new long[n];
+        Arrays.fill(a, -1L);
+        return a;
+    }
+
+    // One level of the walk: the instructions an instruction expanded into, and where the walk is among them
+    private final class Frame {
+        private final List<Instruction> items;
+        private final int depth;
+        private final Instruction parent;
+        private final long parentIndex;
+        private int pos;
+        // [k]: where the item at pos starts at degree k, and how many names level k handed out before it
+        private final long[] starts = new long[degree + 1];
+        private final long[] vars = new long[degree + 1];
+        private final long[] labels = new long[degree + 1];
+
+        private Frame(List<Instruction> items, int depth, Instruction parent, long parentIndex) {
+            this.items = items;
+            this.depth = depth;
+            this.parent = parent;
+            this.parentIndex = parentIndex;
+        }
+    }
+
+    // Depth-first walk over the expanded program; holds one list of siblings per level, never the whole program
+    public final class Cursor implements Iterator<Instruction> {
+        private final ArrayDeque<Frame> stack = new ArrayDeque<>();
+        private int index;
+
+        private Cursor(int index) { this.index = index; }
+
+        //This func returns the index the next call to next() returns
+        public int index() { return index; }
+
+        @Override
+        public boolean hasNext() { return index < size; }
+
+        @Override
+        public Instruction next() {
+            if (index >= size) throw new NoSuchElementException();
+            while (true) {
+                Frame f = stack.peekLast();
+                if (f.pos >= f.items.size()) {
+                    stack.removeLast();
+                    continue;
+                }
+                Instruction item = f.items.get(f.pos);
+                Node node = node(item);
+                if (f.depth == degree || node.children() == null) {
+                    advance(f, node);
+                    index++;
+                    return item;
+                }
+                descend(f, item, node);
+            }
+        }
+
+        //This func returns, nearest first, the index (1-based) each instruction the last next() came from has
+        // at its own degree
+        public List<Integer> createdFromIndexes() {
+            List<Integer> out = new ArrayList<>();
+            Iterator<Frame> it = stack.descendingIterator();
+            while (it.hasNext()) {
+                Frame f = it.next();
+                if (f.parent != null) out.add((int) f.parentIndex + 1);
+            }
+            return out;
+        }
+
+        //This func returns, nearest first, the instructions the last next() came from
+        public List<Instruction> createdFrom() {
+            List<Instruction> out = new ArrayList<>();
+            Iterator<Frame> it = stack.descendingIterator();
+            while (it.hasNext()) {
+                Frame f = it.next();
+                if (f.parent != null) out.add(f.parent);
+            }
+            return out;
+        }
+
+        //This func expands the item at the frame's position with the names its level would hand it
+        private Frame descend(Frame f, Instruction item, Node node) {
+            int t = f.depth;
+            List<Instruction> produced = ((Expandable) item).expand(base.offsetBy(f.vars[t + 1], f.labels[t + 1]));
+            List<Instruction> children = new ArrayList<>(produced.size());
+            for (Instruction child : produced) {
+                if (child == null) continue;
+                if (child instanceof AbstractInstruction ai) ai.setCreatedFrom(item);
+                children.add(child);
+            }
+            Frame next = new Frame(children, t + 1, item, f.starts[t]);
+            System.arraycopy(f.starts, 0, next.starts, 0, degree + 1);
+            System.arraycopy(f.vars, 0, next.vars, 0, degree + 1);
+            System.arraycopy(f.labels, 0, next.labels, 0, degree + 1);
+            advance(f, node);
+            stack.addLast(next);
+            return next;
+        }
+
+        //This func moves a frame past the item at its position
+        private void advance(Frame f, Node node) {
+            int t = f.depth;
+            for (int k = t; k <= degree; k++) {
+                f.starts[k] += node.size(k - t);
+                f.vars[k] += node.names(k - t, true);
+                f.labels[k] += node.names(k - t, false);
+            }
+            f.pos++;
+        }
+    }
+}
@@ -0,0 +1,15 @@
+package emulator.logic.expansion;
+
+import emulator.logic.program.Program;
+
+// A read-only Program over a LazyExpansion: instructions are produced when asked for, variables and labels are
+// collected by one pass over the expansion the first time they are needed
+public final class LazyProgram extends ExpandedProgram {
+
+    public LazyProgram(Program original, int degree) {
+        super(original, Math.max(degree, 0), new LazyExpansion(original.getInstructions(), degree));
+    }
+
+    // ---- getters funcs ---- //
+    public LazyExpansion expansion() { return (LazyExpansion) getInstructions(); }
+}
@@ -7,6 +7,7 @@ public final class NameAllocator {
     private final String prefix;
     private final Set<String> used;
     private int counter;
+    private int issued;
 
     //Constructor
     NameAllocator(String prefix, Set<String> initiallyUsed) {
@@ -39,11 +40,34 @@ public final class NameAllocator {
         }
         counter = n;
         used.add(candidate);
+        issued++;
         return candidate;
     }
 
+    //This func hands out `n` consecutive names at once and returns the number of the first one
+    // (names above counter are never used, so these are exactly the names n calls to next() would give)
+    int reserve(int n) {
+        if ((long) counter + n >= Integer.MAX_VALUE) throw new IllegalStateException("Expansion needs too many names");
+        int first = counter + 1;
+        counter += n;
+        issued += n;
+        return first;
+    }
+
+    //This func returns how many names this allocator handed out
+    int issued() { return issued; }
+
+    //This func returns an allocator that continues as if this one had handed out `skip` more names
+    // (every name above the highest one initially used is free, so the next name is simply counter + 1)
+    NameAllocator offsetBy(long skip) {
+        if (counter + skip >= Integer.MAX_VALUE) throw new IllegalStateException("Expansion needs too many names");
+        NameAllocator copy = new NameAllocator(prefix, null);
+        copy.counter = (int) (counter + skip);
+        return copy;
+    }
+
     //This func format and normalize vars/labels
-    private String format(int n) { return prefix + n; }
+    String format(int n) { return prefix + n; }
     private String normalize(String s) {
         if (s.length() > 1 && Character.toLowerCase(s.charAt(0)) == Character.toLowerCase(prefix.charAt(0))) {
             return Character.toUpperCase(prefix.charAt(0)) + s.substring(1);
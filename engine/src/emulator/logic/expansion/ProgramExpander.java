@@ -3,6 +3,7 @@ package emulator.logic.expansion;
 import emulator.logic.instruction.Instruction;
 import emulator.logic.program.Program;
 import emulator.logic.program.ProgramImpl;
+import emulator.logic.program.SymbolTable;
 
 import java.util.ArrayList;
 import java.util.Collections;
@@ -17,14 +18,7 @@ public class ProgramExpander {
         Objects.requireNonNull(original, "original");
         if (degree <= 0) return original;
 
-        ExpansionHelper helper = ExpansionHelper.fromInstructions(
-                original.getInstructions(),
-                name -> new emulator.logic.variable.VariableImpl(
-                        Expander.mapVarType(name),
-                        Expander.extractInt(name)
-                ),
-                name -> new emulator.logic.label.LabelImpl(Expander.extractInt(name))
-        );
+        ExpansionHelper helper = newHelper(original);
 
         List<Instruction> curr = original.getInstructions();
         for (int d = 0; d < degree; d++) {
@@ -33,29 +27,46 @@ public class ProgramExpander {
             if (next == curr) break;
             curr = next;
         }
-        return toProgramImpl(original.getName(), curr);
+        return toProgramImpl(original, curr);
+    }
+
+    //This func returns the program expanded to the specified degree, producing instructions only when asked for
+    public Program expandLazily(Program original, int degree) {
+        Objects.requireNonNull(original, "original");
+        if (degree <= 0) return original;
+        return new LazyProgram(original, degree);
     }
 
     //This func expands a program’s instructions by one degree
     public Program expandOnce(Program original) {
         Objects.requireNonNull(original, "original");
-        List<Instruction> out = expander.expandOnce(
-                original.getInstructions(),
-                ExpansionHelper.fromInstructions(
-                        original.getInstructions(),
-                        name -> new emulator.logic.variable.VariableImpl(
-                                Expander.mapVarType(name),
-                                Expander.extractInt(name)
-                        ),
-                        name -> new emulator.logic.label.LabelImpl(Expander.extractInt(name))
-                )
+        List<Instruction> out = expander.expandOnce(original.getInstructions(), newHelper(original));
+        return toProgramImpl(original, out);
+    }
+
+    //This func builds the helper that hands out fresh names above those the program already uses, interned in
+    // the program's symbol table
+    public static ExpansionHelper newHelper(Program program) {
+        SymbolTable symbols = program.getSymbols();
+        return ExpansionHelper.fromInstructions(program.getInstructions(), symbols::variable, symbols::label);
+    }
+
+    //This func builds the helper that hands out fresh names above those the instructions already use
+    // (free-standing names, for expansions that are thrown away or never held as a whole)
+    public static ExpansionHelper newHelper(List<Instruction> instructions) {
+        return ExpansionHelper.fromInstructions(
+                instructions,
+                name -> new emulator.logic.variable.VariableImpl(
+                        Expander.mapVarType(name),
+                        Expander.extractInt(name)
+                ),
+                name -> new emulator.logic.label.LabelImpl(Expander.extractInt(name))
         );
-        return toProgramImpl(original.getName(), out);
     }
 
     //This func builds a new ProgramImpl
-    private static Program toProgramImpl(String name, List<Instruction> instructions) {
-        ProgramImpl p = new ProgramImpl(name);
+    private static Program toProgramImpl(Program original, List<Instruction> instructions) {
+        ProgramImpl p = new ProgramImpl(original.getName(), original.getSymbols());
         for (Instruction ins : instructions) {
             p.addInstruction(ins);
         }
@@ -0,0 +1,61 @@
+package emulator.logic.expansion;
+
+import emulator.logic.instruction.Instruction;
+import emulator.logic.program.Program;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+
+// Where every instruction of degrees 0..degree of an expansion came from. Each expanded degree is a
+// ChunkedInstructionList that keeps its parent indexes, so the chain of a row is one index lookup per degree
+// instead of following createdFrom references and searching every degree for them.
+public final class ProvenanceIndex {
+
+    // An instruction a row came from, with its (0-based) index at the degree it was expanded from
+    public record Origin(int degree, int index, Instruction instruction) {}
+
+    private final List<Program> byDegree;
+    // [d]: how degree d was made from degree d-1, or null where it is degree d-1 unchanged
+    private final List<ChunkedInstructionList> steps;
+
+    ProvenanceIndex(List<Program> byDegree, List<ChunkedInstructionList> steps) {
+        this.byDegree = List.copyOf(byDegree);
+        this.steps = new ArrayList<>(steps);
+    }
+
+    //This func returns the index of an unexpanded program (no instruction came from anything)
+    public static ProvenanceIndex of(Program program) {
+        Objects.requireNonNull(program, "program");
+        List<ChunkedInstructionList> none = new ArrayList<>();
+        none.add(null);
+        return new ProvenanceIndex(List.of(program), none);
+    }
+
+    // ---- getters funcs ---- //
+    public int degree() { return byDegree.size() - 1; }
+    public Program program(int degree) { return byDegree.get(degree); }
+    public Program expanded() { return byDegree.get(degree()); }
+
+    //This func returns, nearest first, the instructions the row at an index of the top degree came from
+    public List<Origin> origins(int index) {
+        return origins(degree(), index);
+    }
+
+    //This func returns, nearest first, the instructions the row at an index of a degree came from
+    public List<Origin> origins(int degree, int index) {
+        Objects.checkIndex(index, byDegree.get(degree).getInstructions().size());
+        List<Origin> out = new ArrayList<>();
+        int j = index;
+        for (int d = degree; d > 0; d--) {
+            ChunkedInstructionList step = steps.get(d);
+            if (step == null) continue;
+            int parent = step.parentIndex(j);
+            if (parent < 0) continue;
+            boolean expanded = step.isExpanded(j);
+            j = parent;
+            if (expanded) out.add(new Origin(d - 1, j, byDegree.get(d - 1).getInstructions().get(j)));
+        }
+        return out;
+    }
+}
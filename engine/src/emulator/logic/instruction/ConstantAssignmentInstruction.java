@@ -55,9 +55,14 @@ public class ConstantAssignmentInstruction extends AbstractInstruction implement
             out.add(new ZeroVariableInstruction(var, firstLabel));
         }
 
-        for(int i = 0; i < constantValue; i++) {
+        // K INCREASEs travel as repeats; a single one stays a plain INCREASE
+        if (constantValue == 1) {
             out.add(new IncreaseInstruction(var));
         }
+        long max = RepeatInstruction.maxCount(InstructionData.INCREASE);
+        for (long left = (constantValue > 1) ? constantValue : 0; left > 0; left -= max) {
+            out.add(new RepeatInstruction(InstructionData.INCREASE, var, Math.min(left, max)));
+        }
 
         return out;
     }
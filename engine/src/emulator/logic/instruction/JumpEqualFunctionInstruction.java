@@ -4,6 +4,9 @@ import emulator.logic.execution.ExecutionContext;
 import emulator.logic.execution.QuoteEvaluator;
 import emulator.logic.expansion.Expandable;
 import emulator.logic.expansion.ExpansionHelper;
+import emulator.logic.instruction.quote.FunctionTemplate;
+import emulator.logic.instruction.quote.QuoteArg;
+import emulator.logic.instruction.quote.QuoteArgCompiler;
 import emulator.logic.instruction.quote.QuoteParser;
 import emulator.logic.instruction.quote.QuoteParserImpl;
 import emulator.logic.instruction.quote.QuoteUtils;
@@ -12,6 +15,7 @@ import emulator.logic.instruction.quote.QuotationRegistry;
 import emulator.logic.instruction.quote.VarResolver;
 import emulator.logic.label.FixedLabel;
 import emulator.logic.label.Label;
+import emulator.logic.program.DegreeAnalysis;
 import emulator.logic.program.Program;
 import emulator.logic.variable.Variable;
 
@@ -25,6 +29,9 @@ public class JumpEqualFunctionInstruction extends AbstractInstruction implements
     private final QuoteParser parser;
     private final QuotationRegistry registry;
     private final VarResolver varResolver;
+    private volatile QuoteArg.Call compiledCall;
+    // Upper-cased names of the functions whose bodies this call was inlined from (empty for a program's own calls)
+    private final Set<String> inlinedInto;
 
     private JumpEqualFunctionInstruction(Builder builder) {
         super(InstructionData.JUMP_EQUAL_FUNCTION, builder.variable, builder.myLabel);
@@ -35,6 +42,7 @@ public class JumpEqualFunctionInstruction extends AbstractInstruction implements
         this.parser            = (builder.parser != null) ? builder.parser : new QuoteParserImpl();
         this.registry          = Objects.requireNonNull(builder.registry, "registry");
         this.varResolver       = Objects.requireNonNull(builder.varResolver, "varResolver");
+        this.inlinedInto       = Set.copyOf(builder.inlinedInto);
 
         setArgument("JEFunctionLabel", this.jeFunctionLabel.getLabelRepresentation());
         setArgument("functionName", this.functionName);
@@ -52,6 +60,7 @@ public class JumpEqualFunctionInstruction extends AbstractInstruction implements
         private QuoteParser parser;
         private QuotationRegistry registry;
         private VarResolver varResolver;
+        private Set<String> inlinedInto = Set.of();
 
         public Builder variable(Variable variable) { this.variable = variable; return this; }
         public Builder jeFunctionLabel(Label label) { this.jeFunctionLabel = label; return this; }
@@ -61,6 +70,7 @@ public class JumpEqualFunctionInstruction extends AbstractInstruction implements
         public Builder parser(QuoteParser parser) { this.parser = parser; return this; }
         public Builder registry(QuotationRegistry registry) { this.registry = registry; return this; }
         public Builder varResolver(VarResolver varResolver) { this.varResolver = varResolver; return this; }
+        public Builder inlinedInto(Set<String> functions) { this.inlinedInto = functions; return this; }
 
         public JumpEqualFunctionInstruction build() { return new JumpEqualFunctionInstruction(this); }
     }
@@ -73,13 +83,17 @@ public class JumpEqualFunctionInstruction extends AbstractInstruction implements
         if (evaluator == null) {
             throw new IllegalStateException("QuoteEvaluator is not available in ExecutionContext");
         }
-        long qVal = QuoteUtils.runQuotedEval(functionName, functionArguments, ctx, registry, parser, varResolver, evaluator);
+        long qVal = QuoteUtils.runCall(compiledCall(), ctx, registry, parser, varResolver, evaluator);
         return (vVal == qVal) ? jeFunctionLabel : FixedLabel.EMPTY;
     }
 
     // -------- Expand --------
     @Override
     public List<Instruction> expand(ExpansionHelper helper) {
+        // A call back into a function it was inlined from would expand forever; it stays a call
+        if (isRecursive()) {
+            return List.of(this);
+        }
         List<Instruction> out = new ArrayList<>();
 
         Label first = getLabel();
@@ -88,42 +102,12 @@ public class JumpEqualFunctionInstruction extends AbstractInstruction implements
         }
 
         Program qProgram = registry.getProgramByName(functionName);
-        Map<Variable, Variable> varSub = new HashMap<>();
-        Map<Integer, Variable> inputIndexToFresh = new HashMap<>();
-        Map<String, Label> labelSub = new HashMap<>();
-        Variable tempZ = null;
-
-        for (Variable qv : qProgram.getVariables()) {
-            switch (qv.getType()) {
-                case INPUT -> {
-                    Variable fresh = helper.freshVar();
-                    varSub.put(qv, fresh);
-                    inputIndexToFresh.put(qv.getNumber(), fresh);
-                }
-                case WORK -> varSub.put(qv, helper.freshVar());
-                default -> {
-                    if (QuoteUtils.isOutputVar(qv)) {
-                        tempZ = helper.freshVar();
-                        varSub.put(qv, tempZ);
-                    } else {
-                        varSub.put(qv, qv);
-                    }
-                }
-            }
-        }
-        if (tempZ == null) tempZ = helper.freshVar();
-
-        // מיפוי לייבלים פנימיים
-        for (Instruction iq : qProgram.getInstructions()) {
-            Label lq = iq.getLabel();
-            if (lq == null || FixedLabel.EMPTY.equals(lq) || FixedLabel.EXIT.equals(lq)) continue;
-            labelSub.putIfAbsent(lq.getLabelRepresentation(), helper.freshLabel());
-        }
-        Label lend = helper.freshLabel();
+        FunctionTemplate.Names names =
+                FunctionTemplate.of(qProgram, FunctionTemplate.Kind.JUMP_EQUAL_FUNCTION).reserve(helper);
 
         List<String> args = parser.parseTopLevelArgs(functionArguments);
         for (int i = 0; i < args.size(); i++) {
-            Variable dst = inputIndexToFresh.get(i + 1);
+            Variable dst = names.input(i + 1);
             if (dst == null) break;
 
             String tok = args.get(i).trim();
@@ -141,6 +125,7 @@ public class JumpEqualFunctionInstruction extends AbstractInstruction implements
                         .parser(parser)
                         .registry(registry)
                         .varResolver(varResolver)
+                        .inlinedInto(inlinedInto)
                         .myLabel(FixedLabel.EMPTY)
                         .build());
             } else {
@@ -154,14 +139,15 @@ public class JumpEqualFunctionInstruction extends AbstractInstruction implements
             }
         }
 
-        for (Instruction iq : qProgram.getInstructions()) {
-            out.add(cloneWithSubs(iq, varSub, labelSub, helper, lend));
-        }
+        Set<String> around = new HashSet<>(inlinedInto);
+        around.add(functionName.toUpperCase(Locale.ROOT));
+        names.emitBody(out, around);
 
         out.add(new JumpEqualVariableInstruction.Builder()
                 .variable(getVariable())
-                .compareVariable(tempZ)
+                .compareVariable(names.result())
                 .jeVariableLabel(jeFunctionLabel)
+                .myLabel(names.end())
                 .build());
 
         return out;
@@ -170,13 +156,13 @@ public class JumpEqualFunctionInstruction extends AbstractInstruction implements
     @Override
     public int degree() {
         int body = degreeOfProgram(functionName);
+        if (body < 0) return 0;
         int argsDepth = degreeOfArgs(functionArguments);
         return 1 + Math.max(body, argsDepth);
     }
 
     private int degreeOfProgram(String name) {
-        Program p = registry.getProgramByName(name);
-        return (p == null) ? 0 : p.calculateMaxDegree();
+        return DegreeAnalysis.calleeDegree(registry, name, inlinedInto);
     }
 
     private int degreeOfArgs(String argsCsv) {
@@ -194,69 +180,32 @@ public class JumpEqualFunctionInstruction extends AbstractInstruction implements
         if (!parser.isNestedCall(tok)) return 0;
 
         QuoteParser.NestedCall nc = parser.parseNestedCall(tok);
-        int nestedArgsDepth = degreeOfArgs(nc.argsCsv());
         int calleeBody = degreeOfProgram(nc.name());
+        if (calleeBody < 0) return 0;
+        int nestedArgsDepth = degreeOfArgs(nc.argsCsv());
         return 1 + Math.max(calleeBody, nestedArgsDepth);
     }
 
-    private static Variable subVar(Map<Variable, Variable> map, Variable key) {
-        return map.getOrDefault(key, key);
-    }
-
-    private Label subLabel(Map<String, Label> map, Label key, ExpansionHelper helper, Label lend) {
-        if (key == null || FixedLabel.EMPTY.equals(key)) return FixedLabel.EMPTY;
-        if (FixedLabel.EXIT.equals(key)) return lend;
-        String name = key.getLabelRepresentation();
-        return map.computeIfAbsent(name, n -> helper.freshLabel());
-    }
-
-    private Instruction cloneWithSubs(Instruction iq,
-                                      Map<Variable, Variable> varSub,
-                                      Map<String, Label> labelSub,
-                                      ExpansionHelper helper,
-                                      Label lend) {
-        if (iq == null) return null;
-        Label newLbl = subLabel(labelSub, iq.getLabel(), helper, lend);
-
-        if (iq instanceof IncreaseInstruction ii)
-            return new IncreaseInstruction(subVar(varSub, ii.getVariable()), newLbl);
-        if (iq instanceof DecreaseInstruction di)
-            return new DecreaseInstruction(subVar(varSub, di.getVariable()), newLbl);
-        if (iq instanceof ZeroVariableInstruction zi)
-            return new ZeroVariableInstruction(subVar(varSub, zi.getVariable()), newLbl);
-        if (iq instanceof JumpZeroInstruction jz)
-            return new JumpZeroInstruction(subVar(varSub, jz.getVariable()),
-                    subLabel(labelSub, jz.getJzLabel(), helper, lend), newLbl);
-        if (iq instanceof JumpNotZeroInstruction jnz)
-            return new JumpNotZeroInstruction(subVar(varSub, jnz.getVariable()),
-                    subLabel(labelSub, jnz.getJnzLabel(), helper, lend), newLbl);
-        if (iq instanceof GoToLabelInstruction gtl)
-            return new GoToLabelInstruction(subLabel(labelSub, gtl.getgtlLabel(), helper, lend), newLbl);
-        if (iq instanceof AssignmentInstruction ai)
-            return new AssignmentInstruction(subVar(varSub, ai.getVariable()),
-                    subVar(varSub, ai.getAssignedVariable()), newLbl);
-        if (iq instanceof ConstantAssignmentInstruction cai)
-            return new ConstantAssignmentInstruction(subVar(varSub, cai.getVariable()),
-                    cai.getConstantValue(), newLbl);
-        if (iq instanceof JumpEqualConstantInstruction jec)
-            return new JumpEqualConstantInstruction.Builder()
-                    .variable(subVar(varSub, jec.getVariable()))
-                    .constantValue(jec.getConstantValue())
-                    .jeConstantLabel(subLabel(labelSub, jec.getJeConstantLabel(), helper, lend))
-                    .myLabel(newLbl)
-                    .build();
-        if (iq instanceof JumpEqualVariableInstruction jev)
-            return new JumpEqualVariableInstruction.Builder()
-                    .variable(subVar(varSub, jev.getVariable()))
-                    .compareVariable(subVar(varSub, jev.getCompareVariable()))
-                    .jeVariableLabel(subLabel(labelSub, jev.getJeVariableLabel(), helper, lend))
-                    .myLabel(newLbl)
-                    .build();
-
-        return new NeutralInstruction(subVar(varSub, iq.getVariable()), newLbl);
-    }
-
     public String getFunctionName() { return functionName; }
     public String getFunctionArguments() { return functionArguments; }
     public QuoteParser getParser() { return parser; }
+    public Label getJeFunctionLabel() { return jeFunctionLabel; }
+    public QuotationRegistry getRegistry() { return registry; }
+    public VarResolver getVarResolver() { return varResolver; }
+    public Set<String> getInlinedInto() { return inlinedInto; }
+
+    //This func checks if the call is to a function whose body it was inlined from
+    public boolean isRecursive() {
+        return inlinedInto.contains(functionName.toUpperCase(Locale.ROOT));
+    }
+
+    //This func returns the call with its argument string parsed (done once, normally while the program loads)
+    public QuoteArg.Call compiledCall() {
+        QuoteArg.Call call = compiledCall;
+        if (call == null) {
+            call = QuoteArgCompiler.compileCall(functionName, functionArguments, parser, registry, varResolver);
+            compiledCall = call;
+        }
+        return call;
+    }
 }
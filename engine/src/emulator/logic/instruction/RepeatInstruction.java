@@ -0,0 +1,66 @@
+package emulator.logic.instruction;
+
+import emulator.logic.execution.ExecutionContext;
+import emulator.logic.label.FixedLabel;
+import emulator.logic.label.Label;
+import emulator.logic.variable.Variable;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+
+// `count` unlabelled INCREASE (or DECREASE) instructions on one variable, kept as a single instruction.
+// It runs and costs exactly what the individual instructions would; row() builds one of them for display.
+public class RepeatInstruction extends AbstractInstruction {
+    private final long count;
+
+    public RepeatInstruction(InstructionData repeated, Variable variable, long count) {
+        super(requireStep(repeated), Objects.requireNonNull(variable, "variable"));
+        if (count < 1 || count * repeated.getCycles() > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("Invalid repeat count: " + count);
+        }
+        this.count = count;
+    }
+
+    //This func executes the instruction
+    @Override
+    public Label execute(ExecutionContext context) {
+        long value = context.getVariableValue(getVariable());
+        value = (getInstructionData() == InstructionData.INCREASE) ? value + count : Math.max(0, value - count);
+        context.updateVariable(getVariable(), value);
+        return FixedLabel.EMPTY;
+    }
+
+    @Override
+    public int cycles() { return (int) (count * getInstructionData().getCycles()); }
+
+    //This func returns how many instructions this one stands for
+    public long getCount() { return count; }
+
+    //This func builds one of the individual instructions (for display, a row at a time)
+    public Instruction row() {
+        return (getInstructionData() == InstructionData.INCREASE)
+                ? new IncreaseInstruction(getVariable())
+                : new DecreaseInstruction(getVariable());
+    }
+
+    //This func return args
+    @Override
+    public Map<String, String> getArguments() {
+        Map<String, String> m = new LinkedHashMap<>(super.getArguments());
+        m.put("repeat", Long.toString(count));
+        return m;
+    }
+
+    //This func returns the largest count one RepeatInstruction of this kind can hold
+    public static long maxCount(InstructionData repeated) {
+        return Integer.MAX_VALUE / requireStep(repeated).getCycles();
+    }
+
+    private static InstructionData requireStep(InstructionData repeated) {
+        if (repeated != InstructionData.INCREASE && repeated != InstructionData.DECREASE) {
+            throw new IllegalArgumentException("Only INCREASE / DECREASE can repeat, got " + repeated);
+        }
+        return repeated;
+    }
+}
@@ -1,5 +1,6 @@
 package emulator.logic.instruction.quote;
 
+import emulator.logic.program.SymbolTable;
 import emulator.logic.variable.Variable;
 
 import java.util.Map;
@@ -15,9 +16,17 @@ public final class DelegatingVarResolver implements VarResolver {
 
     @Override
     public Variable resolve(String name) {
-        String key = (name == null) ? "" : name.trim().toUpperCase(java.util.Locale.ROOT);
-        Variable v = locals.get(key);
+        Variable v = local(name);
         if (v != null) return v;
         return parent.resolve(name);
     }
+
+    //This func returns the variable a name is renamed to here, or null if the parent resolves it
+    public Variable local(String name) {
+        String key = (name == null) ? "" : name.trim().toUpperCase(java.util.Locale.ROOT);
+        return locals.get(key);
+    }
+
+    @Override
+    public SymbolTable symbols() { return parent.symbols(); }
 }
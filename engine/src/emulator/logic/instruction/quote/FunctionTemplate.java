@@ -0,0 +1,266 @@
+package emulator.logic.instruction.quote;
+
+import emulator.logic.expansion.ExpansionHelper;
+import emulator.logic.instruction.*;
+import emulator.logic.label.FixedLabel;
+import emulator.logic.label.Label;
+import emulator.logic.program.Program;
+import emulator.logic.variable.Variable;
+
+import java.util.*;
+
+// A function body compiled once into a relocatable form: every variable and label the body renames is a slot
+// (an offset into a block of fresh names), so inlining it at a call site only reserves the names and fills the
+// slots in. Slots are numbered in the order QUOTE / JUMP_EQUAL_FUNCTION used to ask for fresh names, so the
+// inlined code is exactly what renaming instruction by instruction gave. Calls in the body stay calls, and
+// read the body's variables in their arguments through the fresh names.
+public final class FunctionTemplate {
+
+    // How the caller inlines the body
+    public enum Kind {
+        // QUOTE: the end label first, body labels as they show up
+        QUOTE,
+        // JUMP_EQUAL_FUNCTION: the labels the body defines first, then the end label
+        JUMP_EQUAL_FUNCTION
+    }
+
+    private static final int NONE = Integer.MIN_VALUE;
+
+    private enum Op { INCREASE, DECREASE, NEUTRAL, ZERO, GOTO, JNZ, JZ, ASSIGN, CONSTANT, JEC, JEV, QUOTE, JEF }
+
+    // var / var2 >= 0 are fresh variable slots, other values index `kept` (-1 - v) or are NONE (null);
+    // label / target >= 0 are fresh label slots, -1 is no label, -2 is EXIT (the end label);
+    // call is the body's QUOTE / JUMP_EQUAL_FUNCTION instruction for those ops
+    private record Step(Op op, int label, int var, int var2, int target, long constant, Instruction call) {}
+
+    // Templates per body program instance (one per kind); bodies only grow, so the size tells us if one is stale
+    private static final Map<Program, FunctionTemplate[]> CACHE = new WeakHashMap<>();
+
+    private final int size;
+    private final int varCount;
+    private final int resultSlot;
+    private final int[] inputSlots;
+    private final int labelCount;
+    private final int endSlot;
+    private final List<Variable> kept = new ArrayList<>();
+    // Upper-cased body variable names -> slots, for the argument strings of the calls in the body
+    private final Map<String, Integer> slotsByName = new HashMap<>();
+    private final Step[] steps;
+
+    //This func returns the template of a function body, compiling it the first time
+    public static FunctionTemplate of(Program body, Kind kind) {
+        int size = body.getInstructions().size();
+        synchronized (CACHE) {
+            FunctionTemplate[] byKind = CACHE.computeIfAbsent(body, b -> new FunctionTemplate[Kind.values().length]);
+            FunctionTemplate t = byKind[kind.ordinal()];
+            if (t == null || t.size != size) {
+                t = new FunctionTemplate(body, kind);
+                byKind[kind.ordinal()] = t;
+            }
+            return t;
+        }
+    }
+
+    private FunctionTemplate(Program body, Kind kind) {
+        this.size = body.getInstructions().size();
+        Map<Variable, Integer> varSlots = new HashMap<>();
+        Map<Integer, Integer> inputs = new HashMap<>();
+        int vars = 0, result = -1;
+        for (Variable qv : body.getVariables()) {
+            switch (qv.getType()) {
+                case INPUT -> {
+                    inputs.put(qv.getNumber(), vars);
+                    varSlots.put(qv, vars++);
+                }
+                case WORK -> varSlots.put(qv, vars++);
+                default -> {
+                    if (QuoteUtils.isOutputVar(qv)) {
+                        result = vars;
+                        varSlots.put(qv, vars++);
+                    }
+                }
+            }
+        }
+        if (result < 0) result = vars++;
+        varSlots.forEach((qv, slot) -> slotsByName.put(qv.getRepresentation().toUpperCase(Locale.ROOT), slot));
+        this.varCount = vars;
+        this.resultSlot = result;
+
+        int nInputs = inputs.isEmpty() ? 0 : Collections.max(inputs.keySet());
+        this.inputSlots = new int[nInputs + 1];
+        Arrays.fill(inputSlots, -1);
+        inputs.forEach((n, slot) -> inputSlots[n] = slot);
+
+        Map<String, Integer> labelSlots = new HashMap<>();
+        int[] next = {0};
+        if (kind == Kind.JUMP_EQUAL_FUNCTION) {
+            for (Instruction iq : body.getInstructions()) {
+                Label lq = iq.getLabel();
+                if (lq == null || FixedLabel.EMPTY.equals(lq) || FixedLabel.EXIT.equals(lq)) continue;
+                labelSlots.putIfAbsent(lq.getLabelRepresentation(), next[0]++);
+            }
+        }
+        this.endSlot = next[0]++;
+
+        List<Step> out = new ArrayList<>();
+        for (Instruction iq : body.getInstructions()) {
+            if (iq == null) continue;
+            out.add(compile(iq, kind, varSlots, labelSlots, next));
+        }
+        this.steps = out.toArray(new Step[0]);
+        this.labelCount = next[0];
+    }
+
+    private Step compile(Instruction iq, Kind kind, Map<Variable, Integer> varSlots,
+                         Map<String, Integer> labelSlots, int[] next) {
+        int lbl = labelSlot(iq.getLabel(), labelSlots, next);
+        int v = varSlot(iq.getVariable(), varSlots);
+
+        if (iq instanceof IncreaseInstruction) return new Step(Op.INCREASE, lbl, v, NONE, -1, 0, null);
+        if (iq instanceof DecreaseInstruction) return new Step(Op.DECREASE, lbl, v, NONE, -1, 0, null);
+        if (iq instanceof ZeroVariableInstruction) return new Step(Op.ZERO, lbl, v, NONE, -1, 0, null);
+        if (iq instanceof JumpZeroInstruction jz)
+            return new Step(Op.JZ, lbl, v, NONE, labelSlot(jz.getJzLabel(), labelSlots, next), 0, null);
+        if (iq instanceof JumpNotZeroInstruction jnz)
+            return new Step(Op.JNZ, lbl, v, NONE, labelSlot(jnz.getJnzLabel(), labelSlots, next), 0, null);
+        if (iq instanceof GoToLabelInstruction gtl)
+            return new Step(Op.GOTO, lbl, NONE, NONE, labelSlot(gtl.getgtlLabel(), labelSlots, next), 0, null);
+        if (iq instanceof AssignmentInstruction ai)
+            return new Step(Op.ASSIGN, lbl, v, varSlot(ai.getAssignedVariable(), varSlots), -1, 0, null);
+        if (iq instanceof ConstantAssignmentInstruction cai)
+            return new Step(Op.CONSTANT, lbl, v, NONE, -1, cai.getConstantValue(), null);
+        if (iq instanceof JumpEqualConstantInstruction jec)
+            return new Step(Op.JEC, lbl, v, NONE, labelSlot(jec.getJeConstantLabel(), labelSlots, next),
+                    jec.getConstantValue(), null);
+        if (iq instanceof JumpEqualVariableInstruction jev)
+            return new Step(Op.JEV, lbl, v, varSlot(jev.getCompareVariable(), varSlots),
+                    labelSlot(jev.getJeVariableLabel(), labelSlots, next), 0, null);
+        if (iq instanceof QuotationInstruction qi)
+            return new Step(Op.QUOTE, lbl, v, NONE, -1, 0, qi);
+        if (iq instanceof JumpEqualFunctionInstruction jef)
+            return new Step(Op.JEF, lbl, v, NONE, labelSlot(jef.getJeFunctionLabel(), labelSlots, next), 0, jef);
+
+        return new Step(Op.NEUTRAL, lbl, v, NONE, -1, 0, null);
+    }
+
+    private static int labelSlot(Label key, Map<String, Integer> labelSlots, int[] next) {
+        if (key == null || FixedLabel.EMPTY.equals(key)) return -1;
+        if (FixedLabel.EXIT.equals(key)) return -2;
+        return labelSlots.computeIfAbsent(key.getLabelRepresentation(), n -> next[0]++);
+    }
+
+    private int varSlot(Variable v, Map<Variable, Integer> varSlots) {
+        if (v == null) return NONE;
+        Integer slot = varSlots.get(v);
+        if (slot != null) return slot;
+        kept.add(v);
+        return -kept.size();
+    }
+
+    // A call site's fresh names, reserved in one go
+    public final class Names {
+        private final Variable[] vars;
+        private final Label[] labels;
+        private Map<String, Variable> renamed;
+
+        private Names(ExpansionHelper helper) {
+            this.vars = helper.freshVars(varCount);
+            this.labels = helper.freshLabels(labelCount);
+        }
+
+        //This func returns the variable standing for the body's input x<n>, or null if the body never reads it
+        public Variable input(int n) {
+            return (n < inputSlots.length && inputSlots[n] >= 0) ? vars[inputSlots[n]] : null;
+        }
+
+        // ---- getters funcs ---- //
+        public int inputCount() { return inputSlots.length - 1; }
+        public Variable result() { return vars[resultSlot]; }
+        public Label end() { return labels[endSlot]; }
+
+        //This func adds the body, renamed, to out; inlinedInto are the functions the body then sits in
+        // (the called function included)
+        public void emitBody(List<Instruction> out, Set<String> inlinedInto) {
+            for (Step s : steps) out.add(instantiate(s, this, inlinedInto));
+        }
+
+        //This func returns a resolver that reads the body's variables in a call's arguments as their fresh names
+        private VarResolver resolver(VarResolver bodyResolver) {
+            if (renamed == null) {
+                renamed = new HashMap<>();
+                slotsByName.forEach((name, slot) -> renamed.put(name, vars[slot]));
+            }
+            return new DelegatingVarResolver(renamed, bodyResolver);
+        }
+
+        private Variable var(int v) {
+            if (v == NONE) return null;
+            return (v >= 0) ? vars[v] : kept.get(-1 - v);
+        }
+
+        private Label label(int l) {
+            if (l == -1) return FixedLabel.EMPTY;
+            return (l == -2) ? labels[endSlot] : labels[l];
+        }
+    }
+
+    //This func reserves the fresh names one call site needs (body variables first, then labels)
+    public Names reserve(ExpansionHelper helper) {
+        return new Names(helper);
+    }
+
+    private static Instruction instantiate(Step s, Names n, Set<String> inlinedInto) {
+        Label lbl = n.label(s.label());
+        Variable v = n.var(s.var());
+        return switch (s.op()) {
+            case INCREASE -> new IncreaseInstruction(v, lbl);
+            case DECREASE -> new DecreaseInstruction(v, lbl);
+            case NEUTRAL -> new NeutralInstruction(v, lbl);
+            case ZERO -> new ZeroVariableInstruction(v, lbl);
+            case GOTO -> new GoToLabelInstruction(lbl, n.label(s.target()));
+            case JNZ -> new JumpNotZeroInstruction(v, n.label(s.target()), lbl);
+            case JZ -> new JumpZeroInstruction(v, n.label(s.target()), lbl);
+            case ASSIGN -> new AssignmentInstruction(v, n.var(s.var2()), lbl);
+            case CONSTANT -> new ConstantAssignmentInstruction(v, s.constant(), lbl);
+            case JEC -> new JumpEqualConstantInstruction.Builder()
+                    .variable(v)
+                    .constantValue(s.constant())
+                    .jeConstantLabel(n.label(s.target()))
+                    .myLabel(lbl)
+                    .build();
+            case JEV -> new JumpEqualVariableInstruction.Builder()
+                    .variable(v)
+                    .compareVariable(n.var(s.var2()))
+                    .jeVariableLabel(n.label(s.target()))
+                    .myLabel(lbl)
+                    .build();
+            case QUOTE -> {
+                QuotationInstruction q = (QuotationInstruction) s.call();
+                yield new QuotationInstruction.Builder()
+                        .variable(v)
+                        .funcName(q.functionName())
+                        .funcArguments(q.functionArguments())
+                        .parser(q.getParser())
+                        .registry(q.getRegistry())
+                        .varResolver(n.resolver(q.getVarResolver()))
+                        .inlinedInto(inlinedInto)
+                        .myLabel(lbl)
+                        .build();
+            }
+            case JEF -> {
+                JumpEqualFunctionInstruction jef = (JumpEqualFunctionInstruction) s.call();
+                yield new JumpEqualFunctionInstruction.Builder()
+                        .variable(v)
+                        .jeFunctionLabel(n.label(s.target()))
+                        .funcName(jef.getFunctionName())
+                        .funcArguments(jef.getFunctionArguments())
+                        .parser(jef.getParser())
+                        .registry(jef.getRegistry())
+                        .varResolver(n.resolver(jef.getVarResolver()))
+                        .inlinedInto(inlinedInto)
+                        .myLabel(lbl)
+                        .build();
+            }
+        };
+    }
+}
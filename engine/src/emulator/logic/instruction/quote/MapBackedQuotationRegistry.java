@@ -1,5 +1,6 @@
 package emulator.logic.instruction.quote;
 
+import emulator.logic.program.DegreeAnalysis;
 import emulator.logic.program.Program;
 
 import java.util.Locale;
@@ -34,8 +35,9 @@ public final class MapBackedQuotationRegistry implements QuotationRegistry {
     @Override
     public void putProgram(String name, Program program) {
         if (name == null || program == null) return;
-        funcs.put(name, program);
-        funcs.put(name.toUpperCase(Locale.ROOT), program);
+        Program prev = funcs.put(name, program);
+        Program prevUpper = funcs.put(name.toUpperCase(Locale.ROOT), program);
+        if (prev != program || prevUpper != program) DegreeAnalysis.changed(this, name);
     }
 
     @Override
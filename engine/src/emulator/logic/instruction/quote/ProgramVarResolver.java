@@ -1,17 +1,19 @@
 package emulator.logic.instruction.quote;
 
 import emulator.logic.program.Program;
+import emulator.logic.program.SymbolTable;
 import emulator.logic.variable.Variable;
 
 public final class ProgramVarResolver implements VarResolver {
     private final Program program;
     public ProgramVarResolver(Program program) { this.program = program; }
 
+    //This func finds a variable of the program by name: one lookup in its symbol table, then a set check
     @Override public Variable resolve(String name) {
-        String want = (name == null) ? "" : name.trim();
-        for (Variable v : program.getVariables()) {
-            if (v.getRepresentation().equalsIgnoreCase(want)) return v;
-        }
+        Variable v = program.getSymbols().lookupVariable(name);
+        if (v != null && program.getVariables().contains(v)) return v;
         throw new IllegalArgumentException("Variable not found in current program: " + name);
     }
+
+    @Override public SymbolTable symbols() { return program.getSymbols(); }
 }
@@ -7,7 +7,9 @@ import emulator.logic.expansion.ExpansionHelper;
 import emulator.logic.instruction.*;
 import emulator.logic.label.FixedLabel;
 import emulator.logic.label.Label;
+import emulator.logic.program.DegreeAnalysis;
 import emulator.logic.program.Program;
+import emulator.logic.program.SymbolTable;
 import emulator.logic.variable.Variable;
 
 import java.util.*;
@@ -20,6 +22,9 @@ public class QuotationInstruction extends AbstractInstruction implements Expanda
     private final QuoteParser parser;
     private final QuotationRegistry registry;
     private final VarResolver varResolver;
+    private volatile QuoteArg.Call compiledCall;
+    // Upper-cased names of the functions whose bodies this call was inlined from (empty for a program's own calls)
+    private final Set<String> inlinedInto;
 
     private QuotationInstruction(Builder builder) {
         super(emulator.logic.instruction.InstructionData.QUOTATION, Objects.requireNonNull(builder.variable, "variable"), builder.myLabel);
@@ -29,6 +34,8 @@ public class QuotationInstruction extends AbstractInstruction implements Expanda
         this.rawArgs = List.copyOf(this.parser.parseTopLevelArgs(this.functionArguments));
         this.registry = Objects.requireNonNull(builder.registry, "registry");
         this.varResolver = Objects.requireNonNull(builder.varResolver, "varResolver");
+        this.compiledCall = builder.compiledCall;
+        this.inlinedInto = Set.copyOf(builder.inlinedInto);
 
         setArgument("functionName", this.functionName);
         setArgument("functionArguments", this.functionArguments);
@@ -43,6 +50,8 @@ public class QuotationInstruction extends AbstractInstruction implements Expanda
         private QuoteParser parser;
         private QuotationRegistry registry;
         private VarResolver varResolver;
+        private QuoteArg.Call compiledCall;
+        private Set<String> inlinedInto = Set.of();
 
         public Builder variable(Variable variable) { this.variable = variable; return this; }
         public Builder funcName(String funcName) { this.funcName = funcName; return this; }
@@ -51,6 +60,8 @@ public class QuotationInstruction extends AbstractInstruction implements Expanda
         public Builder parser(QuoteParser parser) { this.parser = parser; return this; }
         public Builder registry(QuotationRegistry r) { this.registry = r; return this; }
         public Builder varResolver(VarResolver var) { this.varResolver = var; return this; }
+        public Builder compiledCall(QuoteArg.Call call) { this.compiledCall = call; return this; }
+        public Builder inlinedInto(Set<String> functions) { this.inlinedInto = functions; return this; }
 
         public QuotationInstruction build() { return new QuotationInstruction(this); }
     }
@@ -61,88 +72,58 @@ public class QuotationInstruction extends AbstractInstruction implements Expanda
         if (evaluator == null) {
             throw new IllegalStateException("QuoteEvaluator is not available in ExecutionContext");
         }
-        long resultY = QuoteUtils.runQuotedEval(functionName, functionArguments, ctx, registry, parser, varResolver, evaluator);
+        long resultY = QuoteUtils.runCall(compiledCall(), ctx, registry, parser, varResolver, evaluator);
         ctx.updateVariable(getVariable(), resultY);
         return FixedLabel.EMPTY;
     }
 
     @Override
     public List<Instruction> expand(ExpansionHelper helper) {
-        if (helper.isExpanding(functionName)) {
+        // A call back into a function it was inlined from would expand forever; it stays a call
+        if (isRecursive()) {
             return List.of(this);
         }
-        helper.markExpanding(functionName);
-        try {
-            List<Instruction> out = new ArrayList<>();
-            Label origLbl = getLabel();
-            if (origLbl != null && !FixedLabel.EMPTY.equals(origLbl)) {
-                out.add(new NeutralInstruction(getVariable(), origLbl));
-            }
+        List<Instruction> out = new ArrayList<>();
+        Label origLbl = getLabel();
+        if (origLbl != null && !FixedLabel.EMPTY.equals(origLbl)) {
+            out.add(new NeutralInstruction(getVariable(), origLbl));
+        }
 
-            Program qProgram = registry.getProgramByName(functionName);
-            Map<Variable, Variable> varSub = new HashMap<>();
-            Map<Integer, Variable> inputIndexToFresh = new HashMap<>();
-            Variable newY = null;
-
-            for (Variable qv : qProgram.getVariables()) {
-                switch (qv.getType()) {
-                    case INPUT -> {
-                        Variable fresh = helper.freshVar();
-                        varSub.put(qv, fresh);
-                        inputIndexToFresh.put(qv.getNumber(), fresh);
-                    }
-                    case WORK -> varSub.put(qv, helper.freshVar());
-                    default -> {
-                        if (QuoteUtils.isOutputVar(qv)) {
-                            newY = helper.freshVar();
-                            varSub.put(qv, newY);
-                        }
-                    }
-                }
-            }
-            if (newY == null) {
-                newY = helper.freshVar();
-            }
+        Program qProgram = registry.getProgramByName(functionName);
+        FunctionTemplate.Names names = FunctionTemplate.of(qProgram, FunctionTemplate.Kind.QUOTE).reserve(helper);
 
-            Label lend = helper.freshLabel();
-            Map<String, Label> labelSub = new HashMap<>();
-            int nInputs = inputIndexToFresh.isEmpty() ? 0 : Collections.max(inputIndexToFresh.keySet());
-            for (int i = 1; i <= nInputs; i++) {
-                Variable dstZi = inputIndexToFresh.get(i);
-                if (dstZi == null) {
-                    Variable filler = helper.freshVar();
-                    out.add(new ZeroVariableInstruction(filler, FixedLabel.EMPTY));
-                    continue;
-                }
-
-                String tok = (i - 1 < rawArgs.size()) ? rawArgs.get(i - 1) : "";
-                if (tok.isBlank()) {
-                    out.add(new ZeroVariableInstruction(dstZi, FixedLabel.EMPTY));
-                } else if (parser.isNestedCall(tok)) {
-                    QuoteParser.NestedCall nc = parser.parseNestedCall(tok);
-                    out.add(new Builder()
-                            .variable(dstZi)
-                            .funcName(nc.name())
-                            .funcArguments(nc.argsCsv())
-                            .parser(parser)
-                            .registry(registry)
-                            .varResolver(varResolver)
-                            .build());
-                } else {
-                    Variable src = resolveLoose(varResolver, tok);
-                    out.add(new AssignmentInstruction(dstZi, src, FixedLabel.EMPTY));
-                }
+        for (int i = 1; i <= names.inputCount(); i++) {
+            Variable dstZi = names.input(i);
+            if (dstZi == null) {
+                Variable filler = helper.freshVar();
+                out.add(new ZeroVariableInstruction(filler, FixedLabel.EMPTY));
+                continue;
             }
 
-            for (Instruction iq : qProgram.getInstructions()) {
-                out.add(cloneWithSubs(iq, varSub, labelSub, helper, lend));
+            String tok = (i - 1 < rawArgs.size()) ? rawArgs.get(i - 1) : "";
+            if (tok.isBlank()) {
+                out.add(new ZeroVariableInstruction(dstZi, FixedLabel.EMPTY));
+            } else if (parser.isNestedCall(tok)) {
+                QuoteParser.NestedCall nc = parser.parseNestedCall(tok);
+                out.add(new Builder()
+                        .variable(dstZi)
+                        .funcName(nc.name())
+                        .funcArguments(nc.argsCsv())
+                        .parser(parser)
+                        .registry(registry)
+                        .varResolver(varResolver)
+                        .inlinedInto(inlinedInto)
+                        .build());
+            } else {
+                Variable src = resolveLoose(varResolver, tok);
+                out.add(new AssignmentInstruction(dstZi, src, FixedLabel.EMPTY));
             }
-
-            out.add(new AssignmentInstruction(getVariable(), newY, lend));
-            return out;
-        } finally {
-            helper.unmarkExpanding(functionName);
         }
+
+        names.emitBody(out, inlinedIntoBody());
+
+        out.add(new AssignmentInstruction(getVariable(), names.result(), names.end()));
+        return out;
     }
 
     @Override
@@ -162,13 +143,13 @@ public class QuotationInstruction extends AbstractInstruction implements Expanda
     @Override
     public int degree() {
         int body = degreeOfProgram(functionName);
+        if (body < 0) return 0;
         int argsDepth = degreeOfArgs(functionArguments);
         return 1 + Math.max(body, argsDepth);
     }
 
     private int degreeOfProgram(String name) {
-        Program p = registry.getProgramByName(name);
-        return (p == null) ? 0 : p.calculateMaxDegree();
+        return DegreeAnalysis.calleeDegree(registry, name, inlinedInto);
     }
 
     private int degreeOfArgs(String argsCsv) {
@@ -186,8 +167,9 @@ public class QuotationInstruction extends AbstractInstruction implements Expanda
         if (!parser.isNestedCall(tok)) return 0;
 
         QuoteParser.NestedCall nc = parser.parseNestedCall(tok);
-        int nestedArgsDepth = degreeOfArgs(nc.argsCsv());
         int calleeBody = degreeOfProgram(nc.name());
+        if (calleeBody < 0) return 0;
+        int nestedArgsDepth = degreeOfArgs(nc.argsCsv());
         return 1 + Math.max(calleeBody, nestedArgsDepth);
     }
 
@@ -196,26 +178,24 @@ public class QuotationInstruction extends AbstractInstruction implements Expanda
             return varResolver.resolve(tok);
         } catch (RuntimeException ex) {
             String t = tok.trim();
+            SymbolTable symbols = (varResolver == null) ? null : varResolver.symbols();
             if ("y".equals(t)) {
-                return new emulator.logic.variable.VariableImpl(
-                        emulator.logic.variable.VariableType.RESULT, 0);
+                return (symbols != null) ? symbols.variable(emulator.logic.variable.VariableType.RESULT, 0)
+                        : new emulator.logic.variable.VariableImpl(emulator.logic.variable.VariableType.RESULT, 0);
             } else if (t.length() >= 2 && (t.charAt(0) == 'x' || t.charAt(0) == 'z')) {
                 char kind = t.charAt(0);
                 int idx = Integer.parseInt(t.substring(1));
                 if (idx <= 0) throw new IllegalArgumentException("Illegal variable index: " + tok);
-                return new emulator.logic.variable.VariableImpl(
-                        (kind == 'x') ? emulator.logic.variable.VariableType.INPUT
-                                : emulator.logic.variable.VariableType.WORK,
-                        idx);
+                emulator.logic.variable.VariableType type = (kind == 'x')
+                        ? emulator.logic.variable.VariableType.INPUT
+                        : emulator.logic.variable.VariableType.WORK;
+                return (symbols != null) ? symbols.variable(type, idx)
+                        : new emulator.logic.variable.VariableImpl(type, idx);
             }
             throw ex;
         }
     }
 
-    private static Variable subVar(Map<Variable, Variable> map, Variable key) {
-        return map.getOrDefault(key, key);
-    }
-
     private void collectVariables(String token, Set<Variable> vars) {
         if (token == null) {
             return;
@@ -252,92 +232,7 @@ public class QuotationInstruction extends AbstractInstruction implements Expanda
             } catch (RuntimeException ignored) {}
         }
 
-        return QuoteUtils.tryResolveVariableByName(token);
-    }
-
-    private Label subLabel(Map<String, Label> map, Label key, ExpansionHelper helper, Label lend) {
-        if (key == null || FixedLabel.EMPTY.equals(key)) return FixedLabel.EMPTY;
-        if (FixedLabel.EXIT.equals(key)) return lend;
-        String name = key.getLabelRepresentation();
-        return map.computeIfAbsent(name, n -> helper.freshLabel());
-    }
-
-    private Instruction cloneWithSubs(Instruction iq,
-                                      Map<Variable, Variable> varSub,
-                                      Map<String, Label> labelSub,
-                                      ExpansionHelper helper,
-                                      Label lend) {
-
-        Label newLbl = subLabel(labelSub, iq.getLabel(), helper, lend);
-
-        if (iq instanceof IncreaseInstruction inc) {
-            return new IncreaseInstruction(subVar(varSub, inc.getVariable()), newLbl);
-        }
-        if (iq instanceof DecreaseInstruction dec) {
-            return new DecreaseInstruction(subVar(varSub, dec.getVariable()), newLbl);
-        }
-        if (iq instanceof NeutralInstruction neu) {
-            return new NeutralInstruction(subVar(varSub, neu.getVariable()), newLbl);
-        }
-        if (iq instanceof ZeroVariableInstruction zv) {
-            return new ZeroVariableInstruction(subVar(varSub, zv.getVariable()), newLbl);
-        }
-        if (iq instanceof GoToLabelInstruction gl) {
-            return new GoToLabelInstruction(newLbl, subLabel(labelSub, gl.getgtlLabel(), helper, lend));
-        }
-        if (iq instanceof JumpNotZeroInstruction jnz) {
-            return new JumpNotZeroInstruction(
-                    subVar(varSub, jnz.getVariable()),
-                    subLabel(labelSub, jnz.getJnzLabel(), helper, lend),
-                    newLbl);
-        }
-        if (iq instanceof AssignmentInstruction asg) {
-            return new AssignmentInstruction(
-                    subVar(varSub, asg.getVariable()),
-                    subVar(varSub, asg.getAssignedVariable()),
-                    newLbl);
-        }
-        if (iq instanceof ConstantAssignmentInstruction ca) {
-            return new ConstantAssignmentInstruction(
-                    subVar(varSub, ca.getVariable()),
-                    ca.getConstantValue(),
-                    newLbl);
-        }
-        if (iq instanceof JumpZeroInstruction jz) {
-            return new JumpZeroInstruction(
-                    subVar(varSub, jz.getVariable()),
-                    subLabel(labelSub, jz.getJzLabel(), helper, lend),
-                    newLbl);
-        }
-        if (iq instanceof JumpEqualConstantInstruction jec) {
-            return new JumpEqualConstantInstruction.Builder()
-                    .variable(subVar(varSub, jec.getVariable()))
-                    .constantValue(jec.getConstantValue())
-                    .jeConstantLabel(subLabel(labelSub, jec.getJeConstantLabel(), helper, lend))
-                    .myLabel(newLbl)
-                    .build();
-        }
-        if (iq instanceof JumpEqualVariableInstruction jev) {
-            return new JumpEqualVariableInstruction.Builder()
-                    .variable(subVar(varSub, jev.getVariable()))
-                    .compareVariable(subVar(varSub, jev.getCompareVariable()))
-                    .jeVariableLabel(subLabel(labelSub, jev.getJeVariableLabel(), helper, lend))
-                    .myLabel(newLbl)
-                    .build();
-        }
-        if (iq instanceof QuotationInstruction qi) {
-            return new QuotationInstruction.Builder()
-                    .variable(subVar(varSub, qi.getVariable()))
-                    .funcName(qi.functionName())
-                    .funcArguments(qi.functionArguments())
-                    .parser(qi.parser)
-                    .registry(qi.registry)
-                    .varResolver(qi.varResolver)
-                    .myLabel(newLbl)
-                    .build();
-        }
-
-        return new NeutralInstruction(subVar(varSub, iq.getVariable()), newLbl);
+        return QuoteUtils.tryResolveVariableByName(token, (varResolver == null) ? null : varResolver.symbols());
     }
 
     public String functionName() { return functionName; }
@@ -346,5 +241,30 @@ public class QuotationInstruction extends AbstractInstruction implements Expanda
     public QuoteParser getParser() {return parser;}
     public String getFunctionName() {return functionName;}
     public String getFunctionArguments() {return functionArguments;}
+    public QuotationRegistry getRegistry() {return registry;}
+    public VarResolver getVarResolver() {return varResolver;}
+    public Set<String> getInlinedInto() {return inlinedInto;}
+
+    //This func checks if the call is to a function whose body it was inlined from
+    public boolean isRecursive() {
+        return inlinedInto.contains(functionName.toUpperCase(Locale.ROOT));
+    }
+
+    //This func returns the functions the body of the called function sits in once inlined
+    private Set<String> inlinedIntoBody() {
+        Set<String> around = new HashSet<>(inlinedInto);
+        around.add(functionName.toUpperCase(Locale.ROOT));
+        return around;
+    }
+
+    //This func returns the call with its argument string parsed (done once, normally while the program loads)
+    public QuoteArg.Call compiledCall() {
+        QuoteArg.Call call = compiledCall;
+        if (call == null) {
+            call = QuoteArgCompiler.compileCall(functionName, functionArguments, parser, registry, varResolver);
+            compiledCall = call;
+        }
+        return call;
+    }
 
 }
@@ -0,0 +1,21 @@
+package emulator.logic.instruction.quote;
+
+import emulator.logic.program.Program;
+import emulator.logic.variable.Variable;
+
+import java.util.List;
+
+// One argument of a QUOTE / JUMP_EQUAL_FUNCTION call, parsed once when the program is loaded
+public sealed interface QuoteArg {
+
+    record Const(long value) implements QuoteArg {}
+
+    record Var(Variable variable) implements QuoteArg {}
+
+    // program / args are null when they could not be resolved at load time; they are then looked up when
+    // the call runs, so any error surfaces at the same point it did before
+    record Call(String name, Program program, List<QuoteArg> args, String argsCsv) implements QuoteArg {}
+
+    // Anything else: resolved at run time the way QuoteUtils always did (context variable, resolver, function)
+    record Token(String text) implements QuoteArg {}
+}
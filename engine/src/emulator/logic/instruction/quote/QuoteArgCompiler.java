@@ -0,0 +1,90 @@
+package emulator.logic.instruction.quote;
+
+import emulator.logic.program.Program;
+import emulator.logic.variable.Variable;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+
+// Turns a QUOTE argument string into a QuoteArg tree
+public final class QuoteArgCompiler {
+    private QuoteArgCompiler() {}
+
+    //This func compiles a call; parts that cannot be resolved yet are left for run time
+    public static QuoteArg.Call compileCall(String name, String argsCsv, QuoteParser parser,
+                                            QuotationRegistry registry, VarResolver varResolver) {
+        String csv = (argsCsv == null) ? "" : argsCsv;
+        List<QuoteArg> args;
+        try {
+            args = compileArgs(csv, parser, registry, varResolver);
+        } catch (RuntimeException e) {
+            args = null;
+        }
+        return new QuoteArg.Call(name, lookup(name, registry), args, csv);
+    }
+
+    //This func compiles the top level arguments; it throws if the string itself does not parse
+    public static List<QuoteArg> compileArgs(String argsCsv, QuoteParser parser,
+                                             QuotationRegistry registry, VarResolver varResolver) {
+        List<String> tokens = parser.parseTopLevelArgs(argsCsv);
+        List<QuoteArg> out = new ArrayList<>(tokens.size());
+        for (String token : tokens) {
+            out.add(compileToken(token.trim(), parser, registry, varResolver));
+        }
+        return Collections.unmodifiableList(out);
+    }
+
+    private static QuoteArg compileToken(String token, QuoteParser parser,
+                                         QuotationRegistry registry, VarResolver varResolver) {
+        if (token.isEmpty()) return new QuoteArg.Const(0L);
+
+        if (parser.isNestedCall(token)) {
+            try {
+                QuoteParser.NestedCall nc = parser.parseNestedCall(token);
+                return compileCall(nc.name(), nc.argsCsv(), parser, registry, varResolver);
+            } catch (RuntimeException e) {
+                return new QuoteArg.Token(token);
+            }
+        }
+
+        // A variable of an inlined function body stands for its fresh name, not the caller's variable of that name
+        Variable renamed = QuoteUtils.renamedVariable(token, varResolver);
+        if (renamed != null) return new QuoteArg.Var(renamed);
+
+        Variable v = QuoteUtils.tryResolveVariableByName(token.toLowerCase(Locale.ROOT));
+        if (v != null && v.getRepresentation().equalsIgnoreCase(token)) {
+            Variable own = resolveQuietly(token, varResolver);
+            return v.equals(own) ? new QuoteArg.Var(own) : new QuoteArg.Token(token);
+        }
+        if (resolveQuietly(token, varResolver) != null) return new QuoteArg.Token(token);
+
+        Program fn = lookup(token, registry);
+        if (fn != null) return new QuoteArg.Call(token, fn, List.of(), "");
+
+        try {
+            return new QuoteArg.Const(Long.parseLong(token));
+        } catch (NumberFormatException e) {
+            return new QuoteArg.Token(token);
+        }
+    }
+
+    private static Variable resolveQuietly(String token, VarResolver varResolver) {
+        if (varResolver == null) return null;
+        try {
+            return varResolver.resolve(token);
+        } catch (RuntimeException e) {
+            return null;
+        }
+    }
+
+    private static Program lookup(String name, QuotationRegistry registry) {
+        if (name == null || name.isBlank()) return null;
+        try {
+            return registry.getProgramByName(name);
+        } catch (RuntimeException e) {
+            return null;
+        }
+    }
+}
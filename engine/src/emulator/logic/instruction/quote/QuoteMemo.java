@@ -0,0 +1,116 @@
+package emulator.logic.instruction.quote;
+
+import emulator.logic.program.Program;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Bounded LRU cache of finished function calls. S functions are deterministic, so a call is identified by
+// the callee, the degree it ran at and its argument vector.
+public final class QuoteMemo {
+    private QuoteMemo() {}
+
+    public static final String CAPACITY_PROPERTY = "emulator.quoteMemo.capacity";
+    private static final int DEFAULT_CAPACITY = 4096;
+
+    private static volatile int capacity = Integer.getInteger(CAPACITY_PROPERTY, DEFAULT_CAPACITY);
+    private static final AtomicLong hits = new AtomicLong();
+    private static final AtomicLong misses = new AtomicLong();
+
+    private static final Map<Key, Entry> CACHE = new LinkedHashMap<>(256, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Key, Entry> eldest) {
+            return size() > capacity;
+        }
+    };
+
+    // y: the callee's result
+    // ownCycles: cycles the call adds on top of whatever was pending when it started
+    // credits: credits the call (and its nested calls) charged
+    public record Entry(long y, int ownCycles, long credits) {}
+
+    public record Stats(long hits, long misses, int size, int capacity) {}
+
+    private record Key(Program program, int size, int degree, long[] args) {
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof Key k && k.program == program && k.size == size && k.degree == degree
+                    && Arrays.equals(k.args, args);
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * (31 * System.identityHashCode(program) + degree) + Arrays.hashCode(args);
+        }
+    }
+
+    //This func looks up a finished call
+    public static Entry lookup(Program program, int degree, Long[] args) {
+        return lookup(program, degree, unbox(args), args.length);
+    }
+
+    //This func looks up a finished call whose arguments are the first n values of args
+    public static Entry lookup(Program program, int degree, long[] args, int n) {
+        if (capacity <= 0) return null;
+        Entry e;
+        synchronized (CACHE) {
+            e = CACHE.get(key(program, degree, args, n));
+        }
+        if (e != null) hits.incrementAndGet();
+        else misses.incrementAndGet();
+        return e;
+    }
+
+    //This func stores a finished call
+    public static void store(Program program, int degree, Long[] args, Entry entry) {
+        store(program, degree, unbox(args), args.length, entry);
+    }
+
+    public static void store(Program program, int degree, long[] args, int n, Entry entry) {
+        if (capacity <= 0) return;
+        synchronized (CACHE) {
+            CACHE.put(key(program, degree, args, n), entry);
+        }
+    }
+
+    public static void setCapacity(int newCapacity) {
+        capacity = Math.max(0, newCapacity);
+        synchronized (CACHE) {
+            if (capacity == 0) {
+                CACHE.clear();
+            } else {
+                var it = CACHE.entrySet().iterator();
+                while (CACHE.size() > capacity && it.hasNext()) {
+                    it.next();
+                    it.remove();
+                }
+            }
+        }
+    }
+
+    public static void clear() {
+        synchronized (CACHE) {
+            CACHE.clear();
+        }
+        hits.set(0);
+        misses.set(0);
+    }
+
+    public static Stats stats() {
+        synchronized (CACHE) {
+            return new Stats(hits.get(), misses.get(), CACHE.size(), capacity);
+        }
+    }
+
+    private static Key key(Program program, int degree, long[] args, int n) {
+        return new Key(program, program.getInstructions().size(), degree, Arrays.copyOf(args, n));
+    }
+
+    private static long[] unbox(Long[] args) {
+        long[] values = new long[args.length];
+        for (int i = 0; i < args.length; i++) values[i] = (args[i] == null) ? 0L : args[i];
+        return values;
+    }
+}
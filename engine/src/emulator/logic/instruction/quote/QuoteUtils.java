@@ -5,6 +5,7 @@ import emulator.logic.execution.ExecutionContextImpl;
 import emulator.logic.execution.ProgramExecutorImpl;
 import emulator.logic.execution.QuoteEvaluator;
 import emulator.logic.program.Program;
+import emulator.logic.user.UserManager;
 import emulator.logic.variable.Variable;
 
 import java.util.*;
@@ -12,9 +13,6 @@ import java.util.*;
 public final class QuoteUtils {
     private QuoteUtils() {}
 
-    private static final ThreadLocal<Deque<String>> CALL_STACK =
-            ThreadLocal.withInitial(ArrayDeque::new);
-
     public static long runQuotedEval(String fname,
                                      String argsCsv,
                                      ExecutionContext ctx,
@@ -22,53 +20,95 @@ public final class QuoteUtils {
                                      QuoteParser parser,
                                      VarResolver varResolver,
                                      QuoteEvaluator quoteEval) {
+        return runCall(new QuoteArg.Call(fname, null, null, argsCsv), ctx, registry, parser, varResolver, quoteEval);
+    }
+
+    //This func runs a compiled call; whatever was not resolved at load time is resolved here
+    public static long runCall(QuoteArg.Call call,
+                               ExecutionContext ctx,
+                               QuotationRegistry registry,
+                               QuoteParser parser,
+                               VarResolver varResolver,
+                               QuoteEvaluator quoteEval) {
+        String caller = (ctx instanceof ExecutionContextImpl ectx) ? ectx.getCallName() : null;
+        return runCall(call, caller, ctx, registry, parser, varResolver, quoteEval);
+    }
+
+    //This func runs a call made inside caller (the upper-cased name of the calling function, null at the top).
+    //Its cycles go to the context's dynamic cycles, for the executor running ctx to add to its own.
+    private static long runCall(QuoteArg.Call call,
+                                String caller,
+                                ExecutionContext ctx,
+                                QuotationRegistry registry,
+                                QuoteParser parser,
+                                VarResolver varResolver,
+                                QuoteEvaluator quoteEval) {
+        String fname = call.name();
         if (fname == null || fname.isBlank())
             throw new IllegalArgumentException("Empty QUOTE function name");
 
         String upper = fname.trim().toUpperCase(Locale.ROOT);
-        Deque<String> stack = CALL_STACK.get();
-
-        // 🧠 מנגנון הגנה משופר — מזהה רק לולאה שחוזרת על עצמה עם אותו נתיב
-        if (!stack.isEmpty() && stack.peekFirst().equals(upper)) {
-            String path = String.join(" -> ", stack);
+        if (upper.equals(caller)) {
             throw new IllegalStateException(
-                    "Recursive QUOTE call detected (true recursion): " + path + " -> " + upper);
+                    "Recursive QUOTE call detected (true recursion): " + caller + " -> " + upper);
         }
 
-        stack.push(upper);
-        try {
-            Program qProgram = registry.getProgramByName(fname);
-            if (qProgram == null)
-                throw new IllegalArgumentException("Unknown function: " + fname);
-
-            List<String> args = parser.parseTopLevelArgs(argsCsv);
-            int need = requiredInputCount(qProgram);
-            Long[] inputs = new Long[need];
-            Arrays.fill(inputs, 0L);
-
-            for (int i = 0; i < Math.min(need, args.size()); i++) {
-                String token = args.get(i).trim();
-                inputs[i] = evalArgToValue(token, ctx, parser, registry, varResolver, quoteEval);
-            }
-
-            System.out.println(">>> Enter QUOTE: " + upper + " stack=" + stack);
+        Program qProgram = (call.program() != null) ? call.program() : registry.getProgramByName(fname);
+        if (qProgram == null)
+            throw new IllegalArgumentException("Unknown function: " + fname);
 
-            ProgramExecutorImpl exec = new ProgramExecutorImpl(qProgram, quoteEval);
-            long y = exec.run(inputs);
-            int totalCycles = exec.getLastExecutionCycles() + exec.getLastDynamicCycles();
-            registerQuoteCycles(ctx, totalCycles);
+        List<QuoteArg> args = (call.args() != null) ? call.args()
+                : QuoteArgCompiler.compileArgs(call.argsCsv(), parser, registry, varResolver);
+        int need = requiredInputCount(qProgram);
+        Long[] inputs = new Long[need];
+        Arrays.fill(inputs, 0L);
 
-            System.out.println("<<< Exit QUOTE: " + upper);
-            return y;
+        for (int i = 0; i < Math.min(need, args.size()); i++) {
+            inputs[i] = evalArg(args.get(i), upper, ctx, parser, registry, varResolver, quoteEval);
+        }
 
-        } finally {
-            stack.pop();
-            if (stack.isEmpty()) CALL_STACK.remove();
+        QuoteMemo.Entry memo = QuoteMemo.lookup(qProgram, 0, inputs);
+        if (memo != null && chargeMemoized(memo)) {
+            registerQuoteCycles(ctx, memo.ownCycles());
+            return memo.y();
         }
+
+        long chargedBefore = UserManager.chargedOnThread();
+        ProgramExecutorImpl exec = new ProgramExecutorImpl(qProgram, quoteEval);
+        exec.setCallName(upper);
+        long y = exec.run(inputs);
+        int totalCycles = exec.getLastExecutionCycles() + exec.getLastDynamicCycles();
+        QuoteMemo.store(qProgram, 0, inputs,
+                new QuoteMemo.Entry(y, totalCycles, UserManager.chargedOnThread() - chargedBefore));
+        registerQuoteCycles(ctx, totalCycles);
+        return y;
+    }
+
+    //This func charges a memoized call the credits its real run charged; false means run it for real
+    public static boolean chargeMemoized(QuoteMemo.Entry memo) {
+        if (UserManager.getCurrentUser().isEmpty()) return false;
+        return memo.credits() <= 0 || UserManager.charge(memo.credits());
+    }
+
+    //This func evaluates one compiled argument of a call to caller
+    private static long evalArg(QuoteArg arg,
+                                String caller,
+                                ExecutionContext ctx,
+                                QuoteParser parser,
+                                QuotationRegistry registry,
+                                VarResolver varResolver,
+                                QuoteEvaluator quoteEval) {
+        return switch (arg) {
+            case QuoteArg.Const c -> c.value();
+            case QuoteArg.Var v -> ctx.getVariableValue(v.variable());
+            case QuoteArg.Call c -> runCall(c, caller, ctx, registry, parser, varResolver, quoteEval);
+            case QuoteArg.Token t -> evalArgToValue(t.text(), caller, ctx, parser, registry, varResolver, quoteEval);
+        };
     }
 
-    public static Long evalArgToValue(
+    private static Long evalArgToValue(
             String token,
+            String caller,
             ExecutionContext ctx,
             QuoteParser parser,
             QuotationRegistry registry,
@@ -80,9 +120,13 @@ public final class QuoteUtils {
 
         if (parser.isNestedCall(token)) {
             QuoteParser.NestedCall nc = parser.parseNestedCall(token);
-            return runQuotedEval(nc.name(), nc.argsCsv(), ctx, registry, parser, varResolver, quoteEval);
+            return runCall(new QuoteArg.Call(nc.name(), null, null, nc.argsCsv()), caller, ctx,
+                    registry, parser, varResolver, quoteEval);
         }
 
+        Variable renamed = renamedVariable(token, varResolver);
+        if (renamed != null) return ctx.getVariableValue(renamed);
+
         Long byName = valueFromContextByName(ctx, token);
         if (byName != null) return byName;
 
@@ -94,7 +138,8 @@ public final class QuoteUtils {
         }
 
         if (isFunctionCall(token, registry)) {
-            return runQuotedEval(token.trim(), "", ctx, registry, parser, varResolver, quoteEval);
+            return runCall(new QuoteArg.Call(token.trim(), null, null, ""), caller, ctx,
+                    registry, parser, varResolver, quoteEval);
         }
 
         try {
@@ -135,6 +180,11 @@ public final class QuoteUtils {
         return t.matches("[XZ][0-9]+");
     }
 
+    //This func returns the fresh variable a name of an inlined function body was renamed to (null for other names)
+    public static Variable renamedVariable(String token, VarResolver varResolver) {
+        return (varResolver instanceof DelegatingVarResolver d) ? d.local(token) : null;
+    }
+
     public static boolean isFunctionCall(String token, QuotationRegistry registry) {
         if (token == null || token.isBlank()) return false;
         return registry.getProgramByName(token.trim().toUpperCase(Locale.ROOT)) != null;
@@ -142,36 +192,23 @@ public final class QuoteUtils {
 
     private static void registerQuoteCycles(ExecutionContext ctx, int cycles) {
         if (cycles <= 0) return;
-        addCycles(cycles);
         if (ctx instanceof ExecutionContextImpl ectx) {
             ectx.addDynamicCycles(cycles);
         }
     }
 
-    public static void addCycles(int n) {
-        QuoteCycles.add(n);
-    }
-
-    public static int getCurrentCycles() {
-        return QuoteCycles.get();
-    }
-
-    public static int drainCycles() {
-        return QuoteCycles.drain();
-    }
-
-    private static final class QuoteCycles {
-        private static final ThreadLocal<Integer> cycles = ThreadLocal.withInitial(() -> 0);
-        static void add(int n) { cycles.set(cycles.get() + Math.max(0, n)); }
-        static int get() { return cycles.get(); }
-        static int drain() { int c = cycles.get(); cycles.set(0); return c; }
-    }
-
     public static boolean isOutputVar(emulator.logic.variable.Variable v) {
         if (v == null) return false;
         return v.getType() == emulator.logic.variable.VariableType.RESULT;
     }
 
+    //This func returns the variable a name stands for, interned in symbols when there is a table
+    public static emulator.logic.variable.Variable tryResolveVariableByName(String name,
+                                                                           emulator.logic.program.SymbolTable symbols) {
+        emulator.logic.variable.Variable v = tryResolveVariableByName(name);
+        return (symbols == null) ? v : symbols.intern(v);
+    }
+
     public static emulator.logic.variable.Variable tryResolveVariableByName(String name) {
         if (name == null || name.isBlank()) return null;
         String t = name.trim();
@@ -1,7 +1,11 @@
 package emulator.logic.instruction.quote;
 
+import emulator.logic.program.SymbolTable;
 import emulator.logic.variable.Variable;
 
 public interface VarResolver {
     Variable resolve(String name);
+
+    //This func returns the symbol table names resolved here are interned in (null if there is none)
+    default SymbolTable symbols() { return null; }
 }
@@ -1,10 +1,15 @@
 package emulator.logic.label;
 
+import emulator.logic.program.SymbolTable;
+
 import java.io.Serializable;
 
 public class LabelImpl implements Label, Serializable {
 
     private final String label;
+    // The symbol table that interned this label and its id there (null / -1 for a free-standing label)
+    private transient SymbolTable owner;
+    private final int id;
     private static final long serialVersionUID = 1L;
 
     public LabelImpl(String name) {  //Constructor that receives a string
@@ -12,10 +17,22 @@ public class LabelImpl implements Label, Serializable {
             throw new IllegalArgumentException("Invalid label name: " + name);
         }
         this.label = name;
+        this.owner = null;
+        this.id = -1;
     }
 
     public LabelImpl(int number) {   //Constructor that receives an int
-        label = "L" + number;
+        this("L" + number);
+    }
+
+    //Constructor used by SymbolTable to make the interned instance of a name
+    public LabelImpl(String name, SymbolTable owner, int id) {
+        if (!name.startsWith("L")) {
+            throw new IllegalArgumentException("Invalid label name: " + name);
+        }
+        this.label = name;
+        this.owner = owner;
+        this.id = id;
     }
 
     //This func returns label representation
@@ -24,4 +41,27 @@ public class LabelImpl implements Label, Serializable {
     //This func returns label representation
     public String toString() { return getLabelRepresentation(); }
 
+    // ---- getters funcs ---- //
+    public SymbolTable owner() { return owner; }
+    public int id() { return id; }
+
+    //This func gives a label read back with its symbol table that table as owner again
+    public void attach(SymbolTable table) {
+        if (owner == null && id >= 0 && id < table.labelCount() && table.labelAt(id) == this) owner = table;
+    }
+
+    //This func checks if labels are equal
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof LabelImpl that)) return false;
+        return label.equals(that.label);
+    }
+
+    //This func returns hash code
+    @Override
+    public int hashCode() {
+        return label.hashCode();
+    }
+
 }
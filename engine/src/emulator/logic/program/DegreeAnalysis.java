@@ -0,0 +1,124 @@
+package emulator.logic.program;
+
+import emulator.logic.instruction.quote.QuotationRegistry;
+
+import java.util.*;
+import java.util.function.IntSupplier;
+
+// Max expansion degree over the function dependency graph. Each program keeps its own degree once computed
+// (see ProgramImpl); the callees it looked up while computing are recorded here, so a change to a function
+// only resets the programs that (transitively) call it.
+// A call to a function whose body it sits in is never expanded (it stays a call and runs at run time), so it
+// adds nothing. Which calls those are depends on the functions being inlined around the callee, so a degree
+// that met one is only kept for the program as a whole, not reused for it as a callee.
+public final class DegreeAnalysis {
+    private DegreeAnalysis() {}
+
+    private static final Object LOCK = new Object();
+    // callee -> programs whose degree was computed from it
+    private static final Map<Program, Set<Program>> CALLERS = new WeakHashMap<>();
+    // registry -> function name (upper-cased) -> programs that looked that name up
+    private static final Map<QuotationRegistry, Map<String, Set<Program>>> CALLERS_BY_NAME = new WeakHashMap<>();
+    // Programs whose degree is being computed on this thread, innermost last, with the functions whose
+    // bodies they are inlined into
+    private static final ThreadLocal<Deque<Frame>> COMPUTING = ThreadLocal.withInitial(ArrayDeque::new);
+    // Calls left as calls (see calleeDegree) on this thread so far
+    private static final ThreadLocal<int[]> CUTS = ThreadLocal.withInitial(() -> new int[1]);
+
+    private record Frame(Program program, Set<String> inlinedInto) {}
+
+    // A degree, and whether a call was left as a call while computing it
+    record Result(int degree, boolean cyclic) {}
+
+    //This func runs the degree computation of a whole program (no function around it), recording the callees
+    // it reaches
+    static Result analyze(Program program, IntSupplier body) {
+        Deque<Frame> outer = COMPUTING.get();
+        COMPUTING.set(new ArrayDeque<>());
+        try {
+            return analyze(program, Set.of(), body);
+        } finally {
+            COMPUTING.set(outer);
+        }
+    }
+
+    //This func runs the degree computation of a function body inlined into the given functions
+    static Result analyze(Program program, Set<String> inlinedInto, IntSupplier body) {
+        Deque<Frame> stack = COMPUTING.get();
+        int[] cuts = CUTS.get();
+        int before = cuts[0];
+        stack.addLast(new Frame(program, inlinedInto));
+        try {
+            return new Result(body.getAsInt(), cuts[0] != before);
+        } finally {
+            stack.removeLast();
+        }
+    }
+
+    //This func returns the degree of a call's body, or -1 if the call is to a function it is inlined into
+    // (the call then stays as it is), and records the call edge. inlinedInto are the upper-cased names of the
+    // functions whose bodies the call was inlined from.
+    public static int calleeDegree(QuotationRegistry registry, String name, Set<String> inlinedInto) {
+        String key = name.trim().toUpperCase(Locale.ROOT);
+        Program callee = registry.getProgramByName(name);
+        Deque<Frame> stack = COMPUTING.get();
+        Frame caller = stack.peekLast();
+        if (caller != null) {
+            synchronized (LOCK) {
+                CALLERS_BY_NAME.computeIfAbsent(registry, r -> new HashMap<>())
+                        .computeIfAbsent(key, n -> weakSet())
+                        .add(caller.program());
+                if (callee != null) CALLERS.computeIfAbsent(callee, c -> weakSet()).add(caller.program());
+            }
+        }
+        Set<String> around = (caller == null) ? inlinedInto : union(caller.inlinedInto(), inlinedInto);
+        if (around.contains(key)) {
+            CUTS.get()[0]++;
+            return -1;
+        }
+        if (callee == null) return 0;
+        if (callee instanceof ProgramImpl impl) return impl.degreeAsCallee(union(around, Set.of(key)));
+        return callee.calculateMaxDegree();
+    }
+
+    private static Set<String> union(Set<String> a, Set<String> b) {
+        if (a.isEmpty() || b.containsAll(a)) return b;
+        if (b.isEmpty() || a.containsAll(b)) return a;
+        Set<String> all = new HashSet<>(a);
+        all.addAll(b);
+        return all;
+    }
+
+    //This func resets the degree of every program that called a name that now refers to another function
+    public static void changed(QuotationRegistry registry, String name) {
+        if (name == null) return;
+        Set<Program> direct;
+        synchronized (LOCK) {
+            Map<String, Set<Program>> byName = CALLERS_BY_NAME.get(registry);
+            direct = (byName == null) ? null : byName.remove(name.trim().toUpperCase(Locale.ROOT));
+        }
+        if (direct == null) return;
+        for (Program p : new ArrayList<>(direct)) invalidate(p);
+    }
+
+    //This func resets a program's degree and the degree of everything that depends on it
+    public static void invalidate(Program program) {
+        Deque<Program> work = new ArrayDeque<>();
+        Set<Program> seen = Collections.newSetFromMap(new IdentityHashMap<>());
+        work.add(program);
+        while (!work.isEmpty()) {
+            Program p = work.poll();
+            if (!seen.add(p)) continue;
+            if (p instanceof ProgramImpl impl) impl.resetDegree();
+            Set<Program> callers;
+            synchronized (LOCK) {
+                callers = CALLERS.remove(p);
+            }
+            if (callers != null) work.addAll(callers);
+        }
+    }
+
+    private static Set<Program> weakSet() {
+        return Collections.newSetFromMap(new WeakHashMap<>());
+    }
+}
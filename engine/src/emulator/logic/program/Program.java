@@ -16,4 +16,5 @@ public interface Program {
     Instruction instructionAt(Label label);
     int calculateMaxDegree();
     public List<String> getInputVariableNames();
+    SymbolTable getSymbols();
 }
@@ -1,26 +1,43 @@
 package emulator.logic.program;
 
+import emulator.logic.expansion.Expandable;
+import emulator.logic.expansion.InstructionShape;
 import emulator.logic.expansion.ProgramExpander;
 import emulator.logic.instruction.*;
 import emulator.logic.instruction.quote.QuoteParser;
 import emulator.logic.instruction.quote.QuotationInstruction;
 import emulator.logic.instruction.quote.QuotationRegistry;
 
+import java.util.*;
+
+// Cycle totals are computed on instruction shapes (see InstructionShape). Each shape is expanded one level once,
+// and its total at degree d is the sum of its children's totals at d-1, so no program is ever expanded as a whole.
 public final class ProgramCost {
 
+    // Tables are shared by every ProgramCost over the same registry
+    private static final Map<QuotationRegistry, Tables> TABLES = new WeakHashMap<>();
+
     private final QuotationRegistry registry;
+    private final Tables tables;
 
     public ProgramCost(QuotationRegistry registry) {
         this.registry = registry;
+        synchronized (TABLES) {
+            this.tables = TABLES.computeIfAbsent(registry, r -> new Tables());
+        }
+    }
+
+    //This func drops the tables of a registry (called when its functions are reloaded)
+    public static void invalidate(QuotationRegistry registry) {
+        synchronized (TABLES) {
+            TABLES.remove(registry);
+        }
     }
 
     public int cyclesAtDegree(Program program, int degree) {
-        Program expanded = new ProgramExpander().expandToDegree(program, degree);
-        int total = 0;
-        for (Instruction ins : expanded.getInstructions()) {
-            total += computeCycles(ins);
+        synchronized (tables) {
+            return programCycles(program, Math.max(degree, 0));
         }
-        return total;
     }
 
     public int cyclesFullyExpanded(Program program) {
@@ -28,6 +45,54 @@ public final class ProgramCost {
         return cyclesAtDegree(program, maxDeg);
     }
 
+    private int programCycles(Program program, int degree) {
+        List<Instruction> instructions = program.getInstructions();
+        ProgramCosts pc = tables.programs.get(program);
+        if (pc == null || pc.size != instructions.size()) {
+            pc = new ProgramCosts(instructions.size());
+            for (Instruction ins : instructions) {
+                if (ins != null) pc.shapes.add(shapeInfo(ins));
+            }
+            tables.programs.put(program, pc);
+        }
+
+        Integer cached = pc.byDegree.get(degree);
+        if (cached != null) return cached;
+        int total = 0;
+        for (ShapeCosts s : pc.shapes) {
+            total += shapeCycles(s, degree);
+        }
+        pc.byDegree.put(degree, total);
+        return total;
+    }
+
+    //This func returns what an instruction of this shape sums to after `degree` expansion steps
+    private int shapeCycles(ShapeCosts s, int degree) {
+        if (degree == 0) return s.base(this);
+        List<ShapeCosts> children = s.children(this);
+        if (children == null) return s.base(this);
+
+        while (s.byDegree.size() <= degree) s.byDegree.add(null);
+        Integer cached = s.byDegree.get(degree);
+        if (cached != null) return cached;
+        int total = 0;
+        for (ShapeCosts child : children) {
+            total += shapeCycles(child, degree - 1);
+        }
+        s.byDegree.set(degree, total);
+        return total;
+    }
+
+    private ShapeCosts shapeInfo(Instruction ins) {
+        InstructionShape key = InstructionShape.of(ins);
+        ShapeCosts s = tables.shapes.get(key);
+        if (s == null) {
+            s = new ShapeCosts(ins);
+            tables.shapes.put(key, s);
+        }
+        return s;
+    }
+
     private int computeCycles(Instruction instr) {
         if (instr == null) return 0;
 
@@ -39,7 +104,7 @@ public final class ProgramCost {
         if (instr instanceof JumpEqualFunctionInstruction jefi) {
             return computeJumpEqualFunctionCycles(jefi, data);
         }
-        return data.getCycles();
+        return instr.cycles();
     }
 
     private int computeQuoteCycles(QuotationInstruction qi, InstructionData data) {
@@ -47,9 +112,7 @@ public final class ProgramCost {
 
         Program inner = registry.getProgramByName(qi.functionName());
         if (inner != null) {
-            for (Instruction innerInstr : inner.getInstructions()) {
-                total += computeCycles(innerInstr);
-            }
+            total += programCycles(inner, 0);
         }
 
         QuoteParser parser = qi.getParser();
@@ -65,9 +128,7 @@ public final class ProgramCost {
 
         Program inner = registry.getProgramByName(jefi.getFunctionName());
         if (inner != null) {
-            for (Instruction innerInstr : inner.getInstructions()) {
-                total += computeCycles(innerInstr);
-            }
+            total += programCycles(inner, 0);
         }
 
         QuoteParser parser = jefi.getParser();
@@ -85,9 +146,7 @@ public final class ProgramCost {
 
             Program nested = registry.getProgramByName(nc.name());
             if (nested != null) {
-                for (Instruction innerInstr : nested.getInstructions()) {
-                    total += computeCycles(innerInstr);
-                }
+                total += programCycles(nested, 0);
             }
 
             for (String subArg : parser.parseTopLevelArgs(nc.argsCsv())) {
@@ -97,4 +156,50 @@ public final class ProgramCost {
         return total;
     }
 
+    private static final class Tables {
+        private final Map<InstructionShape, ShapeCosts> shapes = new HashMap<>();
+        private final Map<Program, ProgramCosts> programs = new WeakHashMap<>();
+    }
+
+    private static final class ProgramCosts {
+        private final int size;
+        private final List<ShapeCosts> shapes = new ArrayList<>();
+        private final Map<Integer, Integer> byDegree = new HashMap<>();
+
+        private ProgramCosts(int size) { this.size = size; }
+    }
+
+    private static final class ShapeCosts {
+        private final Instruction sample;
+        private Integer base;
+        private List<ShapeCosts> children;
+        private boolean expanded;
+        private final List<Integer> byDegree = new ArrayList<>();
+
+        private ShapeCosts(Instruction sample) { this.sample = sample; }
+
+        private int base(ProgramCost cost) {
+            if (base == null) base = cost.computeCycles(sample);
+            return base;
+        }
+
+        //This func expands the sample one level; null means the instruction stays as it is
+        private List<ShapeCosts> children(ProgramCost cost) {
+            if (expanded) return children;
+            if (sample instanceof Expandable e) {
+                List<Instruction> produced = e.expand(ProgramExpander.newHelper(List.of(sample)));
+                boolean stays = produced == null || produced.isEmpty()
+                        || (produced.size() == 1 && produced.get(0) == sample);
+                if (!stays) {
+                    List<ShapeCosts> out = new ArrayList<>(produced.size());
+                    for (Instruction child : produced) {
+                        if (child != null) out.add(cost.shapeInfo(child));
+                    }
+                    children = out;
+                }
+            }
+            expanded = true;
+            return children;
+        }
+    }
 }
@@ -12,16 +12,26 @@ import java.util.*;
 public class ProgramImpl implements Program, Serializable {
 
     private final String name;
-    private final List<Instruction> instructions;
-    private final Set<Variable> variables;
-    private final Map<String, Integer> labelToIndex;
+    private final ArrayList<Instruction> instructions;
+    private final LinkedHashSet<Variable> variables;
+    private final HashMap<String, Integer> labelToIndex;
+    private final SymbolTable symbols;
+    // Max degree, computed once (null until then or after a callee changed)
+    private transient volatile Integer maxDegree;
+    private transient volatile boolean degreeCyclic;
     private static final long serialVersionUID = 1L;
 
     public ProgramImpl(String name) {
+        this(name, new SymbolTable());
+    }
+
+    //Constructor for a program whose names are interned in a table it shares (e.g. with its functions)
+    public ProgramImpl(String name, SymbolTable symbols) {
         this.name = name;
         this.instructions = new ArrayList<>();
         this.variables = new LinkedHashSet<>();
         this. labelToIndex = new HashMap<>();
+        this.symbols = Objects.requireNonNull(symbols, "symbols");
     }
 
     //This func returns program name
@@ -34,10 +44,11 @@ public class ProgramImpl implements Program, Serializable {
         Objects.requireNonNull(instruction, "instruction must not be null");
         int idx = instructions.size();
         instructions.add(instruction);
+        if (maxDegree != null) DegreeAnalysis.invalidate(this);
 
         // Updates all variables this instruction uses
         for (Variable var : instruction.referencedVariables()) {
-            if (var != null) variables.add(var);
+            if (var != null) variables.add(symbols.intern(var));
         }
 
         // Creates an Index label
@@ -53,6 +64,10 @@ public class ProgramImpl implements Program, Serializable {
         }
     }
 
+    //This func returns the table the program's variables and labels are interned in
+    @Override
+    public SymbolTable getSymbols() { return symbols; }
+
     //This func returns all instructions in program
     @Override
     public List<Instruction> getInstructions() { return Collections.unmodifiableList(instructions); }
@@ -77,15 +92,39 @@ public class ProgramImpl implements Program, Serializable {
     //This func returns program's max degree
     @Override
     public int calculateMaxDegree() {
-        int max = 0;
+        Integer cached = maxDegree;
+        if (cached != null) return cached;
+        DegreeAnalysis.Result r = DegreeAnalysis.analyze(this, this::instructionsDegree);
+        degreeCyclic = r.cyclic();
+        maxDegree = r.degree();
+        return r.degree();
+    }
+
+    //This func returns the degree of the program's body inlined into the given functions (itself included).
+    // Same as the program's own degree unless that met a call left as a call.
+    int degreeAsCallee(Set<String> inlinedInto) {
+        Integer cached = maxDegree;
+        if (cached != null && !degreeCyclic) return cached;
+        DegreeAnalysis.Result r = DegreeAnalysis.analyze(this, inlinedInto, this::instructionsDegree);
+        if (!r.cyclic()) {
+            degreeCyclic = false;
+            maxDegree = r.degree();
+        }
+        return r.degree();
+    }
+
+    private int instructionsDegree() {
+        int best = 0;
         for (Instruction ins : instructions) {
             if (ins != null) {
-                max = Math.max(max, ins.degree());
+                best = Math.max(best, ins.degree());
             }
         }
-        return max;
+        return best;
     }
 
+    void resetDegree() { maxDegree = null; }
+
     @Override
     public List<String> getInputVariableNames() {
         Set<Integer> nums = new TreeSet<>();
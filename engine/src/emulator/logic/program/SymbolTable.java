@@ -0,0 +1,142 @@
+package emulator.logic.program;
+
+import emulator.logic.label.FixedLabel;
+import emulator.logic.label.Label;
+import emulator.logic.label.LabelImpl;
+import emulator.logic.variable.Variable;
+import emulator.logic.variable.VariableImpl;
+import emulator.logic.variable.VariableType;
+
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.Serial;
+import java.io.Serializable;
+import java.util.*;
+
+// The variables and labels of a loaded program (its functions and expansions included), interned: one instance per
+// name, each with a dense id (variables and labels are numbered apart, from 0). Names made through the table are
+// equal only when they are the same instance, and data kept per name can live in arrays indexed by id.
+public final class SymbolTable implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    private final HashMap<Long, VariableImpl> variables = new HashMap<>();
+    private final ArrayList<VariableImpl> variablesById = new ArrayList<>();
+    private final HashMap<String, LabelImpl> labels = new HashMap<>();
+    private final ArrayList<LabelImpl> labelsById = new ArrayList<>();
+
+    //This func returns the variable of a type and number, interning it the first time
+    public synchronized Variable variable(VariableType type, int number) {
+        Objects.requireNonNull(type, "type");
+        int n = (type == VariableType.RESULT) ? 0 : number;
+        return variables.computeIfAbsent(key(type, n), k -> {
+            VariableImpl v = new VariableImpl(type, n, this, variablesById.size());
+            variablesById.add(v);
+            return v;
+        });
+    }
+
+    //This func returns the variable named y, x<n> or z<n> (any case), interning it the first time
+    public Variable variable(String name) {
+        VariableType type = typeOf(name);
+        if (type == null) throw new IllegalArgumentException("Unknown variable name: " + name);
+        return variable(type, (type == VariableType.RESULT) ? 0 : Integer.parseInt(name.trim().substring(1)));
+    }
+
+    //This func returns the label L<number>, interning it the first time
+    public Label label(int number) {
+        return label("L" + number);
+    }
+
+    //This func returns the label of a name: EXIT and blank are the fixed labels, others must be L<n>
+    public synchronized Label label(String name) {
+        String t = (name == null) ? "" : name.trim();
+        if (t.isEmpty()) return FixedLabel.EMPTY;
+        if (t.equalsIgnoreCase("EXIT")) return FixedLabel.EXIT;
+        if (Character.toUpperCase(t.charAt(0)) != 'L') throw new IllegalArgumentException("Invalid label name: " + name);
+        String rep = "L" + t.substring(1);
+        return labels.computeIfAbsent(rep, r -> {
+            LabelImpl l = new LabelImpl(r, this, labelsById.size());
+            labelsById.add(l);
+            return l;
+        });
+    }
+
+    //This func returns the table's instance of a variable (null stays null)
+    public Variable intern(Variable v) {
+        if (v == null || owns(v)) return v;
+        return variable(v.getType(), v.getNumber());
+    }
+
+    //This func returns the table's instance of a label (fixed labels and null stay as they are)
+    public Label intern(Label l) {
+        if (l == null || l instanceof FixedLabel || owns(l)) return l;
+        return label(l.getLabelRepresentation());
+    }
+
+    //This func returns a variable's id, or -1 if the table never interned that name
+    public int idOf(Variable v) {
+        if (v instanceof VariableImpl vi && vi.owner() == this) return vi.id();
+        if (v == null) return -1;
+        synchronized (this) {
+            VariableImpl known = variables.get(key(v.getType(), v.getNumber()));
+            return (known == null) ? -1 : known.id();
+        }
+    }
+
+    //This func returns a label's id, or -1 for the fixed labels and names the table never interned
+    public int idOf(Label l) {
+        if (l instanceof LabelImpl li && li.owner() == this) return li.id();
+        if (l == null || l instanceof FixedLabel) return -1;
+        synchronized (this) {
+            LabelImpl known = labels.get(l.getLabelRepresentation());
+            return (known == null) ? -1 : known.id();
+        }
+    }
+
+    //This func returns the variable named y / x<n> / z<n> if the table has it, without interning it
+    public synchronized Variable lookupVariable(String name) {
+        VariableType type = typeOf(name);
+        if (type == null) return null;
+        try {
+            int n = (type == VariableType.RESULT) ? 0 : Integer.parseInt(name.trim().substring(1));
+            return variables.get(key(type, n));
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    //This func gives the names read back with the table their owner again (it is not serialized with them)
+    @Serial
+    private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+        in.defaultReadObject();
+        for (VariableImpl v : variablesById) v.attach(this);
+        for (LabelImpl l : labelsById) l.attach(this);
+    }
+
+    // ---- getters funcs ---- //
+    public synchronized int variableCount() { return variablesById.size(); }
+    public synchronized int labelCount() { return labelsById.size(); }
+    public synchronized Variable variableAt(int id) { return variablesById.get(id); }
+    public synchronized Label labelAt(int id) { return labelsById.get(id); }
+
+    private boolean owns(Variable v) { return v instanceof VariableImpl vi && vi.owner() == this; }
+    private boolean owns(Label l) { return l instanceof LabelImpl li && li.owner() == this; }
+
+    private static long key(VariableType type, int number) {
+        return ((long) type.ordinal() << 32) | (number & 0xffffffffL);
+    }
+
+    private static VariableType typeOf(String name) {
+        if (name == null) return null;
+        String t = name.trim();
+        if (t.equalsIgnoreCase("y")) return VariableType.RESULT;
+        if (t.length() < 2) return null;
+        char c = Character.toLowerCase(t.charAt(0));
+        if (c != 'x' && c != 'z') return null;
+        for (int i = 1; i < t.length(); i++) {
+            if (!Character.isDigit(t.charAt(i))) return null;
+        }
+        return (c == 'x') ? VariableType.INPUT : VariableType.WORK;
+    }
+}
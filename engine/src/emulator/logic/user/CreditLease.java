@@ -0,0 +1,79 @@
+package emulator.logic.user;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+// Credits an execution took off its user's balance in one block, spent locally instruction by instruction.
+// A charge the block cannot cover renews it (blocks double up to a maximum), taking back what the user's other
+// open leases hold unspent when the balance alone falls short; closing the lease gives what is left back to the
+// user. A charge fails exactly when the balance and all the user's leases together cannot cover it, the same point
+// at which charging the balance directly would have failed.
+public final class CreditLease implements AutoCloseable {
+    public static final String MAX_BLOCK_PROPERTY = "emulator.credits.leaseBlock";
+    private static final long MAX_BLOCK = Math.max(1L, Long.getLong(MAX_BLOCK_PROPERTY, 4096L));
+    private static final long FIRST_BLOCK = Math.min(64L, MAX_BLOCK);
+
+    private final User user;
+    // Unspent credits: atomic, since another lease of the user may take them back while this one runs
+    private final AtomicLong remaining = new AtomicLong();
+    private long spent = 0;
+    private long block = FIRST_BLOCK;
+
+    CreditLease(User user) {
+        this.user = user;
+        user.openLease(this);
+    }
+
+    //This func spends credits of the lease, renewing it when it runs short
+    public boolean charge(long cost) {
+        long r = remaining.get();
+        if (cost > r || !remaining.compareAndSet(r, r - cost)) {
+            if (!renew(cost)) return false;
+        }
+        spent += cost;
+        return true;
+    }
+
+    //This func covers a charge the lease cannot, from the balance or else from the user's other leases. The user's
+    // leases renew one at a time, so none of their credits is in flight while another one looks for some.
+    private boolean renew(long cost) {
+        synchronized (user) {
+            long r = remaining.getAndSet(0);
+            long need = cost - r;
+            if (need <= 0) {
+                remaining.addAndGet(-need);
+                return true;
+            }
+            long got = user.reserve(need, Math.max(need, block));
+            if (got == 0 && user.reclaim(this) > 0) got = user.reserve(need, Math.max(need, block));
+            if (got == 0) {
+                remaining.addAndGet(r);
+                return false;
+            }
+            remaining.addAndGet(got - need);
+            block = Math.min(block * 2, MAX_BLOCK);
+            return true;
+        }
+    }
+
+    //This func gives the unspent credits back to the user, so the balance is exact again
+    public void release() {
+        user.settle(spent, remaining.getAndSet(0));
+        spent = 0;
+    }
+
+    //This func hands the unspent credits over to another lease of the user that needs them
+    long surrender() {
+        return remaining.getAndSet(0);
+    }
+
+    // ---- getters funcs ---- //
+    public User user() { return user; }
+    public long remaining() { return remaining.get(); }
+
+    @Override
+    public void close() {
+        user.closeLease(this);
+        release();
+        UserManager.endLease(this);
+    }
+}
@@ -1,44 +1,106 @@
 package emulator.logic.user;
 
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+// Counters are atomic: a user's runs may charge it from several request threads at once
 public class User {
     private final String username;
-    private long credits;
+    private final AtomicLong credits;
 
-    private int mainPrograms = 0;
-    private int functions = 0;
-    private int usedCredits = 0;
-    private int runs = 0;
+    private final AtomicInteger mainPrograms = new AtomicInteger();
+    private final AtomicInteger functions = new AtomicInteger();
+    private final LongAdder usedCredits = new LongAdder();
+    private final AtomicInteger runs = new AtomicInteger();
+    // Leases of the user's running executions; a lease that runs dry may take back what the others hold unspent
+    private final Set<CreditLease> leases = ConcurrentHashMap.newKeySet();
 
     public User(String username, long initialCredits) {
         this.username = username;
-        this.credits = initialCredits;
+        this.credits = new AtomicLong(initialCredits);
     }
 
     public String getUsername() { return username; }
-    public long getCredits() { return credits; }
-    public int getMainPrograms() { return mainPrograms; }
-    public int getFunctions() { return functions; }
-    public int getUsedCredits() { return usedCredits; }
-    public int getRuns() { return runs; }
+    public long getCredits() { return credits.get(); }
+    public int getMainPrograms() { return mainPrograms.get(); }
+    public int getFunctions() { return functions.get(); }
+    public long getUsedCredits() { return usedCredits.sum(); }
+    public int getRuns() { return runs.get(); }
 
     public void addCredits(long amount) {
-        if (amount > 0) credits += amount;
+        if (amount > 0) credits.addAndGet(amount);
     }
 
+    //This func takes the cost off the balance if the balance covers all of it
     public boolean deductCredits(long cost) {
-        if (credits >= cost) {
-            credits -= cost;
-            usedCredits += cost;
-            return true;
+        long balance;
+        do {
+            balance = credits.get();
+            if (balance < cost) return false;
+        } while (!credits.compareAndSet(balance, balance - cost));
+        usedCredits.add(cost);
+        return true;
+    }
+
+    //This func takes as many units of a price (up to max) as the balance covers, and returns how many it took
+    public long deductUnits(long price, long max) {
+        if (price <= 0 || max <= 0) return Math.max(max, 0);
+        long balance, units;
+        do {
+            balance = credits.get();
+            units = Math.min(max, Math.max(balance, 0L) / price);
+            if (units == 0) return 0;
+        } while (!credits.compareAndSet(balance, balance - units * price));
+        usedCredits.add(units * price);
+        return units;
+    }
+
+    //This func takes up to want credits off the balance for a lease, provided it has at least need; returns what it took
+    long reserve(long need, long want) {
+        long balance, taken;
+        do {
+            balance = credits.get();
+            if (balance < need) return 0;
+            taken = Math.min(balance, want);
+        } while (!credits.compareAndSet(balance, balance - taken));
+        return taken;
+    }
+
+    //This func settles a lease: the unused part goes back to the balance, the spent part counts as used
+    void settle(long spent, long unused) {
+        if (unused != 0) credits.addAndGet(unused);
+        if (spent != 0) usedCredits.add(spent);
+    }
+
+    void openLease(CreditLease lease) { leases.add(lease); }
+    void closeLease(CreditLease lease) { leases.remove(lease); }
+
+    //This func moves what the leases other than one (null: all) hold unspent back to the balance, and returns how
+    // much it moved. Holds the user's lock, which a lease renewing holds too.
+    synchronized long reclaim(CreditLease except) {
+        long total = 0;
+        for (CreditLease l : leases) {
+            if (l != except) total += l.surrender();
         }
-        return false;
+        if (total != 0) credits.addAndGet(total);
+        return total;
+    }
+
+    //This func returns the credits the user's open leases hold unspent
+    long leasedCredits() {
+        long total = 0;
+        for (CreditLease l : leases) total += l.remaining();
+        return total;
     }
 
-    public void incrementMainPrograms() { mainPrograms++; }
+    public void incrementMainPrograms() { mainPrograms.incrementAndGet(); }
 
     public void incrementFunctions(int count) {
-        if (count > 0) functions += count;
+        if (count > 0) functions.addAndGet(count);
     }
 
-    public void incrementRuns() { runs++; }
+    public void incrementRuns() { runs.incrementAndGet(); }
 }
@@ -1,30 +1,120 @@
 package emulator.logic.user;
 
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
 
 public class UserManager {
-    private static final Map<String, User> users = new HashMap<>();
-    private static User currentUser;
+    // Users by lower-cased name: names are unique regardless of case
+    private static final Map<String, User> users = new ConcurrentHashMap<>();
+    private static volatile User currentUser;
+    // The user the calling thread acts for, ahead of currentUser (a server binds each request's session user)
+    private static final ThreadLocal<User> boundUser = new ThreadLocal<>();
+    // Per thread: the credit lease of the execution running on it (charges go through it) and what it charged so far
+    private static final ThreadLocal<ThreadCredits> account = ThreadLocal.withInitial(ThreadCredits::new);
+
+    private static final class ThreadCredits {
+        CreditLease lease;
+        long charged;
+    }
 
     public static void login(String username) {
-        currentUser = users.computeIfAbsent(username, u -> new User(u, 100));
+        currentUser = register(username);
     }
 
     public static void logout() { currentUser = null; }
 
+    //This func returns the user of a name, creating it the first time, without making it the current user
+    public static User register(String username) {
+        return users.computeIfAbsent(key(username), k -> new User(username, 100));
+    }
+
+    //This func creates the user of a name only if no user has that name yet (in any case), atomically
+    public static Optional<User> registerNew(String username) {
+        User created = new User(username, 100);
+        return (users.putIfAbsent(key(username), created) == null) ? Optional.of(created) : Optional.empty();
+    }
+
+    public static Optional<User> find(String username) {
+        return (username == null) ? Optional.empty() : Optional.ofNullable(users.get(key(username)));
+    }
+
+    //This func makes the user current for the calling thread only (null clears it)
+    public static void bind(User user) {
+        if (user == null) boundUser.remove();
+        else boundUser.set(user);
+    }
+
     public static Optional<User> getCurrentUser() {
-        return Optional.ofNullable(currentUser);
+        return Optional.ofNullable(current());
     }
 
     public static void addCredits(long amount) {
-        if (currentUser != null) currentUser.addCredits(amount);
+        User user = current();
+        if (user != null) user.addCredits(amount);
     }
 
     public static boolean charge(long amount) {
-        return currentUser != null && currentUser.deductCredits(amount);
+        ThreadCredits a = account.get();
+        boolean paid;
+        if (a.lease != null) {
+            paid = a.lease.charge(amount);
+        } else {
+            User user = current();
+            paid = user != null && (user.deductCredits(amount) || (user.reclaim(null) > 0 && user.deductCredits(amount)));
+        }
+        if (paid) a.charged += amount;
+        return paid;
+    }
+
+    //This func charges as many units of a price (up to max) as the current user's credits cover, returning how many
+    public static long chargeUnits(long price, long max) {
+        ThreadCredits a = account.get();
+        if (a.lease != null) a.lease.release();
+        User user = current();
+        if (user == null) return 0;
+        long units = user.deductUnits(price, max);
+        if (units < max && user.reclaim(null) > 0) units += user.deductUnits(price, max - units);
+        if (price > 0) a.charged += units * price;
+        return units;
+    }
+
+    //This func returns the credits charged on the calling thread so far; the difference between two reads is
+    // exactly what the thread charged in between, whatever other threads do to the balance meanwhile
+    public static long chargedOnThread() {
+        return account.get().charged;
+    }
+
+    //This func returns the credits the current user can still spend: its balance plus what its leases hold
+    public static long availableCredits() {
+        User user = current();
+        return (user == null) ? 0L : user.getCredits() + user.leasedCredits();
+    }
+
+    //This func opens a credit lease for the calling thread's execution. Returns null (nothing to close) when
+    // there is no current user or a lease is already open, so nested executions share the outer one.
+    public static CreditLease openLease() {
+        User user = current();
+        ThreadCredits a = account.get();
+        if (user == null || a.lease != null) return null;
+        a.lease = new CreditLease(user);
+        return a.lease;
+    }
+
+    static void endLease(CreditLease l) {
+        ThreadCredits a = account.get();
+        if (a.lease == l) a.lease = null;
     }
 
     public static Collection<User> getAllUsers() {
         return users.values();
     }
+
+    private static String key(String username) {
+        return username.toLowerCase(Locale.ROOT);
+    }
+
+    private static User current() {
+        User bound = boundUser.get();
+        return (bound != null) ? bound : currentUser;
+    }
 }
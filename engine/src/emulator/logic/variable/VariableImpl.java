@@ -1,20 +1,31 @@
 package emulator.logic.variable;
 
+import emulator.logic.program.SymbolTable;
+
 import java.io.Serializable;
-import java.util.Objects;
 
 public class VariableImpl implements Variable, Serializable {
 
     private final VariableType type;
     private final int number;
     private final String representation;
+    // The symbol table that interned this variable and its id there (null / -1 for a free-standing variable)
+    private transient SymbolTable owner;
+    private final int id;
     private static final long serialVersionUID = 1L;
 
     public VariableImpl(VariableType type, int number) {
+        this(type, number, null, -1);
+    }
+
+    //Constructor used by SymbolTable to make the interned instance of a name
+    public VariableImpl(VariableType type, int number, SymbolTable owner, int id) {
         this.type = type;
         this.number = number;
         this.representation = (type == VariableType.RESULT) ? "y"
                 : (type == VariableType.INPUT ? "x" + number : "z" + number);
+        this.owner = owner;
+        this.id = id;
     }
 
     public VariableImpl(String name) {
@@ -31,12 +42,21 @@ public class VariableImpl implements Variable, Serializable {
             throw new IllegalArgumentException("Unknown variable name: " + name);
         }
         this.representation = name;
+        this.owner = null;
+        this.id = -1;
     }
 
     // ---- getters funcs ---- //
     @Override public VariableType getType() { return type; }
     @Override public int getNumber() { return number; }
     @Override public String getRepresentation() { return representation; }
+    public SymbolTable owner() { return owner; }
+    public int id() { return id; }
+
+    //This func gives a variable read back with its symbol table that table as owner again
+    public void attach(SymbolTable table) {
+        if (owner == null && id >= 0 && id < table.variableCount() && table.variableAt(id) == this) owner = table;
+    }
 
     //This func checks if variable is empty
     @Override public boolean isEmpty() { return false; }
@@ -52,7 +72,7 @@ public class VariableImpl implements Variable, Serializable {
     //This func returns hash code
     @Override
     public int hashCode() {
-        return Objects.hash(type, number);
+        return 31 * type.ordinal() + number;
     }
 
     //This func returns variable representation
@@ -32,4 +32,5 @@ public class InstructionXml {
     public String getLabel() { return label; }
     public void setLabel(String label) { this.label = label; }
     public List<InstructionArgXml> getArguments() { return arguments; }
+    public void setArguments(List<InstructionArgXml> arguments) { this.arguments = arguments; }
 }
@@ -23,11 +23,13 @@ public final class XmlToObjects {
         FunctionsXml fblock = pxml.getFunctions();
         List<FunctionXml> functions = (fblock == null || fblock.getFunctions() == null) ? List.of() : fblock.getFunctions();
 
+        // The program and its functions intern their names in one table
+        SymbolTable symbols = new SymbolTable();
         Map<String, ProgramImpl> funcPrograms = new LinkedHashMap<>();
         for (FunctionXml fxml : functions) {
             String fname = fxml.getName();
             if (fname == null || fname.isBlank()) continue;
-            ProgramImpl fprog = new ProgramImpl(fname);
+            ProgramImpl fprog = new ProgramImpl(fname, symbols);
 
             funcPrograms.put(fname.toUpperCase(Locale.ROOT), fprog);
             registry.putProgram(fname.toUpperCase(Locale.ROOT), fprog);
@@ -56,7 +58,7 @@ public final class XmlToObjects {
             }
         }
 
-        ProgramImpl program = new ProgramImpl(pxml.getName());
+        ProgramImpl program = new ProgramImpl(pxml.getName(), symbols);
         int idx = 0;
         List<InstructionXml> pinstr =
                 (pxml.getInstructions() == null) ? List.of() : pxml.getInstructions().getInstructions();
@@ -67,21 +69,32 @@ public final class XmlToObjects {
         }
 
         registry.putProgram(program.getName().toUpperCase(Locale.ROOT), program);
+
+        for (ProgramImpl fprog : funcPrograms.values()) compileQuoteArguments(fprog);
+        compileQuoteArguments(program);
         return program;
     }
 
+    //This func parses every QUOTE / JUMP_EQUAL_FUNCTION argument string once all functions are known
+    private static void compileQuoteArguments(Program program) {
+        for (Instruction ins : program.getInstructions()) {
+            if (ins instanceof QuotationInstruction q) q.compiledCall();
+            else if (ins instanceof JumpEqualFunctionInstruction jef) jef.compiledCall();
+        }
+    }
+
     private static Instruction toInstruction(InstructionXml ix, int index, Program program, QuotationRegistry registry, QuoteEvaluator quoteEval) {
-        ParsedParts p = parseParts(ix, index);
+        ParsedParts p = parseParts(ix, index, program.getSymbols());
         return buildInstruction(p, index, program, registry, quoteEval);
     }
 
-    private static ParsedParts parseParts(InstructionXml ix, int index) {
+    private static ParsedParts parseParts(InstructionXml ix, int index, SymbolTable symbols) {
         String name = safe(ix.getName());
         String opcode = name.isEmpty() ? "<unknown>" : name.trim().toUpperCase(Locale.ROOT);
 
         String varName = safe(ix.getVariable());
-        Variable v = varName.isEmpty() ? null : parseVariable(varName, opcode, index);
-        Label lbl = parseLabel(ix.getLabel(), opcode, index, LabelPolicy.OPTIONAL,  "instruction label");
+        Variable v = varName.isEmpty() ? null : parseVariable(varName, opcode, index, symbols);
+        Label lbl = parseLabel(ix.getLabel(), opcode, index, LabelPolicy.OPTIONAL,  "instruction label", symbols);
 
         Map<String, String> args = toArgMap(ix);
         return new ParsedParts(opcode, v, lbl, args);
@@ -92,6 +105,7 @@ public final class XmlToObjects {
         Variable v = p.v();
         Label lbl = p.lbl();
         Map<String,String> args = p.args();
+        SymbolTable symbols = program.getSymbols();
 
         return switch (opcode) {
             case "NEUTRAL"              -> new NeutralInstruction(v, lbl);
@@ -99,11 +113,11 @@ public final class XmlToObjects {
             case "DECREASE"             -> new DecreaseInstruction(v, lbl);
             case "ZERO_VARIABLE"        -> new ZeroVariableInstruction(v, lbl);
             case "JUMP_NOT_ZERO" -> {
-                Label target = parseLabel(req(args, "JNZLABEL", opcode, index), opcode, index, LabelPolicy.REQUIRED, "JNZLABEL");
+                Label target = parseLabel(req(args, "JNZLABEL", opcode, index), opcode, index, LabelPolicy.REQUIRED, "JNZLABEL", symbols);
                 yield new JumpNotZeroInstruction(v, target, lbl);
             }
             case "ASSIGNMENT" -> {
-                Variable src = parseVariable(req(args, "ASSIGNEDVARIABLE", opcode, index), opcode, index);
+                Variable src = parseVariable(req(args, "ASSIGNEDVARIABLE", opcode, index), opcode, index, symbols);
                 yield new AssignmentInstruction(v, src, lbl);
             }
             case "CONSTANT_ASSIGNMENT" -> {
@@ -113,24 +127,24 @@ public final class XmlToObjects {
             case "GOTO_LABEL" -> {
                 String arg = p.args().get("GOTOLABEL");
                 String targetText = (arg != null && !arg.isBlank()) ? arg.trim() : (p.lbl() == null ? "" : p.lbl().getLabelRepresentation());
-                Label target = parseLabel(targetText, opcode, index, LabelPolicy.REQUIRED, "target label");
+                Label target = parseLabel(targetText, opcode, index, LabelPolicy.REQUIRED, "target label", symbols);
                 Label my = (arg != null && !arg.isBlank()) ? p.lbl() : FixedLabel.EMPTY;
                 yield new GoToLabelInstruction(my, target);
             }
             case "JUMP_ZERO" -> {
-                Label target = parseLabel(req(args, "JZLABEL", opcode, index), opcode, index, LabelPolicy.REQUIRED, "JZLABEL");
+                Label target = parseLabel(req(args, "JZLABEL", opcode, index), opcode, index, LabelPolicy.REQUIRED, "JZLABEL", symbols);
                 yield new JumpZeroInstruction(v, target, lbl);
             }
             case "JUMP_EQUAL_CONSTANT" -> {
-                Label target = parseLabel(req(args, "JECONSTANTLABEL", opcode, index), opcode, index, LabelPolicy.REQUIRED, "JECONSTANTLABEL");
+                Label target = parseLabel(req(args, "JECONSTANTLABEL", opcode, index), opcode, index, LabelPolicy.REQUIRED, "JECONSTANTLABEL", symbols);
                 long k = parseNonNegInt(req(args, "CONSTANTVALUE", opcode, index), opcode, index);
                 JumpEqualConstantInstruction.Builder b = new JumpEqualConstantInstruction.Builder().variable(v).constantValue(k).jeConstantLabel(target);
                 if (lbl != null) b.myLabel(lbl);
                 yield b.build();
             }
             case "JUMP_EQUAL_VARIABLE" -> {
-                Label target = parseLabel(req(args, "JEVARIABLELABEL", opcode, index), opcode, index, LabelPolicy.REQUIRED, "JEVARIABLELABEL");
-                Variable other = parseVariable(req(args, "VARIABLENAME", opcode, index), opcode, index);
+                Label target = parseLabel(req(args, "JEVARIABLELABEL", opcode, index), opcode, index, LabelPolicy.REQUIRED, "JEVARIABLELABEL", symbols);
+                Variable other = parseVariable(req(args, "VARIABLENAME", opcode, index), opcode, index, symbols);
                 JumpEqualVariableInstruction.Builder b = new JumpEqualVariableInstruction.Builder().variable(v).compareVariable(other).jeVariableLabel(target);
                 if (lbl != null) b.myLabel(lbl);
                 yield b.build();
@@ -181,7 +195,7 @@ public final class XmlToObjects {
                 }
 
                 Label target = parseLabel(req(args, "JEFUNCTIONLABEL", opcode, index),
-                        opcode, index, LabelPolicy.REQUIRED, "JEFUNCTIONLABEL");
+                        opcode, index, LabelPolicy.REQUIRED, "JEFUNCTIONLABEL", symbols);
 
                 JumpEqualFunctionInstruction.Builder b = new JumpEqualFunctionInstruction.Builder()
                         .variable(v)
@@ -241,7 +255,7 @@ public final class XmlToObjects {
         return true;
     }
 
-    private static Variable parseVariable(String s, String opcode, int index) {
+    private static Variable parseVariable(String s, String opcode, int index, SymbolTable symbols) {
         if (s == null || s.isBlank()) {
             throw new InvalidInstructionException(opcode, "Missing variable", index);
         }
@@ -249,7 +263,7 @@ public final class XmlToObjects {
         String su = s.toUpperCase(Locale.ROOT);
 
         if (su.equals("Y")) {
-            return Variable.RESULT;
+            return symbols.variable(VariableType.RESULT, 0);
         }
 
         if (su.length() >= 2) {
@@ -259,7 +273,7 @@ public final class XmlToObjects {
                 int n = Integer.parseInt(numPart);
                 if (n >= 1) {
                     VariableType t = (kind == 'X') ? VariableType.INPUT : VariableType.WORK;
-                    return new VariableImpl(t, n);
+                    return symbols.variable(t, n);
                 }
             }
         }
@@ -281,7 +295,8 @@ public final class XmlToObjects {
         }
     }
 
-    private static Label parseLabel(String s, String opcode, int index, LabelPolicy policy, String errCtx) {
+    private static Label parseLabel(String s, String opcode, int index, LabelPolicy policy, String errCtx,
+                                    SymbolTable symbols) {
         if (s == null || s.isBlank()) {
             if (policy == LabelPolicy.OPTIONAL) return FixedLabel.EMPTY;
             throw new InvalidInstructionException(opcode, "Missing label" + (errCtx == null ? "" : " (" + errCtx + ")"), index);
@@ -292,7 +307,7 @@ public final class XmlToObjects {
             String num = su.substring(1);
             if (isAllDigits(num)) {
                 int n = Integer.parseInt(num);
-                if (n >= 1) return new LabelImpl(n);
+                if (n >= 1) return symbols.label(n);
             }
         }
         throw new InvalidInstructionException(opcode, "Illegal label: " + s + (errCtx == null ? "" : " (" + errCtx + ")"), index);
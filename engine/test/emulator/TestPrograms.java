@@ -0,0 +1,81 @@
+package emulator;
+
+import emulator.logic.instruction.JumpEqualFunctionInstruction;
+import emulator.logic.instruction.quote.ProgramVarResolver;
+import emulator.logic.instruction.quote.QuotationInstruction;
+import emulator.logic.instruction.quote.QuotationRegistry;
+import emulator.logic.instruction.quote.QuoteParserImpl;
+import emulator.logic.label.FixedLabel;
+import emulator.logic.label.Label;
+import emulator.logic.label.LabelImpl;
+import emulator.logic.program.Program;
+import emulator.logic.variable.Variable;
+import emulator.logic.variable.VariableImpl;
+import emulator.logic.variable.VariableType;
+import emulator.logic.xml.InstructionArgXml;
+import emulator.logic.xml.InstructionXml;
+import emulator.logic.xml.InstructionsXml;
+import emulator.logic.xml.ProgramXml;
+
+import java.util.ArrayList;
+import java.util.List;
+
+// Builders the tests share: variables and labels for programs built in code, and S-Program documents for
+// programs that go through the loader
+public final class TestPrograms {
+    private TestPrograms() {}
+
+    public static Variable x(int n) { return new VariableImpl(VariableType.INPUT, n); }
+    public static Variable z(int n) { return new VariableImpl(VariableType.WORK, n); }
+    public static Variable y() { return Variable.RESULT; }
+    public static Label label(int n) { return new LabelImpl(n); }
+
+    //This func builds v <- (fn, args) inside owner
+    public static QuotationInstruction quote(Program owner, QuotationRegistry registry, Variable v,
+                                             String fn, String args) {
+        return quote(owner, registry, v, fn, args, FixedLabel.EMPTY);
+    }
+
+    public static QuotationInstruction quote(Program owner, QuotationRegistry registry, Variable v,
+                                             String fn, String args, Label label) {
+        return new QuotationInstruction.Builder().variable(v).funcName(fn).funcArguments(args)
+                .registry(registry).varResolver(new ProgramVarResolver(owner)).parser(new QuoteParserImpl())
+                .myLabel(label).build();
+    }
+
+    //This func builds IF v = (fn, args) GOTO target inside owner
+    public static JumpEqualFunctionInstruction jumpEqualFunction(Program owner, QuotationRegistry registry, Variable v,
+                                                                 String fn, String args, Label target) {
+        return new JumpEqualFunctionInstruction.Builder().variable(v).jeFunctionLabel(target).funcName(fn)
+                .funcArguments(args).registry(registry).varResolver(new ProgramVarResolver(owner))
+                .parser(new QuoteParserImpl()).build();
+    }
+
+    //This func builds an S-Program document out of instructions
+    public static ProgramXml program(String name, InstructionXml... instructions) {
+        InstructionsXml body = new InstructionsXml();
+        body.setInstructions(new ArrayList<>(List.of(instructions)));
+        ProgramXml pxml = new ProgramXml();
+        pxml.setName(name);
+        pxml.setInstructions(body);
+        return pxml;
+    }
+
+    //This func builds one S-Instruction; args are name/value pairs
+    public static InstructionXml instruction(String name, String variable, String label, String... args) {
+        InstructionXml ix = new InstructionXml();
+        ix.setName(name);
+        ix.setType("basic");
+        ix.setVariable(variable);
+        ix.setLabel(label);
+        List<InstructionArgXml> list = new ArrayList<>();
+        for (int i = 0; i + 1 < args.length; i += 2) {
+            InstructionArgXml arg = new InstructionArgXml();
+            arg.setName(args[i]);
+            arg.setValue(args[i + 1]);
+            list.add(arg);
+        }
+        ix.setArguments(list);
+        return ix;
+    }
+}
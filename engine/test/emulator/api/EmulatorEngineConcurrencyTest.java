@@ -0,0 +1,86 @@
+package emulator.api;
+
+import emulator.api.dto.ArchitectureInfo;
+import emulator.api.dto.RunRecord;
+import emulator.logic.execution.ExecutionTier;
+import emulator.logic.user.User;
+import emulator.logic.user.UserManager;
+import org.junit.jupiter.api.Test;
+
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static emulator.TestPrograms.instruction;
+import static emulator.TestPrograms.program;
+import static org.junit.jupiter.api.Assertions.*;
+
+// One user's jobs may run on its engine at the same time; their bookkeeping must not interleave
+class EmulatorEngineConcurrencyTest {
+    private static final ArchitectureInfo ARCH = new ArchitectureInfo("I", 5, "Basic architecture");
+
+    @Test
+    void concurrentRunsOnOneEngineGetDistinctRunNumbers() throws Exception {
+        ProgramLibrary library = new ProgramLibrary();
+        library.load(program("COUNT",
+                instruction("ASSIGNMENT", "z1", null, "assignedVariable", "x1"),
+                instruction("JUMP_ZERO", "z1", "L1", "JZLabel", "EXIT"),
+                instruction("DECREASE", "z1", null),
+                instruction("INCREASE", "y", null),
+                instruction("GOTO_LABEL", "", null, "gotoLabel", "L1")), false);
+        EmulatorEngineImpl engine = new EmulatorEngineImpl(library);
+
+        User user = UserManager.register("engine-concurrency");
+        user.addCredits(1_000_000_000L);
+
+        int threads = 8, runsEach = 40;
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        AtomicBoolean running = new AtomicBoolean(true);
+        List<Throwable> readerErrors = new CopyOnWriteArrayList<>();
+        Thread reader = new Thread(() -> {
+            while (running.get()) {
+                try {
+                    long sum = 0;
+                    for (RunRecord r : engine.history()) sum += r.runNumber();
+                    for (RunRecord r : engine.history("COUNT")) sum += r.runNumber();
+                    if (sum < 0) fail("unreachable");
+                } catch (Throwable t) {
+                    readerErrors.add(t);
+                    return;
+                }
+            }
+        });
+        reader.start();
+
+        List<Future<Long>> results = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            long input = t + 1;
+            for (int i = 0; i < runsEach; i++) {
+                results.add(pool.submit(() -> {
+                    UserManager.bind(user);
+                    try {
+                        return engine.run("COUNT", 0, ARCH, ExecutionTier.INTERPRETER, input).y();
+                    } finally {
+                        UserManager.bind(null);
+                    }
+                }));
+            }
+        }
+        for (int i = 0; i < results.size(); i++) {
+            assertEquals((long) (i / runsEach + 1), (long) results.get(i).get(), "y of run " + i);
+        }
+        pool.shutdown();
+        running.set(false);
+        reader.join();
+
+        assertTrue(readerErrors.isEmpty(), "history read failed: " + readerErrors);
+        List<RunRecord> history = engine.history();
+        assertEquals(threads * runsEach, history.size());
+        Set<Integer> numbers = new HashSet<>();
+        for (RunRecord r : history) numbers.add(r.runNumber());
+        assertEquals(threads * runsEach, numbers.size(), "run numbers must be distinct");
+        for (RunRecord r : history) {
+            assertEquals((long) r.inputs().get(0), r.y(), "record keeps its own run's result");
+        }
+    }
+}
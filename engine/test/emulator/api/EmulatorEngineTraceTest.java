@@ -0,0 +1,57 @@
+package emulator.api;
+
+import emulator.api.debug.DebugRecord;
+import emulator.logic.user.User;
+import emulator.logic.user.UserManager;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static emulator.TestPrograms.instruction;
+import static emulator.TestPrograms.program;
+import static org.junit.jupiter.api.Assertions.*;
+
+// Runs record their steps only when tracing was turned on
+class EmulatorEngineTraceTest {
+    private EmulatorEngineImpl engine;
+
+    @BeforeEach
+    void setUp() {
+        ProgramLibrary library = new ProgramLibrary();
+        library.load(program("COPY",
+                instruction("ASSIGNMENT", "z1", null, "assignedVariable", "x1"),
+                instruction("JUMP_ZERO", "z1", "L1", "JZLabel", "EXIT"),
+                instruction("DECREASE", "z1", null),
+                instruction("INCREASE", "y", null),
+                instruction("GOTO_LABEL", "", null, "gotoLabel", "L1")), false);
+        engine = new EmulatorEngineImpl(library);
+        User user = UserManager.register("engine-trace-" + System.nanoTime());
+        user.addCredits(1_000_000L);
+        UserManager.bind(user);
+    }
+
+    @AfterEach
+    void tearDown() {
+        UserManager.bind(null);
+    }
+
+    @Test
+    void runsAreTracedOnlyWhenTracingIsOn() {
+        engine.run("COPY", 0, 3L);
+        assertTrue(engine.debugTrace().isEmpty(), "tracing is off by default");
+
+        engine.setTraceEnabled(true);
+        assertEquals(3L, engine.run("COPY", 0, 3L).y());
+        List<DebugRecord> trace = engine.debugTrace();
+        assertFalse(trace.isEmpty());
+        assertEquals(0, trace.get(0).pcAfter());
+        // Steps are recorded before their instruction runs: the last one is the jump out with y already set
+        assertEquals("3", trace.get(trace.size() - 1).vars().get("y"));
+
+        engine.setTraceEnabled(false);
+        engine.run("COPY", 0, 2L);
+        assertTrue(engine.debugTrace().isEmpty(), "a run without tracing drops the previous trace");
+    }
+}
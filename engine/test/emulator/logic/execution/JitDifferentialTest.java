@@ -0,0 +1,159 @@
+package emulator.logic.execution;
+
+import emulator.logic.instruction.*;
+import emulator.logic.instruction.quote.MapBackedQuotationRegistry;
+import emulator.logic.instruction.quote.QuotationRegistry;
+import emulator.logic.instruction.quote.QuoteMemo;
+import emulator.logic.label.FixedLabel;
+import emulator.logic.program.Program;
+import emulator.logic.program.ProgramImpl;
+import emulator.logic.user.User;
+import emulator.logic.user.UserManager;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static emulator.TestPrograms.*;
+import static org.junit.jupiter.api.Assertions.*;
+
+// Generated code and the interpreter must agree on y, every variable, the cycles and the credits of a run
+class JitDifferentialTest {
+    private static final QuoteEvaluator NO_EVAL = (fn, args, env, deg) -> List.of();
+    private static final Long[][] INPUTS = { {}, {0L}, {1L, 0L}, {3L, 2L}, {7L, 5L}, {40L, 13L} };
+
+    private User user;
+
+    private record Outcome(long y, Map<String, Long> variables, int cycles, int dynamicCycles, long credits) {}
+
+    @BeforeEach
+    void setUp() {
+        user = UserManager.register("jit-diff-" + System.nanoTime());
+        user.addCredits(100_000_000L);
+        UserManager.bind(user);
+        QuoteMemo.clear();
+    }
+
+    @AfterEach
+    void tearDown() {
+        RunControl.bind(null);
+        UserManager.bind(null);
+        QuoteMemo.clear();
+    }
+
+    @Test
+    void straightLineProgram() {
+        ProgramImpl p = new ProgramImpl("STRAIGHT");
+        p.addInstruction(new AssignmentInstruction(z(1), x(1)));
+        p.addInstruction(new IncreaseInstruction(z(1)));
+        p.addInstruction(new IncreaseInstruction(z(1)));
+        p.addInstruction(new IncreaseInstruction(z(1)));
+        p.addInstruction(new ConstantAssignmentInstruction(z(2), 9));
+        p.addInstruction(new DecreaseInstruction(z(2)));
+        p.addInstruction(new DecreaseInstruction(z(2)));
+        p.addInstruction(new DecreaseInstruction(x(2)));
+        p.addInstruction(new JumpEqualConstantInstruction.Builder().variable(z(2)).constantValue(1)
+                .jeConstantLabel(FixedLabel.EXIT).build());
+        p.addInstruction(new JumpEqualVariableInstruction.Builder().variable(z(1)).compareVariable(z(2))
+                .jeVariableLabel(FixedLabel.EXIT).build());
+        p.addInstruction(new ZeroVariableInstruction(z(3)));
+        p.addInstruction(new NeutralInstruction(z(3)));
+        p.addInstruction(new AssignmentInstruction(y(), z(1)));
+        p.addInstruction(new IncreaseInstruction(y()));
+
+        assertJitCompiles(p);
+        assertSameOutcomes(p);
+    }
+
+    @Test
+    void jumpHeavyProgram() {
+        assertJitCompiles(multiply());
+        assertSameOutcomes(multiply());
+    }
+
+    @Test
+    void quoteAndJumpEqualFunctionProgram() {
+        QuotationRegistry registry = new MapBackedQuotationRegistry(new HashMap<>());
+        ProgramImpl succ = new ProgramImpl("SUCC");
+        succ.addInstruction(new AssignmentInstruction(y(), x(1)));
+        succ.addInstruction(new IncreaseInstruction(y()));
+        registry.putProgram("SUCC", succ);
+        ProgramImpl mul = multiply();
+        registry.putProgram("MUL", mul);
+        ProgramImpl c7 = new ProgramImpl("CONST7");
+        c7.addInstruction(new ConstantAssignmentInstruction(y(), 7));
+        registry.putProgram("CONST7", c7);
+
+        ProgramImpl p = new ProgramImpl("CALLS");
+        p.addInstruction(quote(p, registry, z(1), "MUL", "x1,(SUCC,x2)"));
+        p.addInstruction(quote(p, registry, y(), "SUCC", "z1", label(1)));
+        p.addInstruction(jumpEqualFunction(p, registry, y(), "CONST7", "", label(7)));
+        p.addInstruction(new IncreaseInstruction(y()));
+        p.addInstruction(new NeutralInstruction(y(), label(7)));
+        p.addInstruction(quote(p, registry, z(5), "CONST7", ""));
+
+        assertSameOutcomes(p);
+    }
+
+    @Test
+    void longRunUnderControlLeavesGeneratedCodeAfterOneSlice() {
+        ProgramImpl p = multiply();
+        Long[] input = { 1_000L, 400L };
+        Outcome interpreted = run(p, ExecutionTier.INTERPRETER, input, true);
+        assertTrue(interpreted.cycles() > 2 * RunControl.JIT_SLICE, "the run spans several slices");
+        assertEquals(interpreted, run(p, ExecutionTier.JIT, input, true));
+        assertEquals(interpreted, run(p, ExecutionTier.JIT, input, false));
+    }
+
+    // y = x1 * x2, stepping every unit; the copy into z3 keeps the inner loop off the counting-loop shortcut
+    private static ProgramImpl multiply() {
+        ProgramImpl p = new ProgramImpl("MUL");
+        p.addInstruction(new AssignmentInstruction(z(1), x(1)));
+        p.addInstruction(new JumpZeroInstruction(z(1), FixedLabel.EXIT, label(1)));
+        p.addInstruction(new AssignmentInstruction(z(2), x(2)));
+        p.addInstruction(new JumpZeroInstruction(z(2), label(3), label(2)));
+        p.addInstruction(new IncreaseInstruction(y()));
+        p.addInstruction(new AssignmentInstruction(z(3), y()));
+        p.addInstruction(new DecreaseInstruction(z(2)));
+        p.addInstruction(new JumpNotZeroInstruction(z(2), label(2)));
+        p.addInstruction(new DecreaseInstruction(z(1), label(3)));
+        p.addInstruction(new JumpEqualVariableInstruction.Builder().variable(z(1)).compareVariable(z(4))
+                .jeVariableLabel(FixedLabel.EXIT).build());
+        p.addInstruction(new GoToLabelInstruction(label(1)));
+        return p;
+    }
+
+    private static void assertJitCompiles(Program p) {
+        assertNotNull(ProgramJit.forProgram(ProgramCompiler.compile(p)), "generated code exists for " + p.getName());
+    }
+
+    private void assertSameOutcomes(Program p) {
+        for (Long[] input : INPUTS) {
+            String what = p.getName() + Arrays.toString(input);
+            Outcome interpreted = run(p, ExecutionTier.INTERPRETER, input, false);
+            QuoteMemo.clear();
+            assertEquals(interpreted, run(p, ExecutionTier.JIT, input, false), what);
+            QuoteMemo.clear();
+        }
+    }
+
+    private Outcome run(Program p, ExecutionTier tier, Long[] input, boolean controlled) {
+        if (controlled) RunControl.bind(new RunControl());
+        try {
+            long usedBefore = user.getUsedCredits();
+            ProgramExecutorImpl exec = new ProgramExecutorImpl(p, NO_EVAL);
+            exec.setExecutionTier(tier);
+            long y = exec.run(input);
+            Map<String, Long> vars = new HashMap<>();
+            exec.variableState().forEach((v, value) -> vars.put(v.getRepresentation(), value));
+            return new Outcome(y, vars, exec.getLastExecutionCycles(), exec.getLastDynamicCycles(),
+                    user.getUsedCredits() - usedBefore);
+        } finally {
+            RunControl.bind(null);
+        }
+    }
+}
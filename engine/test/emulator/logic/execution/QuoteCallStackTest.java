@@ -0,0 +1,127 @@
+package emulator.logic.execution;
+
+import emulator.logic.instruction.*;
+import emulator.logic.instruction.quote.MapBackedQuotationRegistry;
+import emulator.logic.instruction.quote.QuotationInstruction;
+import emulator.logic.instruction.quote.QuotationRegistry;
+import emulator.logic.instruction.quote.QuoteMemo;
+import emulator.logic.label.FixedLabel;
+import emulator.logic.program.ProgramImpl;
+import emulator.logic.user.User;
+import emulator.logic.user.UserManager;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.List;
+
+import static emulator.TestPrograms.*;
+import static org.junit.jupiter.api.Assertions.*;
+
+// Recursion checks and call cycles live in the executor: nothing of a run stays behind on its thread
+class QuoteCallStackTest {
+    private static final QuoteEvaluator NO_EVAL = (fn, args, env, deg) -> List.of();
+
+    private QuotationRegistry registry;
+
+    @BeforeEach
+    void setUp() {
+        User user = UserManager.register("call-stack-" + System.nanoTime());
+        user.addCredits(1_000_000L);
+        UserManager.bind(user);
+        QuoteMemo.clear();
+
+        registry = new MapBackedQuotationRegistry(new HashMap<>());
+        ProgramImpl succ = new ProgramImpl("SUCC");
+        succ.addInstruction(new AssignmentInstruction(y(), x(1)));
+        succ.addInstruction(new IncreaseInstruction(y()));
+        registry.putProgram("SUCC", succ);
+
+        ProgramImpl add = new ProgramImpl("ADD");
+        add.addInstruction(new AssignmentInstruction(y(), x(1)));
+        add.addInstruction(new AssignmentInstruction(z(1), x(2)));
+        add.addInstruction(new JumpZeroInstruction(z(1), FixedLabel.EXIT, label(1)));
+        add.addInstruction(new IncreaseInstruction(y()));
+        add.addInstruction(new DecreaseInstruction(z(1)));
+        add.addInstruction(new GoToLabelInstruction(label(1)));
+        registry.putProgram("ADD", add);
+
+        ProgramImpl rec = new ProgramImpl("REC");
+        rec.addInstruction(quote(rec, registry, y(), "REC", "x1"));
+        registry.putProgram("REC", rec);
+    }
+
+    @AfterEach
+    void tearDown() {
+        UserManager.bind(null);
+        QuoteMemo.clear();
+    }
+
+    @Test
+    void functionCallingItselfIsRejected() {
+        ProgramImpl p = new ProgramImpl("P");
+        p.addInstruction(quote(p, registry, y(), "REC", "x1"));
+        IllegalStateException e = assertThrows(IllegalStateException.class,
+                () -> new ProgramExecutorImpl(p, NO_EVAL).run(1L));
+        assertTrue(e.getMessage().contains("REC -> REC"), e.getMessage());
+    }
+
+    @Test
+    void failedRunLeavesNothingForTheNextRun() {
+        ProgramImpl p = new ProgramImpl("P");
+        p.addInstruction(quote(p, registry, y(), "ADD", "x1,(SUCC,x2)"));
+
+        ProgramExecutorImpl fresh = new ProgramExecutorImpl(p, NO_EVAL);
+        assertEquals(6L, fresh.run(2L, 3L));
+        int dynamic = fresh.getLastDynamicCycles();
+        QuoteMemo.clear();
+
+        ProgramImpl failing = new ProgramImpl("F");
+        failing.addInstruction(quote(failing, registry, y(), "SUCC", "x1"));
+        failing.addInstruction(quote(failing, registry, y(), "REC", "y"));
+        assertThrows(IllegalStateException.class, () -> new ProgramExecutorImpl(failing, NO_EVAL).run(1L));
+        QuoteMemo.clear();
+
+        ProgramExecutorImpl after = new ProgramExecutorImpl(p, NO_EVAL);
+        assertEquals(6L, after.run(2L, 3L));
+        assertEquals(dynamic, after.getLastDynamicCycles());
+    }
+
+    @Test
+    void callRunThroughTheInstructionCountsLikeTheFrames() {
+        ProgramImpl p = new ProgramImpl("P");
+        QuotationInstruction q = quote(p, registry, y(), "ADD", "x1,(SUCC,x2)");
+        p.addInstruction(q);
+
+        ProgramExecutorImpl exec = new ProgramExecutorImpl(p, NO_EVAL);
+        assertEquals(6L, exec.run(2L, 3L));
+        QuoteMemo.clear();
+
+        ExecutionContextImpl ctx = new ExecutionContextImpl();
+        ctx.setQuoteEvaluator(NO_EVAL);
+        ctx.updateVariable(x(1), 2L);
+        ctx.updateVariable(x(2), 3L);
+        q.execute(ctx);
+        assertEquals(6L, ctx.getVariableValue(y()));
+        assertEquals(exec.getLastDynamicCycles(), ctx.getDynamicCycles());
+    }
+
+    @Test
+    void callRunThroughTheInstructionRejectsRecursion() {
+        ProgramImpl p = new ProgramImpl("P");
+        QuotationInstruction q = quote(p, registry, y(), "REC", "x1");
+        ExecutionContextImpl ctx = new ExecutionContextImpl();
+        ctx.setQuoteEvaluator(NO_EVAL);
+        ctx.updateVariable(x(1), 4L);
+        assertThrows(IllegalStateException.class, () -> q.execute(ctx));
+
+        // Inside SUCC's body a call to SUCC is recursive, inside ADD's it is not
+        QuotationInstruction s = quote(p, registry, y(), "SUCC", "x1");
+        ctx.setCallName("SUCC");
+        assertThrows(IllegalStateException.class, () -> s.execute(ctx));
+        ctx.setCallName("ADD");
+        s.execute(ctx);
+        assertEquals(5L, ctx.getVariableValue(y()));
+    }
+}
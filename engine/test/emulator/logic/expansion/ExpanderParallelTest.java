@@ -0,0 +1,81 @@
+package emulator.logic.expansion;
+
+import emulator.logic.instruction.*;
+import emulator.logic.instruction.quote.MapBackedQuotationRegistry;
+import emulator.logic.instruction.quote.QuotationRegistry;
+import emulator.logic.label.FixedLabel;
+import emulator.logic.program.ProgramImpl;
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.TreeMap;
+import java.util.concurrent.ForkJoinPool;
+
+import static emulator.TestPrograms.*;
+import static org.junit.jupiter.api.Assertions.*;
+
+// Expanding layers in parallel must give exactly what the sequential expansion gives
+class ExpanderParallelTest {
+
+    @Test
+    void parallelExpansionIsIdenticalToSequential() {
+        QuotationRegistry registry = new MapBackedQuotationRegistry(new HashMap<>());
+        ProgramImpl add = new ProgramImpl("ADD");
+        add.addInstruction(new AssignmentInstruction(y(), x(1)));
+        add.addInstruction(new AssignmentInstruction(z(1), x(2)));
+        add.addInstruction(new JumpZeroInstruction(z(1), FixedLabel.EXIT, label(1)));
+        add.addInstruction(new IncreaseInstruction(y()));
+        add.addInstruction(new DecreaseInstruction(z(1)));
+        add.addInstruction(new GoToLabelInstruction(label(1)));
+        registry.putProgram("ADD", add);
+
+        ProgramImpl p = new ProgramImpl("BIG");
+        for (int i = 0; i < 300; i++) {
+            int n = i % 7 + 1;
+            p.addInstruction(new AssignmentInstruction(z(n), x(n), label(i + 1)));
+            p.addInstruction(new ConstantAssignmentInstruction(z(n + 1), i));
+            p.addInstruction(new JumpZeroInstruction(z(n), label(i + 2)));
+            p.addInstruction(new JumpEqualConstantInstruction.Builder().variable(z(n)).constantValue(i)
+                    .jeConstantLabel(FixedLabel.EXIT).build());
+            p.addInstruction(new JumpEqualVariableInstruction.Builder().variable(z(n)).compareVariable(x(1))
+                    .jeVariableLabel(label(i + 1)).build());
+            p.addInstruction(quote(p, registry, y(), "ADD", "z" + n + ",(ADD,x1,x2)"));
+            p.addInstruction(jumpEqualFunction(p, registry, z(n), "ADD", "x1,z" + n, label(i + 3)));
+            p.addInstruction(new ZeroVariableInstruction(z(n + 2)));
+            p.addInstruction(new IncreaseInstruction(y()));
+        }
+        p.addInstruction(new GoToLabelInstruction(label(1)));
+
+        List<Instruction> original = p.getInstructions();
+        Expander sequential = new Expander(0, null);
+        int degree = sequential.calculateMaxDegree(original);
+        assertTrue(degree >= 2, "the program expands over several layers");
+
+        ForkJoinPool pool = new ForkJoinPool(4);
+        try {
+            Expander parallel = new Expander(1, pool);
+            for (int d = 1; d <= degree; d++) {
+                String expected = dump(sequential.expandToDegree(original, d));
+                assertEquals(expected, dump(parallel.expandToDegree(original, d)), "degree " + d);
+            }
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    private static String dump(List<Instruction> instructions) {
+        StringBuilder sb = new StringBuilder();
+        for (Instruction i : instructions) {
+            sb.append(line(i));
+            Instruction from = i.getCreatedFrom();
+            sb.append(" <- ").append((from == null) ? "" : line(from)).append('\n');
+        }
+        return sb.toString();
+    }
+
+    private static String line(Instruction i) {
+        return i.getName() + ' ' + i.getLabel().getLabelRepresentation() + ' ' + i.getVariable() + ' '
+                + new TreeMap<>(i.getArguments());
+    }
+}
@@ -0,0 +1,49 @@
+package emulator.logic.expansion;
+
+import emulator.logic.instruction.*;
+import emulator.logic.label.FixedLabel;
+import emulator.logic.program.Program;
+import emulator.logic.program.ProgramImpl;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static emulator.TestPrograms.*;
+import static org.junit.jupiter.api.Assertions.*;
+
+// A program's degrees are kept until the program is no longer one of the programs retained
+class ExpansionCacheTest {
+
+    @Test
+    void degreesAreKeptUntilTheirProgramIsDropped() {
+        ProgramImpl p = program("P");
+        ProgramImpl q = program("Q");
+        ExpansionCache cache = new ExpansionCache();
+        Program p1 = cache.expandToDegree(p, 1);
+        Program q1 = cache.expandToDegree(q, 1);
+        assertSame(p1, cache.expandToDegree(p, 1));
+
+        cache.retainOnly(List.of(q));
+        assertSame(q1, cache.expandToDegree(q, 1));
+        Program again = cache.expandToDegree(p, 1);
+        assertNotSame(p1, again);
+        assertEquals(p1.getInstructions().size(), again.getInstructions().size());
+    }
+
+    @Test
+    void programsAreKeptByIdentity() {
+        ProgramImpl p = program("P");
+        ExpansionCache cache = new ExpansionCache();
+        Program p1 = cache.expandToDegree(p, 1);
+        cache.retainOnly(List.of(program("P")));
+        assertNotSame(p1, cache.expandToDegree(p, 1));
+    }
+
+    private static ProgramImpl program(String name) {
+        ProgramImpl p = new ProgramImpl(name);
+        p.addInstruction(new ZeroVariableInstruction(z(1)));
+        p.addInstruction(new JumpZeroInstruction(x(1), FixedLabel.EXIT));
+        p.addInstruction(new AssignmentInstruction(y(), x(1)));
+        return p;
+    }
+}
@@ -0,0 +1,85 @@
+package emulator.logic.expansion;
+
+import emulator.logic.instruction.*;
+import emulator.logic.instruction.quote.MapBackedQuotationRegistry;
+import emulator.logic.instruction.quote.QuotationRegistry;
+import emulator.logic.label.FixedLabel;
+import emulator.logic.program.ProgramImpl;
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.TreeMap;
+
+import static emulator.TestPrograms.*;
+import static org.junit.jupiter.api.Assertions.*;
+
+// A program expanded lazily (walking the shape tables) must be the program the eager expansion builds
+class LazyExpansionTest {
+
+    @Test
+    void lazyAndEagerExpansionGiveTheSameInstructions() {
+        QuotationRegistry registry = new MapBackedQuotationRegistry(new HashMap<>());
+        ProgramImpl succ = new ProgramImpl("SUCC");
+        succ.addInstruction(new AssignmentInstruction(y(), x(1)));
+        succ.addInstruction(new IncreaseInstruction(y()));
+        registry.putProgram("SUCC", succ);
+
+        ProgramImpl add = new ProgramImpl("ADD");
+        add.addInstruction(new AssignmentInstruction(y(), x(1)));
+        add.addInstruction(new AssignmentInstruction(z(1), x(2)));
+        add.addInstruction(new JumpZeroInstruction(z(1), FixedLabel.EXIT, label(1)));
+        add.addInstruction(new IncreaseInstruction(y()));
+        add.addInstruction(new DecreaseInstruction(z(1)));
+        add.addInstruction(new GoToLabelInstruction(label(1)));
+        registry.putProgram("ADD", add);
+
+        // LOOP calls itself, so its expansion stops at the call back into it
+        ProgramImpl loop = new ProgramImpl("LOOP");
+        loop.addInstruction(new JumpZeroInstruction(x(1), FixedLabel.EXIT));
+        loop.addInstruction(quote(loop, registry, z(1), "ADD", "x1,(SUCC,x2)"));
+        loop.addInstruction(jumpEqualFunction(loop, registry, z(1), "LOOP", "z1", FixedLabel.EXIT));
+        loop.addInstruction(quote(loop, registry, y(), "SUCC", "z1"));
+        registry.putProgram("LOOP", loop);
+
+        ProgramImpl p = new ProgramImpl("P");
+        p.addInstruction(new ConstantAssignmentInstruction(z(1), 3, label(1)));
+        p.addInstruction(quote(p, registry, z(2), "ADD", "x1,(ADD,z1,(SUCC,x2))"));
+        p.addInstruction(jumpEqualFunction(p, registry, z(2), "SUCC", "z1", label(2)));
+        p.addInstruction(quote(p, registry, z(3), "LOOP", "(SUCC,z2)", label(2)));
+        p.addInstruction(new JumpEqualVariableInstruction.Builder().variable(z(3)).compareVariable(x(1))
+                .jeVariableLabel(label(1)).build());
+        p.addInstruction(new AssignmentInstruction(y(), z(3)));
+
+        int max = p.calculateMaxDegree();
+        assertTrue(max >= 3, "the program expands over several layers");
+        long[] sizes = LazyExpansion.sizes(p.getInstructions(), max + 1);
+        ExpansionCache cache = new ExpansionCache();
+        for (int d = 1; d <= max + 1; d++) {
+            List<Instruction> eager = new ProgramExpander().expandToDegree(p, d).getInstructions();
+            List<Instruction> lazy = new LazyProgram(p, d).getInstructions();
+            String expected = dump(eager);
+            assertEquals(eager.size(), sizes[d], "size at degree " + d);
+            assertEquals(expected, dump(lazy), "lazy, degree " + d);
+            assertEquals(expected, dump(cache.expandToDegree(p, d).getInstructions()), "cached, degree " + d);
+            for (int i = eager.size() - 1; i >= 0; i -= 7) {
+                assertEquals(line(eager.get(i)), line(lazy.get(i)), "instruction " + i + " at degree " + d);
+            }
+        }
+    }
+
+    private static String dump(List<Instruction> instructions) {
+        StringBuilder sb = new StringBuilder();
+        for (Instruction i : instructions) {
+            sb.append(line(i));
+            Instruction from = i.getCreatedFrom();
+            sb.append(" <- ").append((from == null) ? "" : line(from)).append('\n');
+        }
+        return sb.toString();
+    }
+
+    private static String line(Instruction i) {
+        return i.getName() + ' ' + i.getLabel().getLabelRepresentation() + ' ' + i.getVariable() + ' '
+                + new TreeMap<>(i.getArguments());
+    }
+}
@@ -0,0 +1,163 @@
+package emulator.logic.expansion;
+
+import emulator.logic.execution.ProgramExecutorImpl;
+import emulator.logic.execution.QuoteEvaluator;
+import emulator.logic.instruction.*;
+import emulator.logic.instruction.quote.MapBackedQuotationRegistry;
+import emulator.logic.instruction.quote.QuotationRegistry;
+import emulator.logic.instruction.quote.QuoteMemo;
+import emulator.logic.label.FixedLabel;
+import emulator.logic.program.Program;
+import emulator.logic.program.ProgramImpl;
+import emulator.logic.user.User;
+import emulator.logic.user.UserManager;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+
+import static emulator.TestPrograms.*;
+import static org.junit.jupiter.api.Assertions.*;
+
+// A program's max degree must be the number of layers its expansion actually takes, whichever way it is asked
+class MaxDegreeTest {
+    private static final QuoteEvaluator NO_EVAL = (fn, args, env, deg) -> List.of();
+    private static final int MAX_LAYERS = 50;
+
+    private QuotationRegistry registry;
+
+    @BeforeEach
+    void setUp() {
+        registry = new MapBackedQuotationRegistry(new HashMap<>());
+        User user = UserManager.register("max-degree-" + System.nanoTime());
+        user.addCredits(100_000_000L);
+        UserManager.bind(user);
+        QuoteMemo.clear();
+    }
+
+    @AfterEach
+    void tearDown() {
+        UserManager.bind(null);
+        QuoteMemo.clear();
+    }
+
+    @Test
+    void nestedCallsTakeAsManyLayersAsTheirDegree() {
+        ProgramImpl succ = function("SUCC");
+        succ.addInstruction(new AssignmentInstruction(y(), x(1)));
+        succ.addInstruction(new IncreaseInstruction(y()));
+
+        ProgramImpl add = function("ADD");
+        add.addInstruction(new AssignmentInstruction(y(), x(1)));
+        add.addInstruction(new AssignmentInstruction(z(1), x(2)));
+        add.addInstruction(new JumpZeroInstruction(z(1), FixedLabel.EXIT, label(1)));
+        add.addInstruction(new IncreaseInstruction(y()));
+        add.addInstruction(new DecreaseInstruction(z(1)));
+        add.addInstruction(new GoToLabelInstruction(label(1)));
+
+        // F(a, b) = a + b + 1, through a nested call
+        ProgramImpl f = function("F");
+        f.addInstruction(quote(f, registry, y(), "ADD", "x1,(SUCC,x2)"));
+
+        // G(a, b) = F(a, b) if that is a + 2 (b = 1), otherwise a + 1
+        ProgramImpl g = function("G");
+        g.addInstruction(new ConstantAssignmentInstruction(z(1), 2));
+        g.addInstruction(quote(g, registry, z(2), "ADD", "x1,z1"));
+        g.addInstruction(jumpEqualFunction(g, registry, z(2), "F", "x1,x2", label(1)));
+        g.addInstruction(quote(g, registry, y(), "SUCC", "x1"));
+        g.addInstruction(new GoToLabelInstruction(FixedLabel.EXIT));
+        g.addInstruction(quote(g, registry, y(), "F", "x1,x2", label(1)));
+
+        ProgramImpl main = new ProgramImpl("MAIN");
+        main.addInstruction(quote(main, registry, z(1), "G", "x1,(F,x2,(SUCC,x1))"));
+        main.addInstruction(jumpEqualFunction(main, registry, z(1), "SUCC", "(G,x2,x1)", label(2)));
+        main.addInstruction(new AssignmentInstruction(y(), z(1)));
+        main.addInstruction(new IncreaseInstruction(y(), label(2)));
+
+        for (Program p : List.of(main, g, f, add, succ)) {
+            assertDegreeIsLayerCount(p);
+        }
+        for (Program p : List.of(f, g, main)) {
+            assertSameResultsAtEveryDegree(p);
+        }
+    }
+
+    @Test
+    void recursiveCallsStopAtTheFunctionTheyAreIn() {
+        ProgramImpl succ = function("SUCC");
+        succ.addInstruction(new AssignmentInstruction(y(), x(1)));
+        succ.addInstruction(new IncreaseInstruction(y()));
+
+        // R calls itself
+        ProgramImpl r = function("R");
+        r.addInstruction(new JumpZeroInstruction(x(1), FixedLabel.EXIT));
+        r.addInstruction(quote(r, registry, z(1), "SUCC", "x1"));
+        r.addInstruction(quote(r, registry, y(), "R", "(R,z1)"));
+
+        // A and B call each other, A through a nested argument, B through a JUMP_EQUAL_FUNCTION
+        ProgramImpl a = function("A");
+        a.addInstruction(quote(a, registry, y(), "SUCC", "(B,x1)"));
+        ProgramImpl b = function("B");
+        b.addInstruction(jumpEqualFunction(b, registry, x(1), "A", "x1", FixedLabel.EXIT));
+        b.addInstruction(quote(b, registry, y(), "SUCC", "x1"));
+
+        ProgramImpl main = new ProgramImpl("MAIN");
+        main.addInstruction(quote(main, registry, z(1), "A", "(B,x1)"));
+        main.addInstruction(quote(main, registry, z(2), "R", "z1"));
+        main.addInstruction(jumpEqualFunction(main, registry, z(2), "B", "(A,x2)", FixedLabel.EXIT));
+        main.addInstruction(new AssignmentInstruction(y(), z(2)));
+
+        // B first: its degree, met again as a callee inside A, must not depend on what was asked before
+        for (Program p : List.of(b, a, r, main, succ)) {
+            assertDegreeIsLayerCount(p);
+        }
+        assertEquals(b.calculateMaxDegree(), new Expander().calculateMaxDegree(b.getInstructions()));
+    }
+
+    private ProgramImpl function(String name) {
+        ProgramImpl p = new ProgramImpl(name);
+        registry.putProgram(name, p);
+        return p;
+    }
+
+    private static void assertDegreeIsLayerCount(Program p) {
+        Expander expander = new Expander(0, null);
+        List<Instruction> original = p.getInstructions();
+        int degree = p.calculateMaxDegree();
+        assertEquals(degree, expander.calculateMaxDegree(original), p.getName() + ": program vs expander degree");
+        assertEquals(degree, layers(expander, original), p.getName() + ": degree vs expansion layers");
+
+        // Expanding past the degree changes nothing
+        Program full = new ProgramExpander().expandToDegree(p, degree);
+        Program past = new ProgramExpander().expandToDegree(p, degree + 2);
+        assertEquals(full.getInstructions().size(), past.getInstructions().size(), p.getName());
+    }
+
+    //This func counts the layers that change the program until expanding stops changing it
+    private static int layers(Expander expander, List<Instruction> original) {
+        ExpansionHelper helper = ProgramExpander.newHelper(original);
+        List<Instruction> curr = original;
+        for (int n = 0; n <= MAX_LAYERS; n++) {
+            List<Instruction> next = expander.expandOnce(curr, helper);
+            if (next == curr) return n;
+            curr = next;
+        }
+        fail("expansion did not stop after " + MAX_LAYERS + " layers");
+        return -1;
+    }
+
+    private static void assertSameResultsAtEveryDegree(Program p) {
+        Long[][] inputs = { {0L, 0L}, {1L, 1L}, {3L, 1L}, {2L, 5L} };
+        for (Long[] in : inputs) {
+            long expected = new ProgramExecutorImpl(p, NO_EVAL).run(in);
+            for (int d = 1; d <= p.calculateMaxDegree(); d++) {
+                Program expanded = new ProgramExpander().expandToDegree(p, d);
+                assertEquals(expected, new ProgramExecutorImpl(expanded, NO_EVAL).run(in),
+                        p.getName() + " at degree " + d + " on " + Arrays.toString(in));
+            }
+        }
+    }
+}
@@ -0,0 +1,42 @@
+package emulator.logic.instruction.quote;
+
+import emulator.logic.instruction.AssignmentInstruction;
+import emulator.logic.instruction.IncreaseInstruction;
+import emulator.logic.program.ProgramImpl;
+import org.junit.jupiter.api.Test;
+
+import static emulator.TestPrograms.*;
+import static org.junit.jupiter.api.Assertions.*;
+
+// Templates are kept for as long as their body program lives
+class FunctionTemplateTest {
+
+    @Test
+    void templateSurvivesCollectionWhileItsBodyLives() {
+        ProgramImpl body = new ProgramImpl("SUCC");
+        body.addInstruction(new AssignmentInstruction(y(), x(1)));
+        body.addInstruction(new IncreaseInstruction(y()));
+
+        FunctionTemplate quote = FunctionTemplate.of(body, FunctionTemplate.Kind.QUOTE);
+        FunctionTemplate jef = FunctionTemplate.of(body, FunctionTemplate.Kind.JUMP_EQUAL_FUNCTION);
+        assertNotSame(quote, jef);
+
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+            assertSame(quote, FunctionTemplate.of(body, FunctionTemplate.Kind.QUOTE));
+            assertSame(jef, FunctionTemplate.of(body, FunctionTemplate.Kind.JUMP_EQUAL_FUNCTION));
+        }
+    }
+
+    @Test
+    void grownBodyGetsANewTemplate() {
+        ProgramImpl body = new ProgramImpl("SUCC");
+        body.addInstruction(new AssignmentInstruction(y(), x(1)));
+        FunctionTemplate before = FunctionTemplate.of(body, FunctionTemplate.Kind.QUOTE);
+
+        body.addInstruction(new IncreaseInstruction(y()));
+        FunctionTemplate after = FunctionTemplate.of(body, FunctionTemplate.Kind.QUOTE);
+        assertNotSame(before, after);
+        assertSame(after, FunctionTemplate.of(body, FunctionTemplate.Kind.QUOTE));
+    }
+}
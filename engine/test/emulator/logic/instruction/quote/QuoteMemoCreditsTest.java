@@ -0,0 +1,92 @@
+package emulator.logic.instruction.quote;
+
+import emulator.logic.execution.ProgramExecutorImpl;
+import emulator.logic.instruction.*;
+import emulator.logic.label.FixedLabel;
+import emulator.logic.program.Program;
+import emulator.logic.program.ProgramImpl;
+import emulator.logic.user.User;
+import emulator.logic.user.UserManager;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static emulator.TestPrograms.*;
+import static org.junit.jupiter.api.Assertions.*;
+
+// The memo must keep what a call itself charged, even when the user's balance moves under it meanwhile
+class QuoteMemoCreditsTest {
+    private static final long INPUT = 20_000;
+
+    private User user;
+    private QuotationRegistry registry;
+    private Program slow;
+
+    @BeforeEach
+    void setUp() {
+        user = UserManager.register("memo-credits-" + System.nanoTime());
+        user.addCredits(1_000_000_000L);
+        UserManager.bind(user);
+        QuoteMemo.clear();
+
+        registry = new MapBackedQuotationRegistry(new HashMap<>());
+        // SLOW(x1) = x1, one round per unit; the assignment keeps the loop off the counting-loop shortcut
+        ProgramImpl p = new ProgramImpl("SLOW");
+        p.addInstruction(new AssignmentInstruction(z(1), x(1)));
+        p.addInstruction(new JumpZeroInstruction(z(1), FixedLabel.EXIT, label(1)));
+        p.addInstruction(new AssignmentInstruction(z(2), y()));
+        p.addInstruction(new IncreaseInstruction(y()));
+        p.addInstruction(new DecreaseInstruction(z(1)));
+        p.addInstruction(new GoToLabelInstruction(label(1)));
+        registry.putProgram("SLOW", p);
+        slow = p;
+    }
+
+    @AfterEach
+    void tearDown() {
+        UserManager.bind(null);
+        QuoteMemo.clear();
+    }
+
+    @Test
+    void memoKeepsWhatTheCallChargedWhileCreditsAreAdded() throws Exception {
+        long alone = usedBy(slow);
+        QuoteMemo.clear();
+
+        ProgramImpl caller = new ProgramImpl("CALLER");
+        caller.addInstruction(quote(caller, registry, y(), "SLOW", "x1"));
+
+        AtomicBoolean running = new AtomicBoolean(true);
+        Thread adder = new Thread(() -> {
+            while (running.get()) user.addCredits(1_000);
+        });
+        adder.start();
+        long first;
+        try {
+            first = usedBy(caller);
+        } finally {
+            running.set(false);
+            adder.join();
+        }
+
+        QuoteMemo.Entry entry = QuoteMemo.lookup(slow, 0, new Long[]{INPUT});
+        assertNotNull(entry);
+        assertEquals(INPUT, entry.y());
+        assertTrue(entry.credits() > 0);
+        assertEquals(alone, entry.credits(), "memoized credits");
+
+        // A memo hit charges what the call charged the first time
+        assertEquals(first, usedBy(caller), "credits of the memoized run");
+    }
+
+    private long usedBy(Program program) {
+        long before = user.getUsedCredits();
+        ProgramExecutorImpl exec = new ProgramExecutorImpl(program, (fn, args, env, deg) -> List.of());
+        assertEquals(INPUT, exec.run(INPUT));
+        return user.getUsedCredits() - before;
+    }
+}
@@ -0,0 +1,71 @@
+package emulator.logic.program;
+
+import emulator.logic.label.Label;
+import emulator.logic.label.LabelImpl;
+import emulator.logic.variable.Variable;
+import emulator.logic.variable.VariableImpl;
+import emulator.logic.variable.VariableType;
+import org.junit.jupiter.api.Test;
+
+import java.io.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// Interned names are serialized without their table, and get it back when they are read with it
+class SymbolTableTest {
+
+    @Test
+    void namesReadBackWithTheirTableAreInternedAgain() throws Exception {
+        SymbolTable symbols = new SymbolTable();
+        Variable x1 = symbols.variable(VariableType.INPUT, 1);
+        Variable z1 = symbols.variable(VariableType.WORK, 1);
+        Label l1 = symbols.label(1);
+
+        Object[] copy = roundTrip(new Object[] { z1, symbols, l1, x1 });
+        SymbolTable table = (SymbolTable) copy[1];
+        assertEquals(symbols.variableCount(), table.variableCount());
+        assertEquals(symbols.labelCount(), table.labelCount());
+        for (int id = 0; id < table.variableCount(); id++) {
+            VariableImpl v = (VariableImpl) table.variableAt(id);
+            assertTrue(v.owner() == table, v + " is owned by the table read with it");
+            assertEquals(id, table.idOf(v));
+        }
+        assertSame(table.variable("z1"), copy[0]);
+        assertSame(table.label(1), copy[2]);
+        assertSame(table.intern((Variable) copy[3]), copy[3]);
+        assertEquals(symbols.idOf(z1), table.idOf((Variable) copy[0]));
+        assertFalse(copy[0].equals(copy[3]));
+    }
+
+    @Test
+    void aNameReadAloneIsFreeStanding() throws Exception {
+        SymbolTable symbols = new SymbolTable();
+        for (int n = 1; n <= 100; n++) symbols.variable(VariableType.WORK, n);
+        VariableImpl z7 = (VariableImpl) symbols.variable("z7");
+        LabelImpl l3 = (LabelImpl) symbols.label(3);
+
+        VariableImpl v = roundTrip(z7);
+        LabelImpl l = roundTrip(l3);
+        assertNull(v.owner());
+        assertNull(l.owner());
+        assertEquals(z7, v);
+        assertEquals(l3, l);
+        assertEquals(symbols.idOf(z7), symbols.idOf(v));
+        assertTrue(serialized(z7).length < serialized(symbols).length / 10, "the table is not written with a name");
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> T roundTrip(T o) throws Exception {
+        try (ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(serialized(o)))) {
+            return (T) in.readObject();
+        }
+    }
+
+    private static byte[] serialized(Object o) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+            out.writeObject(o);
+        }
+        return bytes.toByteArray();
+    }
+}
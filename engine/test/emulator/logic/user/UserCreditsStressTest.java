@@ -0,0 +1,198 @@
+package emulator.logic.user;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// Many threads charging, adding to and leasing one user's credits: balance and used credits must add up exactly
+class UserCreditsStressTest {
+    private static final int THREADS = 8;
+    private static final int OPS = 20_000;
+    private static final AtomicInteger names = new AtomicInteger();
+
+    // What one thread did to the balance
+    private record Tally(long charged, long added) {}
+
+    private static User freshUser(long credits) {
+        User user = UserManager.register("stress-" + names.incrementAndGet());
+        long initial = user.getCredits();
+        if (initial < credits) user.addCredits(credits - initial);
+        else assertTrue(user.deductCredits(initial - credits));
+        return user;
+    }
+
+    private static List<Tally> runThreads(User user, Callable<Tally> body) throws Exception {
+        ExecutorService pool = Executors.newFixedThreadPool(THREADS);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<Tally>> futures = new ArrayList<>();
+        for (int t = 0; t < THREADS; t++) {
+            futures.add(pool.submit(() -> {
+                UserManager.bind(user);
+                try {
+                    start.await();
+                    return body.call();
+                } finally {
+                    UserManager.bind(null);
+                }
+            }));
+        }
+        start.countDown();
+        List<Tally> out = new ArrayList<>();
+        for (Future<Tally> f : futures) out.add(f.get());
+        pool.shutdown();
+        return out;
+    }
+
+    private static void assertExact(User user, long initial, long usedBefore, List<Tally> tallies) {
+        long charged = 0, added = 0;
+        for (Tally t : tallies) {
+            charged += t.charged();
+            added += t.added();
+        }
+        assertEquals(initial + added - charged, user.getCredits(), "balance");
+        assertEquals(usedBefore + charged, user.getUsedCredits(), "used credits");
+        assertTrue(user.getCredits() >= 0, "balance never goes negative");
+    }
+
+    @Test
+    void chargeChargeUnitsAndAddCreditsStayExact() throws Exception {
+        long initial = 50_000;
+        User user = freshUser(initial);
+        long usedBefore = user.getUsedCredits();
+
+        List<Tally> tallies = runThreads(user, () -> {
+            ThreadLocalRandom rnd = ThreadLocalRandom.current();
+            long charged = 0, added = 0;
+            for (int i = 0; i < OPS; i++) {
+                switch (rnd.nextInt(3)) {
+                    case 0 -> {
+                        long cost = rnd.nextInt(1, 20);
+                        if (UserManager.charge(cost)) charged += cost;
+                    }
+                    case 1 -> {
+                        long price = rnd.nextInt(1, 6);
+                        charged += UserManager.chargeUnits(price, rnd.nextInt(1, 10)) * price;
+                    }
+                    default -> {
+                        long amount = rnd.nextInt(0, 12);
+                        UserManager.addCredits(amount);
+                        added += amount;
+                    }
+                }
+            }
+            return new Tally(charged, added);
+        });
+
+        assertExact(user, initial, usedBefore, tallies);
+    }
+
+    @Test
+    void leasesSettleExactly() throws Exception {
+        long initial = 200_000;
+        User user = freshUser(initial);
+        long usedBefore = user.getUsedCredits();
+
+        List<Tally> tallies = runThreads(user, () -> {
+            ThreadLocalRandom rnd = ThreadLocalRandom.current();
+            long charged = 0, added = 0;
+            for (int run = 0; run < 200; run++) {
+                CreditLease lease = UserManager.openLease();
+                assertNotNull(lease);
+                try {
+                    for (int i = 0; i < 100; i++) {
+                        long cost = rnd.nextInt(1, 30);
+                        if (UserManager.charge(cost)) charged += cost;
+                        if (rnd.nextInt(50) == 0) {
+                            long amount = rnd.nextInt(0, 100);
+                            UserManager.addCredits(amount);
+                            added += amount;
+                        }
+                        if (rnd.nextInt(80) == 0) {
+                            long price = rnd.nextInt(1, 4);
+                            charged += UserManager.chargeUnits(price, rnd.nextInt(1, 20)) * price;
+                        }
+                    }
+                } finally {
+                    lease.close();
+                }
+            }
+            return new Tally(charged, added);
+        });
+
+        assertExact(user, initial, usedBefore, tallies);
+    }
+
+    @Test
+    void exhaustedCreditsAreNeverOverspent() throws Exception {
+        long initial = 10_000;
+        User user = freshUser(initial);
+        long usedBefore = user.getUsedCredits();
+
+        List<Tally> tallies = runThreads(user, () -> {
+            long charged = 0;
+            while (UserManager.charge(7)) charged += 7;
+            return new Tally(charged, 0);
+        });
+
+        assertExact(user, initial, usedBefore, tallies);
+        assertTrue(user.getCredits() < 7, "every thread ran until nobody could pay another charge");
+    }
+
+    @Test
+    void leasedCreditsAreNeverOverspentOrStranded() throws Exception {
+        long initial = 100_003;
+        User user = freshUser(initial);
+        long usedBefore = user.getUsedCredits();
+
+        List<Tally> tallies = runThreads(user, () -> {
+            long charged = 0;
+            CreditLease lease = UserManager.openLease();
+            try {
+                while (UserManager.charge(7)) charged += 7;
+            } finally {
+                lease.close();
+            }
+            return new Tally(charged, 0);
+        });
+
+        assertExact(user, initial, usedBefore, tallies);
+        assertTrue(user.getCredits() < 7, "no lease ran dry while another one held credits that covered it");
+    }
+
+    @Test
+    void secondRunUsesWhatTheFirstRunsLeaseHolds() throws Exception {
+        User user = freshUser(64);
+        UserManager.bind(user);
+        CreditLease first = UserManager.openLease();
+        try {
+            assertTrue(UserManager.charge(1));
+            assertEquals(0L, user.getCredits(), "the first lease took the whole balance");
+
+            ExecutorService other = Executors.newSingleThreadExecutor();
+            Future<Boolean> second = other.submit(() -> {
+                UserManager.bind(user);
+                CreditLease lease = UserManager.openLease();
+                try {
+                    return UserManager.charge(50) && UserManager.chargeUnits(1, 5) == 5;
+                } finally {
+                    lease.close();
+                    UserManager.bind(null);
+                }
+            });
+            assertTrue(second.get(), "the second run is paid from the first lease's unspent credits");
+            other.shutdown();
+
+            assertTrue(UserManager.charge(4));
+            assertFalse(UserManager.charge(5), "8 credits were left, 4 of them are spent");
+        } finally {
+            first.close();
+            UserManager.bind(null);
+        }
+        assertEquals(4L, user.getCredits());
+    }
+}
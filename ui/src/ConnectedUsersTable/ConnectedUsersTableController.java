@@ -17,8 +17,8 @@ public class ConnectedUsersTableController {
     @FXML private TableColumn<UserRow, String> colUsername;
     @FXML private TableColumn<UserRow, Integer> colMainPrograms;
     @FXML private TableColumn<UserRow, Integer> colFunctions;
-    @FXML private TableColumn<UserRow, Integer> colCredits;
-    @FXML private TableColumn<UserRow, Integer> colUsedCredits;
+    @FXML private TableColumn<UserRow, Long> colCredits;
+    @FXML private TableColumn<UserRow, Long> colUsedCredits;
     @FXML private TableColumn<UserRow, Integer> colRuns;
 
     private final Gson gson = new Gson();
@@ -68,8 +68,8 @@ public class ConnectedUsersTableController {
                         (String) u.get("username"),
                         ((Number) u.get("mainPrograms")).intValue(),
                         ((Number) u.get("functions")).intValue(),
-                        ((Number) u.get("credits")).intValue(),
-                        ((Number) u.get("usedCredits")).intValue(),
+                        ((Number) u.get("credits")).longValue(),
+                        ((Number) u.get("usedCredits")).longValue(),
                         ((Number) u.get("runs")).intValue()
                 ));
             }
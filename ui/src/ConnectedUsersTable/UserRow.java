@@ -4,12 +4,12 @@ public class UserRow {
     private final String username;
     private final int mainPrograms;
     private final int functions;
-    private final int credits;
-    private final int usedCredits;
+    private final long credits;
+    private final long usedCredits;
     private final int runs;
 
     public UserRow(String username, int mainPrograms, int functions,
-                   int credits, int usedCredits, int runs) {
+                   long credits, long usedCredits, int runs) {
         this.username = username;
         this.mainPrograms = mainPrograms;
         this.functions = functions;
@@ -21,7 +21,7 @@ public class UserRow {
     public String getUsername() { return username; }
     public int getMainPrograms() { return mainPrograms; }
     public int getFunctions() { return functions; }
-    public int getCredits() { return credits; }
-    public int getUsedCredits() { return usedCredits; }
+    public long getCredits() { return credits; }
+    public long getUsedCredits() { return usedCredits; }
     public int getRuns() { return runs; }
 }
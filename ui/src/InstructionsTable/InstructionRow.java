@@ -18,6 +18,12 @@ public class InstructionRow {
     public String display = "";
     public boolean needsHighlight = false; //red
     public boolean isSupported = false; //green
+    // REPEAT rows: how many instructions the row stands for (0 for other rows) and whether they are shown under it
+    public long repeat = 0;
+    public boolean open = false;
+    // Rows shown under a REPEAT row: the row they belong to, and for the last one, where the rows not fetched yet start
+    public InstructionRow repeatOwner = null;
+    public long moreFrom = -1;
 
     public InstructionRow(int index, boolean basic, String label, int cycles,
                           String opcode, List<String> args, int depth,
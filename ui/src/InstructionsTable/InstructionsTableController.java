@@ -8,6 +8,9 @@ import javafx.application.Platform;
 import javafx.beans.property.ReadOnlyIntegerWrapper;
 import javafx.beans.property.ReadOnlyStringWrapper;
 import javafx.fxml.FXML;
+import javafx.geometry.Orientation;
+import javafx.scene.Node;
+import javafx.scene.control.ScrollBar;
 import javafx.scene.control.TableColumn;
 import javafx.scene.control.TableRow;
 import javafx.scene.control.TableView;
@@ -18,10 +21,27 @@ import java.net.HttpURLConnection;
 import java.net.URL;
 import java.nio.charset.StandardCharsets;
 import java.util.*;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 import java.util.function.Consumer;
 import java.util.function.Function;
+import java.util.function.IntFunction;
 
 public class InstructionsTableController {
+    // Rows of a REPEAT row fetched per request when it is opened
+    private static final int REPEAT_PAGE_ROWS = 1000;
+    // Fetches rows off the FX thread, one request at a time
+    private static final ExecutorService fetcher = Executors.newSingleThreadExecutor(r -> {
+        Thread t = new Thread(r, "instructions-loader");
+        t.setDaemon(true);
+        return t;
+    });
+
+    // Returns rows [from, from + count) of the instructions the REPEAT row at a view index stands for
+    @FunctionalInterface
+    public interface RepeatLoader {
+        List<Map<String, Object>> load(int index, long from, int count) throws Exception;
+    }
 
     @FXML private TableView<InstructionRow> table;
     @FXML private TableColumn<InstructionRow, Number> indexCol;
@@ -34,6 +54,14 @@ public class InstructionsTableController {
     private Consumer<InstructionView> onRowSelected;
     private String highlightTerm = null;
     private int highlightedIndex = -1;
+    // Paged views: where the rest of the rows come from, and how many there are
+    private IntFunction<List<Map<String, Object>>> pageLoader;
+    private int pagedTotal;
+    private boolean pageLoading;
+    // Rows of the view itself in the table; rows shown under an open REPEAT row come on top
+    private int viewRows;
+    private RepeatLoader repeatLoader;
+    private boolean scrollWatched;
     private Function<String,String> fnNameResolver = s -> s; // identity default
     public void setFunctionNameResolver(java.util.function.Function<String,String> f) {
         this.fnNameResolver = (f != null) ? f : (s -> s);
@@ -72,6 +100,12 @@ public class InstructionsTableController {
 
         table.setColumnResizePolicy(TableView.CONSTRAINED_RESIZE_POLICY_FLEX_LAST_COLUMN);
         table.setRowFactory(tv -> new TableRow<InstructionRow>() {
+            {
+                setOnMouseClicked(e -> {
+                    if (e.getClickCount() == 2 && !isEmpty() && getItem() != null) onRowDoubleClicked(getItem());
+                });
+            }
+
             @Override protected void updateItem(InstructionRow row, boolean empty) {
                 super.updateItem(row, empty);
                 setStyle("");
@@ -90,7 +124,7 @@ public class InstructionsTableController {
         });
 
         table.getSelectionModel().selectedItemProperty().addListener((obs, old, row) -> {
-            if (onRowSelected != null && row != null && row.sourceIv != null) {
+            if (onRowSelected != null && row != null && row.sourceIv != null && row.moreFrom < 0) {
                 onRowSelected.accept(row.sourceIv);
             }
         });
@@ -139,10 +173,14 @@ public class InstructionsTableController {
 
 
     public void setItems(List<InstructionRow> items) {
+        viewRows = items.size();
         table.getItems().setAll(items);
     }
 
     public void clear() {
+        pageLoader = null;
+        repeatLoader = null;
+        viewRows = 0;
         table.getItems().clear();
     }
 
@@ -170,6 +208,7 @@ public class InstructionsTableController {
         }
         table.getItems().clear();
         table.getItems().setAll(rows);
+        viewRows = rows.size();
         table.refresh();
     }
 
@@ -290,7 +329,7 @@ public class InstructionsTableController {
     }
 
     public void highlightRow(int rowIndex0Based) {
-        highlightedIndex = Math.max(-1, rowIndex0Based);
+        highlightedIndex = (rowIndex0Based < 0) ? -1 : positionOf(rowIndex0Based);
         table.getSelectionModel().clearSelection();
         if (highlightedIndex >= 0 && highlightedIndex < table.getItems().size()) {
             table.scrollTo(highlightedIndex);
@@ -299,6 +338,20 @@ public class InstructionsTableController {
         table.refresh();
     }
 
+    //This func returns where the row of a view index is in the table (rows under open REPEAT rows shift it), or -1
+    private int positionOf(int viewIndex) {
+        List<InstructionRow> items = table.getItems();
+        if (viewIndex < items.size() && isViewRow(items.get(viewIndex), viewIndex)) return viewIndex;
+        for (int p = 0; p < items.size(); p++) {
+            if (isViewRow(items.get(p), viewIndex)) return p;
+        }
+        return -1;
+    }
+
+    private static boolean isViewRow(InstructionRow row, int viewIndex) {
+        return row.repeatOwner == null && row.index == viewIndex;
+    }
+
     public void clearHighlight() {
         highlightedIndex = -1;
         table.getSelectionModel().clearSelection();
@@ -366,13 +419,139 @@ public class InstructionsTableController {
         return "";
     }
 
-    @SuppressWarnings("unchecked")
     public void renderFromJson(List<Map<String, Object>> instructionsList) {
+        pageLoader = null;
+        repeatLoader = null;
         if (instructionsList == null || instructionsList.isEmpty()) {
             clear();
             return;
         }
 
+        setItems(rowsFromJson(instructionsList));
+    }
+
+    //This func makes the table fetch the rest of a paged view as it is scrolled down: loader returns the page of
+    // rows starting at an offset, until total rows are shown
+    public void setPageLoader(int total, IntFunction<List<Map<String, Object>>> loader) {
+        this.pagedTotal = total;
+        this.pageLoader = loader;
+        this.pageLoading = false;
+        Platform.runLater(this::watchScrolling);
+    }
+
+    private void watchScrolling() {
+        if (scrollWatched) return;
+        for (Node n : table.lookupAll(".scroll-bar")) {
+            if (n instanceof ScrollBar bar && bar.getOrientation() == Orientation.VERTICAL) {
+                bar.valueProperty().addListener((obs, old, value) -> {
+                    if (value.doubleValue() >= bar.getMax() * 0.9) loadNextPage();
+                });
+                scrollWatched = true;
+                return;
+            }
+        }
+    }
+
+    //This func lets REPEAT rows be opened (double-click): the rows they stand for are fetched a page at a time
+    public void setRepeatLoader(RepeatLoader loader) {
+        this.repeatLoader = loader;
+    }
+
+    private void onRowDoubleClicked(InstructionRow row) {
+        if (row.moreFrom >= 0) {
+            fetchRepeatRows(row.repeatOwner, row.moreFrom, row);
+        } else if (row.repeat > 0 && repeatLoader != null) {
+            if (row.open) {
+                closeRepeat(row);
+            } else {
+                row.open = true;
+                fetchRepeatRows(row, 0, null);
+            }
+        }
+    }
+
+    //This func fetches rows of an open REPEAT row from an offset on and shows them under it (in place of its
+    // "more" row when one is given), followed by a new "more" row if some are still left
+    private void fetchRepeatRows(InstructionRow owner, long from, InstructionRow more) {
+        RepeatLoader repeats = repeatLoader;
+        if (repeats == null) return;
+        fetcher.execute(() -> {
+            List<Map<String, Object>> page;
+            try {
+                page = repeats.load(owner.index, from, REPEAT_PAGE_ROWS);
+            } catch (Exception e) {
+                System.err.println("Failed to load repeated rows: " + e.getMessage());
+                page = List.of();
+            }
+            List<InstructionRow> rows = rowsFromJson(page);
+            Platform.runLater(() -> {
+                if (repeats != repeatLoader || !owner.open) return;   // the view changed or the row was closed
+                List<InstructionRow> items = table.getItems();
+                int at = (more != null) ? items.indexOf(more) : items.indexOf(owner) + 1;
+                if (at < 0 || (more == null && at == 0)) return;
+                if (more != null) items.remove(at);
+
+                List<InstructionRow> shown = new ArrayList<>(rows.size() + 1);
+                long n = from;
+                for (InstructionRow r : rows) {
+                    r.repeatOwner = owner;
+                    r.display = "    " + (++n) + "/" + owner.repeat + "  " + r.display;
+                    shown.add(r);
+                }
+                if (!rows.isEmpty() && n < owner.repeat) shown.add(moreRow(owner, n));
+                items.addAll(at, shown);
+                if (highlightedIndex >= at) table.refresh();
+            });
+        });
+    }
+
+    private static InstructionRow moreRow(InstructionRow owner, long from) {
+        InstructionRow more = new InstructionRow(owner.index, owner.basic, "", 0, owner.opcode, owner.args,
+                1, owner.sourceIv);
+        more.repeatOwner = owner;
+        more.moreFrom = from;
+        more.display = "    ... " + (owner.repeat - from) + " more (double-click to show)";
+        return more;
+    }
+
+    private void closeRepeat(InstructionRow owner) {
+        owner.open = false;
+        List<InstructionRow> items = table.getItems();
+        int at = items.indexOf(owner) + 1;
+        int end = at;
+        while (at > 0 && end < items.size() && items.get(end).repeatOwner == owner) end++;
+        if (end > at) items.remove(at, end);
+    }
+
+    private void loadNextPage() {
+        IntFunction<List<Map<String, Object>>> loader = pageLoader;
+        int offset = viewRows;
+        if (loader == null || pageLoading || offset >= pagedTotal) return;
+        pageLoading = true;
+        fetcher.execute(() -> {
+            List<Map<String, Object>> page;
+            try {
+                page = loader.apply(offset);
+            } catch (Exception e) {
+                System.err.println("Failed to load instructions page: " + e.getMessage());
+                page = List.of();
+            }
+            List<InstructionRow> rows = rowsFromJson(page);
+            Platform.runLater(() -> {
+                pageLoading = false;
+                if (loader != pageLoader) return;    // the view changed meanwhile
+                if (rows.isEmpty()) {
+                    pageLoader = null;
+                    return;
+                }
+                viewRows += rows.size();
+                table.getItems().addAll(rows);
+            });
+        });
+    }
+
+    @SuppressWarnings("unchecked")
+    private List<InstructionRow> rowsFromJson(List<Map<String, Object>> instructionsList) {
         List<InstructionRow> rows = new ArrayList<>();
         for (Map<String, Object> map : instructionsList) {
             int index = ((Number) map.getOrDefault("index", 0)).intValue();
@@ -385,36 +564,6 @@ public class InstructionsTableController {
             long creditCost = ((Number) map.getOrDefault("creditCost", 0)).longValue();
             String architecture = Objects.toString(map.getOrDefault("architecture", "?"));
 
-            List<Map<String, Object>> subViewsList =
-                    (List<Map<String, Object>>) map.get("createdFromViews");
-            List<InstructionView> createdFromViews = new ArrayList<>();
-            if (subViewsList != null) {
-                for (Map<String, Object> subMap : subViewsList) {
-                    int sIndex = ((Number) subMap.getOrDefault("index", -1)).intValue();
-                    String sOpcode = Objects.toString(subMap.get("opcode"), "");
-                    String sLabel = Objects.toString(subMap.get("label"), "");
-                    int sCycles = ((Number) subMap.getOrDefault("cycles", 0)).intValue();
-                    boolean sBasic = Boolean.TRUE.equals(subMap.get("basic"));
-                    List<String> sArgs = (List<String>) subMap.getOrDefault("args", List.of());
-
-                    long sCreditCost = ((Number) subMap.getOrDefault("creditCost", 0)).longValue();
-                    String sArchitecture = Objects.toString(subMap.getOrDefault("architecture", "?"));
-
-                    createdFromViews.add(new InstructionView(
-                            sIndex,
-                            sOpcode,
-                            sLabel,
-                            sBasic,
-                            sCycles,
-                            sArgs,
-                            List.of(),
-                            List.of(),
-                            sCreditCost,
-                            sArchitecture
-                    ));
-                }
-            }
-
             List<Integer> createdFromChain =
                     (List<Integer>) map.getOrDefault("createdFromChain", List.of());
 
@@ -426,21 +575,32 @@ public class InstructionsTableController {
                     cycles,
                     args,
                     createdFromChain,
-                    createdFromViews,
                     creditCost,
                     architecture
             );
 
             String display = prettyCommand(iv);
             InstructionRow row = new InstructionRow(index, basic, label, cycles, opcode, args, 0, iv);
-            row.display = display;
+            row.repeat = repeatCount(args);
+            row.display = (row.repeat > 0)
+                    ? display + "  (x" + row.repeat + ", double-click to show the rows)"
+                    : display;
             rows.add(row);
         }
-
-        setItems(rows);
+        return rows;
     }
 
 
+    //This func returns how many instructions a REPEAT row stands for (its repeat= argument), 0 for other rows
+    private static long repeatCount(List<String> args) {
+        String count = extractArg(args, "repeat");
+        try {
+            return count.isEmpty() ? 0 : Long.parseLong(count.trim());
+        } catch (NumberFormatException e) {
+            return 0;
+        }
+    }
+
     private static String extractArg(List<String> args, String... keys) {
         for (String key : keys) {
             for (String a : args) {
@@ -12,6 +12,7 @@ import SelectedInstructionHistoryChainTable.SelectedInstructionHistoryChainTable
 import RunButtons.RunButtonsController;
 import com.google.gson.Gson;
 import com.google.gson.reflect.TypeToken;
+import emulator.api.dto.InstructionView;
 import emulator.api.dto.RunRecord;
 import javafx.application.Platform;
 import javafx.fxml.FXML;
@@ -22,6 +23,8 @@ import javafx.scene.layout.*;
 import java.net.URLEncoder;
 import java.nio.charset.StandardCharsets;
 import java.util.*;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 import java.util.function.Consumer;
 
 public class MainExecutionController {
@@ -51,6 +54,17 @@ public class MainExecutionController {
 
     private static final String BASE_URL = "http://localhost:8080/semulator/";
     private static final Gson gson = new Gson();
+    // Rows of an expanded view fetched per request; the table asks for more as it is scrolled
+    private static final int PAGE_ROWS = 1000;
+    // Fetches the history chain of the selected row off the FX thread, one request at a time
+    private static final ExecutorService chainFetcher = Executors.newSingleThreadExecutor(r -> {
+        Thread t = new Thread(r, "history-chain-loader");
+        t.setDaemon(true);
+        return t;
+    });
+    private volatile InstructionView chainSelected = null;
+    private final Set<String> highlightSet = new LinkedHashSet<>();
+    private Map<String, Object> highlightedProgram = null;
     private String currentProgram = null;
     private int currentDegree = 0;
     private int maxDegree = 0;
@@ -83,17 +97,28 @@ public class MainExecutionController {
         }
 
         instructionsController.setOnRowSelected(selected -> {
+            chainSelected = selected;
             if (selected == null) {
                 historyChainController.clear();
                 return;
             }
 
-            try {
-                historyChainController.showForSelected(selected, null);
-            } catch (Exception e) {
-                System.err.println("Failed to update history chain: " + e.getMessage());
+            if (selected.createdFromChain() == null || selected.createdFromChain().isEmpty()) {
                 historyChainController.clear();
+                return;
             }
+
+            // The chain is fetched per row, views only carry the parent indexes
+            int degree = currentDegree;
+            chainFetcher.execute(() -> {
+                if (chainSelected != selected) return;    // another row was selected meanwhile
+                try {
+                    historyChainController.showForSelected(selected, fetchProvenance(degree, selected.index()));
+                } catch (Exception e) {
+                    System.err.println("Failed to update history chain: " + e.getMessage());
+                    Platform.runLater(historyChainController::clear);
+                }
+            });
         });
 
         Platform.runLater(() -> {
@@ -201,10 +226,60 @@ public class MainExecutionController {
     private String fetchProgramViewJson(int degree) throws Exception {
         String programParam = (currentProgram == null || currentProgram.equalsIgnoreCase("Main Program"))
                 ? "" : "&program=" + URLEncoder.encode(currentProgram, StandardCharsets.UTF_8);
-        String url = BASE_URL + "view?degree=" + degree + programParam;
+        String url = BASE_URL + "view?degree=" + degree + "&offset=0&limit=" + PAGE_ROWS + programParam;
         return httpGet(url);
     }
 
+    //This func fetches the instructions of a paged view from an offset on, and adds them to the program's
+    // instructions; the highlights and the summary line take in only the new rows
+    @SuppressWarnings("unchecked")
+    private List<Map<String, Object>> fetchInstructionsPage(Map<String, Object> program, int offset) {
+        try {
+            int degree = ((Number) program.getOrDefault("degree", currentDegree)).intValue();
+            String programParam = (currentProgram == null || currentProgram.equalsIgnoreCase("Main Program"))
+                    ? "" : "&program=" + URLEncoder.encode(currentProgram, StandardCharsets.UTF_8);
+            String url = BASE_URL + "view?degree=" + degree + "&offset=" + offset + "&limit=" + PAGE_ROWS + programParam;
+            Map<String, Object> page = parseAndValidateResponse(httpGet(url));
+            if (page == null) return List.of();
+            List<Map<String, Object>> rows = (List<Map<String, Object>>) page.getOrDefault("instructions", List.of());
+
+            synchronized (program) {
+                ((List<Map<String, Object>>) program.get("instructions")).addAll(rows);
+            }
+            addToolbarHighlights(program, rows);
+            if (summaryLineController != null) summaryLineController.addFromJson(program, rows);
+            return rows;
+        } catch (Exception e) {
+            showError("View page failed: " + e.getMessage());
+            return List.of();
+        }
+    }
+
+    //This func fetches rows [from, from + count) of the instructions a REPEAT row of the view stands for
+    @SuppressWarnings("unchecked")
+    private List<Map<String, Object>> fetchRepeatedRows(int degree, int index, long from, int count) throws Exception {
+        String programParam = (currentProgram == null || currentProgram.equalsIgnoreCase("Main Program"))
+                ? "" : "&program=" + URLEncoder.encode(currentProgram, StandardCharsets.UTF_8);
+        String url = BASE_URL + "view?degree=" + degree + "&repeat=" + index + "&from=" + from + "&count=" + count + programParam;
+        Map<String, Object> map = gson.fromJson(httpGet(url), new TypeToken<Map<String, Object>>() {}.getType());
+        if (!"success".equals(map.get("status"))) {
+            showError("Repeated rows failed: " + map.get("message"));
+            return List.of();
+        }
+        return (List<Map<String, Object>>) map.getOrDefault("rows", List.of());
+    }
+
+    private List<InstructionView> fetchProvenance(int degree, int index) throws Exception {
+        String programParam = (currentProgram == null || currentProgram.equalsIgnoreCase("Main Program"))
+                ? "" : "&program=" + URLEncoder.encode(currentProgram, StandardCharsets.UTF_8);
+        String url = BASE_URL + "provenance?degree=" + degree + "&index=" + index + programParam;
+        Map<String, Object> map = gson.fromJson(httpGet(url), new TypeToken<Map<String, Object>>() {}.getType());
+        if (!"success".equals(map.get("status"))) {
+            throw new IllegalStateException(String.valueOf(map.get("message")));
+        }
+        return gson.fromJson(gson.toJson(map.get("chain")), new TypeToken<List<InstructionView>>() {}.getType());
+    }
+
     private Map<String, Object> parseAndValidateResponse(String response) {
         Map<String, Object> map = gson.fromJson(response, new TypeToken<Map<String, Object>>() {}.getType());
         if (!"success".equals(map.get("status"))) {
@@ -228,6 +303,12 @@ public class MainExecutionController {
 
         if (instructionsController != null) {
             instructionsController.renderFromJson(instructionsList);
+            // The view was cut to its first page, the table fetches the rest as it is scrolled
+            if (program.get("total") instanceof Number total && total.intValue() > instructionsList.size()) {
+                instructionsController.setPageLoader(total.intValue(), offset -> fetchInstructionsPage(program, offset));
+            }
+            int degree = ((Number) program.getOrDefault("degree", currentDegree)).intValue();
+            instructionsController.setRepeatLoader((index, from, count) -> fetchRepeatedRows(degree, index, from, count));
         }
     }
 
@@ -278,8 +359,27 @@ public class MainExecutionController {
 
         List<Map<String, Object>> instructionsList = (List<Map<String, Object>>) program.get("instructions");
         if (instructionsList == null) return;
-        Set<String> highlightSet = new LinkedHashSet<>();
+        synchronized (highlightSet) {
+            highlightedProgram = program;
+            highlightSet.clear();
+            collectHighlights(instructionsList);
+        }
+        publishHighlights();
+    }
 
+    //This func adds the highlights of a page of rows loaded into the view the toolbar shows
+    private void addToolbarHighlights(Map<String, Object> program, List<Map<String, Object>> rows) {
+        if (toolbarController == null) return;
+        synchronized (highlightSet) {
+            if (program != highlightedProgram) return;    // the view changed meanwhile
+            int before = highlightSet.size();
+            collectHighlights(rows);
+            if (highlightSet.size() == before) return;
+        }
+        publishHighlights();
+    }
+
+    private void collectHighlights(List<Map<String, Object>> instructionsList) {
         for (Map<String, Object> ins : instructionsList) {
             String label = Objects.toString(ins.get("label"), "").trim();
             if (!label.isBlank()) highlightSet.add(label);
@@ -301,8 +401,13 @@ public class MainExecutionController {
                 }
             }
         }
+    }
 
-        List<String> highlights = new ArrayList<>(highlightSet);
+    private void publishHighlights() {
+        List<String> highlights;
+        synchronized (highlightSet) {
+            highlights = new ArrayList<>(highlightSet);
+        }
         highlights.sort((a, b) -> {
             if (a == null) return -1;
             if (b == null) return 1;
@@ -45,6 +45,10 @@ public class RunButtonsController {
     private String currentProgram = "";
     private static final String BASE_URL = "http://localhost:8080/semulator/";
     private static final Gson gson = new Gson();
+    private static final long POLL_MS = 200;
+
+    private final Timer runPoller = new Timer("run-poller", true);
+    private volatile String activeJobId;
 
     private DropShadow glow;
 
@@ -113,55 +117,145 @@ public class RunButtonsController {
             Map<String, Object> outer = gson.fromJson(response, new TypeToken<Map<String, Object>>(){}.getType());
             if (!"success".equals(outer.get("status"))) {
                 String msg = String.valueOf(outer.get("message"));
-                if (msg != null && msg.toLowerCase().contains("Dashboard")) {
+                if (msg != null && msg.toLowerCase().contains("dashboard")) {
                     handleCreditsDepleted(msg);
                     return;
                 }
                 throw new RuntimeException("Run failed: " + msg);
             }
 
-            Map<String, Object> result = (Map<String, Object>) outer.get("result");
-            List<Map<String, Object>> varsList = (List<Map<String, Object>>) result.get("vars");
-            Number cycles = (Number) result.getOrDefault("cycles", 0);
+            // The server runs the program as a job; poll it until it ends (Stop cancels it meanwhile)
+            activeJobId = (String) outer.get("jobId");
+            setRunInProgress(true);
+            scheduleJobPoll(activeJobId);
 
-            Map<String, Object> varsMap = new LinkedHashMap<>();
-            if (varsList != null) {
-                for (Map<String, Object> v : varsList) {
-                    Object name = v.get("name");
-                    Object value = v.get("value");
-                    if (name != null) varsMap.put(name.toString(), value);
+        } catch (Exception ex) {
+            String msg = ex.getMessage();
+            if (msg != null && msg.toLowerCase().contains("dashboard")) {
+                handleCreditsDepleted(msg);
+            } else {
+                alertError("Run failed", msg);
+            }
+        }
+    }
+
+    //This func polls the run job again after POLL_MS, off the FX thread
+    private void scheduleJobPoll(String jobId) {
+        runPoller.schedule(new TimerTask() {
+            @Override
+            public void run() {
+                pollJob(jobId);
+            }
+        }, POLL_MS);
+    }
+
+    private void pollJob(String jobId) {
+        try {
+            String response = HttpSessionClient.get(BASE_URL + "run/" + URLEncoder.encode(jobId, StandardCharsets.UTF_8));
+            Map<String, Object> job = gson.fromJson(response, new TypeToken<Map<String, Object>>(){}.getType());
+            if (!"success".equals(job.get("status"))) {
+                endJob(jobId);
+                alertError("Run failed", String.valueOf(job.get("message")));
+                return;
+            }
+
+            String state = String.valueOf(job.get("state"));
+            switch (state) {
+                case "QUEUED", "RUNNING" -> {
+                    Map<String, Object> progress = (Map<String, Object>) job.get("progress");
+                    if (progress != null && varsBoxController != null) {
+                        Number cycles = (Number) progress.getOrDefault("cycles", 0);
+                        Platform.runLater(() -> varsBoxController.setCycles(cycles.intValue()));
+                    }
+                    scheduleJobPoll(jobId);
+                }
+                case "DONE" -> {
+                    endJob(jobId);
+                    showRunResult((Map<String, Object>) job.get("result"));
+                }
+                case "CANCELLED" -> {
+                    endJob(jobId);
+                    if (mainExecutionController != null) Platform.runLater(() -> mainExecutionController.refreshHistory());
+                }
+                default -> {
+                    endJob(jobId);
+                    String msg = String.valueOf(job.get("message"));
+                    if (msg.toLowerCase().contains("dashboard")) {
+                        handleCreditsDepleted(msg);
+                    } else {
+                        alertError("Run failed", msg);
+                    }
                 }
             }
+        } catch (Exception ex) {
+            endJob(jobId);
+            alertError("Run failed", ex.getMessage());
+        }
+    }
 
-            Map<String, String> latestVarsSnapshot = new LinkedHashMap<>();
-            for (Map.Entry<String, Object> entry : varsMap.entrySet()) {
-                latestVarsSnapshot.put(entry.getKey(), String.valueOf(entry.getValue()));
+    private void endJob(String jobId) {
+        if (jobId.equals(activeJobId)) {
+            activeJobId = null;
+            setRunInProgress(false);
+        }
+    }
+
+    //This func shows a finished run: its variables, cycles and the refreshed history
+    private void showRunResult(Map<String, Object> result) {
+        if (result == null) return;
+        List<Map<String, Object>> varsList = (List<Map<String, Object>>) result.get("vars");
+        Number cycles = (Number) result.getOrDefault("cycles", 0);
+
+        Map<String, Object> varsMap = new LinkedHashMap<>();
+        if (varsList != null) {
+            for (Map<String, Object> v : varsList) {
+                Object name = v.get("name");
+                Object value = v.get("value");
+                if (name != null) varsMap.put(name.toString(), value);
             }
+        }
+
+        Map<String, String> latestVarsSnapshot = new LinkedHashMap<>();
+        for (Map.Entry<String, Object> entry : varsMap.entrySet()) {
+            latestVarsSnapshot.put(entry.getKey(), String.valueOf(entry.getValue()));
+        }
+
+        Platform.runLater(() -> {
             if (statisticsCommandsController != null) {
                 statisticsCommandsController.setLastVarsSnapshot(latestVarsSnapshot);
             }
-
             if (varsBoxController != null) {
                 varsBoxController.renderAll(varsMap);
                 varsBoxController.setCycles(cycles.intValue());
             }
             if (statisticsTableController != null) {
-                Platform.runLater(() -> statisticsTableController.clear());
+                statisticsTableController.clear();
             }
             if (mainExecutionController != null) {
                 mainExecutionController.refreshHistory();
             }
+        });
+    }
 
+    //This func asks the server to cancel the running job; the poll picks up the cancelled state
+    private void cancelActiveJob() {
+        String jobId = activeJobId;
+        if (jobId == null) return;
+        try {
+            HttpSessionClient.delete(BASE_URL + "run/" + URLEncoder.encode(jobId, StandardCharsets.UTF_8));
         } catch (Exception ex) {
-            String msg = ex.getMessage();
-            if (msg != null && msg.toLowerCase().contains("dashboard")) {
-                handleCreditsDepleted(msg);
-            } else {
-                alertError("Run failed", msg);
-            }
+            alertError("Stop failed", ex.getMessage());
         }
     }
 
+    private void setRunInProgress(boolean running) {
+        Platform.runLater(() -> {
+            btnRun.setDisable(running);
+            btnDebug.setDisable(running);
+            btnStop.setDisable(!running);
+        });
+    }
+
     private void handleCreditsDepleted(String msg) {
         Platform.runLater(() -> {
             Alert alert = new Alert(Alert.AlertType.ERROR);
@@ -259,6 +353,10 @@ public class RunButtonsController {
 
     @FXML
     private void onStop(ActionEvent e) {
+        if (activeJobId != null) {
+            cancelActiveJob();
+            return;
+        }
         handleDebugAction("debug/stop", "Stop failed");
     }
 
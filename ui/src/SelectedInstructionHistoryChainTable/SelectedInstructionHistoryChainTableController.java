@@ -1,8 +1,6 @@
 package SelectedInstructionHistoryChainTable;
 
-import com.google.gson.Gson;
 import emulator.api.dto.InstructionView;
-import emulator.api.dto.ProgramView;
 import InstructionsTable.InstructionsTableController;
 import InstructionsTable.InstructionRow;
 import javafx.application.Platform;
@@ -29,45 +27,15 @@ public class SelectedInstructionHistoryChainTableController {
         this.instructionsController = controller;
     }
 
-    public void showForSelected(InstructionView selected, ProgramView pvOriginal) {
-        if (selected == null) {
-            clear();
-            return;
-        }
-
-        try {
-            if (selected != null && selected.createdFromViews() != null) {
-                List<InstructionView> fixedList = new ArrayList<>();
-                for (Object o : selected.createdFromViews()) {
-                    if (o instanceof InstructionView iv) {
-                        fixedList.add(iv);
-                    } else {
-                        String json = new Gson().toJson(o);
-                        fixedList.add(new Gson().fromJson(json, InstructionView.class));
-                    }
-                }
-                selected = new Gson().fromJson(
-                        new Gson().toJson(selected),
-                        InstructionView.class
-                );
-                selected.createdFromViews().clear();
-                selected.createdFromViews().addAll(fixedList);
-            }
-        } catch (Exception e) {
-            System.err.println("Failed to reconstruct InstructionView: " + e.getMessage());
-        }
-
-        List<InstructionView> chain = new ArrayList<>();
-        collectChainRecursive(selected, chain, new HashSet<>());
-
-        if (!chain.isEmpty() && chain.get(chain.size() - 1).index() == selected.index()) {
-            chain.remove(chain.size() - 1);
-        }
-        if (chain.isEmpty()) {
-            clear();
+    //This func shows the instructions the selected row came from, oldest first (createdFrom is nearest first,
+    // as the /provenance endpoint returns it)
+    public void showForSelected(InstructionView selected, List<InstructionView> createdFrom) {
+        if (selected == null || createdFrom == null || createdFrom.isEmpty()) {
+            Platform.runLater(this::clear);
             return;
         }
 
+        List<InstructionView> chain = new ArrayList<>(createdFrom);
         Collections.reverse(chain);
         List<InstructionRow> items = toRows(chain);
 
@@ -77,21 +45,6 @@ public class SelectedInstructionHistoryChainTableController {
         });
     }
 
-
-    private void collectChainRecursive(InstructionView current, List<InstructionView> out, Set<Integer> visited) {
-        if (current == null) return;
-        if (!visited.add(current.index())) return;
-
-        List<InstructionView> prevs = current.createdFromViews();
-        if (prevs != null) {
-            for (InstructionView prev : prevs) {
-                collectChainRecursive(prev, out, visited);
-            }
-        }
-
-        out.add(current);
-    }
-
     public void clear() {
         instructionsController.clear();
     }
@@ -131,7 +84,6 @@ public class SelectedInstructionHistoryChainTableController {
                     iv.cycles(),
                     args,
                     iv.createdFromChain(),
-                    iv.createdFromViews(),
                     iv.creditCost(),
                     iv.architecture()
             );
@@ -7,6 +7,7 @@ import javafx.fxml.FXML;
 import javafx.scene.control.Label;
 import javafx.scene.layout.BorderPane;
 
+import java.util.Arrays;
 import java.util.List;
 import java.util.Map;
 
@@ -20,6 +21,11 @@ public class SummaryLineController {
     @FXML private Label arch4Count;
     @FXML private BorderPane root;
 
+    // Counts of the JSON view shown, kept so the pages of a paged view are counted once
+    private int loadedRows, basicRows, totalRows;
+    private final int[] archRows = new int[4];
+    private Map<String, Object> shown = null;
+
     @FXML
     private void initialize() {
         var css = getClass().getResource("/SummaryLine/summary-line.css");
@@ -70,13 +76,17 @@ public class SummaryLineController {
         if (Platform.isFxApplicationThread()) r.run(); else Platform.runLater(r);
     }
 
-    public void clear() {
+    public synchronized void clear() {
+        shown = null;
         setCounts(0, 0, 0, 0, 0, 0, 0);
     }
 
     public void bindTo(ProgramView pv) { update(pv); }
 
-    public void updateFromJson(Map<String, Object> programJson) {
+    public synchronized void updateFromJson(Map<String, Object> programJson) {
+        shown = programJson;
+        loadedRows = basicRows = totalRows = 0;
+        Arrays.fill(archRows, 0);
         if (programJson == null) {
             setCounts(0, 0, 0, 0, 0, 0, 0);
             return;
@@ -85,28 +95,34 @@ public class SummaryLineController {
         try {
             List<Map<String, Object>> instructions =
                     (List<Map<String, Object>>) programJson.get("instructions");
-            int total = (instructions == null) ? 0 : instructions.size();
-
-            int basic = 0, arch1 = 0, arch2 = 0, arch3 = 0, arch4 = 0;
-            if (instructions != null) {
-                for (Map<String, Object> ins : instructions) {
-                    if (Boolean.TRUE.equals(ins.get("basic"))) basic++;
-                    String arch = String.valueOf(ins.getOrDefault("architecture", "?"));
-                    switch (arch) {
-                        case "I" -> arch1++;
-                        case "II" -> arch2++;
-                        case "III" -> arch3++;
-                        case "IV" -> arch4++;
-                    }
-                }
-            }
-            int synthetic = Math.max(0, total - basic);
-
-            setCounts(total, basic, synthetic, arch1, arch2, arch3, arch4);
+            // A paged view says how many rows it has; the other counts cover the rows loaded so far
+            if (programJson.get("total") instanceof Number n) totalRows = n.intValue();
+            addRows((instructions == null) ? List.of() : instructions);
 
         } catch (Exception e) {
             System.err.println("Failed to update summary line from JSON: " + e.getMessage());
             setCounts(0, 0, 0, 0, 0, 0, 0);
         }
     }
+
+    //This func adds a page of rows loaded into a paged view to the counts, if the view is still the one shown
+    public synchronized void addFromJson(Map<String, Object> programJson, List<Map<String, Object>> rows) {
+        if (programJson == shown) addRows(rows);
+    }
+
+    private void addRows(List<Map<String, Object>> rows) {
+        for (Map<String, Object> ins : rows) {
+            if (Boolean.TRUE.equals(ins.get("basic"))) basicRows++;
+            String arch = String.valueOf(ins.getOrDefault("architecture", "?"));
+            switch (arch) {
+                case "I" -> archRows[0]++;
+                case "II" -> archRows[1]++;
+                case "III" -> archRows[2]++;
+                case "IV" -> archRows[3]++;
+            }
+        }
+        loadedRows += rows.size();
+        setCounts(Math.max(loadedRows, totalRows), basicRows, Math.max(0, loadedRows - basicRows),
+                archRows[0], archRows[1], archRows[2], archRows[3]);
+    }
 }
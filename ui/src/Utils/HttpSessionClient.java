@@ -27,6 +27,12 @@ public class HttpSessionClient {
         return readResponse(conn);
     }
 
+    // DELETE
+    public static String delete(String urlStr) throws IOException {
+        HttpURLConnection conn = openConnection(urlStr, "DELETE");
+        return readResponse(conn);
+    }
+
     // MULTIPART POST
     public static String postMultipart(String urlStr, Path file, String fieldName) throws IOException {
         String boundary = "Boundary" + System.currentTimeMillis();
@@ -56,7 +62,9 @@ public class HttpSessionClient {
 
     private static String readResponse(HttpURLConnection conn) throws IOException {
         storeCookies(conn);
-        try (InputStream in = conn.getInputStream()) {
+        // Error statuses (e.g. a full run queue) still carry a JSON body with the message
+        InputStream err = (conn.getResponseCode() >= 400) ? conn.getErrorStream() : null;
+        try (InputStream in = (err != null) ? err : conn.getInputStream()) {
             return new String(in.readAllBytes(), StandardCharsets.UTF_8);
         }
     }
@@ -384,8 +384,8 @@ public class ConsoleApp {
             String base = formatInstruction(iv);
 
             String chain;
-            if (iv.createdFromViews() != null && !iv.createdFromViews().isEmpty()) {
-                chain = formatProvenanceChainFromViews(iv.createdFromViews());
+            if (iv.createdFromChain() != null && !iv.createdFromChain().isEmpty()) {
+                chain = formatProvenanceChainFromViews(engine.provenance(null, pvExpanded.degree(), iv.index()));
             } else {
                 chain = formatProvenanceChain(iv, originalByIndex);
             }
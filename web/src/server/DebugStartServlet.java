@@ -32,7 +32,7 @@ public class DebugStartServlet extends HttpServlet {
         Map<String, Object> responseMap = new LinkedHashMap<>();
 
         try {
-            EmulatorEngine engine = EngineHolder.getEngine();
+            EmulatorEngine engine = EngineHolder.getEngine(req);
 
             if (engine == null) {
                 resp.setStatus(HttpServletResponse.SC_INTERNAL_SERVER_ERROR);
@@ -2,11 +2,53 @@ package server;
 
 import emulator.api.EmulatorEngine;
 import emulator.api.EmulatorEngineImpl;
+import emulator.api.ProgramLibrary;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpSession;
 
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+// Each user gets an engine of its own (runs, history, debug session) over one shared ProgramLibrary, so requests
+// of different users never touch the same engine state. A logged-in user's engine is kept by username (a user
+// has one session), so other sessions can still read its history; sessions without a user keep theirs.
 public class EngineHolder {
-    private static final EmulatorEngine engine = new EmulatorEngineImpl();
+    static final String SESSION_USER = "username";
+    private static final String SESSION_ENGINE = "engine";
+
+    private static final ProgramLibrary library = new ProgramLibrary();
+    private static final Map<String, EmulatorEngine> engines = new ConcurrentHashMap<>();
+
+    //This func returns the engine of the request's user (or of its session before login)
+    public static EmulatorEngine getEngine(HttpServletRequest req) {
+        HttpSession session = req.getSession(true);
+        if (session.getAttribute(SESSION_USER) instanceof String username) {
+            return engines.computeIfAbsent(key(username), k -> new EmulatorEngineImpl(library));
+        }
+        if (session.getAttribute(SESSION_ENGINE) instanceof EmulatorEngine engine) return engine;
+        synchronized (EngineHolder.class) {
+            if (session.getAttribute(SESSION_ENGINE) instanceof EmulatorEngine engine) return engine;
+            EmulatorEngine engine = new EmulatorEngineImpl(library);
+            session.setAttribute(SESSION_ENGINE, engine);
+            return engine;
+        }
+    }
+
+    //This func returns the engine of the named user if there is one, else the request's own engine
+    public static EmulatorEngine getEngine(HttpServletRequest req, String username) {
+        EmulatorEngine engine = (username == null || username.isBlank()) ? null : engines.get(key(username));
+        return (engine != null) ? engine : getEngine(req);
+    }
+
+    //This func ties the session to a user from now on
+    static void login(HttpServletRequest req, String username) {
+        HttpSession session = req.getSession(true);
+        session.setAttribute(SESSION_USER, username);
+        session.removeAttribute(SESSION_ENGINE);
+    }
 
-    public static EmulatorEngine getEngine() {
-        return engine;
+    private static String key(String username) {
+        return username.trim().toLowerCase(Locale.ROOT);
     }
 }
@@ -42,7 +42,7 @@ public class HistoryServlet extends HttpServlet {
                 return;
             }
 
-            EmulatorEngine engine = EngineHolder.getEngine();
+            EmulatorEngine engine = EngineHolder.getEngine(req, username);
             List<RunRecord> allHistory = engine.history();
 
             List<RunRecord> userHistory = new ArrayList<>();
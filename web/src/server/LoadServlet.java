@@ -34,7 +34,7 @@ public class LoadServlet extends HttpServlet {
                 return;
             }
 
-            EmulatorEngine engine = EngineHolder.getEngine();
+            EmulatorEngine engine = EngineHolder.getEngine(req);
             String username = UserManager.getCurrentUser()
                     .map(User::getUsername)
                     .orElse("unknown");
@@ -23,12 +23,13 @@ public class LoginServlet extends HttpServlet {
             return;
         }
 
-        if (userService.userExists(username)) {
+        // Taken names are refused atomically, so two logins racing for a name cannot both get it
+        UserDTO user = userService.registerUser(username).orElse(null);
+        if (user == null) {
             resp.getWriter().print("{\"status\":\"error\",\"message\":\"Username already exists\"}");
             return;
         }
-
-        UserDTO user = userService.loginUser(username);
+        EngineHolder.login(req, user.getUsername());
         ServerEventManager.broadcast("USER_LOGIN");
         resp.getWriter().printf(
                 "{\"status\":\"success\",\"username\":\"%s\",\"credits\":%d}",
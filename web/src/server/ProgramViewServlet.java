@@ -1,7 +1,9 @@
 package server;
 
 import com.google.gson.Gson;
+import com.google.gson.stream.JsonWriter;
 import emulator.api.EmulatorEngine;
+import emulator.api.dto.InstructionView;
 import emulator.api.dto.ProgramView;
 import jakarta.servlet.annotation.WebServlet;
 import jakarta.servlet.http.*;
@@ -16,6 +18,10 @@ import java.util.*;
 public class ProgramViewServlet extends HttpServlet {
 
     private static final Gson gson = new Gson();
+    private static final int MAX_REPEAT_ROWS = 1000;
+    // Most rows one page of a view may ask for, and how many rows are written between flushes
+    private static final int MAX_PAGE_ROWS = 5000;
+    private static final int FLUSH_ROWS = 256;
 
     @Override
     protected void doGet(HttpServletRequest req, HttpServletResponse resp) throws IOException {
@@ -23,47 +29,123 @@ public class ProgramViewServlet extends HttpServlet {
         resp.setCharacterEncoding("UTF-8");
 
         try (PrintWriter out = resp.getWriter()) {
-            EmulatorEngine engine = EngineHolder.getEngine();
-
-            if (!engine.hasProgramLoaded()) {
-                resp.setStatus(HttpServletResponse.SC_BAD_REQUEST);
-                out.write(gson.toJson(Map.of(
-                        "status", "error",
-                        "message", "No program loaded"
-                )));
-                return;
+            try {
+                writeResponse(req, resp, out);
+            } catch (IllegalArgumentException e) {
+                // A malformed degree, offset, limit or repeat, an unknown program, or a row the view does not have
+                writeError(resp, out, HttpServletResponse.SC_BAD_REQUEST, e);
+            } catch (Exception e) {
+                writeError(resp, out, HttpServletResponse.SC_INTERNAL_SERVER_ERROR, e);
             }
+        }
+    }
 
-            // Parse degree
-            int degree = 0;
-            String degreeParam = req.getParameter("degree");
-            if (degreeParam != null && !degreeParam.isBlank()) {
-                degree = Integer.parseInt(degreeParam.trim());
-            }
+    private void writeResponse(HttpServletRequest req, HttpServletResponse resp, PrintWriter out) throws IOException {
+        EmulatorEngine engine = EngineHolder.getEngine(req);
+
+        if (!engine.hasProgramLoaded()) {
+            resp.setStatus(HttpServletResponse.SC_BAD_REQUEST);
+            out.write(gson.toJson(Map.of(
+                    "status", "error",
+                    "message", "No program loaded"
+            )));
+            return;
+        }
 
-            // Parse program name
-            String programParam = req.getParameter("program");
-            if (programParam != null)
-                programParam = URLDecoder.decode(programParam, StandardCharsets.UTF_8);
+        // Parse degree
+        int degree = parseInt(req.getParameter("degree"), 0);
 
-            // Fetch view from engine
-            ProgramView pv = (programParam == null || programParam.isBlank() || "Main Program".equalsIgnoreCase(programParam))
-                    ? engine.programView(degree)
-                    : engine.programView(programParam, degree);
+        // Parse program name
+        String programParam = req.getParameter("program");
+        if (programParam != null)
+            programParam = URLDecoder.decode(programParam, StandardCharsets.UTF_8);
 
-            Map<String, Object> response = new LinkedHashMap<>();
-            response.put("status", "success");
-            response.put("program", pv);
+        // Rows a REPEAT instruction stands for, a page at a time
+        String repeatParam = req.getParameter("repeat");
+        if (repeatParam != null && !repeatParam.isBlank()) {
+            int from = parseInt(req.getParameter("from"), 0);
+            int count = Math.min(parseInt(req.getParameter("count"), MAX_REPEAT_ROWS), MAX_REPEAT_ROWS);
+            String name = (programParam == null || "Main Program".equalsIgnoreCase(programParam)) ? null : programParam;
+            List<InstructionView> rows = engine.repeatedRows(name, degree, parseInt(repeatParam, 0), from, count);
+            out.write(gson.toJson(Map.of("status", "success", "rows", rows)));
+            return;
+        }
 
-            out.write(gson.toJson(response));
+        // Rows [offset, offset + limit), all of them when no limit is given
+        int offset = parseInt(req.getParameter("offset"), 0);
+        String limitParam = req.getParameter("limit");
+        boolean paged = limitParam != null && !limitParam.isBlank();
+        int limit = paged ? parseInt(limitParam, MAX_PAGE_ROWS) : 0;
 
-        } catch (Exception e) {
-            resp.setStatus(HttpServletResponse.SC_INTERNAL_SERVER_ERROR);
-            resp.getWriter().write(gson.toJson(Map.of(
-                    "status", "error",
-                    "message", e.getMessage(),
-                    "exception", e.getClass().getSimpleName()
-            )));
+        // Fetch view from engine
+        ProgramView pv = (programParam == null || programParam.isBlank() || "Main Program".equalsIgnoreCase(programParam))
+                ? engine.programView(degree)
+                : engine.programView(programParam, degree);
+
+        List<InstructionView> instructions = pv.instructions();
+        int total = instructions.size();
+        offset = Math.min(Math.max(offset, 0), total);
+        int end = paged ? (int) Math.min(total, (long) offset + Math.min(Math.max(limit, 0), MAX_PAGE_ROWS)) : total;
+
+        // A page is built whole before anything is written, so a failure still gets its own status
+        List<InstructionView> rows = instructions.subList(offset, end);
+        writeView(out, pv, total, offset, paged ? new ArrayList<>(rows) : rows);
+    }
+
+    //This func streams a view to the response: the program's details first, then its instructions one at a
+    // time as the engine makes them, so a large expansion is never held as a whole or as one JSON string.
+    // The status comes last: if a row fails once rows were flushed, the JSON is closed with an error status.
+    private static void writeView(PrintWriter out, ProgramView pv, int total, int offset,
+                                  List<InstructionView> rows) throws IOException {
+        JsonWriter w = gson.newJsonWriter(out);
+        w.beginObject();
+        w.name("program").beginObject();
+        w.name("programName").value(pv.programName());
+        w.name("degree").value(pv.degree());
+        w.name("maxDegree").value(pv.maxDegree());
+        w.name("totalCycles").value(pv.totalCycles());
+        w.name("inputs");
+        gson.toJson(pv.inputs(), List.class, w);
+        w.name("total").value(total);
+        w.name("offset").value(offset);
+        w.name("instructions").beginArray();
+        RuntimeException failure = null;
+        int n = 0;
+        for (Iterator<InstructionView> it = rows.iterator(); it.hasNext(); n++) {
+            InstructionView row;
+            try {
+                row = it.next();
+            } catch (RuntimeException e) {
+                failure = e;
+                break;
+            }
+            gson.toJson(row, InstructionView.class, w);
+            if (n % FLUSH_ROWS == FLUSH_ROWS - 1) w.flush();
         }
+        w.endArray();
+        w.endObject();
+        if (failure == null) {
+            w.name("status").value("success");
+        } else {
+            w.name("status").value("error");
+            w.name("message").value(Objects.toString(failure.getMessage(), failure.getClass().getSimpleName()));
+            w.name("exception").value(failure.getClass().getSimpleName());
+        }
+        w.endObject();
+        w.flush();
+    }
+
+    private static void writeError(HttpServletResponse resp, PrintWriter out, int status, Exception e) {
+        resp.setStatus(status);
+        out.write(gson.toJson(Map.of(
+                "status", "error",
+                "message", Objects.toString(e.getMessage(), e.getClass().getSimpleName()),
+                "exception", e.getClass().getSimpleName()
+        )));
+    }
+
+    private static int parseInt(String s, int def) {
+        if (s == null || s.isBlank()) return def;
+        return Integer.parseInt(s.trim());
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,84 @@
+package server;
+
+import com.google.gson.Gson;
+import emulator.api.EmulatorEngine;
+import emulator.api.dto.InstructionView;
+import jakarta.servlet.annotation.WebServlet;
+import jakarta.servlet.http.*;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+
+// The chain of instructions one row of a view was expanded from, so /view only has to carry parent indexes
+@WebServlet("/provenance")
+public class ProvenanceServlet extends HttpServlet {
+
+    private static final Gson gson = new Gson();
+
+    @Override
+    protected void doGet(HttpServletRequest req, HttpServletResponse resp) throws IOException {
+        resp.setContentType("application/json;charset=UTF-8");
+        resp.setCharacterEncoding("UTF-8");
+
+        try (PrintWriter out = resp.getWriter()) {
+            try {
+                writeChain(req, resp, out);
+            } catch (IllegalArgumentException e) {
+                // A malformed index or degree, an unknown program, or a row the view does not have
+                writeError(resp, out, HttpServletResponse.SC_BAD_REQUEST, e);
+            } catch (Exception e) {
+                writeError(resp, out, HttpServletResponse.SC_INTERNAL_SERVER_ERROR, e);
+            }
+        }
+    }
+
+    private void writeChain(HttpServletRequest req, HttpServletResponse resp, PrintWriter out) {
+        EmulatorEngine engine = EngineHolder.getEngine(req);
+
+        if (!engine.hasProgramLoaded()) {
+            resp.setStatus(HttpServletResponse.SC_BAD_REQUEST);
+            out.write(gson.toJson(Map.of(
+                    "status", "error",
+                    "message", "No program loaded"
+            )));
+            return;
+        }
+
+        String indexParam = req.getParameter("index");
+        if (indexParam == null || indexParam.isBlank()) {
+            resp.setStatus(HttpServletResponse.SC_BAD_REQUEST);
+            out.write(gson.toJson(Map.of(
+                    "status", "error",
+                    "message", "Missing index"
+            )));
+            return;
+        }
+
+        int degree = 0;
+        String degreeParam = req.getParameter("degree");
+        if (degreeParam != null && !degreeParam.isBlank()) {
+            degree = Integer.parseInt(degreeParam.trim());
+        }
+
+        String programParam = req.getParameter("program");
+        if (programParam != null)
+            programParam = URLDecoder.decode(programParam, StandardCharsets.UTF_8);
+        String name = (programParam == null || "Main Program".equalsIgnoreCase(programParam)) ? null : programParam;
+
+        // Nearest first, like createdFromChain
+        List<InstructionView> chain = engine.provenance(name, degree, Integer.parseInt(indexParam.trim()));
+        out.write(gson.toJson(Map.of("status", "success", "chain", chain)));
+    }
+
+    private static void writeError(HttpServletResponse resp, PrintWriter out, int status, Exception e) {
+        resp.setStatus(status);
+        out.write(gson.toJson(Map.of(
+                "status", "error",
+                "message", Objects.toString(e.getMessage(), e.getClass().getSimpleName()),
+                "exception", e.getClass().getSimpleName()
+        )));
+    }
+}
@@ -0,0 +1,33 @@
+package server;
+
+import com.google.gson.Gson;
+import emulator.logic.instruction.quote.QuoteMemo;
+import jakarta.servlet.annotation.WebServlet;
+import jakarta.servlet.http.HttpServlet;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+
+import java.io.IOException;
+import java.util.Map;
+
+@WebServlet("/stats/quote-memo")
+public class QuoteMemoStatsServlet extends HttpServlet {
+    private final Gson gson = new Gson();
+
+    @Override
+    protected void doGet(HttpServletRequest req, HttpServletResponse resp) throws IOException {
+        resp.setContentType("application/json;charset=UTF-8");
+
+        QuoteMemo.Stats stats = QuoteMemo.stats();
+        long lookups = stats.hits() + stats.misses();
+        String json = gson.toJson(Map.of(
+                "status", "success",
+                "hits", stats.hits(),
+                "misses", stats.misses(),
+                "hitRate", lookups == 0 ? 0.0 : (double) stats.hits() / lookups,
+                "size", stats.size(),
+                "capacity", stats.capacity()
+        ));
+        resp.getWriter().write(json);
+    }
+}
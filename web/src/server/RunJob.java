@@ -0,0 +1,111 @@
+package server;
+
+import emulator.api.dto.RunResult;
+import emulator.logic.execution.RunControl;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+// One asynchronous run: its state, live progress (through its RunControl) and, once it ended, result or error
+public class RunJob {
+    public enum State { QUEUED, RUNNING, DONE, FAILED, CANCELLED }
+
+    private final String id;
+    private final String owner;   // lower-cased username, null for a session without a user
+    private final String program;
+    private final String architecture;
+    private final RunControl control = new RunControl();
+    private final long submittedAt = System.currentTimeMillis();
+
+    private volatile State state = State.QUEUED;
+    private volatile long endedAt = 0;
+    private volatile RunResult result;
+    private volatile String message;
+    private volatile String errorType;
+    private volatile Long userCredits;
+    private volatile long startedAt = 0;
+    private volatile RunScheduler.Ticket ticket;
+
+    RunJob(String id, String owner, String program, String architecture) {
+        this.id = id;
+        this.owner = owner;
+        this.program = program;
+        this.architecture = architecture;
+    }
+
+    // ---- getters funcs ---- //
+    public String id() { return id; }
+    public String owner() { return owner; }
+    public State state() { return state; }
+    public long endedAt() { return endedAt; }
+    RunControl control() { return control; }
+
+    void attach(RunScheduler.Ticket ticket) {
+        this.ticket = ticket;
+    }
+
+    //This func moves a queued job to running; false if it was cancelled while queued
+    synchronized boolean start() {
+        if (state != State.QUEUED) return false;
+        state = State.RUNNING;
+        startedAt = System.currentTimeMillis();
+        return true;
+    }
+
+    synchronized void succeed(RunResult result, Long userCredits) {
+        this.result = result;
+        this.userCredits = userCredits;
+        end(State.DONE);
+    }
+
+    synchronized void fail(State state, String message, String errorType, Long userCredits) {
+        this.message = message;
+        this.errorType = errorType;
+        this.userCredits = userCredits;
+        end(state);
+    }
+
+    //This func cancels the job: a queued one never starts, a running one stops at the interpreter's next check.
+    // Returns false if it had already ended.
+    synchronized boolean cancel() {
+        switch (state) {
+            case QUEUED -> {
+                RunScheduler.Ticket t = ticket;
+                if (t != null) t.withdraw();
+                end(State.CANCELLED);
+                message = "Run cancelled before it started";
+                return true;
+            }
+            case RUNNING -> {
+                control.cancel();
+                return true;
+            }
+            default -> {
+                return false;
+            }
+        }
+    }
+
+    private void end(State state) {
+        this.state = state;
+        this.endedAt = System.currentTimeMillis();
+    }
+
+    //This func returns the job as the JSON map GET /run/{id} answers with
+    Map<String, Object> toMap() {
+        Map<String, Object> map = new LinkedHashMap<>();
+        map.put("jobId", id);
+        map.put("program", program);
+        map.put("state", state.name());
+        map.put("architecture", architecture);
+        map.put("submittedAt", submittedAt);
+        if (startedAt != 0) map.put("waitMs", startedAt - submittedAt);
+        map.put("cancelRequested", control.isCancelled());
+        map.put("progress", Map.of("pc", control.pc(), "cycles", control.cycles()));
+        if (result != null) map.put("result", result);
+        if (message != null) map.put("message", message);
+        if (errorType != null) map.put("errorType", errorType);
+        if (userCredits != null) map.put("userCredits", userCredits);
+        return map;
+    }
+}
@@ -0,0 +1,94 @@
+package server;
+
+import emulator.api.EmulatorEngine;
+import emulator.api.EmulatorEngineImpl;
+import emulator.api.dto.ArchitectureInfo;
+import emulator.api.dto.RunResult;
+import emulator.exception.RunCancelledException;
+import emulator.logic.architecture.ArchitectureType;
+import emulator.logic.execution.ExecutionTier;
+import emulator.logic.execution.RunControl;
+import emulator.logic.user.User;
+import emulator.logic.user.UserManager;
+
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+// Runs submitted through POST /run execute here, admitted by the RunScheduler of their architecture tier,
+// instead of on the request's thread. Ended jobs are kept for RETENTION_MS so their result can be fetched.
+public class RunJobs {
+    private static final long RETENTION_MS = TimeUnit.MINUTES.toMillis(10);
+
+    private static final Map<String, RunJob> jobs = new ConcurrentHashMap<>();
+
+    //This func queues a run of the engine for the calling thread's user. Throws RunScheduler.Rejected when the
+    // architecture's or the user's queue is full.
+    public static RunJob submit(EmulatorEngine engine, String program, int degree, ArchitectureInfo arch,
+                                ExecutionTier tier, Long[] inputs) {
+        purgeEnded();
+        User owner = UserManager.getCurrentUser().orElse(null);
+        RunJob job = new RunJob(UUID.randomUUID().toString(), ownerKey(owner), program, arch.name());
+        ArchitectureType type = ArchitectureType.valueOf(arch.name());
+        // Registered before the scheduler sees it: the job may start (and be looked up) before submit returns
+        jobs.put(job.id(), job);
+        try {
+            job.attach(RunScheduler.submit(job.owner(), type,
+                    () -> execute(job, owner, engine, program, degree, arch, tier, inputs)));
+        } catch (RunScheduler.Rejected e) {
+            jobs.remove(job.id());
+            throw e;
+        }
+        return job;
+    }
+
+    //This func returns the job of an id if it belongs to the user (null: a session without a user)
+    public static Optional<RunJob> find(String id, String username) {
+        RunJob job = (id == null) ? null : jobs.get(id);
+        if (job == null) return Optional.empty();
+        String key = (username == null) ? null : username.toLowerCase(Locale.ROOT);
+        return Objects.equals(job.owner(), key) ? Optional.of(job) : Optional.empty();
+    }
+
+    private static void execute(RunJob job, User owner, EmulatorEngine engine, String program, int degree,
+                                ArchitectureInfo arch, ExecutionTier tier, Long[] inputs) {
+        if (!job.start()) return;
+        UserManager.bind(owner);
+        RunControl.bind(job.control());
+        try {
+            RunResult result = ((EmulatorEngineImpl) engine).run(program, degree, arch, tier, inputs);
+            job.succeed(result, credits(owner));
+            ServerEventManager.broadcast("PROGRAM_RUN");
+        } catch (RunCancelledException e) {
+            job.fail(RunJob.State.CANCELLED, e.getMessage(), "CANCELLED", credits(owner));
+        } catch (IllegalStateException e) {
+            String msg = e.getMessage();
+            boolean credits = msg != null && msg.toLowerCase().contains("not enough credits");
+            job.fail(RunJob.State.FAILED, (msg != null) ? msg : "Unknown runtime error",
+                    credits ? "CREDITS" : "RUNTIME", credits(owner));
+        } catch (Exception e) {
+            e.printStackTrace();
+            job.fail(RunJob.State.FAILED, e.getMessage(), "RUNTIME", credits(owner));
+        } finally {
+            RunControl.bind(null);
+            UserManager.bind(null);
+        }
+    }
+
+    private static void purgeEnded() {
+        long cutoff = System.currentTimeMillis() - RETENTION_MS;
+        jobs.values().removeIf(j -> j.endedAt() != 0 && j.endedAt() < cutoff);
+    }
+
+    private static Long credits(User user) {
+        return (user == null) ? 0L : user.getCredits();
+    }
+
+    private static String ownerKey(User user) {
+        return (user == null) ? null : user.getUsername().toLowerCase(Locale.ROOT);
+    }
+}
@@ -0,0 +1,214 @@
+package server;
+
+import emulator.logic.architecture.ArchitectureType;
+
+import java.util.*;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// Admission control in front of the engine: runs wait in a queue of their architecture tier and start when both
+// the tier and their user have a free run slot. A run is rejected, with a hint of when to retry, if its tier's
+// queue or its user's queue is full. Limits come from system properties: emulator.run.threads / emulator.run.queue
+// for every tier (emulator.run.threads.IV etc. for one tier), emulator.run.userThreads / emulator.run.userQueue
+// per user.
+public class RunScheduler {
+    public static final String THREADS_PROPERTY = "emulator.run.threads";
+    public static final String QUEUE_PROPERTY = "emulator.run.queue";
+    public static final String USER_THREADS_PROPERTY = "emulator.run.userThreads";
+    public static final String USER_QUEUE_PROPERTY = "emulator.run.userQueue";
+    private static final long DEFAULT_RUN_MS = 1000;
+
+    private static final int USER_LIMIT = Math.max(1, Integer.getInteger(USER_THREADS_PROPERTY, 2));
+    private static final int USER_DEPTH = Math.max(0, Integer.getInteger(USER_QUEUE_PROPERTY, 8));
+
+    private static final Map<ArchitectureType, Tier> tiers = new EnumMap<>(ArchitectureType.class);
+    private static final Map<String, UserSlots> users = new HashMap<>();
+    private static final ExecutorService workers = createWorkers();
+
+    static {
+        int threads = Integer.getInteger(THREADS_PROPERTY, Math.max(1, Runtime.getRuntime().availableProcessors() / 2));
+        int queue = Integer.getInteger(QUEUE_PROPERTY, 32);
+        for (ArchitectureType type : ArchitectureType.values()) {
+            tiers.put(type, new Tier(type,
+                    Math.max(1, Integer.getInteger(THREADS_PROPERTY + "." + type.name(), threads)),
+                    Math.max(0, Integer.getInteger(QUEUE_PROPERTY + "." + type.name(), queue))));
+        }
+    }
+
+    // Thrown by submit when the run is not admitted; retryAfterSeconds is when a slot is likely to be free
+    public static final class Rejected extends RuntimeException {
+        private final long retryAfterSeconds;
+
+        Rejected(String message, long retryAfterSeconds) {
+            super(message);
+            this.retryAfterSeconds = retryAfterSeconds;
+        }
+
+        public long retryAfterSeconds() { return retryAfterSeconds; }
+    }
+
+    // A run waiting for (or holding) a slot
+    public static final class Ticket {
+        private final Tier tier;
+        private final String user;
+        private final Runnable work;
+        private final long queuedAt = System.nanoTime();
+        private boolean started = false;
+        private boolean withdrawn = false;
+
+        private Ticket(Tier tier, String user, Runnable work) {
+            this.tier = tier;
+            this.user = user;
+            this.work = work;
+        }
+
+        //This func takes the run out of its queue if it has not started; returns false if it had
+        public boolean withdraw() {
+            synchronized (RunScheduler.class) {
+                if (started || withdrawn) return false;
+                withdrawn = true;
+                tier.waiting.remove(this);
+                slots(user).waiting--;
+                forget(user);
+                dispatch(tier);
+                return true;
+            }
+        }
+    }
+
+    public record TierStats(String tier, int limit, int queueDepth, int running, int waiting,
+                            long admitted, long rejectedTierFull, long rejectedUserFull,
+                            long started, double avgWaitMs, long maxWaitMs, double avgRunMs) {}
+
+    private static final class Tier {
+        final ArchitectureType type;
+        final int limit;
+        final int depth;
+        final ArrayDeque<Ticket> waiting = new ArrayDeque<>();
+        int running;
+        long admitted, rejectedTierFull, rejectedUserFull, started, waitTotalMs, waitMaxMs, finished, runTotalMs;
+
+        Tier(ArchitectureType type, int limit, int depth) {
+            this.type = type;
+            this.limit = limit;
+            this.depth = depth;
+        }
+
+        long avgRunMs() {
+            return (finished == 0) ? DEFAULT_RUN_MS : Math.max(1, runTotalMs / finished);
+        }
+    }
+
+    private static final class UserSlots {
+        int running;
+        int waiting;
+    }
+
+    //This func admits a run of a user (null: a session without a user) on an architecture tier, or throws Rejected
+    public static synchronized Ticket submit(String user, ArchitectureType type, Runnable work) {
+        Tier tier = tiers.get(type);
+        UserSlots mine = slots(user);
+        boolean runsNow = tier.running < tier.limit && mine.running < USER_LIMIT;
+
+        if (!runsNow && tier.waiting.size() >= tier.depth) {
+            tier.rejectedTierFull++;
+            forget(user);
+            throw new Rejected("Too many runs queued on architecture " + type.name(),
+                    seconds(tier.avgRunMs() * (tier.waiting.size() + 1) / tier.limit));
+        }
+        if (!runsNow && mine.waiting >= USER_DEPTH) {
+            tier.rejectedUserFull++;
+            forget(user);
+            throw new Rejected("Too many of your runs are queued", seconds(tier.avgRunMs()));
+        }
+
+        Ticket ticket = new Ticket(tier, user, work);
+        tier.admitted++;
+        mine.waiting++;
+        tier.waiting.addLast(ticket);
+        dispatch(tier);
+        return ticket;
+    }
+
+    //This func returns the scheduler's metrics per architecture tier
+    public static synchronized List<TierStats> stats() {
+        List<TierStats> out = new ArrayList<>();
+        for (Tier t : tiers.values()) {
+            out.add(new TierStats(t.type.name(), t.limit, t.depth, t.running, t.waiting.size(),
+                    t.admitted, t.rejectedTierFull, t.rejectedUserFull, t.started,
+                    (t.started == 0) ? 0.0 : (double) t.waitTotalMs / t.started, t.waitMaxMs,
+                    (t.finished == 0) ? 0.0 : (double) t.runTotalMs / t.finished));
+        }
+        return out;
+    }
+
+    public static int userLimit() { return USER_LIMIT; }
+    public static int userQueueDepth() { return USER_DEPTH; }
+
+    //This func starts the waiting runs of a tier its free slots allow, oldest first, skipping runs whose user
+    // is at its limit
+    private static void dispatch(Tier tier) {
+        Iterator<Ticket> it = tier.waiting.iterator();
+        while (tier.running < tier.limit && it.hasNext()) {
+            Ticket t = it.next();
+            UserSlots slots = slots(t.user);
+            if (slots.running >= USER_LIMIT) continue;
+            it.remove();
+            slots.waiting--;
+            slots.running++;
+            tier.running++;
+            tier.started++;
+            long waited = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - t.queuedAt);
+            tier.waitTotalMs += waited;
+            tier.waitMaxMs = Math.max(tier.waitMaxMs, waited);
+            t.started = true;
+            workers.execute(() -> run(t));
+        }
+    }
+
+    private static void run(Ticket t) {
+        long began = System.nanoTime();
+        try {
+            t.work.run();
+        } finally {
+            synchronized (RunScheduler.class) {
+                t.tier.running--;
+                t.tier.finished++;
+                t.tier.runTotalMs += TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - began);
+                slots(t.user).running--;
+                // A user slot freed up may let runs of any tier start
+                forget(t.user);
+                for (Tier tier : tiers.values()) dispatch(tier);
+            }
+        }
+    }
+
+    private static UserSlots slots(String user) {
+        return users.computeIfAbsent(key(user), k -> new UserSlots());
+    }
+
+    //This func drops the slots of a user with nothing running or waiting
+    private static void forget(String user) {
+        UserSlots s = users.get(key(user));
+        if (s != null && s.running == 0 && s.waiting == 0) users.remove(key(user));
+    }
+
+    private static String key(String user) {
+        return (user == null) ? "" : user;
+    }
+
+    private static long seconds(long ms) {
+        return Math.max(1, (ms + 999) / 1000);
+    }
+
+    private static ExecutorService createWorkers() {
+        AtomicInteger count = new AtomicInteger();
+        return Executors.newCachedThreadPool(r -> {
+            Thread t = new Thread(r, "run-job-" + count.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        });
+    }
+}
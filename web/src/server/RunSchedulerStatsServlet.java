@@ -0,0 +1,28 @@
+package server;
+
+import com.google.gson.Gson;
+import jakarta.servlet.annotation.WebServlet;
+import jakarta.servlet.http.HttpServlet;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+
+import java.io.IOException;
+import java.util.Map;
+
+@WebServlet("/stats/run-scheduler")
+public class RunSchedulerStatsServlet extends HttpServlet {
+    private final Gson gson = new Gson();
+
+    @Override
+    protected void doGet(HttpServletRequest req, HttpServletResponse resp) throws IOException {
+        resp.setContentType("application/json;charset=UTF-8");
+
+        String json = gson.toJson(Map.of(
+                "status", "success",
+                "userLimit", RunScheduler.userLimit(),
+                "userQueueDepth", RunScheduler.userQueueDepth(),
+                "tiers", RunScheduler.stats()
+        ));
+        resp.getWriter().write(json);
+    }
+}
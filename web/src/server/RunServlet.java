@@ -2,19 +2,21 @@ package server;
 
 import com.google.gson.Gson;
 import emulator.api.EmulatorEngine;
-import emulator.api.EmulatorEngineImpl;
 import emulator.api.dto.ArchitectureInfo;
-import emulator.api.dto.RunResult;
-import emulator.api.dto.UserService;
+import emulator.logic.execution.ExecutionTier;
 import emulator.logic.user.UserManager;
 import jakarta.servlet.annotation.WebServlet;
 import jakarta.servlet.http.*;
 import java.io.*;
 import java.util.*;
 
-@WebServlet("/run")
+// POST /run queues a run and answers with its job id at once; GET /run/{id} reports the job's progress and,
+// once it ended, its result; DELETE /run/{id} cancels it
+@WebServlet({"/run", "/run/*"})
 public class RunServlet extends HttpServlet {
     private static final Gson gson = new Gson();
+    // Not among the Servlet API's status constants
+    private static final int SC_TOO_MANY_REQUESTS = 429;
     private static final Map<String, ArchitectureInfo> ARCHITECTURES = Map.of(
             "I", new ArchitectureInfo("I", 5, "Basic architecture"),
             "II", new ArchitectureInfo("II", 100, "Optimized architecture"),
@@ -40,28 +42,25 @@ public class RunServlet extends HttpServlet {
             String architectureName = (String) data.getOrDefault("architecture", "I");
             ArchitectureInfo archInfo = ARCHITECTURES.getOrDefault(architectureName, ARCHITECTURES.get("I"));
 
+            ExecutionTier tier = ExecutionTier.fromString((String) data.get("tier"));
+
             List<Double> inputsD = (List<Double>) data.getOrDefault("inputs", List.of());
             Long[] inputs = inputsD.stream().map(Double::longValue).toArray(Long[]::new);
 
-            EmulatorEngine engine = EngineHolder.getEngine();
-            RunResult result = ((EmulatorEngineImpl) engine)
-                    .run(program, degree, archInfo, inputs);
-            ServerEventManager.broadcast("PROGRAM_RUN");
+            EmulatorEngine engine = EngineHolder.getEngine(req);
+            RunJob job = RunJobs.submit(engine, program, degree, archInfo, tier, inputs);
 
+            resp.setStatus(HttpServletResponse.SC_ACCEPTED);
             responseMap.put("status", "success");
-            responseMap.put("result", result);
-            responseMap.put("userCredits", UserManager.getCurrentUser().map(u -> u.getCredits()).orElse(0L));
-        } catch (IllegalStateException ex) {
-            String msg = ex.getMessage();
-            if (msg != null && msg.toLowerCase().contains("not enough credits")) {
-                responseMap.put("status", "error");
-                responseMap.put("message", msg);
-                responseMap.put("errorType", "CREDITS");
-            } else {
-                responseMap.put("status", "error");
-                responseMap.put("message", msg != null ? msg : "Unknown runtime error");
-                responseMap.put("errorType", "RUNTIME");
-            }
+            responseMap.put("jobId", job.id());
+            responseMap.put("state", job.state().name());
+        } catch (RunScheduler.Rejected ex) {
+            resp.setStatus(SC_TOO_MANY_REQUESTS);
+            resp.setHeader("Retry-After", String.valueOf(ex.retryAfterSeconds()));
+            responseMap.put("status", "error");
+            responseMap.put("message", ex.getMessage());
+            responseMap.put("errorType", "BUSY");
+            responseMap.put("retryAfterSeconds", ex.retryAfterSeconds());
         } catch (Exception e) {
             e.printStackTrace();
             responseMap.put("status", "error");
@@ -72,4 +71,55 @@ public class RunServlet extends HttpServlet {
             out.print(gson.toJson(responseMap));
         }
     }
+
+    @Override
+    protected void doGet(HttpServletRequest req, HttpServletResponse resp) throws IOException {
+        resp.setContentType("application/json;charset=UTF-8");
+        resp.setCharacterEncoding("UTF-8");
+
+        try (PrintWriter out = resp.getWriter()) {
+            Optional<RunJob> job = findJob(req);
+            if (job.isEmpty()) {
+                resp.setStatus(HttpServletResponse.SC_NOT_FOUND);
+                out.print(gson.toJson(Map.of("status", "error", "message", "Unknown run job")));
+                return;
+            }
+            Map<String, Object> responseMap = new LinkedHashMap<>();
+            responseMap.put("status", "success");
+            responseMap.putAll(job.get().toMap());
+            out.print(gson.toJson(responseMap));
+        }
+    }
+
+    @Override
+    protected void doDelete(HttpServletRequest req, HttpServletResponse resp) throws IOException {
+        resp.setContentType("application/json;charset=UTF-8");
+        resp.setCharacterEncoding("UTF-8");
+
+        try (PrintWriter out = resp.getWriter()) {
+            Optional<RunJob> job = findJob(req);
+            if (job.isEmpty()) {
+                resp.setStatus(HttpServletResponse.SC_NOT_FOUND);
+                out.print(gson.toJson(Map.of("status", "error", "message", "Unknown run job")));
+                return;
+            }
+            if (!job.get().cancel()) {
+                resp.setStatus(HttpServletResponse.SC_CONFLICT);
+                out.print(gson.toJson(Map.of("status", "error", "message", "Run already ended",
+                        "state", job.get().state().name())));
+                return;
+            }
+            out.print(gson.toJson(Map.of("status", "success", "jobId", job.get().id(),
+                    "state", job.get().state().name())));
+        }
+    }
+
+    //This func finds the job named by the path (/run/{id}) among the jobs of the session's user
+    private Optional<RunJob> findJob(HttpServletRequest req) {
+        String path = req.getPathInfo();
+        String id = (path == null) ? null : path.replaceFirst("^/", "").trim();
+        if (id == null || id.isEmpty()) return Optional.empty();
+        String username = UserManager.getCurrentUser().map(u -> u.getUsername()).orElse(null);
+        return RunJobs.find(id, username);
+    }
 }
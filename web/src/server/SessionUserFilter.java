@@ -0,0 +1,33 @@
+package server;
+
+import emulator.logic.user.User;
+import emulator.logic.user.UserManager;
+import jakarta.servlet.*;
+import jakarta.servlet.annotation.WebFilter;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpSession;
+
+import java.io.IOException;
+
+// Makes the session's user the current user of the request's thread, so credits and run records of concurrent
+// requests go to their own users
+@WebFilter("/*")
+public class SessionUserFilter implements Filter {
+
+    @Override
+    public void doFilter(ServletRequest req, ServletResponse resp, FilterChain chain)
+            throws IOException, ServletException {
+        HttpSession session = ((HttpServletRequest) req).getSession(false);
+        User user = null;
+        if (session != null && session.getAttribute(EngineHolder.SESSION_USER) instanceof String username) {
+            user = UserManager.find(username).orElse(null);
+        }
+
+        UserManager.bind(user);
+        try {
+            chain.doFilter(req, resp);
+        } finally {
+            UserManager.bind(null);
+        }
+    }
+}